@@ -0,0 +1,71 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+package no.entur.kakka.jmh;
+
+import no.entur.kakka.task.geojson.GeojsonFeatureWrapperFactory;
+import no.entur.kakka.task.netex.TopographicPlaceConverter;
+import no.entur.kakka.task.netex.TopographicPlaceReader;
+import no.entur.kakka.task.netex.geojson.GeoJsonCollectionTopographicPlaceReader;
+import no.entur.kakka.task.netex.sosi.SosiTopographicPlaceReader;
+import no.entur.kakka.task.sosi.SosiElementWrapperFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end conversion of synthetic input files to a NeTEx file, as done by the Tiamat administrative units update.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConversionBenchmark {
+
+    @Param({"SOSI", "GEOJSON"})
+    public String format;
+
+    @Param({"1"})
+    public int readerParallelism;
+
+    private final TopographicPlaceConverter converter = new TopographicPlaceConverter("CET");
+
+    @Benchmark
+    public File convertToNetex(SyntheticInputState input) {
+        File target = new File(input.directory, "netex-" + format + ".xml");
+        converter.toNetexFile(createReader(input), target.getAbsolutePath());
+        return target;
+    }
+
+    private TopographicPlaceReader createReader(SyntheticInputState input) {
+        if ("GEOJSON".equals(format)) {
+            return new GeoJsonCollectionTopographicPlaceReader(new GeojsonFeatureWrapperFactory(List.of()), input.geoJsonFile);
+        }
+        return new SosiTopographicPlaceReader(new SosiElementWrapperFactory(), input.sosiFiles, readerParallelism, readerParallelism);
+    }
+}
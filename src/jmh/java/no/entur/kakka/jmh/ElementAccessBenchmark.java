@@ -0,0 +1,119 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.jmh;
+
+import no.entur.kakka.task.netex.TopographicPlaceAdapter;
+import no.entur.kakka.task.sosi.SosiCoordinates;
+import no.entur.kakka.task.sosi.SosiElementIndex;
+import no.entur.kakka.task.sosi.SosiElementWrapperFactory;
+import no.vegvesen.nvdb.sosi.Sosi;
+import no.vegvesen.nvdb.sosi.document.SosiDocument;
+import no.vegvesen.nvdb.sosi.document.SosiElement;
+import no.vegvesen.nvdb.sosi.document.SosiValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Property access on parsed SOSI area elements, as done when wrapping and mapping them. Compares a linear scan of the
+ * sub elements per property with the sub element index, and measures the memoized wrapper accessors.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ElementAccessBenchmark {
+
+    private static final String[] PROPERTIES = {"OBJTYPE", "KOMMUNENUMMER", "ADMENHETNAVN", "REF"};
+
+    private final List<SosiElement> areas = new ArrayList<>();
+
+    private SosiCoordinates coordinates;
+
+    @Setup(Level.Trial)
+    public void readAreas(SyntheticInputState input) throws IOException {
+        File file = input.sosiFiles.getFirst();
+        try (InputStream inputStream = new FileInputStream(file)) {
+            SosiDocument document = Sosi.createReader(inputStream).read();
+            coordinates = new SosiCoordinates(document.getHead());
+            document.getElements().forEach(se -> {
+                coordinates.collectCoordinates(se);
+                if ("FLATE".equals(se.getName())) {
+                    areas.add(se);
+                }
+            });
+            coordinates.completeCollection();
+        }
+    }
+
+    @Benchmark
+    public void linearScanPerProperty(Blackhole blackhole) {
+        for (SosiElement area : areas) {
+            for (String property : PROPERTIES) {
+                blackhole.consume(area.findSubElement(se -> property.equals(se.getName())).orElse(null));
+            }
+            SosiElement name = area.findSubElement(se -> "ADMENHETNAVN".equals(se.getName())).orElseThrow();
+            blackhole.consume(name.findSubElement(se -> "NAVN".equals(se.getName())).orElseThrow().getValueAs(SosiValue.class));
+        }
+    }
+
+    @Benchmark
+    public void indexedLookup(Blackhole blackhole) {
+        for (SosiElement area : areas) {
+            SosiElementIndex index = new SosiElementIndex(area);
+            for (String property : PROPERTIES) {
+                blackhole.consume(index.first(property));
+            }
+            blackhole.consume(index.getString("ADMENHETNAVN", "NAVN"));
+        }
+    }
+
+    /**
+     * Wrapping each element and reading id and name repeatedly, as the reader, mapper and logging do.
+     */
+    @Benchmark
+    public void wrapperAccessors(Blackhole blackhole) {
+        SosiElementWrapperFactory wrapperFactory = new SosiElementWrapperFactory();
+        for (SosiElement area : areas) {
+            TopographicPlaceAdapter adapter = wrapperFactory.createWrapper(area, coordinates);
+            for (int i = 0; i < 4; i++) {
+                blackhole.consume(adapter.getId());
+                blackhole.consume(adapter.getName());
+            }
+            blackhole.consume(adapter.getParentId());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+package no.entur.kakka.jmh;
+
+import no.entur.kakka.task.netex.TopographicPlaceAdapter;
+import no.entur.kakka.task.netex.TopographicPlaceMapper;
+import no.entur.kakka.task.sosi.SosiElementWrapperFactory;
+import no.entur.kakka.task.sosi.SosiTopographicPlaceAdapterReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping adapters with assembled geometries to NeTEx TopographicPlaces.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MappingBenchmark {
+
+    private final List<TopographicPlaceAdapter> adapters = new ArrayList<>();
+
+    private final TopographicPlaceMapper mapper = new TopographicPlaceMapper("KVE");
+
+    @Setup(Level.Trial)
+    public void readAdapters(SyntheticInputState input) {
+        SosiElementWrapperFactory wrapperFactory = new SosiElementWrapperFactory();
+        for (File file : input.sosiFiles) {
+            new SosiTopographicPlaceAdapterReader(wrapperFactory, file).stream(adapters::add);
+        }
+    }
+
+    @Benchmark
+    public void mapToTopographicPlaces(Blackhole blackhole) {
+        for (TopographicPlaceAdapter adapter : adapters) {
+            blackhole.consume(mapper.toTopographicPlace(adapter));
+        }
+    }
+}
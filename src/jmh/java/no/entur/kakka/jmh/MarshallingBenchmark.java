@@ -0,0 +1,101 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+package no.entur.kakka.jmh;
+
+import no.entur.kakka.task.netex.TopographicPlaceAdapter;
+import no.entur.kakka.task.netex.TopographicPlaceMapper;
+import no.entur.kakka.task.netex.TopographicPlaceNetexWriter;
+import no.entur.kakka.task.sosi.SosiElementWrapperFactory;
+import no.entur.kakka.task.sosi.SosiTopographicPlaceAdapterReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rutebanken.netex.model.LocaleStructure;
+import org.rutebanken.netex.model.ModificationEnumeration;
+import org.rutebanken.netex.model.MultilingualString;
+import org.rutebanken.netex.model.ObjectFactory;
+import org.rutebanken.netex.model.PublicationDeliveryStructure;
+import org.rutebanken.netex.model.SiteFrame;
+import org.rutebanken.netex.model.TopographicPlace;
+import org.rutebanken.netex.model.VersionFrameDefaultsStructure;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Marshalling mapped TopographicPlaces into a PublicationDelivery, discarding the output. Compares the sequential writer
+ * with parallel marshalling, and JAXB with the StAX serializer.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MarshallingBenchmark {
+
+    @Param({"1", "4"})
+    public int marshallerThreads;
+
+    @Param({"JAXB", "STAX"})
+    public TopographicPlaceNetexWriter.Serializer serializer;
+
+    private final List<TopographicPlace> topographicPlaces = new ArrayList<>();
+
+    private PublicationDeliveryStructure publicationDelivery;
+
+    @Setup(Level.Trial)
+    public void mapTopographicPlaces(SyntheticInputState input) {
+        SosiElementWrapperFactory wrapperFactory = new SosiElementWrapperFactory();
+        List<TopographicPlaceAdapter> adapters = new ArrayList<>();
+        for (File file : input.sosiFiles) {
+            new SosiTopographicPlaceAdapterReader(wrapperFactory, file).stream(adapters::add);
+        }
+        TopographicPlaceMapper mapper = new TopographicPlaceMapper("KVE");
+        adapters.forEach(adapter -> topographicPlaces.add(mapper.toTopographicPlace(adapter)));
+
+        SiteFrame siteFrame = new SiteFrame().withCreated(LocalDateTime.now()).withId("KVE:SiteFrame:1")
+                .withModification(ModificationEnumeration.NEW).withVersion("any")
+                .withFrameDefaults(new VersionFrameDefaultsStructure().withDefaultLocale(new LocaleStructure().withTimeZone("CET")));
+        publicationDelivery = new PublicationDeliveryStructure().withParticipantRef("KVE")
+                .withPublicationTimestamp(LocalDateTime.now())
+                .withDescription(new MultilingualString().withValue("Synthetic administrative units"))
+                .withDataObjects(new PublicationDeliveryStructure.DataObjects()
+                        .withCompositeFrameOrCommonFrame(new ObjectFactory().createSiteFrame(siteFrame)));
+    }
+
+    @Benchmark
+    public void marshal() throws Exception {
+        BlockingQueue<TopographicPlace> queue = new LinkedBlockingQueue<>(topographicPlaces);
+        queue.add(new TopographicPlace().withId("POISON"));
+        new TopographicPlaceNetexWriter(marshallerThreads, serializer).stream(publicationDelivery, queue, OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+package no.entur.kakka.jmh;
+
+import no.entur.kakka.task.sosi.GeometryTransformer;
+import org.geotools.api.referencing.FactoryException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UTM to WGS84 projection of interleaved coordinate arrays, reported as coordinates per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ProjectionBenchmark {
+
+    private static final int POINTS = 100_000;
+
+    @Param({"KRUGER", "GEOTOOLS"})
+    public GeometryTransformer.Backend backend;
+
+    private GeometryTransformer.Backend defaultBackend;
+
+    private double[] source;
+
+    private double[] coordinates;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        defaultBackend = GeometryTransformer.getBackend();
+        GeometryTransformer.setBackend(backend);
+        source = new double[POINTS * 2];
+        for (int i = 0; i < POINTS; i++) {
+            source[i * 2] = 250000 + (i % 1000) * 500.0;
+            source[i * 2 + 1] = 6450000 + (i / 1000) * 10000.0;
+        }
+        coordinates = new double[POINTS * 2];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        GeometryTransformer.setBackend(defaultBackend);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double[] fromUtm() throws FactoryException {
+        System.arraycopy(source, 0, coordinates, 0, source.length);
+        GeometryTransformer.fromUTM(coordinates, "33");
+        return coordinates;
+    }
+}
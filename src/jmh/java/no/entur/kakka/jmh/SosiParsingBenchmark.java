@@ -0,0 +1,57 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+package no.entur.kakka.jmh;
+
+import no.entur.kakka.task.sosi.SosiElementWrapperFactory;
+import no.entur.kakka.task.sosi.SosiTopographicPlaceAdapterReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing SOSI files to adapters with assembled area geometries, including curve projection.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SosiParsingBenchmark {
+
+    private final SosiElementWrapperFactory wrapperFactory = new SosiElementWrapperFactory();
+
+    @Benchmark
+    public void streamAdapters(SyntheticInputState input, Blackhole blackhole) {
+        for (File file : input.sosiFiles) {
+            new SosiTopographicPlaceAdapterReader(wrapperFactory, file).stream(adapter -> blackhole.consume(adapter.getDefaultGeometry()));
+        }
+    }
+
+    @Benchmark
+    public void readAdapters(SyntheticInputState input, Blackhole blackhole) {
+        for (File file : input.sosiFiles) {
+            new SosiTopographicPlaceAdapterReader(wrapperFactory, file).read().forEach(adapter -> blackhole.consume(adapter.getDefaultGeometry()));
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.jmh;
+
+import no.entur.kakka.task.sosi.KrugerTransverseMercator;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Generates synthetic national scale administrative units as SOSI and GeoJSON files.
+ * <p>
+ * Areas are laid out as a grid of municipalities per UTM zone. Neighbouring areas share the KURVE between them, like in the
+ * Kartverket datasets, and every curve wiggles so that it cannot be trivially simplified. The output is deterministic for
+ * a given configuration.
+ */
+public class SyntheticInputGenerator {
+
+    private static final double CELL_SIZE_METRES = 20000;
+
+    private static final double UNIT = 0.01;
+
+    private final int numberOfAreas;
+
+    private final int verticesPerCurve;
+
+    private final int[] utmZones;
+
+    /**
+     * @param numberOfAreas    total number of areas, distributed evenly over the zones
+     * @param verticesPerCurve vertices per KURVE. Each area is bounded by four curves
+     * @param utmZones         EUREF89 UTM zones (31-36), one SOSI file is generated per zone
+     */
+    public SyntheticInputGenerator(int numberOfAreas, int verticesPerCurve, int... utmZones) {
+        if (verticesPerCurve < 2) {
+            throw new IllegalArgumentException("A curve needs at least two vertices");
+        }
+        this.numberOfAreas = numberOfAreas;
+        this.verticesPerCurve = verticesPerCurve;
+        this.utmZones = utmZones.length == 0 ? new int[]{33} : utmZones;
+    }
+
+    public static void main(String[] args) throws IOException {
+        File directory = new File(args.length > 0 ? args[0] : "target/synthetic");
+        int areas = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+        int vertices = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        SyntheticInputGenerator generator = new SyntheticInputGenerator(areas, vertices, 32, 33, 35);
+        List<File> files = generator.writeSosiFiles(directory);
+        files.add(generator.writeGeoJsonFile(new File(directory, "synthetic.geojson")));
+        files.forEach(file -> System.out.println(file.getAbsolutePath() + ": " + file.length() + " bytes"));
+    }
+
+    /**
+     * Write one SOSI file per UTM zone to directory.
+     */
+    public List<File> writeSosiFiles(File directory) throws IOException {
+        Files.createDirectories(directory.toPath());
+        List<File> files = new ArrayList<>();
+        for (int zoneIndex = 0; zoneIndex < utmZones.length; zoneIndex++) {
+            File file = new File(directory, "synthetic-" + utmZones[zoneIndex] + ".sos");
+            try (Writer writer = new BufferedWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+                writeSosi(writer, zoneIndex);
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * Write all areas as a GeoJSON FeatureCollection of Kartverket municipalities in WGS84.
+     */
+    public File writeGeoJsonFile(File file) throws IOException {
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            writer.write("{\"type\":\"FeatureCollection\",\"features\":[");
+            boolean first = true;
+            for (int zoneIndex = 0; zoneIndex < utmZones.length; zoneIndex++) {
+                Grid grid = grid(zoneIndex);
+                for (int row = 0; row < grid.rows; row++) {
+                    for (int column = 0; column < grid.columns; column++) {
+                        if (grid.cellIndex(row, column) >= grid.cells) {
+                            continue;
+                        }
+                        if (!first) {
+                            writer.write(',');
+                        }
+                        first = false;
+                        writeGeoJsonFeature(writer, grid, row, column);
+                    }
+                }
+            }
+            writer.write("]}");
+        }
+        return file;
+    }
+
+    private void writeSosi(Writer writer, int zoneIndex) throws IOException {
+        Grid grid = grid(zoneIndex);
+        writer.write(".HODE\n..TEGNSETT UTF-8\n..SOSI-VERSJON 4.0\n..SOSI-NIVÅ 4\n..TRANSPAR\n");
+        writer.write("...KOORDSYS " + (grid.zone - 10) + "\n...ORIGO-NØ 0  0\n...ENHET " + UNIT + "\n");
+
+        for (int row = 0; row <= grid.rows; row++) {
+            for (int column = 0; column < grid.columns; column++) {
+                writeCurve(writer, grid.horizontalCurveId(row, column), grid.horizontalCurve(row, column));
+            }
+        }
+        for (int row = 0; row < grid.rows; row++) {
+            for (int column = 0; column <= grid.columns; column++) {
+                writeCurve(writer, grid.verticalCurveId(row, column), grid.verticalCurve(row, column));
+            }
+        }
+
+        for (int row = 0; row < grid.rows; row++) {
+            for (int column = 0; column < grid.columns; column++) {
+                int cell = grid.cellIndex(row, column);
+                if (cell >= grid.cells) {
+                    continue;
+                }
+                String municipalityNumber = municipalityNumber(grid, cell);
+                writer.write(".FLATE " + (grid.curveIdOffset + 900000 + cell) + ":\n");
+                writer.write("..OBJTYPE Kommune\n");
+                writer.write("..KOMMUNENUMMER " + municipalityNumber + "\n");
+                writer.write("..ADMENHETNAVN\n...NAVN Kommune " + municipalityNumber + "\n...SPRÅK nor\n");
+                writer.write("..REF :" + grid.horizontalCurveId(row, column) + " :" + grid.verticalCurveId(row, column + 1)
+                        + " :-" + grid.horizontalCurveId(row + 1, column) + " :-" + grid.verticalCurveId(row, column) + "\n");
+            }
+        }
+        writer.write(".SLUTT\n");
+    }
+
+    private void writeCurve(Writer writer, long id, double[] utm) throws IOException {
+        writer.write(".KURVE " + id + ":\n..OBJTYPE Kommunegrense\n..NØ\n");
+        for (int i = 0; i < utm.length; i += 2) {
+            writer.write(Math.round(utm[i + 1] / UNIT) + " " + Math.round(utm[i] / UNIT) + "\n");
+        }
+    }
+
+    private void writeGeoJsonFeature(Writer writer, Grid grid, int row, int column) throws IOException {
+        int cell = grid.cellIndex(row, column);
+        double[] ring = grid.ring(row, column);
+        KrugerTransverseMercator.inverse(ring, 0, ring.length / 2, grid.zone);
+
+        StringBuilder coordinates = new StringBuilder(ring.length * 12);
+        for (int i = 0; i < ring.length; i += 2) {
+            if (i > 0) {
+                coordinates.append(',');
+            }
+            coordinates.append('[').append(String.format(Locale.ROOT, "%.7f,%.7f", ring[i], ring[i + 1])).append(']');
+        }
+        String municipalityNumber = municipalityNumber(grid, cell);
+        writer.write("{\"type\":\"Feature\",\"properties\":{\"objtype\":\"Kommune\",\"komm\":" + Integer.parseInt(municipalityNumber)
+                + ",\"navn\":\"Kommune " + municipalityNumber + "\"},\"geometry\":{\"type\":\"Polygon\",\"coordinates\":[["
+                + coordinates + "]]}}");
+    }
+
+    private String municipalityNumber(Grid grid, int cell) {
+        int number = 1000 + grid.firstArea + cell;
+        return String.valueOf(number);
+    }
+
+    private Grid grid(int zoneIndex) {
+        int areasPerZone = numberOfAreas / utmZones.length;
+        int cells = zoneIndex == utmZones.length - 1 ? numberOfAreas - areasPerZone * (utmZones.length - 1) : areasPerZone;
+        return new Grid(utmZones[zoneIndex], cells, zoneIndex * areasPerZone, (zoneIndex + 1) * 10_000_000L);
+    }
+
+    /**
+     * Grid of square cells around the central meridian of a zone, starting at about 60°N.
+     */
+    private class Grid {
+        private final int zone;
+        private final int cells;
+        private final int firstArea;
+        private final long curveIdOffset;
+        private final int columns;
+        private final int rows;
+
+        private Grid(int zone, int cells, int firstArea, long curveIdOffset) {
+            this.zone = zone;
+            this.cells = cells;
+            this.firstArea = firstArea;
+            this.curveIdOffset = curveIdOffset;
+            this.columns = Math.max(1, (int) Math.ceil(Math.sqrt(cells)));
+            this.rows = Math.max(1, (int) Math.ceil((double) cells / columns));
+        }
+
+        private int cellIndex(int row, int column) {
+            return row * columns + column;
+        }
+
+        private long horizontalCurveId(int row, int column) {
+            return curveIdOffset + 1 + (long) row * columns + column;
+        }
+
+        private long verticalCurveId(int row, int column) {
+            return curveIdOffset + 1 + (long) (rows + 1) * columns + (long) row * (columns + 1) + column;
+        }
+
+        private double easting(int column) {
+            return 500000 - columns * CELL_SIZE_METRES / 2 + column * CELL_SIZE_METRES;
+        }
+
+        private double northing(int row) {
+            return 6650000 + row * CELL_SIZE_METRES;
+        }
+
+        private double[] horizontalCurve(int row, int column) {
+            return curve(easting(column), northing(row), easting(column + 1), northing(row), horizontalCurveId(row, column));
+        }
+
+        private double[] verticalCurve(int row, int column) {
+            return curve(easting(column), northing(row), easting(column), northing(row + 1), verticalCurveId(row, column));
+        }
+
+        /**
+         * Closed ring for a cell, concatenated from its four curves like SosiElementWrapper does.
+         */
+        private double[] ring(int row, int column) {
+            double[][] parts = {horizontalCurve(row, column), verticalCurve(row, column + 1),
+                    reverse(horizontalCurve(row + 1, column)), reverse(verticalCurve(row, column))};
+            double[] ring = new double[verticesPerCurve * 2 * parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                System.arraycopy(parts[i], 0, ring, i * verticesPerCurve * 2, verticesPerCurve * 2);
+            }
+            return ring;
+        }
+    }
+
+    /**
+     * Straight line between the end points with a deterministic wiggle across it, which is zero at both ends.
+     */
+    private double[] curve(double x0, double y0, double x1, double y1, long seed) {
+        double[] coordinates = new double[verticesPerCurve * 2];
+        double length = Math.hypot(x1 - x0, y1 - y0);
+        double normalX = -(y1 - y0) / length;
+        double normalY = (x1 - x0) / length;
+        double amplitude = CELL_SIZE_METRES * 0.02;
+        int waves = 3 + (int) (seed % 5);
+        for (int i = 0; i < verticesPerCurve; i++) {
+            double t = (double) i / (verticesPerCurve - 1);
+            double offset = amplitude * Math.sin(Math.PI * t) * Math.sin(waves * Math.PI * t);
+            coordinates[i * 2] = x0 + (x1 - x0) * t + normalX * offset;
+            coordinates[i * 2 + 1] = y0 + (y1 - y0) * t + normalY * offset;
+        }
+        return coordinates;
+    }
+
+    private static double[] reverse(double[] coordinates) {
+        double[] reversed = new double[coordinates.length];
+        for (int i = 0; i < coordinates.length; i += 2) {
+            reversed[coordinates.length - 2 - i] = coordinates[i];
+            reversed[coordinates.length - 1 - i] = coordinates[i + 1];
+        }
+        return reversed;
+    }
+}
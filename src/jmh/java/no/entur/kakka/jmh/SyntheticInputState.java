@@ -0,0 +1,66 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+package no.entur.kakka.jmh;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Synthetic SOSI and GeoJSON input, generated once per trial.
+ */
+@State(Scope.Benchmark)
+public class SyntheticInputState {
+
+    @Param({"400"})
+    public int areas;
+
+    @Param({"500"})
+    public int verticesPerCurve;
+
+    @Param({"32,33,35"})
+    public String utmZones;
+
+    public File directory;
+
+    public List<File> sosiFiles;
+
+    public File geoJsonFile;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        directory = Files.createTempDirectory("kakka-jmh").toFile();
+        int[] zones = Arrays.stream(utmZones.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+        SyntheticInputGenerator generator = new SyntheticInputGenerator(areas, verticesPerCurve, zones);
+        sosiFiles = generator.writeSosiFiles(directory);
+        geoJsonFile = generator.writeGeoJsonFile(new File(directory, "synthetic.geojson"));
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+}
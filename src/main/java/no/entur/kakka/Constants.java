@@ -33,6 +33,19 @@ public class Constants {
 
     public static final String LOOP_COUNTER = "RutebankenLoopCounter";
 
+    public static final String NETEX_FILE = "RutebankenNetexFile";
+    public static final String NETEX_STREAM = "RutebankenNetexStream";
+    public static final String UNCOMPRESSED_SIZE = "RutebankenUncompressedSize";
+    public static final String UNCOMPRESSED_NETEX_STREAM = "RutebankenUncompressedNetexStream";
+    public static final String TOPOGRAPHIC_PLACE_DELTA = "RutebankenTopographicPlaceDelta";
+    public static final String FULL_SYNC = "RutebankenFullSync";
+    public static final String FORCE_RUN = "RutebankenForceRun";
+    public static final String INPUT_MANIFEST = "RutebankenInputManifest";
+    public static final String INPUT_UNCHANGED = "RutebankenInputUnchanged";
+    public static final String PARENT_VALIDATOR = "RutebankenParentValidator";
+    public static final String TOPOGRAPHIC_PLACE_CACHE = "RutebankenTopographicPlaceCache";
+    public static final String FLATGEOBUF_WRITER = "RutebankenFlatGeobufWriter";
+
     public static final String ET_CLIENT_NAME_HEADER = "ET-Client-Name";
     public static final String ET_CLIENT_ID_HEADER = "ET-Client-ID";
 
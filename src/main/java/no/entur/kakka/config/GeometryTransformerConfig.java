@@ -0,0 +1,46 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.config;
+
+import no.entur.kakka.task.netex.NetexGeoUtil;
+import no.entur.kakka.task.sosi.GeometryTransformer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PostConstruct;
+
+@Configuration
+public class GeometryTransformerConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeometryTransformerConfig.class);
+
+    @Value("${kakka.geometry.transform.backend:KRUGER}")
+    private GeometryTransformer.Backend backend;
+
+    @Value("${kakka.geometry.coordinate.decimals:" + NetexGeoUtil.DEFAULT_COORDINATE_DECIMALS + "}")
+    private int coordinateDecimals;
+
+    @PostConstruct
+    public void init() {
+        GeometryTransformer.setBackend(backend);
+        logger.info("Transforming UTM coordinates with backend: {}", backend);
+        NetexGeoUtil.setCoordinateDecimals(coordinateDecimals);
+        logger.info("Writing coordinates with {} decimals", coordinateDecimals);
+    }
+}
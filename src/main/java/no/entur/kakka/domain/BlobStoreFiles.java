@@ -59,6 +59,8 @@ public class BlobStoreFiles {
         private Format format;
         @JsonProperty(required = false)
         private String url;
+        @JsonProperty(required = false)
+        private String checksum;
 
         public File() {
         }
@@ -127,6 +129,17 @@ public class BlobStoreFiles {
             this.url = url;
         }
 
+        /**
+         * Checksum of the content as reported by the blob store, or null if not known.
+         */
+        public String getChecksum() {
+            return checksum;
+        }
+
+        public void setChecksum(String checksum) {
+            this.checksum = checksum;
+        }
+
         public Long getProviderId() {
             return providerId;
         }
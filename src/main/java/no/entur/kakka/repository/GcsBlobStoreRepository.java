@@ -163,6 +163,7 @@ public class GcsBlobStoreRepository implements BlobStoreRepository {
 
     private BlobStoreFiles.File toBlobStoreFile(Blob blob, String fileName) {
         BlobStoreFiles.File file = new BlobStoreFiles.File(fileName, Date.from(blob.getCreateTimeOffsetDateTime().toInstant()), Date.from(blob.getUpdateTimeOffsetDateTime().toInstant()), blob.getSize());
+        file.setChecksum(blob.getCrc32cToHexString());
 
         if (blob.getAcl() != null) {
             if (blob.getAcl().stream().anyMatch(acl -> Acl.User.ofAllUsers().equals(acl.getEntity()) && acl.getRole() != null)) {
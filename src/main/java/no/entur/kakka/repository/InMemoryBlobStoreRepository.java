@@ -36,6 +36,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
 
 @Repository
 @Profile("in-memory-blobstore")
@@ -55,7 +56,11 @@ public class InMemoryBlobStoreRepository implements BlobStoreRepository {
         logger.debug("list blobs called in in-memory blob store");
         List<BlobStoreFiles.File> files = blobs.keySet().stream()
                 .filter(k -> prefixes.stream().anyMatch(k::startsWith))
-                .map(k -> new BlobStoreFiles.File(k, new Date(), new Date(), 1234L))    //TODO Add real details?
+                .map(k -> {
+                    BlobStoreFiles.File file = new BlobStoreFiles.File(k, new Date(), new Date(), 1234L);    //TODO Add real details?
+                    file.setChecksum(checksum(blobs.get(k)));
+                    return file;
+                })
                 .toList();
         BlobStoreFiles blobStoreFiles = new BlobStoreFiles();
         blobStoreFiles.add(files);
@@ -143,4 +148,10 @@ public class InMemoryBlobStoreRepository implements BlobStoreRepository {
         listBlobs(folder).getFiles().forEach(file -> delete(file.getName()));
         return true;
     }
+
+    private static String checksum(byte[] content) {
+        CRC32C crc32c = new CRC32C();
+        crc32c.update(content);
+        return Long.toHexString(crc32c.getValue());
+    }
 }
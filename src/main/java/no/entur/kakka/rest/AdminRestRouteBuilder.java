@@ -16,6 +16,7 @@
 
 package no.entur.kakka.rest;
 
+import no.entur.kakka.Constants;
 import no.entur.kakka.task.BaseRouteBuilder;
 import no.entur.kakka.task.routes.control.TaskType;
 import no.entur.kakka.security.KakkaAuthorizationService;
@@ -121,6 +122,12 @@ public class AdminRestRouteBuilder extends BaseRouteBuilder {
                 .required(Boolean.TRUE)
                 .description("Tasks to be executed")
                 .endParam()
+                .param().name("force")
+                .type(RestParamType.query)
+                .dataType("boolean")
+                .required(Boolean.FALSE)
+                .description("Run tasks even if their input is unchanged since the last successful run")
+                .endParam()
                 .description("Update tasks")
                 .responseMessage().code(200).endResponseMessage()
                 .responseMessage().code(500).message("Internal error").endResponseMessage()
@@ -184,6 +191,7 @@ public class AdminRestRouteBuilder extends BaseRouteBuilder {
                 .validate(header("task").isNotNull())
                 .removeHeaders(camelHttpPattern)
                 .process(e -> e.getIn().setBody(taskTypesFromString(e.getIn().getHeader("task", Collection.class))))
+                .process(e -> e.getIn().setHeader(Constants.FORCE_RUN, e.getIn().getHeader("force", false, Boolean.class)))
                 .to(ExchangePattern.InOnly, "direct:taskStartBatch")
                 .setBody(constant(null))
                 .routeId("admin-task-start-route");
@@ -31,6 +31,11 @@ import java.util.UUID;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class JobEvent {
 
+    /**
+     * Reason for a job completing OK without doing any work, because its input is the same as for the last successful run.
+     */
+    public static final String REASON_INPUT_UNCHANGED = "INPUT_UNCHANGED";
+
     public String name;
     public String correlationId;
     public Long providerId;
@@ -40,6 +45,7 @@ public class JobEvent {
     public State state;
     public Instant eventTime;
     public String referential;
+    public String reason;
 
     private JobEvent() {
     }
@@ -135,6 +141,11 @@ public class JobEvent {
             return this;
         }
 
+        public Builder reason(String reason) {
+            jobEvent.reason = reason;
+            return this;
+        }
+
         public JobEvent build() {
             if (jobEvent.correlationId == null) {
                 throw new IllegalArgumentException("No correlation id");
@@ -0,0 +1,226 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.flatgeobuf;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal FlatBuffers builder for the FlatGeobuf header and feature tables.
+ * <p>
+ * As in the reference implementation the buffer is built back to front, so that children are written before the
+ * tables referring to them. Offsets returned by the builder are measured from the end of the buffer. Scalars are little
+ * endian and aligned to their size. Vtables are not shared between tables.
+ */
+class FlatBufferBuilder {
+
+    private byte[] buffer;
+
+    /**
+     * Start of the written data, which fills the buffer from space to the end.
+     */
+    private int space;
+
+    private int minAlign = 1;
+
+    private int[] vtable;
+
+    private int objectStart;
+
+    FlatBufferBuilder(int initialSize) {
+        buffer = new byte[Math.max(64, initialSize)];
+        space = buffer.length;
+    }
+
+    int offset() {
+        return buffer.length - space;
+    }
+
+    void addByte(byte value) {
+        prep(Byte.BYTES, 0);
+        buffer[--space] = value;
+    }
+
+    void addShort(short value) {
+        prep(Short.BYTES, 0);
+        putLittleEndian(value, Short.BYTES);
+    }
+
+    void addInt(int value) {
+        prep(Integer.BYTES, 0);
+        putLittleEndian(value, Integer.BYTES);
+    }
+
+    void addLong(long value) {
+        prep(Long.BYTES, 0);
+        putLittleEndian(value, Long.BYTES);
+    }
+
+    void addDouble(double value) {
+        addLong(Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Add a reference to a string, vector or table written earlier.
+     */
+    void addOffset(int offset) {
+        prep(Integer.BYTES, 0);
+        addInt(offset() - offset + Integer.BYTES);
+    }
+
+    int createString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        addByte((byte) 0);
+        startVector(1, bytes.length, 1);
+        space -= bytes.length;
+        System.arraycopy(bytes, 0, buffer, space, bytes.length);
+        return endVector(bytes.length);
+    }
+
+    int createByteVector(byte[] bytes, int length) {
+        startVector(1, length, 1);
+        space -= length;
+        System.arraycopy(bytes, 0, buffer, space, length);
+        return endVector(length);
+    }
+
+    int createDoubleVector(double[] values, int from, int length) {
+        startVector(Double.BYTES, length, Double.BYTES);
+        for (int i = from + length - 1; i >= from; i--) {
+            putLittleEndian(Double.doubleToRawLongBits(values[i]), Long.BYTES);
+        }
+        return endVector(length);
+    }
+
+    int createIntVector(int[] values, int length) {
+        startVector(Integer.BYTES, length, Integer.BYTES);
+        for (int i = length - 1; i >= 0; i--) {
+            putLittleEndian(values[i], Integer.BYTES);
+        }
+        return endVector(length);
+    }
+
+    int createOffsetVector(int[] offsets, int length) {
+        startVector(Integer.BYTES, length, Integer.BYTES);
+        for (int i = length - 1; i >= 0; i--) {
+            addOffset(offsets[i]);
+        }
+        return endVector(length);
+    }
+
+    void startTable(int numFields) {
+        vtable = new int[numFields];
+        objectStart = offset();
+    }
+
+    void addByte(int field, byte value) {
+        addByte(value);
+        vtable[field] = offset();
+    }
+
+    void addShort(int field, short value) {
+        addShort(value);
+        vtable[field] = offset();
+    }
+
+    void addInt(int field, int value) {
+        addInt(value);
+        vtable[field] = offset();
+    }
+
+    void addLong(int field, long value) {
+        addLong(value);
+        vtable[field] = offset();
+    }
+
+    void addOffset(int field, int offset) {
+        addOffset(offset);
+        vtable[field] = offset();
+    }
+
+    int endTable() {
+        addInt(0);
+        int tableOffset = offset();
+        int numFields = vtable.length;
+        while (numFields > 0 && vtable[numFields - 1] == 0) {
+            numFields--;
+        }
+        for (int i = numFields - 1; i >= 0; i--) {
+            addShort((short) (vtable[i] == 0 ? 0 : tableOffset - vtable[i]));
+        }
+        addShort((short) (tableOffset - objectStart));
+        addShort((short) ((numFields + 2) * Short.BYTES));
+        // The table starts with the distance back to its vtable, which was written just before it
+        int position = buffer.length - tableOffset;
+        int distance = offset() - tableOffset;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            buffer[position + i] = (byte) (distance >>> (8 * i));
+        }
+        vtable = null;
+        return tableOffset;
+    }
+
+    /**
+     * Finish the buffer with root as root table, prefixed with the size of the buffer, and return the bytes.
+     */
+    byte[] finishSizePrefixed(int root) {
+        prep(minAlign, 2 * Integer.BYTES);
+        addOffset(root);
+        addInt(offset());
+        return Arrays.copyOfRange(buffer, space, buffer.length);
+    }
+
+    private void startVector(int elementSize, int numElements, int alignment) {
+        prep(Integer.BYTES, elementSize * numElements);
+        prep(alignment, elementSize * numElements);
+    }
+
+    private int endVector(int numElements) {
+        addInt(numElements);
+        return offset();
+    }
+
+    /**
+     * Pad so that a scalar of size bytes is aligned after additionalBytes more bytes have been written, and make room for it.
+     */
+    private void prep(int size, int additionalBytes) {
+        if (size > minAlign) {
+            minAlign = size;
+        }
+        int alignSize = (-(offset() + additionalBytes)) & (size - 1);
+        while (space < alignSize + size + additionalBytes) {
+            grow();
+        }
+        for (int i = 0; i < alignSize; i++) {
+            buffer[--space] = 0;
+        }
+    }
+
+    private void grow() {
+        byte[] grown = new byte[buffer.length * 2];
+        System.arraycopy(buffer, space, grown, grown.length - offset(), offset());
+        space += grown.length - buffer.length;
+        buffer = grown;
+    }
+
+    private void putLittleEndian(long value, int bytes) {
+        space -= bytes;
+        for (int i = 0; i < bytes; i++) {
+            buffer[space + i] = (byte) (value >>> (8 * i));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.flatgeobuf;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reading of FlatBuffers tables at absolute positions in a little endian buffer, without generated classes.
+ */
+final class FlatBuffers {
+
+    private FlatBuffers() {
+    }
+
+    /**
+     * Position of the root table of a size prefixed buffer starting at position.
+     */
+    static int sizePrefixedRoot(ByteBuffer buffer, int position) {
+        return indirect(buffer, position + Integer.BYTES);
+    }
+
+    /**
+     * Position of a field in a table, or 0 if the field is not set.
+     */
+    static int field(ByteBuffer buffer, int table, int field) {
+        int vtable = table - buffer.getInt(table);
+        int vtableSize = Short.toUnsignedInt(buffer.getShort(vtable));
+        int entry = (field + 2) * Short.BYTES;
+        if (entry >= vtableSize) {
+            return 0;
+        }
+        int offset = Short.toUnsignedInt(buffer.getShort(vtable + entry));
+        return offset == 0 ? 0 : table + offset;
+    }
+
+    static int indirect(ByteBuffer buffer, int position) {
+        return position + buffer.getInt(position);
+    }
+
+    static byte getByte(ByteBuffer buffer, int table, int field, byte defaultValue) {
+        int position = field(buffer, table, field);
+        return position == 0 ? defaultValue : buffer.get(position);
+    }
+
+    static int getUnsignedShort(ByteBuffer buffer, int table, int field, int defaultValue) {
+        int position = field(buffer, table, field);
+        return position == 0 ? defaultValue : Short.toUnsignedInt(buffer.getShort(position));
+    }
+
+    static int getInt(ByteBuffer buffer, int table, int field, int defaultValue) {
+        int position = field(buffer, table, field);
+        return position == 0 ? defaultValue : buffer.getInt(position);
+    }
+
+    static long getLong(ByteBuffer buffer, int table, int field, long defaultValue) {
+        int position = field(buffer, table, field);
+        return position == 0 ? defaultValue : buffer.getLong(position);
+    }
+
+    /**
+     * Position of a table referred to by a field, or 0 if the field is not set.
+     */
+    static int getTable(ByteBuffer buffer, int table, int field) {
+        int position = field(buffer, table, field);
+        return position == 0 ? 0 : indirect(buffer, position);
+    }
+
+    static String getString(ByteBuffer buffer, int table, int field) {
+        int position = field(buffer, table, field);
+        if (position == 0) {
+            return null;
+        }
+        int string = indirect(buffer, position);
+        byte[] bytes = new byte[buffer.getInt(string)];
+        buffer.get(string + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Position of the first element of a vector referred to by a field, or 0 if the field is not set.
+     */
+    static int getVector(ByteBuffer buffer, int table, int field) {
+        int position = field(buffer, table, field);
+        return position == 0 ? 0 : indirect(buffer, position) + Integer.BYTES;
+    }
+
+    static int vectorLength(ByteBuffer buffer, int vector) {
+        return vector == 0 ? 0 : buffer.getInt(vector - Integer.BYTES);
+    }
+}
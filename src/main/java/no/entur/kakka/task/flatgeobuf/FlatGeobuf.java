@@ -0,0 +1,103 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.flatgeobuf;
+
+/**
+ * Constants of the FlatGeobuf format, version 3: https://flatgeobuf.org
+ * <p>
+ * A file consists of the magic bytes, the size prefixed header, an optional packed Hilbert R-tree index of the feature
+ * bounding boxes (see {@link PackedRTree}) and the size prefixed features. The header and the features are FlatBuffers
+ * tables, all values are little endian.
+ */
+public final class FlatGeobuf {
+
+    public static final String FILE_SUFFIX = ".fgb";
+
+    static final byte[] MAGIC = {0x66, 0x67, 0x62, 0x03, 0x66, 0x67, 0x62, 0x00};
+
+    static final int MAJOR_VERSION = 3;
+
+    public static final int DEFAULT_INDEX_NODE_SIZE = 16;
+
+    static final int WGS84_EPSG_CODE = 4326;
+
+    // Fields of table Header
+    static final int HEADER_NAME = 0;
+    static final int HEADER_ENVELOPE = 1;
+    static final int HEADER_GEOMETRY_TYPE = 2;
+    static final int HEADER_COLUMNS = 7;
+    static final int HEADER_FEATURES_COUNT = 8;
+    static final int HEADER_INDEX_NODE_SIZE = 9;
+    static final int HEADER_CRS = 10;
+    static final int HEADER_FIELDS = 14;
+
+    // Fields of table Column
+    static final int COLUMN_NAME = 0;
+    static final int COLUMN_TYPE = 1;
+    static final int COLUMN_FIELDS = 11;
+
+    // Fields of table Crs
+    static final int CRS_ORG = 0;
+    static final int CRS_CODE = 1;
+    static final int CRS_FIELDS = 6;
+
+    // Fields of table Geometry
+    static final int GEOMETRY_ENDS = 0;
+    static final int GEOMETRY_XY = 1;
+    static final int GEOMETRY_TYPE = 6;
+    static final int GEOMETRY_PARTS = 7;
+    static final int GEOMETRY_FIELDS = 8;
+
+    // Fields of table Feature
+    static final int FEATURE_GEOMETRY = 0;
+    static final int FEATURE_PROPERTIES = 1;
+    static final int FEATURE_FIELDS = 3;
+
+    private FlatGeobuf() {
+    }
+
+    /**
+     * Supported geometry types, in the order of their codes. Curved and surface types are not supported.
+     */
+    public enum GeometryType {
+        UNKNOWN, POINT, LINE_STRING, POLYGON, MULTI_POINT, MULTI_LINE_STRING, MULTI_POLYGON, GEOMETRY_COLLECTION;
+
+        static GeometryType of(int code) {
+            if (code < 0 || code >= values().length) {
+                throw new IllegalArgumentException("Unsupported FlatGeobuf geometry type: " + code);
+            }
+            return values()[code];
+        }
+    }
+
+    /**
+     * Column types, in the order of their codes.
+     */
+    public enum ColumnType {
+        BYTE, UBYTE, BOOL, SHORT, USHORT, INT, UINT, LONG, ULONG, FLOAT, DOUBLE, STRING, JSON, DATE_TIME, BINARY;
+
+        static ColumnType of(int code) {
+            if (code < 0 || code >= values().length) {
+                throw new IllegalArgumentException("Unsupported FlatGeobuf column type: " + code);
+            }
+            return values()[code];
+        }
+    }
+
+    public record Column(String name, ColumnType type) {
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.flatgeobuf;
+
+import no.entur.kakka.task.geojson.GeojsonFeature;
+import no.entur.kakka.task.geojson.GeojsonFeatureWrapperFactory;
+import no.entur.kakka.task.netex.TopographicPlaceAdapter;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Wrap features read from FlatGeobuf files as topographic places. Features exported by {@link FlatGeobufWriter} with
+ * {@link FlatGeobufTopographicPlaceAdapter#COLUMNS} are recognized by their place type, while features with the
+ * properties of the GeoJSON sources are wrapped by the {@link GeojsonFeatureWrapperFactory}.
+ */
+@Component
+public class FlatGeobufFeatureWrapperFactory {
+
+    /**
+     * Feature properties used to choose and populate the adapters. Other properties are skipped when reading.
+     */
+    public static final Set<String> PROPERTY_NAMES = propertyNames();
+
+    private final GeojsonFeatureWrapperFactory geojsonFeatureWrapperFactory;
+
+    public FlatGeobufFeatureWrapperFactory(GeojsonFeatureWrapperFactory geojsonFeatureWrapperFactory) {
+        this.geojsonFeatureWrapperFactory = geojsonFeatureWrapperFactory;
+    }
+
+    public TopographicPlaceAdapter createWrapper(GeojsonFeature feature) {
+        if (feature.hasProperty(FlatGeobufTopographicPlaceAdapter.PLACE_TYPE)) {
+            return new FlatGeobufTopographicPlaceAdapter(feature);
+        }
+        return geojsonFeatureWrapperFactory.createWrapper(feature);
+    }
+
+    private static Set<String> propertyNames() {
+        Set<String> propertyNames = new HashSet<>(FlatGeobufTopographicPlaceAdapter.PROPERTY_NAMES);
+        propertyNames.addAll(GeojsonFeatureWrapperFactory.PROPERTY_NAMES);
+        return Set.copyOf(propertyNames);
+    }
+}
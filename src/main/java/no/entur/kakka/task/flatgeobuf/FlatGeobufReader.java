@@ -0,0 +1,396 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.flatgeobuf;
+
+import no.entur.kakka.task.flatgeobuf.FlatGeobuf.Column;
+import no.entur.kakka.task.flatgeobuf.FlatGeobuf.ColumnType;
+import no.entur.kakka.task.flatgeobuf.FlatGeobuf.GeometryType;
+import no.entur.kakka.task.geojson.GeojsonFeature;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Read features from a FlatGeobuf file.
+ * <p>
+ * The file is memory mapped, and features are decoded one at a time as the stream is consumed. When streaming features
+ * within a bounding box, the spatial index is searched if the file has one, so that only candidate features are
+ * decoded. Features are returned as {@link GeojsonFeature}s, so that they can be wrapped by the same adapters as
+ * GeoJSON features. As for GeoJSON, coordinates must be WGS84 longitude and latitude, so files in any other CRS are
+ * rejected. Only properties of the given names are decoded, and binary properties are skipped.
+ */
+public class FlatGeobufReader {
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+
+    private final File file;
+
+    private final ByteBuffer buffer;
+
+    private final Set<String> propertyNames;
+
+    private final String name;
+
+    private final GeometryType geometryType;
+
+    private final List<Column> columns;
+
+    private final long featuresCount;
+
+    private final int indexNodeSize;
+
+    private final Envelope envelope;
+
+    private final int indexStart;
+
+    private final int featuresStart;
+
+    public FlatGeobufReader(File file) throws IOException {
+        this(file, null);
+    }
+
+    /**
+     * @param propertyNames names of the properties to decode, or null to decode all properties
+     */
+    public FlatGeobufReader(File file, Set<String> propertyNames) throws IOException {
+        this.file = file;
+        this.propertyNames = propertyNames;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("FlatGeobuf file is too large to be mapped: " + file.getName() + " (" + channel.size() + " bytes)");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        if (buffer.limit() < FlatGeobuf.MAGIC.length + Integer.BYTES || !isMagic(buffer)) {
+            throw new IOException("Not a FlatGeobuf file: " + file.getName());
+        }
+        if (buffer.get(3) != FlatGeobuf.MAJOR_VERSION) {
+            throw new IOException("Unsupported FlatGeobuf version " + buffer.get(3) + " in file: " + file.getName());
+        }
+
+        try {
+            int headerStart = FlatGeobuf.MAGIC.length;
+            int header = FlatBuffers.sizePrefixedRoot(buffer, headerStart);
+            name = FlatBuffers.getString(buffer, header, FlatGeobuf.HEADER_NAME);
+            geometryType = GeometryType.of(FlatBuffers.getByte(buffer, header, FlatGeobuf.HEADER_GEOMETRY_TYPE, (byte) 0));
+            featuresCount = FlatBuffers.getLong(buffer, header, FlatGeobuf.HEADER_FEATURES_COUNT, 0);
+            indexNodeSize = FlatBuffers.getUnsignedShort(buffer, header, FlatGeobuf.HEADER_INDEX_NODE_SIZE, FlatGeobuf.DEFAULT_INDEX_NODE_SIZE);
+            envelope = readEnvelope(header);
+            columns = readColumns(header);
+            checkCrs(header);
+
+            indexStart = headerStart + Integer.BYTES + buffer.getInt(headerStart);
+            long indexSize = hasIndex() ? PackedRTree.size((int) featuresCount, indexNodeSize) : 0;
+            if (indexStart + indexSize > buffer.limit()) {
+                throw new IOException("Truncated FlatGeobuf file: " + file.getName());
+            }
+            featuresStart = (int) (indexStart + indexSize);
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Invalid FlatGeobuf header in file: " + file.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reject files that are not in EPSG:4326, rather than decode their coordinates as longitude and latitude.
+     */
+    private void checkCrs(int header) throws IOException {
+        int crs = FlatBuffers.getTable(buffer, header, FlatGeobuf.HEADER_CRS);
+        if (crs == 0) {
+            throw new IOException("No CRS in FlatGeobuf file: " + file.getName() + ", expected EPSG:" + FlatGeobuf.WGS84_EPSG_CODE);
+        }
+        // The organisation defaults to EPSG
+        String org = FlatBuffers.getString(buffer, crs, FlatGeobuf.CRS_ORG);
+        int code = FlatBuffers.getInt(buffer, crs, FlatGeobuf.CRS_CODE, 0);
+        if ((org != null && !"EPSG".equalsIgnoreCase(org)) || code != FlatGeobuf.WGS84_EPSG_CODE) {
+            throw new IOException("Unsupported CRS " + (org == null ? "EPSG" : org) + ":" + code + " in FlatGeobuf file: " + file.getName()
+                    + ", expected EPSG:" + FlatGeobuf.WGS84_EPSG_CODE);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public GeometryType getGeometryType() {
+        return geometryType;
+    }
+
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Number of features, or 0 if unknown.
+     */
+    public long getFeaturesCount() {
+        return featuresCount;
+    }
+
+    public int getIndexNodeSize() {
+        return indexNodeSize;
+    }
+
+    /**
+     * Bounding box of all features, or null if not given in the header.
+     */
+    public Envelope getEnvelope() {
+        return envelope;
+    }
+
+    public boolean hasIndex() {
+        return indexNodeSize > 1 && featuresCount > 0 && featuresCount <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * Stream all features in file order. The stream is sequential, and may be opened more than once.
+     */
+    public Stream<GeojsonFeature> stream() {
+        Iterator<GeojsonFeature> features = new Iterator<>() {
+            private int position = featuresStart;
+            private long index;
+
+            @Override
+            public boolean hasNext() {
+                return position < buffer.limit() && (featuresCount == 0 || index < featuresCount);
+            }
+
+            @Override
+            public GeojsonFeature next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                GeojsonFeature feature = readFeature(position);
+                position += Integer.BYTES + buffer.getInt(position);
+                index++;
+                return feature;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliterator(features, featuresCount, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Stream features with a bounding box intersecting boundingBox, in file order.
+     */
+    public Stream<GeojsonFeature> stream(Envelope boundingBox) {
+        if (!hasIndex()) {
+            return stream().filter(feature -> feature.getGeometry() != null && boundingBox.intersects(feature.getGeometry().getEnvelopeInternal()));
+        }
+        long[] offsets = PackedRTree.search(buffer, indexStart, (int) featuresCount, indexNodeSize, boundingBox);
+        return Arrays.stream(offsets).mapToObj(offset -> readFeature(Math.toIntExact(featuresStart + offset)));
+    }
+
+    private GeojsonFeature readFeature(int position) {
+        try {
+            int feature = FlatBuffers.sizePrefixedRoot(buffer, position);
+            int geometry = FlatBuffers.getTable(buffer, feature, FlatGeobuf.FEATURE_GEOMETRY);
+            return new GeojsonFeature(readProperties(feature), geometry == 0 ? null : readGeometry(geometry, geometryType));
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid FlatGeobuf feature at position " + position + " in file: " + file.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private Map<String, Object> readProperties(int feature) {
+        Map<String, Object> properties = new HashMap<>();
+        int start = FlatBuffers.getVector(buffer, feature, FlatGeobuf.FEATURE_PROPERTIES);
+        int end = start + FlatBuffers.vectorLength(buffer, start);
+        int position = start;
+        while (position < end) {
+            Column column = columns.get(Short.toUnsignedInt(buffer.getShort(position)));
+            position += Short.BYTES;
+            int size = valueSize(column.type(), position);
+            if (propertyNames == null || propertyNames.contains(column.name())) {
+                Object value = readValue(column.type(), position);
+                if (value != null) {
+                    properties.put(column.name(), value);
+                }
+            }
+            position += size;
+        }
+        return properties;
+    }
+
+    private int valueSize(ColumnType type, int position) {
+        return switch (type) {
+            case BYTE, UBYTE, BOOL -> Byte.BYTES;
+            case SHORT, USHORT -> Short.BYTES;
+            case INT, UINT, FLOAT -> Integer.BYTES;
+            case LONG, ULONG, DOUBLE -> Long.BYTES;
+            case STRING, JSON, DATE_TIME, BINARY -> Integer.BYTES + buffer.getInt(position);
+        };
+    }
+
+    /**
+     * Integers are returned as Long and floating point numbers as Double, as for GeoJSON properties.
+     */
+    private Object readValue(ColumnType type, int position) {
+        return switch (type) {
+            case BYTE -> (long) buffer.get(position);
+            case UBYTE -> (long) Byte.toUnsignedInt(buffer.get(position));
+            case BOOL -> buffer.get(position) != 0;
+            case SHORT -> (long) buffer.getShort(position);
+            case USHORT -> (long) Short.toUnsignedInt(buffer.getShort(position));
+            case INT -> (long) buffer.getInt(position);
+            case UINT -> Integer.toUnsignedLong(buffer.getInt(position));
+            case LONG, ULONG -> buffer.getLong(position);
+            case FLOAT -> (double) buffer.getFloat(position);
+            case DOUBLE -> buffer.getDouble(position);
+            case STRING, JSON, DATE_TIME -> {
+                byte[] bytes = new byte[buffer.getInt(position)];
+                buffer.get(position + Integer.BYTES, bytes);
+                yield new String(bytes, StandardCharsets.UTF_8);
+            }
+            case BINARY -> null;
+        };
+    }
+
+    /**
+     * The type of a geometry may be left out if all geometries in the file have the type given in the header.
+     */
+    private Geometry readGeometry(int geometry, GeometryType defaultType) {
+        GeometryType type = GeometryType.of(FlatBuffers.getByte(buffer, geometry, FlatGeobuf.GEOMETRY_TYPE, (byte) defaultType.ordinal()));
+        int xy = FlatBuffers.getVector(buffer, geometry, FlatGeobuf.GEOMETRY_XY);
+        int numPoints = FlatBuffers.vectorLength(buffer, xy) / 2;
+        int ends = FlatBuffers.getVector(buffer, geometry, FlatGeobuf.GEOMETRY_ENDS);
+        int numEnds = FlatBuffers.vectorLength(buffer, ends);
+        int parts = FlatBuffers.getVector(buffer, geometry, FlatGeobuf.GEOMETRY_PARTS);
+        int numParts = FlatBuffers.vectorLength(buffer, parts);
+
+        return switch (type) {
+            case POINT -> GEOMETRY_FACTORY.createPoint(readCoordinates(xy, 0, numPoints));
+            case MULTI_POINT -> {
+                Point[] points = new Point[numPoints];
+                for (int i = 0; i < numPoints; i++) {
+                    points[i] = GEOMETRY_FACTORY.createPoint(readCoordinates(xy, i, 1));
+                }
+                yield GEOMETRY_FACTORY.createMultiPoint(points);
+            }
+            case LINE_STRING -> GEOMETRY_FACTORY.createLineString(readCoordinates(xy, 0, numPoints));
+            case MULTI_LINE_STRING -> {
+                int[] partEnds = readEnds(ends, numEnds, numPoints);
+                LineString[] lineStrings = new LineString[partEnds.length];
+                for (int i = 0, start = 0; i < partEnds.length; start = partEnds[i++]) {
+                    lineStrings[i] = GEOMETRY_FACTORY.createLineString(readCoordinates(xy, start, partEnds[i] - start));
+                }
+                yield GEOMETRY_FACTORY.createMultiLineString(lineStrings);
+            }
+            case POLYGON -> readPolygon(xy, readEnds(ends, numEnds, numPoints));
+            case MULTI_POLYGON -> {
+                Polygon[] polygons = new Polygon[numParts];
+                for (int i = 0; i < numParts; i++) {
+                    polygons[i] = (Polygon) readGeometry(FlatBuffers.indirect(buffer, parts + i * Integer.BYTES), GeometryType.POLYGON);
+                }
+                yield GEOMETRY_FACTORY.createMultiPolygon(polygons);
+            }
+            case GEOMETRY_COLLECTION -> {
+                Geometry[] geometries = new Geometry[numParts];
+                for (int i = 0; i < numParts; i++) {
+                    geometries[i] = readGeometry(FlatBuffers.indirect(buffer, parts + i * Integer.BYTES), GeometryType.UNKNOWN);
+                }
+                yield GEOMETRY_FACTORY.createGeometryCollection(geometries);
+            }
+            case UNKNOWN -> throw new IllegalArgumentException("Missing geometry type");
+        };
+    }
+
+    private Polygon readPolygon(int xy, int[] ringEnds) {
+        LinearRing shell = GEOMETRY_FACTORY.createLinearRing(readCoordinates(xy, 0, ringEnds[0]));
+        LinearRing[] holes = new LinearRing[ringEnds.length - 1];
+        for (int i = 1; i < ringEnds.length; i++) {
+            holes[i - 1] = GEOMETRY_FACTORY.createLinearRing(readCoordinates(xy, ringEnds[i - 1], ringEnds[i] - ringEnds[i - 1]));
+        }
+        return GEOMETRY_FACTORY.createPolygon(shell, holes);
+    }
+
+    /**
+     * End of each part in points. Without ends, all points are in one part.
+     */
+    private int[] readEnds(int ends, int numEnds, int numPoints) {
+        if (numEnds == 0) {
+            return new int[]{numPoints};
+        }
+        int[] partEnds = new int[numEnds];
+        for (int i = 0; i < numEnds; i++) {
+            partEnds[i] = buffer.getInt(ends + i * Integer.BYTES);
+        }
+        return partEnds;
+    }
+
+    private PackedCoordinateSequence.Double readCoordinates(int xy, int fromPoint, int numPoints) {
+        double[] packed = new double[numPoints * 2];
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = buffer.getDouble(xy + (fromPoint * 2 + i) * Double.BYTES);
+        }
+        return new PackedCoordinateSequence.Double(packed, 2, 0);
+    }
+
+    private Envelope readEnvelope(int header) {
+        int vector = FlatBuffers.getVector(buffer, header, FlatGeobuf.HEADER_ENVELOPE);
+        if (FlatBuffers.vectorLength(buffer, vector) < 4) {
+            return null;
+        }
+        return new Envelope(buffer.getDouble(vector), buffer.getDouble(vector + 2 * Double.BYTES),
+                buffer.getDouble(vector + Double.BYTES), buffer.getDouble(vector + 3 * Double.BYTES));
+    }
+
+    private List<Column> readColumns(int header) {
+        int vector = FlatBuffers.getVector(buffer, header, FlatGeobuf.HEADER_COLUMNS);
+        int numColumns = FlatBuffers.vectorLength(buffer, vector);
+        List<Column> readColumns = new ArrayList<>(numColumns);
+        for (int i = 0; i < numColumns; i++) {
+            int column = FlatBuffers.indirect(buffer, vector + i * Integer.BYTES);
+            readColumns.add(new Column(FlatBuffers.getString(buffer, column, FlatGeobuf.COLUMN_NAME),
+                    ColumnType.of(FlatBuffers.getByte(buffer, column, FlatGeobuf.COLUMN_TYPE, (byte) 0))));
+        }
+        return List.copyOf(readColumns);
+    }
+
+    private static boolean isMagic(ByteBuffer buffer) {
+        for (int i = 0; i < FlatGeobuf.MAGIC.length; i++) {
+            if (i != 3 && buffer.get(i) != FlatGeobuf.MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
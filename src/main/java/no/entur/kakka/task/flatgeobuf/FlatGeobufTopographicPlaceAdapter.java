@@ -0,0 +1,169 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.flatgeobuf;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import no.entur.kakka.task.flatgeobuf.FlatGeobuf.Column;
+import no.entur.kakka.task.flatgeobuf.FlatGeobuf.ColumnType;
+import no.entur.kakka.task.geojson.GeojsonFeature;
+import no.entur.kakka.task.netex.TopographicPlaceAdapter;
+import org.locationtech.jts.geom.Geometry;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Topographic place exported to FlatGeobuf by {@link #toProperties(TopographicPlaceAdapter)}, with one column per
+ * adapter value. Alternative names and categories are stored as JSON.
+ */
+public class FlatGeobufTopographicPlaceAdapter implements TopographicPlaceAdapter {
+
+    public static final String ID = "id";
+    public static final String PARENT_ID = "parentId";
+    public static final String NAME = "name";
+    public static final String PLACE_TYPE = "placeType";
+    public static final String ISO_CODE = "isoCode";
+    public static final String COUNTRY_REF = "countryRef";
+    public static final String ALTERNATIVE_NAMES = "alternativeNames";
+    public static final String CATEGORIES = "categories";
+
+    public static final List<Column> COLUMNS = List.of(
+            new Column(ID, ColumnType.STRING),
+            new Column(PARENT_ID, ColumnType.STRING),
+            new Column(NAME, ColumnType.STRING),
+            new Column(PLACE_TYPE, ColumnType.STRING),
+            new Column(ISO_CODE, ColumnType.STRING),
+            new Column(COUNTRY_REF, ColumnType.STRING),
+            new Column(ALTERNATIVE_NAMES, ColumnType.JSON),
+            new Column(CATEGORIES, ColumnType.JSON));
+
+    public static final Set<String> PROPERTY_NAMES = COLUMNS.stream().map(Column::name).collect(Collectors.toUnmodifiableSet());
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final GeojsonFeature feature;
+
+    public FlatGeobufTopographicPlaceAdapter(GeojsonFeature feature) {
+        this.feature = feature;
+    }
+
+    /**
+     * Properties of a topographic place, for {@link FlatGeobufWriter} with {@link #COLUMNS}. Null values are left out.
+     */
+    public static Map<String, Object> toProperties(TopographicPlaceAdapter adapter) {
+        Map<String, Object> properties = new HashMap<>();
+        putIfNotNull(properties, ID, adapter.getId());
+        putIfNotNull(properties, PARENT_ID, adapter.getParentId());
+        putIfNotNull(properties, NAME, adapter.getName());
+        putIfNotNull(properties, PLACE_TYPE, adapter.getType() == null ? null : adapter.getType().name());
+        putIfNotNull(properties, ISO_CODE, adapter.getIsoCode());
+        putIfNotNull(properties, COUNTRY_REF, adapter.getCountryRef());
+        if (adapter.getAlternativeNames() != null) {
+            Map<String, String> alternativeNames = adapter.getAlternativeNames().entrySet().stream()
+                    .filter(entry -> entry.getKey() != null)
+                    .collect(HashMap::new, (map, entry) -> map.put(entry.getKey(), entry.getValue()), HashMap::putAll);
+            putIfNotNull(properties, ALTERNATIVE_NAMES, toJson(alternativeNames));
+        }
+        if (adapter.getCategories() != null) {
+            putIfNotNull(properties, CATEGORIES, toJson(adapter.getCategories()));
+        }
+        return properties;
+    }
+
+    @Override
+    public String getId() {
+        return feature.getProperty(ID);
+    }
+
+    @Override
+    public String getIsoCode() {
+        return feature.getProperty(ISO_CODE);
+    }
+
+    @Override
+    public String getParentId() {
+        return feature.getProperty(PARENT_ID);
+    }
+
+    @Override
+    public String getName() {
+        return feature.getProperty(NAME);
+    }
+
+    @Override
+    public Type getType() {
+        String placeType = feature.getProperty(PLACE_TYPE);
+        return placeType == null ? null : Type.valueOf(placeType);
+    }
+
+    @Override
+    public Geometry getDefaultGeometry() {
+        return feature.getGeometry();
+    }
+
+    @Override
+    public Map<String, String> getAlternativeNames() {
+        return fromJson(feature.getProperty(ALTERNATIVE_NAMES), new TypeReference<>() {
+        });
+    }
+
+    @Override
+    public String getCountryRef() {
+        return feature.getProperty(COUNTRY_REF);
+    }
+
+    @Override
+    public List<String> getCategories() {
+        return fromJson(feature.getProperty(CATEGORIES), new TypeReference<>() {
+        });
+    }
+
+    @Override
+    public boolean isValid() {
+        return getId() != null && getType() != null && getDefaultGeometry() != null;
+    }
+
+    private static void putIfNotNull(Map<String, Object> properties, String name, Object value) {
+        if (value != null) {
+            properties.put(name, value);
+        }
+    }
+
+    private static String toJson(Object value) {
+        try {
+            return OBJECT_MAPPER.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to write FlatGeobuf JSON property: " + e.getMessage(), e);
+        }
+    }
+
+    private <T> T fromJson(String json, TypeReference<T> type) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return OBJECT_MAPPER.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Invalid JSON property in FlatGeobuf feature " + getId() + ": " + e.getMessage(), e);
+        }
+    }
+}
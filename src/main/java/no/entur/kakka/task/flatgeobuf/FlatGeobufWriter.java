@@ -0,0 +1,353 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.flatgeobuf;
+
+import no.entur.kakka.task.flatgeobuf.FlatGeobuf.Column;
+import no.entur.kakka.task.flatgeobuf.FlatGeobuf.ColumnType;
+import no.entur.kakka.task.flatgeobuf.FlatGeobuf.GeometryType;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Write features with WGS84 geometries and properties of the given columns to a FlatGeobuf file with a spatial index.
+ * <p>
+ * Features are encoded as they are added and spooled to a temporary file, so only their bounding boxes are held in
+ * memory. When written, the features are sorted by the Hilbert value of their bounding box centre and copied from the
+ * spool after the header and the index. Features may be added from several threads.
+ */
+public class FlatGeobufWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final List<Column> columns;
+
+    private final File spoolFile;
+
+    private final OutputStream spool;
+
+    private final List<SpooledFeature> features = new ArrayList<>();
+
+    private final Envelope extent = new Envelope();
+
+    private final int indexNodeSize;
+
+    private long spoolSize;
+
+    private GeometryType geometryType;
+
+    private boolean closed;
+
+    public FlatGeobufWriter(List<Column> columns, File spoolFile) throws IOException {
+        this(columns, spoolFile, FlatGeobuf.DEFAULT_INDEX_NODE_SIZE);
+    }
+
+    /**
+     * @param indexNodeSize number of items per node in the spatial index, or 0 to write no index
+     */
+    public FlatGeobufWriter(List<Column> columns, File spoolFile, int indexNodeSize) throws IOException {
+        if (indexNodeSize == 1 || indexNodeSize < 0 || indexNodeSize > 0xFFFF) {
+            throw new IllegalArgumentException("Index node size must be 0 or between 2 and 65535, was: " + indexNodeSize);
+        }
+        this.columns = List.copyOf(columns);
+        this.spoolFile = spoolFile;
+        this.indexNodeSize = indexNodeSize;
+        this.spool = new BufferedOutputStream(new FileOutputStream(spoolFile), BUFFER_SIZE);
+    }
+
+    /**
+     * Add a feature. Properties without a column, and null values, are not written.
+     */
+    public void add(Map<String, Object> properties, Geometry geometry) throws IOException {
+        if (geometry == null || geometry.isEmpty()) {
+            throw new IllegalArgumentException("FlatGeobuf features must have a geometry");
+        }
+        byte[] feature = encodeFeature(properties, geometry);
+        GeometryType type = geometryType(geometry);
+        Envelope envelope = geometry.getEnvelopeInternal();
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("FlatGeobuf writer is closed");
+            }
+            spool.write(feature);
+            features.add(new SpooledFeature(envelope, spoolSize, feature.length));
+            spoolSize += feature.length;
+            extent.expandToInclude(envelope);
+            geometryType = geometryType == null || geometryType == type ? type : GeometryType.UNKNOWN;
+        }
+    }
+
+    public synchronized int getFeatureCount() {
+        return features.size();
+    }
+
+    /**
+     * Write the FlatGeobuf file with all features added so far.
+     */
+    public synchronized void write(OutputStream outputStream, String name) throws IOException {
+        spool.flush();
+
+        List<SpooledFeature> sorted = new ArrayList<>(features);
+        if (indexNodeSize > 0) {
+            sorted.sort(Comparator.comparingLong(feature -> PackedRTree.hilbert(feature.envelope(), extent)));
+        }
+
+        outputStream.write(FlatGeobuf.MAGIC);
+        outputStream.write(encodeHeader(name, sorted.size()));
+        if (indexNodeSize > 0 && !sorted.isEmpty()) {
+            Envelope[] envelopes = new Envelope[sorted.size()];
+            long[] offsets = new long[sorted.size()];
+            long offset = 0;
+            for (int i = 0; i < sorted.size(); i++) {
+                envelopes[i] = sorted.get(i).envelope();
+                offsets[i] = offset;
+                offset += sorted.get(i).length();
+            }
+            PackedRTree.write(envelopes, offsets, indexNodeSize, outputStream);
+        }
+
+        try (RandomAccessFile spooled = new RandomAccessFile(spoolFile, "r")) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (SpooledFeature feature : sorted) {
+                byte[] bytes = feature.length() > buffer.length ? new byte[feature.length()] : buffer;
+                spooled.seek(feature.spoolOffset());
+                spooled.readFully(bytes, 0, feature.length());
+                outputStream.write(bytes, 0, feature.length());
+            }
+        }
+    }
+
+    /**
+     * Release and delete the spool.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            spool.close();
+        } finally {
+            spoolFile.delete();
+        }
+    }
+
+    private byte[] encodeHeader(String name, int featuresCount) {
+        FlatBufferBuilder builder = new FlatBufferBuilder(1024);
+
+        int[] columnOffsets = new int[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            int columnName = builder.createString(columns.get(i).name());
+            builder.startTable(FlatGeobuf.COLUMN_FIELDS);
+            builder.addOffset(FlatGeobuf.COLUMN_NAME, columnName);
+            builder.addByte(FlatGeobuf.COLUMN_TYPE, (byte) columns.get(i).type().ordinal());
+            columnOffsets[i] = builder.endTable();
+        }
+        int columnsVector = builder.createOffsetVector(columnOffsets, columnOffsets.length);
+
+        int crsOrg = builder.createString("EPSG");
+        builder.startTable(FlatGeobuf.CRS_FIELDS);
+        builder.addOffset(FlatGeobuf.CRS_ORG, crsOrg);
+        builder.addInt(FlatGeobuf.CRS_CODE, FlatGeobuf.WGS84_EPSG_CODE);
+        int crs = builder.endTable();
+
+        int nameOffset = name == null ? 0 : builder.createString(name);
+        int envelope = 0;
+        if (!extent.isNull()) {
+            envelope = builder.createDoubleVector(new double[]{extent.getMinX(), extent.getMinY(), extent.getMaxX(), extent.getMaxY()}, 0, 4);
+        }
+
+        builder.startTable(FlatGeobuf.HEADER_FIELDS);
+        if (nameOffset != 0) {
+            builder.addOffset(FlatGeobuf.HEADER_NAME, nameOffset);
+        }
+        if (envelope != 0) {
+            builder.addOffset(FlatGeobuf.HEADER_ENVELOPE, envelope);
+        }
+        builder.addByte(FlatGeobuf.HEADER_GEOMETRY_TYPE, (byte) (geometryType == null ? GeometryType.UNKNOWN : geometryType).ordinal());
+        builder.addOffset(FlatGeobuf.HEADER_COLUMNS, columnsVector);
+        builder.addLong(FlatGeobuf.HEADER_FEATURES_COUNT, featuresCount);
+        builder.addShort(FlatGeobuf.HEADER_INDEX_NODE_SIZE, (short) indexNodeSize);
+        builder.addOffset(FlatGeobuf.HEADER_CRS, crs);
+        return builder.finishSizePrefixed(builder.endTable());
+    }
+
+    private byte[] encodeFeature(Map<String, Object> properties, Geometry geometry) {
+        FlatBufferBuilder builder = new FlatBufferBuilder(256 + geometry.getNumPoints() * 2 * Double.BYTES);
+        int geometryOffset = encodeGeometry(builder, geometry);
+        byte[] encodedProperties = encodeProperties(properties);
+        int propertiesOffset = encodedProperties.length == 0 ? 0 : builder.createByteVector(encodedProperties, encodedProperties.length);
+
+        builder.startTable(FlatGeobuf.FEATURE_FIELDS);
+        builder.addOffset(FlatGeobuf.FEATURE_GEOMETRY, geometryOffset);
+        if (propertiesOffset != 0) {
+            builder.addOffset(FlatGeobuf.FEATURE_PROPERTIES, propertiesOffset);
+        }
+        return builder.finishSizePrefixed(builder.endTable());
+    }
+
+    /**
+     * Polygons and multi line strings have all their coordinates in one vector, with the end of each ring or line in ends.
+     * Multi polygons and collections have one geometry per part.
+     */
+    private int encodeGeometry(FlatBufferBuilder builder, Geometry geometry) {
+        GeometryType type = geometryType(geometry);
+        int parts = 0;
+        int xy = 0;
+        int ends = 0;
+        if (type == GeometryType.MULTI_POLYGON || type == GeometryType.GEOMETRY_COLLECTION) {
+            int[] partOffsets = new int[geometry.getNumGeometries()];
+            for (int i = 0; i < partOffsets.length; i++) {
+                partOffsets[i] = encodeGeometry(builder, geometry.getGeometryN(i));
+            }
+            parts = builder.createOffsetVector(partOffsets, partOffsets.length);
+        } else {
+            List<CoordinateSequence> sequences = coordinateSequences(geometry);
+            int numPoints = sequences.stream().mapToInt(CoordinateSequence::size).sum();
+            double[] coordinates = new double[numPoints * 2];
+            int[] sequenceEnds = new int[sequences.size()];
+            int point = 0;
+            for (int i = 0; i < sequences.size(); i++) {
+                CoordinateSequence sequence = sequences.get(i);
+                for (int j = 0; j < sequence.size(); j++, point++) {
+                    coordinates[point * 2] = sequence.getX(j);
+                    coordinates[point * 2 + 1] = sequence.getY(j);
+                }
+                sequenceEnds[i] = point;
+            }
+            if (sequences.size() > 1 && (type == GeometryType.POLYGON || type == GeometryType.MULTI_LINE_STRING)) {
+                ends = builder.createIntVector(sequenceEnds, sequenceEnds.length);
+            }
+            xy = builder.createDoubleVector(coordinates, 0, coordinates.length);
+        }
+
+        builder.startTable(FlatGeobuf.GEOMETRY_FIELDS);
+        if (ends != 0) {
+            builder.addOffset(FlatGeobuf.GEOMETRY_ENDS, ends);
+        }
+        if (xy != 0) {
+            builder.addOffset(FlatGeobuf.GEOMETRY_XY, xy);
+        }
+        builder.addByte(FlatGeobuf.GEOMETRY_TYPE, (byte) type.ordinal());
+        if (parts != 0) {
+            builder.addOffset(FlatGeobuf.GEOMETRY_PARTS, parts);
+        }
+        return builder.endTable();
+    }
+
+    private static List<CoordinateSequence> coordinateSequences(Geometry geometry) {
+        List<CoordinateSequence> sequences = new ArrayList<>();
+        if (geometry instanceof Point point) {
+            sequences.add(point.getCoordinateSequence());
+        } else if (geometry instanceof LineString lineString) {
+            sequences.add(lineString.getCoordinateSequence());
+        } else if (geometry instanceof Polygon polygon) {
+            sequences.add(polygon.getExteriorRing().getCoordinateSequence());
+            for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                sequences.add(polygon.getInteriorRingN(i).getCoordinateSequence());
+            }
+        } else {
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                sequences.addAll(coordinateSequences(geometry.getGeometryN(i)));
+            }
+        }
+        return sequences;
+    }
+
+    private static GeometryType geometryType(Geometry geometry) {
+        if (geometry instanceof Point) {
+            return GeometryType.POINT;
+        } else if (geometry instanceof LineString) {
+            return GeometryType.LINE_STRING;
+        } else if (geometry instanceof Polygon) {
+            return GeometryType.POLYGON;
+        } else if (geometry instanceof MultiPoint) {
+            return GeometryType.MULTI_POINT;
+        } else if (geometry instanceof MultiLineString) {
+            return GeometryType.MULTI_LINE_STRING;
+        } else if (geometry instanceof MultiPolygon) {
+            return GeometryType.MULTI_POLYGON;
+        } else if (geometry instanceof GeometryCollection) {
+            return GeometryType.GEOMETRY_COLLECTION;
+        }
+        throw new IllegalArgumentException("Unsupported geometry type for FlatGeobuf: " + geometry.getGeometryType());
+    }
+
+    /**
+     * Each property is written as the unsigned short index of its column followed by the little endian value. Strings,
+     * JSON and binary values are prefixed with their length in bytes.
+     */
+    private byte[] encodeProperties(Map<String, Object> properties) {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ByteBuffer scalar = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            Object value = properties.get(column.name());
+            if (value == null) {
+                continue;
+            }
+            scalar.clear();
+            encoded.write(scalar.putShort((short) i).array(), 0, Short.BYTES);
+            scalar.clear();
+            switch (column.type()) {
+                case BOOL -> scalar.put((byte) (Boolean.TRUE.equals(value) ? 1 : 0));
+                case BYTE, UBYTE -> scalar.put(((Number) value).byteValue());
+                case SHORT, USHORT -> scalar.putShort(((Number) value).shortValue());
+                case INT, UINT -> scalar.putInt(((Number) value).intValue());
+                case LONG, ULONG -> scalar.putLong(((Number) value).longValue());
+                case FLOAT -> scalar.putFloat(((Number) value).floatValue());
+                case DOUBLE -> scalar.putDouble(((Number) value).doubleValue());
+                case STRING, JSON, DATE_TIME, BINARY -> {
+                    byte[] bytes = value instanceof byte[] binary ? binary : value.toString().getBytes(StandardCharsets.UTF_8);
+                    scalar.putInt(bytes.length);
+                    encoded.write(scalar.array(), 0, Integer.BYTES);
+                    encoded.write(bytes, 0, bytes.length);
+                    continue;
+                }
+            }
+            encoded.write(scalar.array(), 0, scalar.position());
+        }
+        return encoded.toByteArray();
+    }
+
+    private record SpooledFeature(Envelope envelope, long spoolOffset, int length) {
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.flatgeobuf;
+
+import org.locationtech.jts.geom.Envelope;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Static packed Hilbert R-tree, as used for the FlatGeobuf spatial index.
+ * <p>
+ * The tree is stored as an array of node items of 40 bytes each (minX, minY, maxX, maxY as doubles and an unsigned long
+ * offset), with the root level first and the leaf level last. A leaf item holds the bounding box of a feature and the
+ * byte offset of the feature from the start of the features. Other items hold the bounding box of their children and
+ * the index of their first child node. The features must be sorted by the Hilbert value of their bounding box centre
+ * for the tree to be efficient.
+ */
+final class PackedRTree {
+
+    static final int NODE_ITEM_BYTES = 40;
+
+    private static final int HILBERT_MAX = (1 << 16) - 1;
+
+    private PackedRTree() {
+    }
+
+    /**
+     * Start (inclusive) and end (exclusive) node index of each level of the tree, from the leaf level to the root.
+     */
+    static int[][] levelBounds(int numItems, int nodeSize) {
+        if (nodeSize < 2) {
+            throw new IllegalArgumentException("Node size must be at least 2, was: " + nodeSize);
+        }
+        if (numItems == 0) {
+            return new int[0][];
+        }
+        int[] levelNumNodes = new int[32];
+        int numLevels = 0;
+        int n = numItems;
+        long numNodes = n;
+        levelNumNodes[numLevels++] = n;
+        do {
+            n = (n + nodeSize - 1) / nodeSize;
+            numNodes += n;
+            levelNumNodes[numLevels++] = n;
+        } while (n != 1);
+        if (numNodes * NODE_ITEM_BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many items for index: " + numItems);
+        }
+
+        int[][] levelBounds = new int[numLevels][];
+        int end = (int) numNodes;
+        for (int level = 0; level < numLevels; level++) {
+            levelBounds[level] = new int[]{end - levelNumNodes[level], end};
+            end -= levelNumNodes[level];
+        }
+        return levelBounds;
+    }
+
+    static long size(int numItems, int nodeSize) {
+        int[][] levelBounds = levelBounds(numItems, nodeSize);
+        return levelBounds.length == 0 ? 0 : (long) levelBounds[0][1] * NODE_ITEM_BYTES;
+    }
+
+    /**
+     * Hilbert value of the centre of envelope, on a 2^16 x 2^16 grid over extent.
+     */
+    static long hilbert(Envelope envelope, Envelope extent) {
+        int x = 0;
+        int y = 0;
+        if (extent.getWidth() > 0) {
+            x = (int) Math.floor(HILBERT_MAX * ((envelope.getMinX() + envelope.getMaxX()) / 2 - extent.getMinX()) / extent.getWidth());
+        }
+        if (extent.getHeight() > 0) {
+            y = (int) Math.floor(HILBERT_MAX * ((envelope.getMinY() + envelope.getMaxY()) / 2 - extent.getMinY()) / extent.getHeight());
+        }
+        return Integer.toUnsignedLong(hilbert(x, y));
+    }
+
+    /**
+     * Hilbert curve index of (x, y), with 16 bits per coordinate. From https://github.com/rawrunprotected/hilbert_curves
+     */
+    static int hilbert(int x, int y) {
+        int a = x ^ y;
+        int b = 0xFFFF ^ a;
+        int c = 0xFFFF ^ (x | y);
+        int d = x & (y ^ 0xFFFF);
+
+        int aa = a | (b >>> 1);
+        int bb = (a >>> 1) ^ a;
+        int cc = ((c >>> 1) ^ (b & (d >>> 1))) ^ c;
+        int dd = ((a & (c >>> 1)) ^ (d >>> 1)) ^ d;
+
+        a = aa;
+        b = bb;
+        c = cc;
+        d = dd;
+        aa = (a & (a >>> 2)) ^ (b & (b >>> 2));
+        bb = (a & (b >>> 2)) ^ (b & ((a ^ b) >>> 2));
+        cc ^= (a & (c >>> 2)) ^ (b & (d >>> 2));
+        dd ^= (b & (c >>> 2)) ^ ((a ^ b) & (d >>> 2));
+
+        a = aa;
+        b = bb;
+        c = cc;
+        d = dd;
+        aa = (a & (a >>> 4)) ^ (b & (b >>> 4));
+        bb = (a & (b >>> 4)) ^ (b & ((a ^ b) >>> 4));
+        cc ^= (a & (c >>> 4)) ^ (b & (d >>> 4));
+        dd ^= (b & (c >>> 4)) ^ ((a ^ b) & (d >>> 4));
+
+        a = aa;
+        b = bb;
+        c = cc;
+        d = dd;
+        cc ^= (a & (c >>> 8)) ^ (b & (d >>> 8));
+        dd ^= (b & (c >>> 8)) ^ ((a ^ b) & (d >>> 8));
+
+        a = cc ^ (cc >>> 1);
+        b = dd ^ (dd >>> 1);
+
+        int i0 = x ^ y;
+        int i1 = b | (0xFFFF ^ (i0 | a));
+
+        return (interleave(i1) << 1) | interleave(i0);
+    }
+
+    private static int interleave(int value) {
+        value = (value | (value << 8)) & 0x00FF00FF;
+        value = (value | (value << 4)) & 0x0F0F0F0F;
+        value = (value | (value << 2)) & 0x33333333;
+        value = (value | (value << 1)) & 0x55555555;
+        return value;
+    }
+
+    /**
+     * Build the tree over leaf items already in Hilbert order, and write it.
+     *
+     * @param leafEnvelopes bounding box of each feature
+     * @param leafOffsets   byte offset of each feature from the start of the features
+     */
+    static void write(Envelope[] leafEnvelopes, long[] leafOffsets, int nodeSize, OutputStream outputStream) throws IOException {
+        int[][] levelBounds = levelBounds(leafEnvelopes.length, nodeSize);
+        if (levelBounds.length == 0) {
+            return;
+        }
+        int numNodes = levelBounds[0][1];
+        double[] boxes = new double[numNodes * 4];
+        long[] offsets = new long[numNodes];
+
+        int leafStart = levelBounds[0][0];
+        for (int i = 0; i < leafEnvelopes.length; i++) {
+            setBox(boxes, leafStart + i, leafEnvelopes[i].getMinX(), leafEnvelopes[i].getMinY(), leafEnvelopes[i].getMaxX(), leafEnvelopes[i].getMaxY());
+            offsets[leafStart + i] = leafOffsets[i];
+        }
+
+        for (int level = 0; level < levelBounds.length - 1; level++) {
+            int position = levelBounds[level][0];
+            int end = levelBounds[level][1];
+            int parent = levelBounds[level + 1][0];
+            while (position < end) {
+                offsets[parent] = position;
+                double minX = Double.POSITIVE_INFINITY;
+                double minY = Double.POSITIVE_INFINITY;
+                double maxX = Double.NEGATIVE_INFINITY;
+                double maxY = Double.NEGATIVE_INFINITY;
+                for (int j = 0; j < nodeSize && position < end; j++, position++) {
+                    minX = Math.min(minX, boxes[position * 4]);
+                    minY = Math.min(minY, boxes[position * 4 + 1]);
+                    maxX = Math.max(maxX, boxes[position * 4 + 2]);
+                    maxY = Math.max(maxY, boxes[position * 4 + 3]);
+                }
+                setBox(boxes, parent++, minX, minY, maxX, maxY);
+            }
+        }
+
+        ByteBuffer item = ByteBuffer.allocate(NODE_ITEM_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int node = 0; node < numNodes; node++) {
+            item.clear();
+            item.putDouble(boxes[node * 4]).putDouble(boxes[node * 4 + 1]).putDouble(boxes[node * 4 + 2]).putDouble(boxes[node * 4 + 3]).putLong(offsets[node]);
+            outputStream.write(item.array());
+        }
+    }
+
+    /**
+     * Byte offsets, from the start of the features, of the features with a bounding box intersecting query, in file order.
+     *
+     * @param buffer     little endian buffer holding the tree
+     * @param indexStart position of the tree in buffer
+     */
+    static long[] search(ByteBuffer buffer, int indexStart, int numItems, int nodeSize, Envelope query) {
+        int[][] levelBounds = levelBounds(numItems, nodeSize);
+        if (levelBounds.length == 0) {
+            return new long[0];
+        }
+        int leafStart = levelBounds[0][0];
+        long[] results = new long[16];
+        int numResults = 0;
+
+        Deque<int[]> queue = new ArrayDeque<>();
+        queue.add(new int[]{0, levelBounds.length - 1});
+        while (!queue.isEmpty()) {
+            int[] next = queue.poll();
+            int node = next[0];
+            int level = next[1];
+            int end = Math.min(node + nodeSize, levelBounds[level][1]);
+            for (int position = node; position < end; position++) {
+                int item = indexStart + position * NODE_ITEM_BYTES;
+                if (buffer.getDouble(item + 16) < query.getMinX() || buffer.getDouble(item + 24) < query.getMinY()
+                        || buffer.getDouble(item) > query.getMaxX() || buffer.getDouble(item + 8) > query.getMaxY()) {
+                    continue;
+                }
+                long offset = buffer.getLong(item + 32);
+                if (position >= leafStart) {
+                    if (numResults == results.length) {
+                        results = Arrays.copyOf(results, results.length * 2);
+                    }
+                    results[numResults++] = offset;
+                } else {
+                    queue.add(new int[]{(int) offset, level - 1});
+                }
+            }
+        }
+        long[] sorted = Arrays.copyOf(results, numResults);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static void setBox(double[] boxes, int node, double minX, double minY, double maxX, double maxY) {
+        boxes[node * 4] = minX;
+        boxes[node * 4 + 1] = minY;
+        boxes[node * 4 + 2] = maxX;
+        boxes[node * 4 + 3] = maxY;
+    }
+}
@@ -16,34 +16,54 @@
 
 package no.entur.kakka.task.geojson;
 
+import no.entur.kakka.task.netex.GeometrySimplifier;
+import no.entur.kakka.task.netex.TopographicPlaceAdapter;
 import org.locationtech.jts.geom.Geometry;
-import org.geotools.api.feature.simple.SimpleFeature;
-import org.geotools.api.feature.Property;
 
 public abstract class AbstractGeojsonAdapter {
 
-    protected SimpleFeature feature;
+    protected GeojsonFeature feature;
 
-    public AbstractGeojsonAdapter(SimpleFeature feature) {
+    protected GeometrySimplifier simplifier = GeometrySimplifier.NONE;
+
+    private Geometry simplifiedGeometry;
+
+    public AbstractGeojsonAdapter(GeojsonFeature feature) {
         this.feature = feature;
     }
 
+    public abstract TopographicPlaceAdapter.Type getType();
+
+    void setSimplifier(GeometrySimplifier simplifier) {
+        this.simplifier = simplifier;
+    }
+
+    /**
+     * Set the geometry simplified together with the neighbours of this feature, see
+     * {@link GeojsonFeatureWrapperFactory#simplifyCoverage(java.util.List)}.
+     */
+    void setSimplifiedGeometry(Geometry simplifiedGeometry) {
+        this.simplifiedGeometry = simplifiedGeometry;
+    }
+
+    /**
+     * Geometry of the feature, unless simplified together with its neighbours. Polygons are only simplified that way, other
+     * geometries are simplified one by one.
+     */
     public Geometry getDefaultGeometry() {
-        if (feature.getDefaultGeometryProperty() != null) {
-            Object geometry = feature.getDefaultGeometryProperty().getValue();
-            if (geometry instanceof Geometry defaultGeometry) {
-                return defaultGeometry;
-            }
+        if (simplifiedGeometry != null) {
+            return simplifiedGeometry;
         }
-        return null;
+        Geometry defaultGeometry = feature.getGeometry();
+        if (defaultGeometry != null && simplifier.isEnabled(getType())) {
+            simplifiedGeometry = simplifier.simplify(defaultGeometry, getType());
+            return simplifiedGeometry;
+        }
+        return defaultGeometry;
     }
 
 
     public <T> T getProperty(String propertyName) {
-        Property property = feature.getProperty(propertyName);
-        if (property == null) {
-            return null;
-        }
-        return (T) property.getValue();
+        return feature.getProperty(propertyName);
     }
 }
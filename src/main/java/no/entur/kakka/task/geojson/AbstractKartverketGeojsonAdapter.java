@@ -16,10 +16,8 @@
 
 package no.entur.kakka.task.geojson;
 
-
 import no.entur.kakka.task.netex.TopographicPlaceAdapter;
 import org.apache.commons.lang3.StringUtils;
-import org.geotools.api.feature.simple.SimpleFeature;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -28,7 +26,11 @@ import java.util.Map;
 
 public abstract class AbstractKartverketGeojsonAdapter extends AbstractGeojsonAdapter implements TopographicPlaceAdapter {
 
-    public AbstractKartverketGeojsonAdapter(SimpleFeature feature) {
+    protected static final String NAME = "navn";
+
+    protected static final String MUNICIPALITY_NUMBER = "komm";
+
+    public AbstractKartverketGeojsonAdapter(GeojsonFeature feature) {
         super(feature);
     }
 
@@ -41,7 +43,7 @@ public abstract class AbstractKartverketGeojsonAdapter extends AbstractGeojsonAd
     }
 
     public String getName() {
-        return getProperty("navn");
+        return getProperty(NAME);
     }
 
     protected String pad(long val, int length) {
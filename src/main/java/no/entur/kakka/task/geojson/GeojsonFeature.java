@@ -0,0 +1,61 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.task.geojson;
+
+import org.locationtech.jts.geom.Geometry;
+
+import java.util.Map;
+
+/**
+ * A GeoJSON feature with its geometry and the properties that were selected when parsing it.
+ */
+public class GeojsonFeature {
+
+    private final Map<String, Object> properties;
+
+    private final Geometry geometry;
+
+    public GeojsonFeature(Map<String, Object> properties, Geometry geometry) {
+        this.properties = properties;
+        this.geometry = geometry;
+    }
+
+    /**
+     * Whether the feature has the property, even if its value is null.
+     */
+    public boolean hasProperty(String name) {
+        return properties.containsKey(name);
+    }
+
+    /**
+     * Value of a property: a String, Long, Double, Boolean or a List of these, or null if missing.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getProperty(String name) {
+        return (T) properties.get(name);
+    }
+
+    public Geometry getGeometry() {
+        return geometry;
+    }
+
+    @Override
+    public String toString() {
+        return "GeojsonFeature " + properties;
+    }
+}
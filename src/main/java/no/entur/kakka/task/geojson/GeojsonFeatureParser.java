@@ -0,0 +1,350 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.task.geojson;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Streaming parser for a GeoJSON FeatureCollection or a single Feature.
+ * <p>
+ * Features in a collection are parsed one at a time as they are iterated. Only the selected properties are kept, all
+ * other properties are skipped without being parsed. Coordinates are read into packed 2D coordinate sequences, with any
+ * altitude dropped, so no JTS Coordinate is allocated per vertex.
+ * <p>
+ * Integer property values are read as Long and decimal values as Double, as with GeoTools FeatureJSON.
+ */
+public class GeojsonFeatureParser implements Iterator<GeojsonFeature>, Closeable {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+
+    private static final int DIMENSION = 2;
+
+    private final JsonParser parser;
+
+    private final Set<String> propertyNames;
+
+    private double[] ordinates = new double[1024];
+
+    private boolean inFeatures;
+
+    private boolean endOfInput;
+
+    private GeojsonFeature next;
+
+    private String topLevelType;
+    private Map<String, Object> topLevelProperties;
+    private Geometry topLevelGeometry;
+
+    public GeojsonFeatureParser(InputStream inputStream, Set<String> propertyNames) throws IOException {
+        this.parser = JSON_FACTORY.createParser(inputStream);
+        this.propertyNames = propertyNames;
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected GeoJSON object");
+            }
+        } catch (IOException ioE) {
+            parser.close();
+            throw ioE;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !endOfInput) {
+            try {
+                next = advance();
+            } catch (IOException ioE) {
+                throw new UncheckedIOException("Failed to parse GeoJSON: " + ioE.getMessage(), ioE);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public GeojsonFeature next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        GeojsonFeature feature = next;
+        next = null;
+        return feature;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    private GeojsonFeature advance() throws IOException {
+        while (true) {
+            if (inFeatures) {
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.START_OBJECT) {
+                    return readFeature();
+                }
+                if (token != JsonToken.END_ARRAY) {
+                    throw new JsonParseException(parser, "Expected feature object, got: " + token);
+                }
+                inFeatures = false;
+            }
+            // Members of the top level object, until the next feature in a collection or the end of the object
+            JsonToken token = parser.nextToken();
+            if (token != JsonToken.FIELD_NAME) {
+                endOfInput = true;
+                return "Feature".equals(topLevelType) ? new GeojsonFeature(topLevelProperties == null ? new HashMap<>() : topLevelProperties, topLevelGeometry) : null;
+            }
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "features" -> {
+                    if (parser.currentToken() != JsonToken.START_ARRAY) {
+                        throw new JsonParseException(parser, "Expected features array");
+                    }
+                    inFeatures = true;
+                }
+                case "type" -> topLevelType = parser.getValueAsString();
+                case "properties" -> topLevelProperties = readProperties();
+                case "geometry" -> topLevelGeometry = readGeometry();
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Read a feature object, with the parser at its START_OBJECT.
+     */
+    private GeojsonFeature readFeature() throws IOException {
+        Map<String, Object> properties = null;
+        Geometry geometry = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "properties" -> properties = readProperties();
+                case "geometry" -> geometry = readGeometry();
+                default -> parser.skipChildren();
+            }
+        }
+        return new GeojsonFeature(properties == null ? new HashMap<>() : properties, geometry);
+    }
+
+    private Map<String, Object> readProperties() throws IOException {
+        Map<String, Object> properties = new HashMap<>();
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return properties;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if (propertyNames.contains(name)) {
+                properties.put(name, readValue(token));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return properties;
+    }
+
+    private Object readValue(JsonToken token) throws IOException {
+        return switch (token) {
+            case VALUE_STRING -> parser.getText();
+            case VALUE_NUMBER_INT -> parser.getLongValue();
+            case VALUE_NUMBER_FLOAT -> parser.getDoubleValue();
+            case VALUE_TRUE -> Boolean.TRUE;
+            case VALUE_FALSE -> Boolean.FALSE;
+            case START_ARRAY -> {
+                List<Object> values = new ArrayList<>();
+                JsonToken element;
+                while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    values.add(readValue(element));
+                }
+                yield values;
+            }
+            default -> {
+                // Nested objects are not used by any adapter
+                parser.skipChildren();
+                yield null;
+            }
+        };
+    }
+
+    /**
+     * Read a geometry object, with the parser at its START_OBJECT. The members may come in any order.
+     */
+    private Geometry readGeometry() throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        String type = null;
+        Object coordinates = null;
+        List<Geometry> geometries = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "type" -> type = parser.getValueAsString();
+                case "coordinates" -> coordinates = token == JsonToken.START_ARRAY ? readCoordinates(parser.nextToken()) : null;
+                case "geometries" -> geometries = readGeometries();
+                default -> parser.skipChildren();
+            }
+        }
+        if (type == null) {
+            throw new JsonParseException(parser, "Missing geometry type");
+        }
+        try {
+            return toGeometry(type, coordinates, geometries);
+        } catch (ClassCastException | IllegalArgumentException e) {
+            throw new JsonParseException(parser, "Invalid " + type + " geometry: " + e.getMessage(), e);
+        }
+    }
+
+    private List<Geometry> readGeometries() throws IOException {
+        List<Geometry> geometries = new ArrayList<>();
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return geometries;
+        }
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            geometries.add(readGeometry());
+        }
+        return geometries;
+    }
+
+    /**
+     * Read the content of a coordinates array, where first is the first token after its START_ARRAY.
+     *
+     * @return a double[] for a position, a CoordinateSequence for an array of positions, or otherwise a List of the nested arrays.
+     */
+    private Object readCoordinates(JsonToken first) throws IOException {
+        if (first == JsonToken.END_ARRAY) {
+            return new ArrayList<>();
+        }
+        if (first != null && first.isNumeric()) {
+            readPosition(0);
+            return Arrays.copyOf(ordinates, DIMENSION);
+        }
+        if (first != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Expected coordinates array, got: " + first);
+        }
+        JsonToken childFirst = parser.nextToken();
+        if (childFirst != null && childFirst.isNumeric()) {
+            int numPoints = 0;
+            readPosition(numPoints++);
+            while (parser.nextToken() == JsonToken.START_ARRAY) {
+                parser.nextToken();
+                readPosition(numPoints++);
+            }
+            return new PackedCoordinateSequence.Double(Arrays.copyOf(ordinates, numPoints * DIMENSION), DIMENSION, 0);
+        }
+        List<Object> children = new ArrayList<>();
+        children.add(readCoordinates(childFirst));
+        while (parser.nextToken() == JsonToken.START_ARRAY) {
+            children.add(readCoordinates(parser.nextToken()));
+        }
+        return children;
+    }
+
+    /**
+     * Read a position into the ordinate buffer at point index, with the parser at its first number. Ends at its END_ARRAY.
+     */
+    private void readPosition(int index) throws IOException {
+        int offset = index * DIMENSION;
+        if (offset + DIMENSION > ordinates.length) {
+            ordinates = Arrays.copyOf(ordinates, ordinates.length * 2);
+        }
+        ordinates[offset] = parser.getDoubleValue();
+        JsonToken second = parser.nextToken();
+        if (second == null || !second.isNumeric()) {
+            throw new JsonParseException(parser, "Expected at least two ordinates in position");
+        }
+        ordinates[offset + 1] = parser.getDoubleValue();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == null || !token.isNumeric()) {
+                throw new JsonParseException(parser, "Expected ordinate in position, got: " + token);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Geometry toGeometry(String type, Object coordinates, List<Geometry> geometries) {
+        return switch (type) {
+            case "Point" -> GEOMETRY_FACTORY.createPoint(new PackedCoordinateSequence.Double((double[]) coordinates, DIMENSION, 0));
+            case "MultiPoint" -> GEOMETRY_FACTORY.createMultiPoint(sequence(coordinates));
+            case "LineString" -> GEOMETRY_FACTORY.createLineString(sequence(coordinates));
+            case "MultiLineString" -> GEOMETRY_FACTORY.createMultiLineString(((List<Object>) coordinates).stream()
+                    .map(line -> GEOMETRY_FACTORY.createLineString(sequence(line))).toArray(LineString[]::new));
+            case "Polygon" -> polygon((List<Object>) coordinates);
+            case "MultiPolygon" -> GEOMETRY_FACTORY.createMultiPolygon(((List<Object>) coordinates).stream()
+                    .map(polygon -> polygon((List<Object>) polygon)).toArray(Polygon[]::new));
+            case "GeometryCollection" -> GEOMETRY_FACTORY.createGeometryCollection(geometries == null ? new Geometry[0] : geometries.toArray(Geometry[]::new));
+            default -> throw new IllegalArgumentException("Unsupported geometry type");
+        };
+    }
+
+    private static Polygon polygon(List<Object> rings) {
+        if (rings.isEmpty()) {
+            return GEOMETRY_FACTORY.createPolygon();
+        }
+        LinearRing shell = GEOMETRY_FACTORY.createLinearRing(sequence(rings.getFirst()));
+        LinearRing[] holes = rings.subList(1, rings.size()).stream()
+                .map(ring -> GEOMETRY_FACTORY.createLinearRing(sequence(ring))).toArray(LinearRing[]::new);
+        return GEOMETRY_FACTORY.createPolygon(shell, holes);
+    }
+
+    /**
+     * An array of positions, which is parsed as an empty list if it has no positions.
+     */
+    private static CoordinateSequence sequence(Object coordinates) {
+        if (coordinates instanceof CoordinateSequence sequence) {
+            return sequence;
+        }
+        if (coordinates instanceof List<?> list && list.isEmpty()) {
+            return PackedCoordinateSequenceFactory.DOUBLE_FACTORY.create(0, DIMENSION);
+        }
+        throw new IllegalArgumentException("Expected array of positions");
+    }
+}
@@ -16,30 +16,86 @@
 
 package no.entur.kakka.task.geojson;
 
+import no.entur.kakka.task.netex.GeometrySimplifier;
 import no.entur.kakka.task.netex.TopographicPlaceAdapter;
-import org.geotools.api.feature.Property;
-import org.geotools.api.feature.simple.SimpleFeature;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygonal;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Component
 public class GeojsonFeatureWrapperFactory {
 
+    private static final String KARTVERKET_OBJECT_TYPE = "objtype";
+
+    private static final String NATURAL_EARTH_TYPE = "ne:type";
+
+    /**
+     * Feature properties used to choose and populate the adapters, as declared by each adapter. Other properties are
+     * skipped when parsing.
+     */
+    public static final Set<String> PROPERTY_NAMES = propertyNames();
+
     // See relevant code values in http://www.kartverket.no/globalassets/standard/sosi-standarden-del-1-og-2/sosi-standarden/stedsnavn.pdf
     private final List<String> placeTypeWhiteList;
 
+    private final GeometrySimplifier simplifier;
+
+    public GeojsonFeatureWrapperFactory(List<String> placeTypeWhiteList) {
+        this(placeTypeWhiteList, GeometrySimplifier.NONE);
+    }
+
     // 101,102,103,104,105,106,107,132,228,266 = Plass/torg,by, bydel, tettsted, tettsteddel, bygd, grend, boligfelt, hyttefelt, industriområde (not ordered)
-    public GeojsonFeatureWrapperFactory(@Value("#{'${task.place.type.whitelist:101,102,103,104,105,107,132,228,266}'.split(',')}") List<String> placeTypeWhiteList) {
+    @Autowired
+    public GeojsonFeatureWrapperFactory(@Value("#{'${task.place.type.whitelist:101,102,103,104,105,107,132,228,266}'.split(',')}") List<String> placeTypeWhiteList,
+                                        GeometrySimplifier simplifier) {
         this.placeTypeWhiteList = placeTypeWhiteList;
+        this.simplifier = simplifier;
+    }
+
+    public GeometrySimplifier getSimplifier() {
+        return simplifier;
     }
 
-    public TopographicPlaceAdapter createWrapper(SimpleFeature feature) {
-        Property objTypeProp = feature.getProperty("objtype");
-        Property whosOnFirstTypeProp = feature.getProperty("ne:type");
-        if (objTypeProp != null) {
-            Object type = objTypeProp.getValue();
+    /**
+     * Simplify the polygons of adapters that share boundaries, such as the features of one collection or neighbouring
+     * countries, together per type, see {@link GeometrySimplifier#simplifyCoverage(Geometry[], TopographicPlaceAdapter.Type)}.
+     * Polygons of adapters not passed here are not simplified.
+     */
+    public void simplifyCoverage(List<TopographicPlaceAdapter> adapters) {
+        Map<TopographicPlaceAdapter.Type, List<AbstractGeojsonAdapter>> polygonAdaptersPerType = new EnumMap<>(TopographicPlaceAdapter.Type.class);
+        for (TopographicPlaceAdapter adapter : adapters) {
+            if (adapter instanceof AbstractGeojsonAdapter geojsonAdapter && simplifier.isEnabled(geojsonAdapter.getType())
+                    && geojsonAdapter.feature.getGeometry() instanceof Polygonal) {
+                polygonAdaptersPerType.computeIfAbsent(geojsonAdapter.getType(), type -> new ArrayList<>()).add(geojsonAdapter);
+            }
+        }
+        polygonAdaptersPerType.forEach((type, polygonAdapters) -> {
+            Geometry[] polygons = polygonAdapters.stream().map(adapter -> adapter.feature.getGeometry()).toArray(Geometry[]::new);
+            Geometry[] simplified = simplifier.simplifyCoverage(polygons, type);
+            for (int i = 0; i < simplified.length; i++) {
+                polygonAdapters.get(i).setSimplifiedGeometry(simplified[i]);
+            }
+        });
+    }
+
+    public TopographicPlaceAdapter createWrapper(GeojsonFeature feature) {
+        AbstractGeojsonAdapter adapter = createUnsimplifiedWrapper(feature);
+        adapter.setSimplifier(simplifier);
+        return (TopographicPlaceAdapter) adapter;
+    }
+
+    private AbstractGeojsonAdapter createUnsimplifiedWrapper(GeojsonFeature feature) {
+        if (feature.hasProperty(KARTVERKET_OBJECT_TYPE)) {
+            Object type = feature.getProperty(KARTVERKET_OBJECT_TYPE);
             if (KartverketCounty.OBJECT_TYPE.equals(type)) {
                 return new KartverketCounty(feature);
             } else if (KartverketLocality.OBJECT_TYPE.equals(type)) {
@@ -47,8 +103,8 @@ public class GeojsonFeatureWrapperFactory {
             } else if (KartverketBorough.OBJECT_TYPE.equals(type)) {
                 return new KartverketBorough(feature);
             }
-        } else if (whosOnFirstTypeProp != null) {
-            Object type = whosOnFirstTypeProp.getValue();
+        } else if (feature.hasProperty(NATURAL_EARTH_TYPE)) {
+            Object type = feature.getProperty(NATURAL_EARTH_TYPE);
             if (WhosOnFirstCountry.TYPES.contains(type)) {
                 return new WhosOnFirstCountry(feature);
             }
@@ -61,4 +117,14 @@ public class GeojsonFeatureWrapperFactory {
 
     }
 
+    private static Set<String> propertyNames() {
+        Set<String> propertyNames = new HashSet<>(Set.of(KARTVERKET_OBJECT_TYPE, NATURAL_EARTH_TYPE));
+        propertyNames.addAll(KartverketCounty.PROPERTY_NAMES);
+        propertyNames.addAll(KartverketLocality.PROPERTY_NAMES);
+        propertyNames.addAll(KartverketBorough.PROPERTY_NAMES);
+        propertyNames.addAll(KartverketPlace.PROPERTY_NAMES);
+        propertyNames.addAll(WhosOnFirstCountry.PROPERTY_NAMES);
+        return Set.copyOf(propertyNames);
+    }
+
 }
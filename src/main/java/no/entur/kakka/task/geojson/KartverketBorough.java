@@ -16,30 +16,38 @@
 
 package no.entur.kakka.task.geojson;
 
-
-import org.geotools.api.feature.simple.SimpleFeature;
+import java.util.Set;
 
 public class KartverketBorough extends AbstractKartverketGeojsonAdapter {
 
     public static final String OBJECT_TYPE = "Grunnkrets";
 
-    public KartverketBorough(SimpleFeature feature) {
+    private static final String BOROUGH_NAME = "gkretsnavn";
+
+    private static final String BOROUGH_NUMBER = "grunnkrets";
+
+    /**
+     * Feature properties read by this adapter.
+     */
+    public static final Set<String> PROPERTY_NAMES = Set.of(BOROUGH_NAME, BOROUGH_NUMBER, MUNICIPALITY_NUMBER);
+
+    public KartverketBorough(GeojsonFeature feature) {
         super(feature);
     }
 
     @Override
     public String getName() {
-        return getProperty("gkretsnavn");
+        return getProperty(BOROUGH_NAME);
     }
 
     @Override
     public String getId() {
-        return pad(getProperty("grunnkrets"), 8);
+        return pad(getProperty(BOROUGH_NUMBER), 8);
     }
 
     @Override
     public String getParentId() {
-        return pad(getProperty("komm"), 4);
+        return pad(getProperty(MUNICIPALITY_NUMBER), 4);
     }
 
     @Override
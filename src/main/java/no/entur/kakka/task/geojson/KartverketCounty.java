@@ -16,14 +16,20 @@
 
 package no.entur.kakka.task.geojson;
 
-
-import org.geotools.api.feature.simple.SimpleFeature;
+import java.util.Set;
 
 public class KartverketCounty extends AbstractKartverketGeojsonAdapter {
 
     public static final String OBJECT_TYPE = "Fylke";
 
-    public KartverketCounty(SimpleFeature feature) {
+    private static final String COUNTY_NUMBER = "fylkesnr";
+
+    /**
+     * Feature properties read by this adapter.
+     */
+    public static final Set<String> PROPERTY_NAMES = Set.of(NAME, COUNTY_NUMBER);
+
+    public KartverketCounty(GeojsonFeature feature) {
         super(feature);
     }
 
@@ -34,7 +40,7 @@ public class KartverketCounty extends AbstractKartverketGeojsonAdapter {
 
     @Override
     public String getId() {
-        return pad(getProperty("fylkesnr"), 2);
+        return pad(getProperty(COUNTY_NUMBER), 2);
     }
 
     @Override
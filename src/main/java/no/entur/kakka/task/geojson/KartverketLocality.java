@@ -16,22 +16,26 @@
 
 package no.entur.kakka.task.geojson;
 
-
 import org.apache.commons.lang3.StringUtils;
 
-import org.geotools.api.feature.simple.SimpleFeature;
+import java.util.Set;
 
 public class KartverketLocality extends AbstractKartverketGeojsonAdapter {
 
     public static final String OBJECT_TYPE = "Kommune";
 
-    public KartverketLocality(SimpleFeature feature) {
+    /**
+     * Feature properties read by this adapter.
+     */
+    public static final Set<String> PROPERTY_NAMES = Set.of(NAME, MUNICIPALITY_NUMBER);
+
+    public KartverketLocality(GeojsonFeature feature) {
         super(feature);
     }
 
     @Override
     public String getId() {
-        return pad(getProperty("komm"), 4);
+        return pad(getProperty(MUNICIPALITY_NUMBER), 4);
     }
 
     @Override
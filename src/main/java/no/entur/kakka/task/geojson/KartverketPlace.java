@@ -16,35 +16,49 @@
 
 package no.entur.kakka.task.geojson;
 
-
 import org.apache.commons.lang3.StringUtils;
-import org.geotools.api.feature.simple.SimpleFeature;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 public class KartverketPlace extends AbstractKartverketGeojsonAdapter {
 
+    private static final String PLACE_ID = "enh_ssr_id";
+
+    private static final String PLACE_NAME = "enh_snavn";
+
+    private static final String PLACE_MUNICIPALITY_NUMBER = "enh_komm";
+
+    private static final String PLACE_TYPE = "enh_navntype";
+
+    private static final String SPELLING_STATUS = "skr_snskrstat";
+
+    /**
+     * Feature properties read by this adapter.
+     */
+    public static final Set<String> PROPERTY_NAMES = Set.of(PLACE_ID, PLACE_NAME, PLACE_MUNICIPALITY_NUMBER, PLACE_TYPE, SPELLING_STATUS);
+
     private final List<String> placeTypeWhiteList;
 
-    public KartverketPlace(SimpleFeature feature, List<String> placeTypeWhiteList) {
+    public KartverketPlace(GeojsonFeature feature, List<String> placeTypeWhiteList) {
         super(feature);
         this.placeTypeWhiteList = placeTypeWhiteList;
     }
 
     @Override
     public String getId() {
-        return "" + getProperty("enh_ssr_id");
+        return "" + getProperty(PLACE_ID);
     }
 
     @Override
     public String getName() {
-        return getProperty("enh_snavn");
+        return getProperty(PLACE_NAME);
     }
 
     @Override
     public String getParentId() {
-        return StringUtils.leftPad("" + getProperty("enh_komm"), 4, "0");
+        return StringUtils.leftPad("" + getProperty(PLACE_MUNICIPALITY_NUMBER), 4, "0");
     }
 
     @Override
@@ -54,10 +68,10 @@ public class KartverketPlace extends AbstractKartverketGeojsonAdapter {
 
     @Override
     public boolean isValid() {
-        if (!isValidType(getProperty("enh_navntype"))) {
+        if (!isValidType(getProperty(PLACE_TYPE))) {
             return false;
         }
-        return KartverketFeatureSpellingStatusCode.isActive(getProperty("skr_snskrstat"));
+        return KartverketFeatureSpellingStatusCode.isActive(getProperty(SPELLING_STATUS));
     }
 
     private boolean isValidType(Long type) {
@@ -69,6 +83,6 @@ public class KartverketPlace extends AbstractKartverketGeojsonAdapter {
 
     @Override
     public List<String> getCategories() {
-        return List.of("" + getProperty("enh_navntype"));
+        return List.of("" + getProperty(PLACE_TYPE));
     }
 }
@@ -18,7 +18,6 @@ package no.entur.kakka.task.geojson;
 
 import com.google.common.collect.Sets;
 import no.entur.kakka.task.netex.TopographicPlaceAdapter;
-import org.geotools.api.feature.simple.SimpleFeature;
 import org.springframework.util.CollectionUtils;
 
 import java.util.Collections;
@@ -31,18 +30,33 @@ public class WhosOnFirstCountry extends AbstractGeojsonAdapter implements Topogr
 
     public static final Set<String> TYPES = Sets.newHashSet("Country", "Sovereign country");
 
-    public WhosOnFirstCountry(SimpleFeature feature) {
+    private static final String ID = "wof:id";
+
+    private static final String ISO_A2 = "ne:iso_a2";
+
+    private static final String ISO_A3 = "ne:iso_a3";
+
+    private static final String NYNORSK = "nno";
+
+    private static final String ENGLISH = "eng";
+
+    /**
+     * Feature properties read by this adapter. Names are only read in the languages listed here.
+     */
+    public static final Set<String> PROPERTY_NAMES = Set.of(ID, ISO_A2, ISO_A3, nameProperty(NYNORSK), nameProperty(ENGLISH));
+
+    public WhosOnFirstCountry(GeojsonFeature feature) {
         super(feature);
     }
 
     @Override
     public String getId() {
-        return getProperty("wof:id").toString();
+        return getProperty(ID).toString();
     }
 
     @Override
     public String getIsoCode() {
-        return getProperty("ne:iso_a3");
+        return getProperty(ISO_A3);
     }
 
     @Override
@@ -52,7 +66,7 @@ public class WhosOnFirstCountry extends AbstractGeojsonAdapter implements Topogr
 
     @Override
     public String getName() {
-        return getName("nno");
+        return getName(NYNORSK);
     }
 
     @Override
@@ -65,24 +79,28 @@ public class WhosOnFirstCountry extends AbstractGeojsonAdapter implements Topogr
     public Map<String, String> getAlternativeNames() {
         Map<String, String> alternativeNames = new HashMap<>();
 
-        alternativeNames.put("en", getName("eng"));
+        alternativeNames.put("en", getName(ENGLISH));
 
         return alternativeNames;
     }
 
     @Override
     public String getCountryRef() {
-        return getProperty("ne:iso_a2");
+        return getProperty(ISO_A2);
     }
 
     private String getName(String lang) {
-        List<String> names = getProperty("name:" + lang + "_x_preferred");
+        List<String> names = getProperty(nameProperty(lang));
         if (CollectionUtils.isEmpty(names)) {
             return null;
         }
         return names.getFirst();
     }
 
+    private static String nameProperty(String lang) {
+        return "name:" + lang + "_x_preferred";
+    }
+
     @Override
     public boolean isValid() {
         return true;
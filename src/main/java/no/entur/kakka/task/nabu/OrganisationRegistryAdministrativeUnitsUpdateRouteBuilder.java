@@ -16,14 +16,16 @@
 
 package no.entur.kakka.task.nabu;
 
-import no.entur.kakka.Constants;
 import no.entur.kakka.Utils;
 import no.entur.kakka.domain.BlobStoreFiles;
 import no.entur.kakka.task.BaseRouteBuilder;
 import no.entur.kakka.task.geojson.GeojsonFeatureWrapperFactory;
 import no.entur.kakka.task.nabu.rest.AdministrativeZone;
+import no.entur.kakka.task.netex.NetexGeoUtil;
 import no.entur.kakka.task.netex.TopographicPlaceAdapter;
+import no.entur.kakka.task.netex.cache.TopographicPlaceCacheReader;
 import no.entur.kakka.task.netex.geojson.GeoJsonSingleTopographicPlaceReader;
+import no.entur.kakka.task.routes.kartverket.AdministrativeUnitsCache;
 import no.entur.kakka.task.sosi.SosiElementWrapperFactory;
 import no.entur.kakka.task.sosi.SosiTopographicPlaceAdapterReader;
 import no.entur.kakka.routes.file.ZipFileUtils;
@@ -33,7 +35,6 @@ import org.apache.camel.LoggingLevel;
 import org.apache.camel.http.common.HttpMethods;
 import org.apache.camel.http.base.HttpOperationFailedException;
 import org.apache.camel.model.dataformat.JsonLibrary;
-import org.apache.commons.io.FileUtils;
 import org.locationtech.jts.geom.CoordinateList;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -44,8 +45,11 @@ import org.wololo.jts2geojson.GeoJSONWriter;
 
 import jakarta.ws.rs.core.MediaType;
 import java.io.File;
-import java.io.InputStream;
-import java.nio.file.Paths;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
@@ -72,6 +76,8 @@ public class OrganisationRegistryAdministrativeUnitsUpdateRouteBuilder extends B
     private String adminZoneCodeSpaceId;
     @Value("${organisation.registry.admin.zone.code.space.xmlns:RB}")
     private String adminZoneCodeSpaceXmlns;
+    @Value("${tiamat.neighbouring.countries.reader.parallelism:4}")
+    private int countryReaderParallelism;
     @Autowired
     private BlobStoreService blobStoreService;
 
@@ -81,6 +87,9 @@ public class OrganisationRegistryAdministrativeUnitsUpdateRouteBuilder extends B
     @Autowired
     private SosiElementWrapperFactory sosiWrapperFactory;
 
+    @Autowired
+    private AdministrativeUnitsCache administrativeUnitsCache;
+
     @Override
     public void configure() throws Exception {
         super.configure();
@@ -91,10 +100,8 @@ public class OrganisationRegistryAdministrativeUnitsUpdateRouteBuilder extends B
                 .doTry()
                 .to("direct:cleanUpLocalDirectory")
 
-                .to("direct:fetchNeighbouringCountriesForOrgReg")
                 .to("direct:updateNeighbouringCountriesInOrgReg")
 
-                .to("direct:fetchAdministrativeUnitsForOrgReg")
                 .to("direct:updateAdministrativeUnitsInOrgReg")
 
                 .log(LoggingLevel.INFO, "Finished update of administrative units in Organisation registry")
@@ -104,33 +111,14 @@ public class OrganisationRegistryAdministrativeUnitsUpdateRouteBuilder extends B
                 .routeId("organisation-registry-update-administrative-units");
 
 
-        from("direct:fetchAdministrativeUnitsForOrgReg")
-                .log(LoggingLevel.DEBUG, getClass().getName(), "Fetching latest administrative units ...")
-                .setHeader(Constants.FILE_HANDLE, simple(blobStoreSubdirectoryForKartverket + "/administrativeUnits/" + adminUnitsArchiveFileName))
-                .to("direct:getBlob")
-                .process(e -> ZipFileUtils.unzipFile(e.getIn().getBody(InputStream.class), localWorkingDirectory))
-                .routeId("organisation-registry-fetch-admin-units-sosi");
-
-        from("direct:fetchNeighbouringCountriesForOrgReg")
-                .log(LoggingLevel.DEBUG, getClass().getName(), "Fetching latest neighbouring countries ...")
-
-                .process(e -> e.getIn().setBody(blobStoreService.listBlobsInFolder(blobStoreSubdirectoryCountries, e).getFiles().stream().filter(f -> f.getName().endsWith("geojson")).collect(Collectors.toList())))
-                .split().body()
-                .setHeader(Constants.FILE_HANDLE, simple("${body.name}"))
-                .process(e -> e.getIn().setHeader(Exchange.FILE_NAME, Paths.get(e.getIn().getBody(BlobStoreFiles.File.class).getName()).getFileName()))
-                .to("direct:getBlob")
-                .to("file:" + localWorkingDirectory)
-                .routeId("organisation-registry-fetch-neighbouring-countries-geojson");
-
-
         from("direct:updateNeighbouringCountriesInOrgReg")
                 .log(LoggingLevel.DEBUG, getClass().getName(), "Mapping latest neighbouring countries to org reg format ...")
-                .process(e -> e.getIn().setBody(new GeoJsonSingleTopographicPlaceReader(geoJsonWrapperFactory, getGeojsonCountryFiles()).read().stream().map(tpa -> toAdministrativeZone(tpa, "WOF")).collect(Collectors.toList())))
+                .process(e -> e.getIn().setBody(new GeoJsonSingleTopographicPlaceReader(geoJsonWrapperFactory, countrySources(e), countryReaderParallelism).read().stream().map(tpa -> toAdministrativeZone(tpa, "WOF")).collect(Collectors.toList())))
                 .to("direct:updateAdministrativeZonesInOrgReg")
                 .routeId("organisation-registry-update-neighbouring-countries");
 
         from("direct:updateAdministrativeUnitsInOrgReg")
-                .process(e -> e.getIn().setBody(new SosiTopographicPlaceAdapterReader(sosiWrapperFactory, new File(localWorkingDirectory + "/" + adminUnitsFileName)).read().stream().map(tpa -> toAdministrativeZone(tpa, "KVE"))
+                .process(e -> e.getIn().setBody(readAdministrativeUnits(e).stream().map(tpa -> toAdministrativeZone(tpa, "KVE"))
                         .collect(Collectors.toList())))
                 .to("direct:updateAdministrativeZonesInOrgReg")
                 .routeId("organisation-registry-update-admin-units");
@@ -164,8 +152,27 @@ public class OrganisationRegistryAdministrativeUnitsUpdateRouteBuilder extends B
         return Utils.getHttp4(organisationRegistryUrl);
     }
 
-    private File[] getGeojsonCountryFiles() {
-        return FileUtils.listFiles(new File(localWorkingDirectory), new String[]{"geojson"}, false).toArray(File[]::new);
+    private List<GeoJsonSingleTopographicPlaceReader.Source> countrySources(Exchange e) {
+        return blobStoreService.listBlobsInFolder(blobStoreSubdirectoryCountries, e).getFiles().stream()
+                .filter(f -> f.getName().endsWith("geojson"))
+                .sorted(Comparator.comparing(BlobStoreFiles.File::getName))
+                .map(blob -> new GeoJsonSingleTopographicPlaceReader.Source(blob.getName(), () -> blobStoreService.getBlob(blob.getName(), e)))
+                .toList();
+    }
+
+    /**
+     * Read the administrative units from the cache written when the archive was downloaded, or from the SOSI file in the
+     * archive if there is no usable cache.
+     */
+    private Collection<TopographicPlaceAdapter> readAdministrativeUnits(Exchange e) throws IOException {
+        String archiveBlobName = blobStoreSubdirectoryForKartverket + "/administrativeUnits/" + adminUnitsArchiveFileName;
+        Optional<List<File>> cacheFiles = administrativeUnitsCache.download(List.of(archiveBlobName), new File(localWorkingDirectory, "cache"), e);
+        if (cacheFiles.isPresent()) {
+            return new TopographicPlaceCacheReader(cacheFiles.get().get(0)).stream().toList();
+        }
+        log.debug("Fetching latest administrative units ...");
+        ZipFileUtils.unzipFile(blobStoreService.getBlob(archiveBlobName, e), localWorkingDirectory);
+        return new SosiTopographicPlaceAdapterReader(sosiWrapperFactory, new File(localWorkingDirectory + "/" + adminUnitsFileName)).read();
     }
 
     private AdministrativeZone toAdministrativeZone(TopographicPlaceAdapter topographicPlaceAdapter, String source) {
@@ -178,7 +185,7 @@ public class OrganisationRegistryAdministrativeUnitsUpdateRouteBuilder extends B
             geometry = geometry.getFactory().createPolygon(coordinateList.toCoordinateArray());
         }
 
-        Polygon geoJsonPolygon = (Polygon) geoJSONWriter.write(geometry);
+        Polygon geoJsonPolygon = (Polygon) geoJSONWriter.write(NetexGeoUtil.round(geometry));
         return new AdministrativeZone(adminZoneCodeSpaceId, topographicPlaceAdapter.getId(),
                 topographicPlaceAdapter.getName(), geoJsonPolygon, toType(topographicPlaceAdapter.getType()), source);
     }
@@ -0,0 +1,78 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.task.netex;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import java.util.Map;
+
+/**
+ * Spatial index over the polygons of one level of administrative units, ie counties or localities, for finding the unit
+ * that contains a place.
+ * <p>
+ * Polygons are held as prepared geometries in an STR tree, so a lookup only tests the few units whose envelope contains
+ * the point, and each test is cheap even for detailed polygons. The index is built once and is then safe for concurrent
+ * lookups.
+ */
+public class AdministrativeUnitIndex {
+
+    private final STRtree tree = new STRtree();
+
+    public AdministrativeUnitIndex(Map<String, Geometry> geometryPerUnitId) {
+        geometryPerUnitId.forEach((id, geometry) -> {
+            if (geometry != null && !geometry.isEmpty()) {
+                tree.insert(geometry.getEnvelopeInternal(), new Unit(id, PreparedGeometryFactory.prepare(geometry)));
+            }
+        });
+        tree.build();
+    }
+
+    /**
+     * Id of the unit covering the representative point of the geometry, or null if there is none.
+     */
+    public String findContaining(Geometry geometry) {
+        Point point = representativePoint(geometry);
+        for (Object candidate : tree.query(point.getEnvelopeInternal())) {
+            Unit unit = (Unit) candidate;
+            if (unit.geometry().covers(point)) {
+                return unit.id();
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return tree.size();
+    }
+
+    /**
+     * The point itself, or a point guaranteed to lie in the interior of a polygon. The interior point rather than the full
+     * polygon is tested for areas, as boundaries of neighbouring units are generalized independently and do not match
+     * exactly.
+     */
+    public static Point representativePoint(Geometry geometry) {
+        return geometry instanceof Point point ? point : geometry.getInteriorPoint();
+    }
+
+    private record Unit(String id, PreparedGeometry geometry) {
+    }
+}
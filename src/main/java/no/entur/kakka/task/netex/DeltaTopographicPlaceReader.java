@@ -0,0 +1,136 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.task.netex;
+
+import org.rutebanken.netex.model.MultilingualString;
+import org.rutebanken.netex.model.TopographicPlace;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Passes on only the places that are new or changed compared to the fingerprints of the last accepted update, while
+ * recording fingerprints for all places read.
+ * <p>
+ * Places that are no longer present are not passed on, they are just left out of the recorded fingerprints. Unchanged
+ * parents are not passed on with changed children, their refs are resolved against the places already known to the receiver.
+ */
+public class DeltaTopographicPlaceReader implements TopographicPlaceReader {
+
+    private final TopographicPlaceReader source;
+
+    private final TopographicPlaceFingerprints previous;
+
+    private final TopographicPlaceFingerprints current = new TopographicPlaceFingerprints();
+
+    // Written by the thread reading places, and read by others after complete
+    private int changedCount;
+
+    private volatile boolean complete;
+
+    public DeltaTopographicPlaceReader(TopographicPlaceReader source, TopographicPlaceFingerprints previous) {
+        this.source = source;
+        this.previous = previous;
+    }
+
+    @Override
+    public String getParticipantRef() {
+        return source.getParticipantRef();
+    }
+
+    @Override
+    public MultilingualString getDescription() {
+        return source.getDescription();
+    }
+
+    @Override
+    public Stream<TopographicPlace> stream() throws IOException {
+        Stream<TopographicPlace> places = source.stream();
+        Iterator<TopographicPlace> placeIterator = places.iterator();
+        Iterator<TopographicPlace> changedPlaces = new Iterator<>() {
+            private TopographicPlace next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    if (!placeIterator.hasNext()) {
+                        complete = true;
+                        return false;
+                    }
+                    TopographicPlace topographicPlace = placeIterator.next();
+                    if (isChanged(topographicPlace)) {
+                        next = topographicPlace;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public TopographicPlace next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                TopographicPlace topographicPlace = next;
+                next = null;
+                return topographicPlace;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(changedPlaces, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(places::close);
+    }
+
+    private boolean isChanged(TopographicPlace topographicPlace) {
+        String fingerprint = TopographicPlaceFingerprints.fingerprint(topographicPlace);
+        current.put(topographicPlace.getId(), fingerprint);
+        if (fingerprint.equals(previous.get(topographicPlace.getId()))) {
+            return false;
+        }
+        changedCount++;
+        return true;
+    }
+
+    /**
+     * Whether all places have been read. Only then are the recorded fingerprints a full snapshot.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public int getChangedCount() {
+        return changedCount;
+    }
+
+    public int getUnchangedCount() {
+        return current.size() - changedCount;
+    }
+
+    /**
+     * Fingerprints of all places read, to be stored once the receiver has accepted the changed places.
+     */
+    public TopographicPlaceFingerprints getFingerprints() {
+        if (!complete) {
+            throw new IllegalStateException("Fingerprints are incomplete until all places have been read");
+        }
+        return current;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.netex;
+
+import io.micrometer.core.instrument.Metrics;
+import org.locationtech.jts.coverage.CoverageSimplifier;
+import org.locationtech.jts.coverage.CoverageValidator;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygonal;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Optional simplification of topographic place geometries, with a tolerance in metres per {@link TopographicPlaceAdapter.Type}.
+ * Types without a positive tolerance are left unchanged.
+ * <p>
+ * SOSI areas are assembled from curves shared with their neighbours. These are simplified once per curve with fixed end
+ * points, see {@link #simplifyArc(double[], int, double)}, so that neighbours stay gap free. GeoJSON counties, municipalities
+ * and countries also share boundaries, but not as shared curves. Their polygons are simplified together as a coverage, see
+ * {@link #simplifyCoverage(Geometry[], TopographicPlaceAdapter.Type)}. Other GeoJSON geometries are simplified one by one
+ * with JTS' TopologyPreservingSimplifier.
+ */
+@Component
+public class GeometrySimplifier {
+
+    public static final GeometrySimplifier NONE = new GeometrySimplifier(Map.of());
+
+    /**
+     * Approximate size of one lat/lon pair in a NeTEx posList with the default 7 decimals, used to estimate bytes saved.
+     */
+    private static final int POS_LIST_BYTES_PER_VERTEX = 22;
+
+    private static final double METRES_PER_DEGREE_LATITUDE = 110574;
+
+    private static final double METRES_PER_DEGREE_LONGITUDE_AT_EQUATOR = 111320;
+
+    private final Map<TopographicPlaceAdapter.Type, Double> tolerancePerType = new EnumMap<>(TopographicPlaceAdapter.Type.class);
+
+    /**
+     * @param tolerancePerType tolerance in metres per type name, ie: topographic.place.simplification.tolerance.metres={LOCALITY:'20',COUNTY:'50'}
+     */
+    public GeometrySimplifier(@Value("#{${topographic.place.simplification.tolerance.metres:{:}}}") Map<String, ?> tolerancePerType) {
+        tolerancePerType.forEach((type, tolerance) -> this.tolerancePerType.put(TopographicPlaceAdapter.Type.valueOf(type.toUpperCase()), Double.valueOf(tolerance.toString())));
+    }
+
+    /**
+     * Tolerance in metres for type, 0 if geometries of type should not be simplified.
+     */
+    public double getTolerance(TopographicPlaceAdapter.Type type) {
+        return type == null ? 0 : tolerancePerType.getOrDefault(type, 0d);
+    }
+
+    public boolean isEnabled(TopographicPlaceAdapter.Type type) {
+        return getTolerance(type) > 0;
+    }
+
+    /**
+     * Whether geometries of any type are simplified.
+     */
+    public boolean isEnabled() {
+        return tolerancePerType.values().stream().anyMatch(tolerance -> tolerance > 0);
+    }
+
+    /**
+     * Enabled tolerances as text, ie "COUNTY=50.0,LOCALITY=20.0", or an empty string if no type is simplified.
+     */
+    public String describeTolerances() {
+        return tolerancePerType.entrySet().stream()
+                .filter(entry -> entry.getValue() > 0)
+                .map(entry -> entry.getKey() + "=" + entry.getValue())
+                .collect(Collectors.joining(","));
+    }
+
+    /**
+     * Simplify a standalone WGS84 geometry without changing its topology. Polygons are returned unchanged, as simplifying
+     * polygons that share boundaries one by one would open gaps and overlaps between them.
+     */
+    public Geometry simplify(Geometry geometry, TopographicPlaceAdapter.Type type) {
+        double tolerance = getTolerance(type);
+        if (geometry == null || tolerance <= 0 || geometry instanceof Polygonal) {
+            return geometry;
+        }
+        double toleranceDegrees = toDegrees(tolerance, geometry.getEnvelopeInternal());
+        Geometry simplified = TopologyPreservingSimplifier.simplify(geometry, toleranceDegrees);
+        if (simplified.isEmpty() || !simplified.isValid()) {
+            recordFallback(type);
+            return geometry;
+        }
+        recordSimplification(type, geometry.getNumPoints(), simplified.getNumPoints());
+        return simplified;
+    }
+
+    /**
+     * Simplify WGS84 polygons that together form a coverage, ie share boundaries without overlapping, with JTS'
+     * CoverageSimplifier. Each shared edge is simplified once, so neighbours stay gap free. If the input is not a valid
+     * coverage, or any simplified polygon is invalid, all polygons are returned unchanged.
+     *
+     * @return the polygons in the same order as the input
+     */
+    public Geometry[] simplifyCoverage(Geometry[] polygons, TopographicPlaceAdapter.Type type) {
+        double tolerance = getTolerance(type);
+        if (polygons.length == 0 || tolerance <= 0) {
+            return polygons;
+        }
+        if (!CoverageValidator.isValid(polygons)) {
+            return fallback(polygons, type);
+        }
+        Envelope envelope = new Envelope();
+        for (Geometry polygon : polygons) {
+            envelope.expandToInclude(polygon.getEnvelopeInternal());
+        }
+        Geometry[] simplified = CoverageSimplifier.simplify(polygons, toDegrees(tolerance, envelope));
+        for (Geometry polygon : simplified) {
+            if (polygon == null || polygon.isEmpty() || !polygon.isValid()) {
+                return fallback(polygons, type);
+            }
+        }
+        for (int i = 0; i < polygons.length; i++) {
+            recordSimplification(type, polygons[i].getNumPoints(), simplified[i].getNumPoints());
+        }
+        return simplified;
+    }
+
+    private Geometry[] fallback(Geometry[] polygons, TopographicPlaceAdapter.Type type) {
+        for (int i = 0; i < polygons.length; i++) {
+            recordFallback(type);
+        }
+        return polygons;
+    }
+
+    /**
+     * Tolerance in degrees of longitude at the centre of envelope, which is the smaller of the two in Norway.
+     */
+    private static double toDegrees(double toleranceMetres, Envelope envelope) {
+        double latitude = envelope.centre().y;
+        return toleranceMetres / (METRES_PER_DEGREE_LONGITUDE_AT_EQUATOR * Math.max(0.01, Math.cos(Math.toRadians(latitude))));
+    }
+
+    /**
+     * Douglas-Peucker simplification of an arc of interleaved lon/lat coordinates, in place. The end points are always kept,
+     * and the result only depends on the arc itself, so every area referencing the arc ends up with the same vertices.
+     * Distances are measured in metres on a local equirectangular approximation.
+     *
+     * @return the number of points kept, compacted at the start of coordinates
+     */
+    public static int simplifyArc(double[] coordinates, int numPoints, double toleranceMetres) {
+        if (numPoints <= 2 || toleranceMetres <= 0) {
+            return numPoints;
+        }
+        double metresPerDegreeLongitude = METRES_PER_DEGREE_LONGITUDE_AT_EQUATOR * Math.cos(Math.toRadians(coordinates[1]));
+        double toleranceSquared = toleranceMetres * toleranceMetres;
+
+        boolean[] keep = new boolean[numPoints];
+        keep[0] = true;
+        keep[numPoints - 1] = true;
+
+        int[] stack = new int[64];
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+        stack[stackSize++] = numPoints - 1;
+        while (stackSize > 0) {
+            int last = stack[--stackSize];
+            int first = stack[--stackSize];
+
+            double maxDistanceSquared = -1;
+            int farthest = -1;
+            for (int i = first + 1; i < last; i++) {
+                double distanceSquared = segmentDistanceSquared(coordinates, i, first, last, metresPerDegreeLongitude);
+                if (distanceSquared > maxDistanceSquared) {
+                    maxDistanceSquared = distanceSquared;
+                    farthest = i;
+                }
+            }
+            if (farthest >= 0 && maxDistanceSquared > toleranceSquared) {
+                keep[farthest] = true;
+                if (stackSize + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[stackSize++] = first;
+                stack[stackSize++] = farthest;
+                stack[stackSize++] = farthest;
+                stack[stackSize++] = last;
+            }
+        }
+
+        int kept = 0;
+        for (int i = 0; i < numPoints; i++) {
+            if (keep[i]) {
+                coordinates[kept * 2] = coordinates[i * 2];
+                coordinates[kept * 2 + 1] = coordinates[i * 2 + 1];
+                kept++;
+            }
+        }
+        return kept;
+    }
+
+    public void recordSimplification(TopographicPlaceAdapter.Type type, long verticesIn, long verticesOut) {
+        String typeTag = type.name();
+        Metrics.counter("kakka.geometry.simplification.vertices.in", "type", typeTag).increment(verticesIn);
+        Metrics.counter("kakka.geometry.simplification.vertices.out", "type", typeTag).increment(verticesOut);
+        Metrics.counter("kakka.geometry.simplification.bytes.saved", "type", typeTag).increment((double) (verticesIn - verticesOut) * POS_LIST_BYTES_PER_VERTEX);
+    }
+
+    public void recordFallback(TopographicPlaceAdapter.Type type) {
+        Metrics.counter("kakka.geometry.simplification.fallback", "type", type.name()).increment();
+    }
+
+    /**
+     * Squared distance in metres from point to the segment between first and last.
+     */
+    private static double segmentDistanceSquared(double[] coordinates, int point, int first, int last, double metresPerDegreeLongitude) {
+        double x0 = coordinates[first * 2] * metresPerDegreeLongitude;
+        double y0 = coordinates[first * 2 + 1] * METRES_PER_DEGREE_LATITUDE;
+        double dx = coordinates[last * 2] * metresPerDegreeLongitude - x0;
+        double dy = coordinates[last * 2 + 1] * METRES_PER_DEGREE_LATITUDE - y0;
+        double px = coordinates[point * 2] * metresPerDegreeLongitude - x0;
+        double py = coordinates[point * 2 + 1] * METRES_PER_DEGREE_LATITUDE - y0;
+
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, (px * dx + py * dy) / lengthSquared));
+        double ex = px - t * dx;
+        double ey = py - t * dy;
+        return ex * ex + ey * ey;
+    }
+}
@@ -21,34 +21,117 @@ import net.opengis.gml._3.AbstractRingPropertyType;
 import net.opengis.gml._3.DirectPositionListType;
 import net.opengis.gml._3.LinearRingType;
 import net.opengis.gml._3.PolygonType;
-import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.Polygon;
 
 import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.List;
 
 public class NetexGeoUtil {
 
 
     public static final String SRS_NAME_WGS84 = "ESPG:4326";
 
+    /**
+     * 7 decimals of a degree is about 1 cm, far below the accuracy of the source data.
+     */
+    public static final int DEFAULT_COORDINATE_DECIMALS = 7;
+
+    public static final int MAX_COORDINATE_DECIMALS = 15;
+
+    private static final double[] POWERS_OF_TEN = new double[MAX_COORDINATE_DECIMALS + 1];
+
+    static {
+        for (int i = 0; i <= MAX_COORDINATE_DECIMALS; i++) {
+            POWERS_OF_TEN[i] = Math.pow(10, i);
+        }
+    }
+
+    private static volatile int coordinateDecimals = DEFAULT_COORDINATE_DECIMALS;
+
+    /**
+     * Number of decimals kept for coordinates written to NeTEx and GeoJSON.
+     */
+    public static void setCoordinateDecimals(int decimals) {
+        if (decimals < 0 || decimals > MAX_COORDINATE_DECIMALS) {
+            throw new IllegalArgumentException("Coordinate decimals must be between 0 and " + MAX_COORDINATE_DECIMALS + ", was: " + decimals);
+        }
+        coordinateDecimals = decimals;
+    }
+
+    public static int getCoordinateDecimals() {
+        return coordinateDecimals;
+    }
+
     public static PolygonType toNetexPolygon(Polygon polygon) {
+        return toNetexPolygon(polygon, coordinateDecimals);
+    }
+
+    public static PolygonType toNetexPolygon(Polygon polygon, int decimals) {
         LinearRingType linearRing = new LinearRingType();
 
-        List<Double> values = new ArrayList<>();
-        for (Coordinate coordinate : polygon.getExteriorRing().getCoordinates()) {
-            values.add(coordinate.y); // lat
-            values.add(coordinate.x); // lon
+        CoordinateSequence coordinates = polygon.getExteriorRing().getCoordinateSequence();
+        double[] values = new double[coordinates.size() * 2];
+        for (int i = 0; i < coordinates.size(); i++) {
+            values[i * 2] = round(coordinates.getY(i), decimals); // lat
+            values[i * 2 + 1] = round(coordinates.getX(i), decimals); // lon
         }
 
         // Ignoring interior rings because the corresponding exclaves are not handled.
 
-        DirectPositionListType positionList = new DirectPositionListType().withValue(values);
-        linearRing.withPosList(positionList);
+        linearRing.withPosList(new PrimitiveDirectPositionList(values));
 
         return new PolygonType().withSrsDimension(BigInteger.valueOf(2)).withSrsName(SRS_NAME_WGS84)
                 .withExterior(new AbstractRingPropertyType().withAbstractRing(
                         new net.opengis.gml._3.ObjectFactory().createLinearRing(linearRing)));
     }
+
+    /**
+     * Copy of geometry with coordinates rounded to the configured number of decimals.
+     */
+    public static Geometry round(Geometry geometry) {
+        Geometry rounded = geometry.copy();
+        int decimals = coordinateDecimals;
+        rounded.apply(new CoordinateSequenceFilter() {
+            @Override
+            public void filter(CoordinateSequence sequence, int i) {
+                sequence.setOrdinate(i, CoordinateSequence.X, round(sequence.getX(i), decimals));
+                sequence.setOrdinate(i, CoordinateSequence.Y, round(sequence.getY(i), decimals));
+            }
+
+            @Override
+            public boolean isDone() {
+                return false;
+            }
+
+            @Override
+            public boolean isGeometryChanged() {
+                return true;
+            }
+        });
+        return rounded;
+    }
+
+    /**
+     * Round half up to the given number of decimals. The result is the double closest to the rounded decimal value, so it
+     * is printed with at most that many decimals.
+     */
+    public static double round(double value, int decimals) {
+        if (!Double.isFinite(value)) {
+            return value;
+        }
+        double scale = POWERS_OF_TEN[decimals];
+        return Math.round(value * scale) / scale;
+    }
+
+    /**
+     * Sets the values without copying them into a boxed list. JAXB marshals it as its superclass.
+     */
+    private static class PrimitiveDirectPositionList extends DirectPositionListType {
+
+        private PrimitiveDirectPositionList(double[] values) {
+            this.value = new PosListValues(values);
+        }
+    }
 }
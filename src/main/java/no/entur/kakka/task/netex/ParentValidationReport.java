@@ -0,0 +1,141 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.task.netex;
+
+import io.micrometer.core.instrument.Metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcome of validating the parent refs of topographic places against their geometry. Counts results per place type,
+ * and keeps a limited number of examples of places whose parent ref does not match their location.
+ * <p>
+ * Thread safe for recording.
+ */
+public class ParentValidationReport {
+
+    public static final int MAX_EXAMPLES = 100;
+
+    private final Map<TopographicPlaceAdapter.Type, Map<Result, LongAdder>> counts = new EnumMap<>(TopographicPlaceAdapter.Type.class);
+
+    private final List<Mismatch> examples = Collections.synchronizedList(new ArrayList<>());
+
+    public ParentValidationReport() {
+        for (TopographicPlaceAdapter.Type type : TopographicPlaceAdapter.Type.values()) {
+            Map<Result, LongAdder> countPerResult = new EnumMap<>(Result.class);
+            for (Result result : Result.values()) {
+                countPerResult.put(result, new LongAdder());
+            }
+            counts.put(type, countPerResult);
+        }
+    }
+
+    public void record(TopographicPlaceAdapter.Type type, String id, String declaredParentId, String resolvedParentId) {
+        Result result;
+        if (resolvedParentId == null) {
+            result = Result.UNRESOLVED;
+        } else if (declaredParentId == null) {
+            result = Result.MISSING;
+        } else if (declaredParentId.equals(resolvedParentId)) {
+            result = Result.MATCH;
+        } else {
+            result = Result.MISMATCH;
+        }
+        counts.get(type).get(result).increment();
+        if (result != Result.MATCH && examples.size() < MAX_EXAMPLES) {
+            synchronized (examples) {
+                if (examples.size() < MAX_EXAMPLES) {
+                    examples.add(new Mismatch(type, id, declaredParentId, resolvedParentId, result));
+                }
+            }
+        }
+    }
+
+    public long getCount(TopographicPlaceAdapter.Type type, Result result) {
+        return counts.get(type).get(result).sum();
+    }
+
+    /**
+     * Non zero counts per place type and result.
+     */
+    public Map<String, Map<String, Long>> getCounts() {
+        Map<String, Map<String, Long>> snapshot = new TreeMap<>();
+        counts.forEach((type, countPerResult) -> countPerResult.forEach((result, count) -> {
+            if (count.sum() > 0) {
+                snapshot.computeIfAbsent(type.name(), t -> new TreeMap<>()).put(result.name(), count.sum());
+            }
+        }));
+        return snapshot;
+    }
+
+    public List<Mismatch> getExamples() {
+        synchronized (examples) {
+            return new ArrayList<>(examples);
+        }
+    }
+
+    public long getInvalidCount() {
+        return counts.values().stream().flatMap(countPerResult -> countPerResult.entrySet().stream())
+                .filter(entry -> entry.getKey() != Result.MATCH)
+                .mapToLong(entry -> entry.getValue().sum()).sum();
+    }
+
+    /**
+     * Add the counts to the counter kakka.topographic.place.parent.validation, tagged with place type and result.
+     */
+    public void publishMetrics() {
+        counts.forEach((type, countPerResult) -> countPerResult.forEach((result, count) -> {
+            if (count.sum() > 0) {
+                Metrics.counter("kakka.topographic.place.parent.validation", "type", type.name(), "result", result.name()).increment(count.sum());
+            }
+        }));
+    }
+
+    @Override
+    public String toString() {
+        return "ParentValidationReport " + getCounts();
+    }
+
+    public enum Result {
+        /**
+         * The parent ref matches the unit containing the place.
+         */
+        MATCH,
+        /**
+         * The parent ref does not match the unit containing the place.
+         */
+        MISMATCH,
+        /**
+         * The place has no parent ref, but is contained by a unit.
+         */
+        MISSING,
+        /**
+         * No unit contains the place.
+         */
+        UNRESOLVED
+    }
+
+    public record Mismatch(TopographicPlaceAdapter.Type type, String id, String declaredParentId, String resolvedParentId, Result result) {
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.task.netex;
+
+import java.util.AbstractList;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Read only posList values backed by a double[], so that coordinates are not kept boxed while places wait to be written.
+ * <p>
+ * JAXB boxes the values one at a time while marshalling, {@link #getDouble(int)} reads them without boxing.
+ */
+public final class PosListValues extends AbstractList<Double> implements RandomAccess {
+
+    private final double[] values;
+
+    public PosListValues(double[] values) {
+        this.values = values;
+    }
+
+    public double getDouble(int index) {
+        Objects.checkIndex(index, values.length);
+        return values[index];
+    }
+
+    @Override
+    public Double get(int index) {
+        return getDouble(index);
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+}
@@ -16,6 +16,8 @@
 
 package no.entur.kakka.task.netex;
 
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.rutebanken.netex.model.LocaleStructure;
 import org.rutebanken.netex.model.ModificationEnumeration;
 import org.rutebanken.netex.model.ObjectFactory;
@@ -25,47 +27,156 @@ import org.rutebanken.netex.model.TopographicPlace;
 import org.rutebanken.netex.model.VersionFrameDefaultsStructure;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 @Component
 public class TopographicPlaceConverter {
+    public static final String GZIP_SUFFIX = ".gz";
     private static final int QUEUE_SIZE = 10000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PIPE_SIZE = 256 * 1024;
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
 
     private final String defaultTimeZone;
 
-    public TopographicPlaceConverter(@Value("${tiamat.netex.import.time.zone:CET}") String defaultTimeZone) {
+    private final int marshallerThreads;
+
+    private final TopographicPlaceNetexWriter.Serializer serializer;
+
+    private final boolean compactOutput;
+
+    private final ExecutorService executorService;
+
+    public TopographicPlaceConverter(String defaultTimeZone) {
+        this(defaultTimeZone, 1, TopographicPlaceNetexWriter.Serializer.JAXB, false, false);
+    }
+
+    @Autowired
+    public TopographicPlaceConverter(@Value("${tiamat.netex.import.time.zone:CET}") String defaultTimeZone,
+                                     @Value("${topographic.place.netex.marshaller.threads:1}") int marshallerThreads,
+                                     @Value("${topographic.place.netex.serializer:JAXB}") TopographicPlaceNetexWriter.Serializer serializer,
+                                     @Value("${topographic.place.netex.compact:false}") boolean compactOutput,
+                                     @Value("${topographic.place.netex.virtual.threads:false}") boolean virtualThreads) {
         this.defaultTimeZone = defaultTimeZone;
+        this.marshallerThreads = marshallerThreads;
+        this.serializer = serializer;
+        this.compactOutput = compactOutput;
+        ThreadFactory threadFactory = virtualThreads ? Thread.ofVirtual().name("topographic-place-conversion-", 0).factory()
+                : Thread.ofPlatform().name("topographic-place-conversion-", 0).daemon().factory();
+        this.executorService = Executors.newThreadPerTaskExecutor(threadFactory);
     }
 
-    public void toNetexFile(TopographicPlaceReader input, String targetPath) {
-        try {
-            BlockingQueue<TopographicPlace> topographicPlaceQueue = new LinkedBlockingDeque<>(QUEUE_SIZE);
+    public TopographicPlaceNetexWriter.Serializer getSerializer() {
+        return serializer;
+    }
 
-            ReaderTask reader = new ReaderTask(topographicPlaceQueue, input);
-            new Thread(reader).start();
+    public boolean isCompactOutput() {
+        return compactOutput;
+    }
 
-            File target = new File(targetPath);
-            TopographicPlaceNetexWriter netexWriter = new TopographicPlaceNetexWriter();
-            String siteFrameId = input.getParticipantRef() + ":SiteFrame:" + System.currentTimeMillis();
-            netexWriter.stream(createPublicationDeliveryStructure(input, siteFrameId), topographicPlaceQueue, new FileOutputStream(target));
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
 
-            reader.verify();
-            logger.info("Wrote TopographicPlace NeTEx file with SiteFrame id={}", siteFrameId);
+    /**
+     * Write topographic places from input to a NeTEx file. The file is gzip compressed if targetPath ends with .gz.
+     *
+     * @return number of bytes of (uncompressed) XML written
+     */
+    public long toNetexFile(TopographicPlaceReader input, String targetPath) {
+        try {
+            File target = new File(targetPath);
+            long xmlBytes;
+            try (OutputStream fileOutputStream = new BufferedOutputStream(new FileOutputStream(target), BUFFER_SIZE);
+                 OutputStream compressedOutputStream = targetPath.endsWith(GZIP_SUFFIX) ? new GZIPOutputStream(fileOutputStream, BUFFER_SIZE) : fileOutputStream;
+                 CountingOutputStream xmlOutputStream = new CountingOutputStream(compressedOutputStream)) {
+                writeNetex(input, xmlOutputStream);
+                xmlBytes = xmlOutputStream.getByteCount();
+            }
+            logger.info("Wrote TopographicPlace NeTEx file {}, {} bytes of XML, {} bytes on disk", targetPath, xmlBytes, target.length());
+            return xmlBytes;
         } catch (Exception e) {
             throw new RuntimeException("Conversion to Netex failed with exception: " + e.getMessage(), e);
         }
 
     }
 
+    /**
+     * Convert topographic places from input to NeTEx on a separate thread, and return the XML as a stream. Nothing is
+     * written to disk. The conversion is paced by the consumer of the stream, through a bounded pipe, and a failing
+     * conversion makes reading from the stream fail.
+     */
+    public TopographicPlaceNetexStream toNetexStream(TopographicPlaceReader input) {
+        TopographicPlaceNetexStream netexStream;
+        try {
+            netexStream = new TopographicPlaceNetexStream(PIPE_SIZE);
+        } catch (IOException e) {
+            throw new RuntimeException("Conversion to Netex failed with exception: " + e.getMessage(), e);
+        }
+        executorService.execute(() -> {
+            // Not try-with-resources, the failure must be registered before the pipe is closed
+            OutputStream outputStream = new BufferedOutputStream(netexStream.getProducerEnd(), BUFFER_SIZE);
+            try {
+                writeNetex(input, outputStream);
+                outputStream.flush();
+                netexStream.complete();
+            } catch (Exception e) {
+                logger.warn("Streaming conversion to Netex failed with exception: {}", e.getMessage(), e);
+                netexStream.fail(e);
+            }
+        });
+        return netexStream;
+    }
+
+    /**
+     * Read places on a separate task and write them on the calling thread. A failing writer cancels the reader, and a
+     * failing reader discards places not yet written, so the writer stops without waiting for them, and its exception
+     * is thrown from here.
+     */
+    private void writeNetex(TopographicPlaceReader input, OutputStream outputStream) throws Exception {
+        try (TopographicPlaceQueue topographicPlaceQueue = new TopographicPlaceQueue(QUEUE_SIZE)) {
+            ReaderTask reader = new ReaderTask(topographicPlaceQueue, input);
+            Future<Void> readerFuture = executorService.submit(reader);
+
+            TopographicPlaceNetexWriter netexWriter = new TopographicPlaceNetexWriter(marshallerThreads, serializer, !compactOutput);
+            String siteFrameId = input.getParticipantRef() + ":SiteFrame:" + System.currentTimeMillis();
+            Timer.Sample writerSample = Timer.start();
+            try {
+                netexWriter.stream(createPublicationDeliveryStructure(input, siteFrameId), topographicPlaceQueue, outputStream);
+            } catch (Throwable t) {
+                reader.cancel(readerFuture);
+                throw t;
+            } finally {
+                writerSample.stop(TopographicPlaceQueue.stageTimer(TopographicPlaceQueue.STAGE_WRITER));
+            }
+
+            reader.verify(readerFuture);
+            logger.info("Wrote TopographicPlace NeTEx with SiteFrame id={}", siteFrameId);
+        }
+    }
+
     private PublicationDeliveryStructure createPublicationDeliveryStructure(TopographicPlaceReader input, String siteFrameId) {
         VersionFrameDefaultsStructure frameDefaultsStructure = new VersionFrameDefaultsStructure().withDefaultLocale(new LocaleStructure().withTimeZone(defaultTimeZone));
         SiteFrame siteFrame = new SiteFrame()
@@ -81,46 +192,69 @@ public class TopographicPlaceConverter {
     }
 
 
-    private class ReaderTask implements Runnable {
+    private class ReaderTask implements Callable<Void> {
 
-        private final BlockingQueue<TopographicPlace> queue;
+        private final TopographicPlaceQueue queue;
 
         private final TopographicPlaceReader input;
 
-        private Exception exception;
+        private volatile boolean cancelled;
 
-        public ReaderTask(BlockingQueue<TopographicPlace> queue, TopographicPlaceReader input) {
+        public ReaderTask(TopographicPlaceQueue queue, TopographicPlaceReader input) {
             this.queue = queue;
             this.input = input;
         }
 
         @Override
-        public void run() {
+        public Void call() throws Exception {
+            Timer.Sample readerSample = Timer.start();
             try {
-                input.addToQueue(queue);
-
-            } catch (Exception e) {
-                exception = e;
+                readIntoQueue();
+                return null;
+            } catch (Throwable t) {
+                int discarded = queue.size();
+                queue.clear();
+                if (!cancelled) {
+                    logger.warn("Reading topographic places failed, discarded {} places not yet written", discarded);
+                }
+                throw t;
             } finally {
-                try {
-                    queue.put(createPoisonPill());
-                } catch (InterruptedException ie) {
-                    logger.info("Reading topographic places interrupted", ie);
+                readerSample.stop(TopographicPlaceQueue.stageTimer(TopographicPlaceQueue.STAGE_READER));
+                // No one is taking from the queue once cancelled, a blocking put would never return
+                if (!cancelled) {
+                    queue.putPoisonPill();
                 }
             }
-
         }
 
-        public void verify() throws Exception {
-            if (exception != null) {
-                throw exception;
+        private void readIntoQueue() throws IOException, InterruptedException {
+            try (Stream<TopographicPlace> places = input.stream()) {
+                Iterator<TopographicPlace> iterator = places.iterator();
+                while (iterator.hasNext()) {
+                    queue.put(iterator.next());
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
             }
         }
 
-        private TopographicPlace createPoisonPill() {
-            TopographicPlace topographicPlace = new TopographicPlace();
-            topographicPlace.setId("POISON");
-            return topographicPlace;
+        /**
+         * Stop the reader when the writer has given up. The interrupt releases a reader blocked on the full queue.
+         */
+        public void cancel(Future<Void> readerFuture) {
+            cancelled = true;
+            readerFuture.cancel(true);
+        }
+
+        public void verify(Future<Void> readerFuture) throws Exception {
+            try {
+                readerFuture.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception cause) {
+                    throw cause;
+                }
+                throw e;
+            }
         }
 
     }
@@ -0,0 +1,166 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.task.netex;
+
+import net.opengis.gml._3.AbstractRingType;
+import net.opengis.gml._3.DirectPositionListType;
+import net.opengis.gml._3.LinearRingType;
+import org.rutebanken.netex.model.MultilingualString;
+import org.rutebanken.netex.model.TopographicPlace;
+import org.rutebanken.netex.model.TopographicPlaceDescriptor_VersionedChildStructure;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fingerprints of topographic places keyed by NeTEx id.
+ * <p>
+ * A fingerprint covers everything written for a place: names, type, codes, parent ref and the polygon. Coordinates are
+ * already rounded to the configured precision when mapped, so noise below that precision does not change the fingerprint.
+ * Stored as one tab separated id and fingerprint per line, sorted by id.
+ */
+public class TopographicPlaceFingerprints {
+
+    private static final int FINGERPRINT_BYTES = 16;
+
+    private static final byte FIELD_SEPARATOR = 0;
+
+    private static final byte NULL_FIELD = 1;
+
+    private final Map<String, String> fingerprints = new ConcurrentHashMap<>();
+
+    public static TopographicPlaceFingerprints read(InputStream inputStream) throws IOException {
+        TopographicPlaceFingerprints fingerprints = new TopographicPlaceFingerprints();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int separator = line.indexOf('\t');
+            if (separator > 0) {
+                fingerprints.fingerprints.put(line.substring(0, separator), line.substring(separator + 1));
+            }
+        }
+        return fingerprints;
+    }
+
+    public void write(OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        for (Map.Entry<String, String> entry : new TreeMap<>(fingerprints).entrySet()) {
+            writer.write(entry.getKey());
+            writer.write('\t');
+            writer.write(entry.getValue());
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    public String get(String id) {
+        return fingerprints.get(id);
+    }
+
+    public void put(String id, String fingerprint) {
+        fingerprints.put(id, fingerprint);
+    }
+
+    public int size() {
+        return fingerprints.size();
+    }
+
+    public static String fingerprint(TopographicPlace topographicPlace) {
+        MessageDigest digest = newDigest();
+        update(digest, topographicPlace.getId());
+        update(digest, topographicPlace.getName());
+        if (topographicPlace.getDescriptor() != null) {
+            update(digest, topographicPlace.getDescriptor().getName());
+        }
+        if (topographicPlace.getAlternativeDescriptors() != null) {
+            for (TopographicPlaceDescriptor_VersionedChildStructure descriptor : topographicPlace.getAlternativeDescriptors().getTopographicPlaceDescriptor()) {
+                update(digest, descriptor.getName());
+            }
+        }
+        update(digest, topographicPlace.getTopographicPlaceType() == null ? null : topographicPlace.getTopographicPlaceType().value());
+        update(digest, topographicPlace.getIsoCode());
+        update(digest, topographicPlace.getCountryRef() == null || topographicPlace.getCountryRef().getRef() == null ? null : topographicPlace.getCountryRef().getRef().value());
+        update(digest, topographicPlace.getParentTopographicPlaceRef() == null ? null : topographicPlace.getParentTopographicPlaceRef().getRef());
+        updatePosList(digest, topographicPlace);
+        return HexFormat.of().formatHex(digest.digest(), 0, FINGERPRINT_BYTES);
+    }
+
+    private static void updatePosList(MessageDigest digest, TopographicPlace topographicPlace) {
+        if (topographicPlace.getPolygon() == null || topographicPlace.getPolygon().getExterior() == null) {
+            digest.update(NULL_FIELD);
+            return;
+        }
+        AbstractRingType ring = topographicPlace.getPolygon().getExterior().getAbstractRing().getValue();
+        DirectPositionListType positionList = ring instanceof LinearRingType linearRing ? linearRing.getPosList() : null;
+        if (positionList == null) {
+            digest.update(NULL_FIELD);
+            return;
+        }
+        List<Double> values = positionList.getValue();
+        PosListValues primitiveValues = values instanceof PosListValues posListValues ? posListValues : null;
+        byte[] buffer = new byte[Long.BYTES];
+        for (int i = 0; i < values.size(); i++) {
+            long bits = Double.doubleToLongBits(primitiveValues != null ? primitiveValues.getDouble(i) : values.get(i));
+            for (int b = 0; b < Long.BYTES; b++) {
+                buffer[b] = (byte) (bits >>> (b * 8));
+            }
+            digest.update(buffer);
+        }
+        digest.update(FIELD_SEPARATOR);
+    }
+
+    private static void update(MessageDigest digest, MultilingualString multilingualString) {
+        if (multilingualString == null) {
+            digest.update(NULL_FIELD);
+            return;
+        }
+        update(digest, multilingualString.getLang());
+        update(digest, multilingualString.getValue());
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            digest.update(NULL_FIELD);
+            return;
+        }
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update(FIELD_SEPARATOR);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not supported", e);
+        }
+    }
+}
@@ -31,64 +31,79 @@ import org.rutebanken.netex.model.TopographicPlaceDescriptor_VersionedChildStruc
 import org.rutebanken.netex.model.TopographicPlaceRefStructure;
 import org.rutebanken.netex.model.TopographicPlaceTypeEnumeration;
 import org.rutebanken.netex.model.TopographicPlace_VersionStructure;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.util.CollectionUtils;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
+/**
+ * Maps adapters to NeTEx topographic places for one participant.
+ * <p>
+ * Thread safe and meant to be reused for all places from a reader. Country code tables are computed once, and
+ * unchanging values such as country refs are shared between places, so mapped places must not be modified.
+ */
 public class TopographicPlaceMapper {
-    private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    private final String participantRef;
+    private static final String DEFAULT_LANGUAGE = "nor";
+
+    private static final String VERSION = "any";
 
-    private final TopographicPlaceAdapter feature;
+    private static final Map<String, IanaCountryTldEnumeration> ISO2_COUNTRY_CODES = initIso2CountryCodes();
 
-    private Map<String, Locale> localeMap;
+    private static final Map<String, IanaCountryTldEnumeration> ISO3_COUNTRY_CODES = initIso3CountryCodes();
 
-    public TopographicPlaceMapper(TopographicPlaceAdapter adapter, String participantRef) {
-        this.feature = adapter;
+    private static final Map<IanaCountryTldEnumeration, CountryRef> COUNTRY_REFS = initCountryRefs();
+
+    private static final CountryRef NO_COUNTRY_REF = new CountryRef();
+
+    private final String participantRef;
+
+    private final String idPrefix;
+
+    public TopographicPlaceMapper(String participantRef) {
         this.participantRef = participantRef;
-        initCountryCodeMapping();
+        this.idPrefix = participantRef + ":TopographicPlace:";
     }
 
 
-    public TopographicPlace toTopographicPlace() {
+    public TopographicPlace toTopographicPlace(TopographicPlaceAdapter feature) {
         if (!feature.isValid()) {
             return null;
         }
+        MultilingualString name = multilingualString(feature.getName());
         return new TopographicPlace()
-                .withVersion("any").withModification(ModificationEnumeration.NEW)
-                .withName(multilingualString(feature.getName()))
-                .withAlternativeDescriptors(getAlternativeDescriptors())
-                .withDescriptor(new TopographicPlaceDescriptor_VersionedChildStructure().withName(multilingualString(feature.getName())))
-                .withTopographicPlaceType(getType())
-                .withPolygon(getPolygon())
+                .withVersion(VERSION).withModification(ModificationEnumeration.NEW)
+                .withName(name)
+                .withAlternativeDescriptors(getAlternativeDescriptors(feature))
+                .withDescriptor(new TopographicPlaceDescriptor_VersionedChildStructure().withName(name))
+                .withTopographicPlaceType(getType(feature))
+                .withPolygon(getPolygon(feature))
                 .withIsoCode(feature.getIsoCode())
-                .withCountryRef(new CountryRef().withRef(mapCountryRef(feature.getCountryRef())))
+                .withCountryRef(countryRef(mapCountryRef(feature.getCountryRef())))
                 .withId(prefix(feature.getId()))
                 .withParentTopographicPlaceRef(toParentRef(feature.getParentId()));
     }
 
 
-    protected TopographicPlace_VersionStructure.AlternativeDescriptors getAlternativeDescriptors() {
-        List<TopographicPlaceDescriptor_VersionedChildStructure> alternativeNames = new ArrayList<>();
-        feature.getAlternativeNames().forEach((k, v) -> alternativeNames.add(
-                new TopographicPlaceDescriptor_VersionedChildStructure().withName(new MultilingualString().withLang(k).withValue(v))));
-
+    protected TopographicPlace_VersionStructure.AlternativeDescriptors getAlternativeDescriptors(TopographicPlaceAdapter feature) {
+        Map<String, String> alternativeNames = feature.getAlternativeNames();
         if (CollectionUtils.isEmpty(alternativeNames)) {
             return null;
         }
 
-        return new TopographicPlace_VersionStructure.AlternativeDescriptors().withTopographicPlaceDescriptor(alternativeNames);
+        List<TopographicPlaceDescriptor_VersionedChildStructure> alternativeDescriptors = new ArrayList<>(alternativeNames.size());
+        alternativeNames.forEach((k, v) -> alternativeDescriptors.add(
+                new TopographicPlaceDescriptor_VersionedChildStructure().withName(new MultilingualString().withLang(k).withValue(v))));
+
+        return new TopographicPlace_VersionStructure.AlternativeDescriptors().withTopographicPlaceDescriptor(alternativeDescriptors);
     }
 
     protected String prefix(String id) {
-        return participantRef + ":TopographicPlace:" + id;
+        return idPrefix.concat(id);
     }
 
     protected TopographicPlaceRefStructure toParentRef(String id) {
@@ -96,10 +111,10 @@ public class TopographicPlaceMapper {
             return null;
         }
         return new TopographicPlaceRefStructure()
-                .withRef(prefix(feature.getParentId()));
+                .withRef(prefix(id));
     }
 
-    protected TopographicPlaceTypeEnumeration getType() {
+    protected TopographicPlaceTypeEnumeration getType(TopographicPlaceAdapter feature) {
         return switch (feature.getType()) {
             case COUNTRY -> TopographicPlaceTypeEnumeration.COUNTRY;
             case COUNTY -> TopographicPlaceTypeEnumeration.COUNTY;
@@ -110,7 +125,7 @@ public class TopographicPlaceMapper {
     }
 
 
-    private PolygonType getPolygon() {
+    private PolygonType getPolygon(TopographicPlaceAdapter feature) {
         Geometry geometry = feature.getDefaultGeometry();
 
         if (geometry instanceof MultiPolygon multiPolygon) {
@@ -130,36 +145,54 @@ public class TopographicPlaceMapper {
         if (countryRef == null) {
             return null;
         }
-        String alpha2CountryRef = null;
+        IanaCountryTldEnumeration country = null;
         if (countryRef.length() == 3) {
-            alpha2CountryRef = iso3CountryCodeToIso2CountryCode(countryRef.toUpperCase());
+            country = ISO3_COUNTRY_CODES.get(countryRef.toUpperCase());
         }
-
-        if (alpha2CountryRef == null) {
-            alpha2CountryRef = countryRef.toLowerCase();
+        if (country == null) {
+            country = ISO2_COUNTRY_CODES.get(countryRef.toLowerCase());
+        }
+        if (country == null) {
+            // Fails with the same exception as before the lookup tables
+            country = IanaCountryTldEnumeration.fromValue(countryRef.toLowerCase());
         }
+        return country;
+    }
+
+    private static CountryRef countryRef(IanaCountryTldEnumeration country) {
+        return country == null ? NO_COUNTRY_REF : COUNTRY_REFS.get(country);
+    }
 
-        return IanaCountryTldEnumeration.fromValue(alpha2CountryRef.toLowerCase());
+    private static Map<String, IanaCountryTldEnumeration> initIso3CountryCodes() {
+        Map<String, IanaCountryTldEnumeration> iso3CountryCodes = new HashMap<>();
+        for (String country : Locale.getISOCountries()) {
+            IanaCountryTldEnumeration iana = ISO2_COUNTRY_CODES.get(country.toLowerCase());
+            if (iana != null) {
+                iso3CountryCodes.put(Locale.of("", country).getISO3Country().toUpperCase(), iana);
+            }
+        }
+        return Map.copyOf(iso3CountryCodes);
     }
 
-    private void initCountryCodeMapping() {
-        String[] countries = Locale.getISOCountries();
-        localeMap =HashMap.newHashMap(countries.length);
-        for (String country : countries) {
-            Locale locale = Locale.of("", country);
-            localeMap.put(locale.getISO3Country().toUpperCase(), locale);
+    private static Map<String, IanaCountryTldEnumeration> initIso2CountryCodes() {
+        Map<String, IanaCountryTldEnumeration> iso2CountryCodes = new HashMap<>();
+        for (IanaCountryTldEnumeration country : IanaCountryTldEnumeration.values()) {
+            iso2CountryCodes.put(country.value(), country);
         }
+        return Map.copyOf(iso2CountryCodes);
     }
 
-    private String iso3CountryCodeToIso2CountryCode(String iso3CountryCode) {
-        return localeMap.get(iso3CountryCode).getCountry();
+    private static Map<IanaCountryTldEnumeration, CountryRef> initCountryRefs() {
+        Map<IanaCountryTldEnumeration, CountryRef> countryRefs = new EnumMap<>(IanaCountryTldEnumeration.class);
+        for (IanaCountryTldEnumeration country : IanaCountryTldEnumeration.values()) {
+            countryRefs.put(country, new CountryRef().withRef(country));
+        }
+        return countryRefs;
     }
 
 
     protected MultilingualString multilingualString(String val) {
-        return new MultilingualString().withLang("nor").withValue(val);
+        return new MultilingualString().withLang(DEFAULT_LANGUAGE).withValue(val);
     }
 
 }
-
-
@@ -0,0 +1,121 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.netex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+
+/**
+ * Input end of a bounded pipe that a conversion writes NeTEx XML to on another thread.
+ * <p>
+ * Reads block until the producer has written more data, and the producer blocks while the pipe is full, so a slow
+ * consumer slows down the conversion instead of buffering the document. If the producer fails, reads throw an IOException
+ * instead of returning end of stream, so a truncated document is never mistaken for a complete one. Closing this stream
+ * makes further writes from the producer fail.
+ */
+public class TopographicPlaceNetexStream extends InputStream {
+
+    private final PipedInputStream pipe;
+
+    private final PipedOutputStream producerEnd;
+
+    private volatile Throwable failure;
+
+    private long byteCount;
+
+    TopographicPlaceNetexStream(int pipeSize) throws IOException {
+        this.pipe = new PipedInputStream(pipeSize);
+        this.producerEnd = new PipedOutputStream(pipe);
+    }
+
+    /**
+     * Stream the producer writes to. Must be ended with {@link #complete()} or {@link #fail(Throwable)}.
+     */
+    OutputStream getProducerEnd() {
+        return producerEnd;
+    }
+
+    /**
+     * Signal that the document is complete.
+     */
+    void complete() throws IOException {
+        producerEnd.close();
+    }
+
+    /**
+     * Abort the stream. Data already in the pipe may still be read, after which reads fail with cause.
+     */
+    void fail(Throwable cause) {
+        failure = cause;
+        try {
+            producerEnd.close();
+        } catch (IOException ignored) {
+            // The failure is reported to the consumer
+        }
+    }
+
+    /**
+     * Number of bytes read from the stream.
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkFailure();
+        int b = pipe.read();
+        if (b < 0) {
+            checkFailure();
+        } else {
+            byteCount++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkFailure();
+        int read = pipe.read(b, off, len);
+        if (read < 0) {
+            checkFailure();
+        } else {
+            byteCount += read;
+        }
+        return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return pipe.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        pipe.close();
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable cause = failure;
+        if (cause != null) {
+            throw new IOException("Producing NeTEx stream failed: " + cause.getMessage(), cause);
+        }
+    }
+}
@@ -29,10 +29,19 @@ import jakarta.xml.bind.Marshaller;
 import javax.xml.stream.XMLStreamException;
 import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
+import java.io.CharArrayWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static jakarta.xml.bind.JAXBContext.newInstance;
 
@@ -40,6 +49,11 @@ public class TopographicPlaceNetexWriter {
 
     private static final Logger logger = LoggerFactory.getLogger(TopographicPlaceNetexWriter.class);
 
+    /**
+     * Max number of marshalled places waiting to be written, per marshaller thread.
+     */
+    private static final int IN_FLIGHT_PER_THREAD = 8;
+
     private static final JAXBContext publicationDeliveryContext = createContext(PublicationDeliveryStructure.class);
     private static final JAXBContext topographicPlaceContext = createContext(org.rutebanken.netex.model.TopographicPlace.class);
     private static final ObjectFactory netexObjectFactory = new ObjectFactory();
@@ -53,6 +67,48 @@ public class TopographicPlaceNetexWriter {
         }
     }
 
+    /**
+     * How topographic places are written. JAXB marshals the complete model, STAX writes only the elements set by
+     * {@link TopographicPlaceMapper} with {@link TopographicPlaceStaxSerializer}.
+     */
+    public enum Serializer {JAXB, STAX}
+
+    private final int marshallerThreads;
+
+    private final Serializer serializer;
+
+    private final boolean formattedOutput;
+
+    public TopographicPlaceNetexWriter() {
+        this(1);
+    }
+
+    public TopographicPlaceNetexWriter(int marshallerThreads) {
+        this(marshallerThreads, Serializer.JAXB);
+    }
+
+    /**
+     * @param marshallerThreads number of threads marshalling topographic places. With more than one thread places are
+     *                          marshalled in parallel, each thread with its own Marshaller, and written in queue order.
+     *                          The output is identical to marshalling on a single thread.
+     * @param serializer        how each topographic place is written
+     */
+    public TopographicPlaceNetexWriter(int marshallerThreads, Serializer serializer) {
+        this(marshallerThreads, serializer, true);
+    }
+
+    /**
+     * @param formattedOutput whether the XML is indented. Compact output has no indentation or line breaks between elements.
+     */
+    public TopographicPlaceNetexWriter(int marshallerThreads, Serializer serializer, boolean formattedOutput) {
+        if (marshallerThreads < 1) {
+            throw new IllegalArgumentException("Number of marshaller threads must be positive: " + marshallerThreads);
+        }
+        this.marshallerThreads = marshallerThreads;
+        this.serializer = serializer;
+        this.formattedOutput = formattedOutput;
+    }
+
     public void stream(PublicationDeliveryStructure publicationDeliveryStructure, BlockingQueue<TopographicPlace> topographicPlacesQueue, OutputStream outputStream) throws JAXBException, XMLStreamException, IOException, InterruptedException {
         String publicationDeliveryStructureXml = writePublicationDeliverySkeletonToString(publicationDeliveryStructure);
         stream(publicationDeliveryStructureXml, topographicPlacesQueue, outputStream);
@@ -65,32 +121,45 @@ public class TopographicPlaceNetexWriter {
 
         Marshaller publicationDeliveryMarshaller = publicationDeliveryContext.createMarshaller();
 
-        publicationDeliveryMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+        publicationDeliveryMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, formattedOutput);
         publicationDeliveryMarshaller.marshal(jaxPublicationDelivery, byteArrayOutputStream);
-        return byteArrayOutputStream.toString();
+        return byteArrayOutputStream.toString(StandardCharsets.UTF_8);
     }
 
 
     private Marshaller createTopographicPlaceMarshaller() throws JAXBException {
         Marshaller topographicPlaceMarshaller = topographicPlaceContext.createMarshaller();
         topographicPlaceMarshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
-        topographicPlaceMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+        topographicPlaceMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, formattedOutput);
         topographicPlaceMarshaller.setProperty(Marshaller.JAXB_SCHEMA_LOCATION, "");
         return topographicPlaceMarshaller;
     }
 
+    private PlaceSerializer createPlaceSerializer() throws JAXBException {
+        if (serializer == Serializer.STAX) {
+            return new TopographicPlaceStaxSerializer()::write;
+        }
+        Marshaller topographicPlaceMarshaller = createTopographicPlaceMarshaller();
+        return (topographicPlace, writer) -> topographicPlaceMarshaller.marshal(netexObjectFactory.createTopographicPlace(topographicPlace), writer);
+    }
+
 
     /**
      * In order to not hold all topographic places in memory at once, we need to marshal topographic place from a queue.
-     * Requires a publication delivery xml that contains newlines.
+     * Requires a publication delivery xml that contains newlines, unless output is compact. The output is UTF-8.
      */
     public void stream(String publicationDeliveryStructureXml, BlockingQueue<org.rutebanken.netex.model.TopographicPlace> topographicPlaces, OutputStream outputStream) throws JAXBException, XMLStreamException, IOException, InterruptedException {
 
-        OutputStreamWriter outputStreamWriter = new OutputStreamWriter(outputStream);
+        OutputStreamWriter outputStreamWriter = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
         BufferedWriter bufferedWriter = new BufferedWriter(outputStreamWriter);
 
         try {
-            Marshaller topographicPlaceMarshaller = createTopographicPlaceMarshaller();
+            PlaceSerializer placeSerializer = createPlaceSerializer();
+
+            if (!formattedOutput) {
+                streamCompact(publicationDeliveryStructureXml, topographicPlaces, bufferedWriter, placeSerializer);
+                return;
+            }
 
             String lineSeparator = System.lineSeparator();
             String[] publicationDeliveryLines = publicationDeliveryStructureXml.split(lineSeparator);
@@ -99,7 +168,11 @@ public class TopographicPlaceNetexWriter {
                 logger.debug("Line: {}", publicationDeliveryLine);
 
                 if (publicationDeliveryLine.contains("</SiteFrame")) {
-                    marshallTopographicPlaces(topographicPlaces, bufferedWriter, topographicPlaceMarshaller, lineSeparator);
+                    if (marshallerThreads > 1) {
+                        marshallTopographicPlacesInParallel(topographicPlaces, bufferedWriter, lineSeparator);
+                    } else {
+                        marshallTopographicPlaces(topographicPlaces, bufferedWriter, placeSerializer, lineSeparator);
+                    }
                 }
 
                 bufferedWriter.write(publicationDeliveryLine);
@@ -110,10 +183,29 @@ public class TopographicPlaceNetexWriter {
         }
     }
 
+    /**
+     * Insert the topographic places before the end of the SiteFrame, without line breaks.
+     */
+    private void streamCompact(String publicationDeliveryStructureXml, BlockingQueue<TopographicPlace> topographicPlaces,
+                               BufferedWriter bufferedWriter, PlaceSerializer placeSerializer) throws InterruptedException, JAXBException, XMLStreamException, IOException {
+        int siteFrameEnd = publicationDeliveryStructureXml.indexOf("</SiteFrame");
+        if (siteFrameEnd < 0) {
+            bufferedWriter.write(publicationDeliveryStructureXml);
+            return;
+        }
+        bufferedWriter.write(publicationDeliveryStructureXml, 0, siteFrameEnd);
+        if (marshallerThreads > 1) {
+            marshallTopographicPlacesInParallel(topographicPlaces, bufferedWriter, "");
+        } else {
+            marshallTopographicPlaces(topographicPlaces, bufferedWriter, placeSerializer, "");
+        }
+        bufferedWriter.write(publicationDeliveryStructureXml, siteFrameEnd, publicationDeliveryStructureXml.length() - siteFrameEnd);
+    }
+
     private void marshallTopographicPlaces(BlockingQueue<org.rutebanken.netex.model.TopographicPlace> topographicPlaceQueue,
                                            BufferedWriter bufferedWriter,
-                                           Marshaller topographicPlaceMarshaller,
-                                           String lineSeparator) throws InterruptedException, JAXBException, IOException {
+                                           PlaceSerializer placeSerializer,
+                                           String lineSeparator) throws InterruptedException, JAXBException, XMLStreamException, IOException {
         logger.info("Marshaling topographic places");
 
         int count = 0;
@@ -132,13 +224,105 @@ public class TopographicPlaceNetexWriter {
 
             ++count;
             logger.debug("Marshalling topographic place {}: {}", count, topographicPlace);
-            JAXBElement<TopographicPlace> jaxBStopPlace = netexObjectFactory.createTopographicPlace(topographicPlace);
-            topographicPlaceMarshaller.marshal(jaxBStopPlace, bufferedWriter);
+            placeSerializer.write(topographicPlace, bufferedWriter);
+            bufferedWriter.write(lineSeparator);
+        }
+        if (count > 0) {
+            bufferedWriter.write("</topographicPlaces>");
             bufferedWriter.write(lineSeparator);
         }
+    }
+
+    /**
+     * Marshal places on marshallerThreads threads into pooled char buffers, tagged with the sequence number of the place.
+     * The calling thread takes places from the queue and writes the buffers in sequence order, so the output is the same as
+     * for {@link #marshallTopographicPlaces}. At most IN_FLIGHT_PER_THREAD places per thread are marshalled ahead of the
+     * writer.
+     */
+    private void marshallTopographicPlacesInParallel(BlockingQueue<org.rutebanken.netex.model.TopographicPlace> topographicPlaceQueue,
+                                                     BufferedWriter bufferedWriter,
+                                                     String lineSeparator) throws InterruptedException, JAXBException, XMLStreamException, IOException {
+        logger.info("Marshaling topographic places with {} threads", marshallerThreads);
+
+        ThreadLocal<PlaceSerializer> placeSerializers = new ThreadLocal<>();
+        ExecutorService executorService = Executors.newFixedThreadPool(marshallerThreads, Thread.ofPlatform().name("netex-marshaller-", 0).daemon().factory());
+        int maxInFlight = marshallerThreads * IN_FLIGHT_PER_THREAD;
+        Deque<Future<MarshalledPlace>> inFlight = new ArrayDeque<>(maxInFlight);
+        Deque<CharArrayWriter> buffers = new ArrayDeque<>(maxInFlight);
+        long count = 0;
+        try {
+            while (true) {
+                org.rutebanken.netex.model.TopographicPlace topographicPlace = topographicPlaceQueue.take();
+
+                if (topographicPlace.getId().equals("POISON")) {
+                    logger.debug("Got poison pill from topographic place queue. Finished marshaling {} topographic places.", count);
+                    break;
+                }
+
+                if (count == 0) {
+                    bufferedWriter.write("<topographicPlaces>");
+                    bufferedWriter.write(lineSeparator);
+                }
+
+                long sequenceNumber = count++;
+                CharArrayWriter buffer = buffers.isEmpty() ? new CharArrayWriter(4096) : buffers.pop();
+                inFlight.add(executorService.submit(() -> {
+                    buffer.reset();
+                    placeSerializer(placeSerializers).write(topographicPlace, buffer);
+                    return new MarshalledPlace(sequenceNumber, buffer);
+                }));
+
+                if (inFlight.size() >= maxInFlight) {
+                    buffers.push(writeNext(inFlight, bufferedWriter, lineSeparator));
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                buffers.push(writeNext(inFlight, bufferedWriter, lineSeparator));
+            }
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+            executorService.shutdownNow();
+        }
+
         if (count > 0) {
             bufferedWriter.write("</topographicPlaces>");
             bufferedWriter.write(lineSeparator);
         }
     }
+
+    private CharArrayWriter writeNext(Deque<Future<MarshalledPlace>> inFlight, Writer writer, String lineSeparator) throws InterruptedException, JAXBException, XMLStreamException, IOException {
+        MarshalledPlace marshalledPlace;
+        try {
+            marshalledPlace = inFlight.remove().get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof JAXBException jaxbException) {
+                throw jaxbException;
+            }
+            if (e.getCause() instanceof XMLStreamException xmlStreamException) {
+                throw xmlStreamException;
+            }
+            throw new RuntimeException("Marshalling topographic place failed: " + e.getCause().getMessage(), e.getCause());
+        }
+        logger.debug("Writing marshalled topographic place {}", marshalledPlace.sequenceNumber());
+        marshalledPlace.buffer().writeTo(writer);
+        writer.write(lineSeparator);
+        return marshalledPlace.buffer();
+    }
+
+    private PlaceSerializer placeSerializer(ThreadLocal<PlaceSerializer> placeSerializers) throws JAXBException {
+        PlaceSerializer placeSerializer = placeSerializers.get();
+        if (placeSerializer == null) {
+            placeSerializer = createPlaceSerializer();
+            placeSerializers.set(placeSerializer);
+        }
+        return placeSerializer;
+    }
+
+    @FunctionalInterface
+    private interface PlaceSerializer {
+        void write(TopographicPlace topographicPlace, Writer writer) throws JAXBException, XMLStreamException;
+    }
+
+    private record MarshalledPlace(long sequenceNumber, CharArrayWriter buffer) {
+    }
 }
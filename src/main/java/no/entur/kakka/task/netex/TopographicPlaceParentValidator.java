@@ -0,0 +1,98 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.task.netex;
+
+import no.entur.kakka.exceptions.KakkaException;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Validates the parent refs of topographic places against their geometry: localities against counties, and boroughs and
+ * places against localities.
+ * <p>
+ * Places are collected as they are read, keeping the polygons of counties and localities but only a representative point
+ * of each child. Once all places are read, one spatial index is built per parent level and the children are resolved
+ * in parallel. Children are not validated if their parent level was not read at all.
+ * <p>
+ * The geometries validated are the ones written to NeTEx, ie after any simplification. Thread safe for collecting.
+ */
+public class TopographicPlaceParentValidator implements Consumer<TopographicPlaceAdapter> {
+
+    private final Map<String, Geometry> counties = new ConcurrentHashMap<>();
+
+    private final Map<String, Geometry> localities = new ConcurrentHashMap<>();
+
+    private final Queue<Child> children = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void accept(TopographicPlaceAdapter adapter) {
+        if (!adapter.isValid()) {
+            return;
+        }
+        Geometry geometry = adapter.getDefaultGeometry();
+        if (geometry == null || geometry.isEmpty()) {
+            return;
+        }
+        switch (adapter.getType()) {
+            case COUNTY -> counties.put(adapter.getId(), geometry);
+            case LOCALITY -> {
+                localities.put(adapter.getId(), geometry);
+                children.add(new Child(adapter.getType(), adapter.getId(), adapter.getParentId(), AdministrativeUnitIndex.representativePoint(geometry)));
+            }
+            case BOROUGH, PLACE -> children.add(new Child(adapter.getType(), adapter.getId(), adapter.getParentId(), AdministrativeUnitIndex.representativePoint(geometry)));
+            default -> {
+                // Countries have no parent
+            }
+        }
+    }
+
+    public ParentValidationReport validate(int parallelism) {
+        AdministrativeUnitIndex countyIndex = new AdministrativeUnitIndex(counties);
+        AdministrativeUnitIndex localityIndex = new AdministrativeUnitIndex(localities);
+        ParentValidationReport report = new ParentValidationReport();
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            pool.submit(() -> children.parallelStream().forEach(child -> {
+                AdministrativeUnitIndex parentIndex = child.type() == TopographicPlaceAdapter.Type.LOCALITY ? countyIndex : localityIndex;
+                if (parentIndex.size() > 0) {
+                    report.record(child.type(), child.id(), child.parentId(), parentIndex.findContaining(child.point()));
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KakkaException("Interrupted while validating parent refs", e);
+        } catch (ExecutionException e) {
+            throw new KakkaException("Failed to validate parent refs: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return report;
+    }
+
+    private record Child(TopographicPlaceAdapter.Type type, String id, String parentId, Point point) {
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.task.netex;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.rutebanken.netex.model.TopographicPlace;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded hand-over of topographic places from the reader stage to the writer stage of a conversion.
+ * <p>
+ * Records the number of places passing through each stage, how long the reader is stalled on a full queue and how long
+ * the writer is stalled on an empty queue. The total depth of all open queues is exposed as a gauge.
+ */
+class TopographicPlaceQueue extends LinkedBlockingDeque<TopographicPlace> implements AutoCloseable {
+
+    static final String STAGE_READER = "reader";
+    static final String STAGE_WRITER = "writer";
+
+    static final String POISON_PILL_ID = "POISON";
+
+    private static final Set<TopographicPlaceQueue> OPEN_QUEUES = ConcurrentHashMap.newKeySet();
+
+    static {
+        Gauge.builder("kakka.topographic.place.queue.depth", OPEN_QUEUES, queues -> queues.stream().mapToInt(TopographicPlaceQueue::size).sum())
+                .description("Topographic places read but not yet taken by the NeTEx writer")
+                .register(Metrics.globalRegistry);
+    }
+
+    private static final Counter READER_PLACES = placesCounter(STAGE_READER);
+    private static final Counter WRITER_PLACES = placesCounter(STAGE_WRITER);
+    private static final Timer READER_STALL = stallTimer(STAGE_READER);
+    private static final Timer WRITER_STALL = stallTimer(STAGE_WRITER);
+
+    TopographicPlaceQueue(int capacity) {
+        super(capacity);
+        OPEN_QUEUES.add(this);
+    }
+
+    /**
+     * Time spent in a stage, to be divided by the places counted for the stage to get its throughput.
+     */
+    static Timer stageTimer(String stage) {
+        return Metrics.timer("kakka.topographic.place.stage.duration", "stage", stage);
+    }
+
+    @Override
+    public void put(TopographicPlace topographicPlace) throws InterruptedException {
+        if (!offerLast(topographicPlace)) {
+            long start = System.nanoTime();
+            super.put(topographicPlace);
+            READER_STALL.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        READER_PLACES.increment();
+    }
+
+    @Override
+    public boolean add(TopographicPlace topographicPlace) {
+        super.add(topographicPlace);
+        READER_PLACES.increment();
+        return true;
+    }
+
+    @Override
+    public TopographicPlace take() throws InterruptedException {
+        TopographicPlace topographicPlace = pollFirst();
+        if (topographicPlace == null) {
+            long start = System.nanoTime();
+            topographicPlace = super.take();
+            WRITER_STALL.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!POISON_PILL_ID.equals(topographicPlace.getId())) {
+            WRITER_PLACES.increment();
+        }
+        return topographicPlace;
+    }
+
+    /**
+     * Signal the writer that there are no more places, without counting it as a place read. Blocks while the queue is full.
+     */
+    void putPoisonPill() throws InterruptedException {
+        TopographicPlace poisonPill = new TopographicPlace();
+        poisonPill.setId(POISON_PILL_ID);
+        putLast(poisonPill);
+    }
+
+    @Override
+    public void close() {
+        OPEN_QUEUES.remove(this);
+    }
+
+    private static Counter placesCounter(String stage) {
+        return Metrics.counter("kakka.topographic.place.stage.places", "stage", stage);
+    }
+
+    private static Timer stallTimer(String stage) {
+        return Timer.builder("kakka.topographic.place.queue.stall")
+                .description("Time a conversion stage waits for the other, on a full queue for the reader and an empty queue for the writer")
+                .tag("stage", stage)
+                .register(Metrics.globalRegistry);
+    }
+}
@@ -14,6 +14,7 @@
  *
  */
 
+
 package no.entur.kakka.task.netex;
 
 
@@ -21,13 +22,20 @@ import org.rutebanken.netex.model.MultilingualString;
 import org.rutebanken.netex.model.TopographicPlace;
 
 import java.io.IOException;
-import java.util.concurrent.BlockingQueue;
+import java.util.stream.Stream;
 
+/**
+ * Source of topographic places, pulled by the consumer at its own pace.
+ */
 public interface TopographicPlaceReader {
 
     String getParticipantRef();
 
     MultilingualString getDescription();
 
-    void addToQueue(BlockingQueue<TopographicPlace> queue) throws IOException, InterruptedException;
+    /**
+     * Open a stream of places in read order. Input is read as the stream is consumed, and the stream must be closed to
+     * release it. Failures while reading are thrown from the stream as unchecked exceptions.
+     */
+    Stream<TopographicPlace> stream() throws IOException;
 }
@@ -0,0 +1,238 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.netex;
+
+import jakarta.xml.bind.JAXBElement;
+import net.opengis.gml._3.AbstractRingType;
+import net.opengis.gml._3.DirectPositionListType;
+import net.opengis.gml._3.LinearRingType;
+import net.opengis.gml._3.PolygonType;
+import org.rutebanken.netex.model.CountryRef;
+import org.rutebanken.netex.model.MultilingualString;
+import org.rutebanken.netex.model.TopographicPlace;
+import org.rutebanken.netex.model.TopographicPlaceDescriptor_VersionedChildStructure;
+import org.rutebanken.netex.model.TopographicPlaceRefStructure;
+import org.rutebanken.netex.model.TopographicPlace_VersionStructure;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes a TopographicPlace as a NeTEx XML fragment with StAX, as an alternative to marshalling with JAXB.
+ * <p>
+ * Only the elements set by {@link TopographicPlaceMapper} are written: name, polygon, iso code, descriptors, type,
+ * country ref and parent ref, in the order given by the NeTEx XSD. The posList is formatted directly into a char buffer,
+ * without building a string per coordinate.
+ * <p>
+ * Not thread safe, use one instance per thread.
+ */
+public class TopographicPlaceStaxSerializer {
+
+    public static final String NETEX_NAMESPACE = "http://www.netex.org.uk/netex";
+
+    public static final String GML_NAMESPACE = "http://www.opengis.net/gml/3.2";
+
+    private static final String GML_PREFIX = "gml";
+
+    private static final int POS_LIST_CHUNK_SIZE = 8 * 1024;
+
+    private final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newFactory();
+
+    private final StringBuilder posList = new StringBuilder(POS_LIST_CHUNK_SIZE + 64);
+
+    private final char[] posListChunk = new char[POS_LIST_CHUNK_SIZE + 64];
+
+    /**
+     * Write the topographic place to writer. The writer is flushed, but not closed.
+     */
+    public void write(TopographicPlace topographicPlace, Writer writer) throws XMLStreamException {
+        XMLStreamWriter xml = xmlOutputFactory.createXMLStreamWriter(writer);
+        try {
+            write(topographicPlace, xml);
+            xml.flush();
+        } finally {
+            xml.close();
+        }
+    }
+
+    public void write(TopographicPlace topographicPlace, XMLStreamWriter xml) throws XMLStreamException {
+        xml.setDefaultNamespace(NETEX_NAMESPACE);
+        xml.setPrefix(GML_PREFIX, GML_NAMESPACE);
+
+        xml.writeStartElement(NETEX_NAMESPACE, "TopographicPlace");
+        xml.writeDefaultNamespace(NETEX_NAMESPACE);
+        xml.writeNamespace(GML_PREFIX, GML_NAMESPACE);
+        writeAttribute(xml, "version", topographicPlace.getVersion());
+        if (topographicPlace.getModification() != null) {
+            xml.writeAttribute("modification", topographicPlace.getModification().value());
+        }
+        writeAttribute(xml, "id", topographicPlace.getId());
+
+        writeMultilingualString(xml, "Name", topographicPlace.getName());
+        writePolygon(xml, topographicPlace.getPolygon());
+        writeSimpleElement(xml, "IsoCode", topographicPlace.getIsoCode());
+        writeDescriptor(xml, "Descriptor", topographicPlace.getDescriptor());
+        writeAlternativeDescriptors(xml, topographicPlace.getAlternativeDescriptors());
+        if (topographicPlace.getTopographicPlaceType() != null) {
+            writeSimpleElement(xml, "TopographicPlaceType", topographicPlace.getTopographicPlaceType().value());
+        }
+        writeCountryRef(xml, topographicPlace.getCountryRef());
+        writeParentRef(xml, topographicPlace.getParentTopographicPlaceRef());
+
+        xml.writeEndElement();
+    }
+
+    private void writeMultilingualString(XMLStreamWriter xml, String name, MultilingualString multilingualString) throws XMLStreamException {
+        if (multilingualString == null) {
+            return;
+        }
+        xml.writeStartElement(NETEX_NAMESPACE, name);
+        writeAttribute(xml, "lang", multilingualString.getLang());
+        if (multilingualString.getValue() != null) {
+            xml.writeCharacters(multilingualString.getValue());
+        }
+        xml.writeEndElement();
+    }
+
+    private void writeDescriptor(XMLStreamWriter xml, String name, TopographicPlaceDescriptor_VersionedChildStructure descriptor) throws XMLStreamException {
+        if (descriptor == null) {
+            return;
+        }
+        xml.writeStartElement(NETEX_NAMESPACE, name);
+        writeMultilingualString(xml, "Name", descriptor.getName());
+        xml.writeEndElement();
+    }
+
+    private void writeAlternativeDescriptors(XMLStreamWriter xml, TopographicPlace_VersionStructure.AlternativeDescriptors alternativeDescriptors) throws XMLStreamException {
+        if (alternativeDescriptors == null || alternativeDescriptors.getTopographicPlaceDescriptor().isEmpty()) {
+            return;
+        }
+        xml.writeStartElement(NETEX_NAMESPACE, "alternativeDescriptors");
+        for (TopographicPlaceDescriptor_VersionedChildStructure descriptor : alternativeDescriptors.getTopographicPlaceDescriptor()) {
+            writeDescriptor(xml, "TopographicPlaceDescriptor", descriptor);
+        }
+        xml.writeEndElement();
+    }
+
+    private void writeCountryRef(XMLStreamWriter xml, CountryRef countryRef) throws XMLStreamException {
+        if (countryRef == null) {
+            return;
+        }
+        xml.writeEmptyElement(NETEX_NAMESPACE, "CountryRef");
+        if (countryRef.getRef() != null) {
+            xml.writeAttribute("ref", countryRef.getRef().value());
+        }
+    }
+
+    private void writeParentRef(XMLStreamWriter xml, TopographicPlaceRefStructure parentRef) throws XMLStreamException {
+        if (parentRef == null) {
+            return;
+        }
+        xml.writeEmptyElement(NETEX_NAMESPACE, "ParentTopographicPlaceRef");
+        writeAttribute(xml, "ref", parentRef.getRef());
+        writeAttribute(xml, "version", parentRef.getVersion());
+    }
+
+    private void writePolygon(XMLStreamWriter xml, PolygonType polygon) throws XMLStreamException {
+        if (polygon == null) {
+            return;
+        }
+        xml.writeStartElement(GML_NAMESPACE, "Polygon");
+        if (polygon.getId() != null) {
+            xml.writeAttribute(GML_PREFIX, GML_NAMESPACE, "id", polygon.getId());
+        }
+        writeAttribute(xml, "srsName", polygon.getSrsName());
+        if (polygon.getSrsDimension() != null) {
+            xml.writeAttribute("srsDimension", polygon.getSrsDimension().toString());
+        }
+
+        if (polygon.getExterior() != null && polygon.getExterior().getAbstractRing() != null) {
+            JAXBElement<? extends AbstractRingType> ring = polygon.getExterior().getAbstractRing();
+            if (ring.getValue() instanceof LinearRingType linearRing) {
+                xml.writeStartElement(GML_NAMESPACE, "exterior");
+                xml.writeStartElement(GML_NAMESPACE, "LinearRing");
+                writePosList(xml, linearRing.getPosList());
+                xml.writeEndElement();
+                xml.writeEndElement();
+            }
+        }
+        xml.writeEndElement();
+    }
+
+    /**
+     * Format coordinates the same way as JAXB does for xsd:double lists, in chunks through a reused char buffer.
+     */
+    private void writePosList(XMLStreamWriter xml, DirectPositionListType positionList) throws XMLStreamException {
+        if (positionList == null) {
+            return;
+        }
+        xml.writeStartElement(GML_NAMESPACE, "posList");
+        List<Double> values = positionList.getValue();
+        PosListValues primitiveValues = values instanceof PosListValues posListValues ? posListValues : null;
+        posList.setLength(0);
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                posList.append(' ');
+            }
+            appendDouble(primitiveValues != null ? primitiveValues.getDouble(i) : values.get(i));
+            if (posList.length() >= POS_LIST_CHUNK_SIZE) {
+                flushPosList(xml);
+            }
+        }
+        flushPosList(xml);
+        xml.writeEndElement();
+    }
+
+    private void appendDouble(double value) {
+        if (Double.isNaN(value)) {
+            posList.append("NaN");
+        } else if (value == Double.POSITIVE_INFINITY) {
+            posList.append("INF");
+        } else if (value == Double.NEGATIVE_INFINITY) {
+            posList.append("-INF");
+        } else {
+            posList.append(value);
+        }
+    }
+
+    private void flushPosList(XMLStreamWriter xml) throws XMLStreamException {
+        int length = posList.length();
+        if (length > 0) {
+            posList.getChars(0, length, posListChunk, 0);
+            xml.writeCharacters(posListChunk, 0, length);
+            posList.setLength(0);
+        }
+    }
+
+    private void writeSimpleElement(XMLStreamWriter xml, String name, String value) throws XMLStreamException {
+        if (value == null) {
+            return;
+        }
+        xml.writeStartElement(NETEX_NAMESPACE, name);
+        xml.writeCharacters(value);
+        xml.writeEndElement();
+    }
+
+    private void writeAttribute(XMLStreamWriter xml, String name, String value) throws XMLStreamException {
+        if (value != null) {
+            xml.writeAttribute(name, value);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.netex.cache;
+
+import no.entur.kakka.task.netex.TopographicPlaceAdapter;
+import org.locationtech.jts.geom.Geometry;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Topographic place read from a {@link TopographicPlaceCache}, with all values already resolved.
+ */
+class CachedTopographicPlaceAdapter implements TopographicPlaceAdapter {
+
+    private final String id;
+    private final String isoCode;
+    private final String parentId;
+    private final String name;
+    private final Type type;
+    private final Geometry defaultGeometry;
+    private final Map<String, String> alternativeNames;
+    private final String countryRef;
+    private final List<String> categories;
+    private final boolean valid;
+
+    CachedTopographicPlaceAdapter(String id, String isoCode, String parentId, String name, Type type, Geometry defaultGeometry,
+                                  Map<String, String> alternativeNames, String countryRef, List<String> categories, boolean valid) {
+        this.id = id;
+        this.isoCode = isoCode;
+        this.parentId = parentId;
+        this.name = name;
+        this.type = type;
+        this.defaultGeometry = defaultGeometry;
+        this.alternativeNames = alternativeNames;
+        this.countryRef = countryRef;
+        this.categories = categories;
+        this.valid = valid;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String getIsoCode() {
+        return isoCode;
+    }
+
+    @Override
+    public String getParentId() {
+        return parentId;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Type getType() {
+        return type;
+    }
+
+    @Override
+    public Geometry getDefaultGeometry() {
+        return defaultGeometry;
+    }
+
+    @Override
+    public Map<String, String> getAlternativeNames() {
+        return alternativeNames;
+    }
+
+    @Override
+    public String getCountryRef() {
+        return countryRef;
+    }
+
+    @Override
+    public List<String> getCategories() {
+        return categories;
+    }
+
+    @Override
+    public boolean isValid() {
+        return valid;
+    }
+}
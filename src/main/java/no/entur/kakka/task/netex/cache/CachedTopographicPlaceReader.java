@@ -0,0 +1,116 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.netex.cache;
+
+import no.entur.kakka.task.netex.TopographicPlaceAdapter;
+import no.entur.kakka.task.netex.TopographicPlaceMapper;
+import no.entur.kakka.task.netex.TopographicPlaceReader;
+import org.rutebanken.netex.model.MultilingualString;
+import org.rutebanken.netex.model.TopographicPlace;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Kartverket administrative units read from {@link TopographicPlaceCache} files instead of SOSI files, with the same
+ * participant ref and description as the SOSI reader.
+ */
+public class CachedTopographicPlaceReader implements TopographicPlaceReader {
+    private static final String LANGUAGE = "en";
+
+    private static final String PARTICIPANT_REF = "KVE";
+
+    private final Collection<File> cacheFiles;
+
+    private final TopographicPlaceMapper mapper = new TopographicPlaceMapper(PARTICIPANT_REF);
+
+    private Consumer<TopographicPlaceAdapter> adapterListener = adapter -> {
+    };
+
+    public CachedTopographicPlaceReader(Collection<File> cacheFiles) {
+        this.cacheFiles = cacheFiles;
+    }
+
+    /**
+     * Listener called with every adapter read, before it is mapped.
+     */
+    public void setAdapterListener(Consumer<TopographicPlaceAdapter> adapterListener) {
+        this.adapterListener = adapterListener;
+    }
+
+    /**
+     * Stream places from the cache files sorted by path, each in the order the places were written. Each file is mapped
+     * when the stream reaches it. Not Stream.flatMap, which buffers all places of a file when pulled through an iterator.
+     */
+    @Override
+    public Stream<TopographicPlace> stream() {
+        Iterator<File> files = cacheFiles.stream().sorted(Comparator.comparing(File::getPath)).iterator();
+        Iterator<TopographicPlaceAdapter> adapters = new Iterator<>() {
+            private Iterator<TopographicPlaceAdapter> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && files.hasNext()) {
+                    current = readCache(files.next()).iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public TopographicPlaceAdapter next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(adapters, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .peek(adapter -> adapterListener.accept(adapter))
+                .map(mapper::toTopographicPlace)
+                .filter(Objects::nonNull);
+    }
+
+    private static Stream<TopographicPlaceAdapter> readCache(File cacheFile) {
+        try {
+            return new TopographicPlaceCacheReader(cacheFile).stream();
+        } catch (IOException ioE) {
+            throw new UncheckedIOException("Failed to read topographic place cache: " + cacheFile.getName(), ioE);
+        }
+    }
+
+    @Override
+    public String getParticipantRef() {
+        return PARTICIPANT_REF;
+    }
+
+    @Override
+    public MultilingualString getDescription() {
+        return new MultilingualString().withLang(LANGUAGE).withValue("Kartverket administrative units");
+    }
+}
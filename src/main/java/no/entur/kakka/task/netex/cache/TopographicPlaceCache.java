@@ -0,0 +1,109 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.netex.cache;
+
+import no.entur.kakka.task.netex.GeometrySimplifier;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary columnar cache of parsed topographic places, so that a dataset only has to be parsed and projected once.
+ * <p>
+ * Layout, big endian:
+ * <pre>
+ * int magic, int version, string settingsKey, string sourceDigest, int count
+ * per section: long offset, long length
+ * sections, in the order of {@link Section}
+ * </pre>
+ * Each section holds one value per place, in the same order. Strings are stored as an int byte length, or -1 for null,
+ * followed by UTF-8 bytes. Geometries are split in a structure section (kind, ring and point counts) and a section with
+ * all WGS84 coordinates as interleaved lon/lat doubles.
+ */
+public final class TopographicPlaceCache {
+
+    static final int MAGIC = 0x4B4B5450;
+
+    static final int VERSION = 1;
+
+    static final byte GEOMETRY_NONE = 0;
+    static final byte GEOMETRY_POINT = 1;
+    static final byte GEOMETRY_POLYGON = 2;
+    static final byte GEOMETRY_MULTI_POLYGON = 3;
+
+    enum Section {TYPES, FLAGS, IDS, PARENT_IDS, ISO_CODES, COUNTRY_REFS, NAMES, ALTERNATIVE_NAMES, CATEGORIES, GEOMETRIES, COORDINATES}
+
+    private TopographicPlaceCache() {
+    }
+
+    /**
+     * Key of the settings that affect the cached places, ie geometry simplification. A cache written with other settings
+     * must not be used. Caches written while areas were simplified one by one have a key without the shared-arc marker,
+     * and are rebuilt.
+     */
+    public static String settingsKey(GeometrySimplifier simplifier) {
+        return "simplification=shared-arcs:" + simplifier.describeTolerances();
+    }
+
+    /**
+     * Read the header from the start of a cache, without reading the places.
+     */
+    public static Header readHeader(InputStream inputStream) throws IOException {
+        DataInputStream input = new DataInputStream(inputStream);
+        int magic = input.readInt();
+        if (magic != MAGIC) {
+            throw new IOException("Not a topographic place cache, unexpected magic number: " + Integer.toHexString(magic));
+        }
+        int version = input.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported topographic place cache version: " + version);
+        }
+        return new Header(readString(input), readString(input), input.readInt());
+    }
+
+    static void writeString(DataOutput output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    static String readString(DataInput input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param settingsKey  see {@link #settingsKey(GeometrySimplifier)}
+     * @param sourceDigest digest of the dataset the places were read from
+     * @param count        number of places
+     */
+    public record Header(String settingsKey, String sourceDigest, int count) {
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.netex.cache;
+
+import no.entur.kakka.task.netex.TopographicPlaceAdapter;
+import no.entur.kakka.task.netex.cache.TopographicPlaceCache.Section;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Read topographic places from a {@link TopographicPlaceCache} file.
+ * <p>
+ * The file is memory mapped, and places are decoded one at a time as the stream is consumed. Coordinates are copied
+ * straight from the mapped file into packed coordinate sequences. The mapping is released when the reader and its
+ * streams are no longer referenced.
+ */
+public class TopographicPlaceCacheReader {
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+
+    private static final TopographicPlaceAdapter.Type[] TYPES = TopographicPlaceAdapter.Type.values();
+
+    private final TopographicPlaceCache.Header header;
+
+    private final ByteBuffer[] sections = new ByteBuffer[Section.values().length];
+
+    public TopographicPlaceCacheReader(File file) throws IOException {
+        long[] offsets = new long[sections.length];
+        long[] lengths = new long[sections.length];
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            header = TopographicPlaceCache.readHeader(input);
+            for (int i = 0; i < sections.length; i++) {
+                offsets[i] = input.readLong();
+                lengths[i] = input.readLong();
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Topographic place cache is too large to be mapped: " + file.getName() + " (" + channel.size() + " bytes)");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            for (int i = 0; i < sections.length; i++) {
+                if (offsets[i] + lengths[i] > channel.size()) {
+                    throw new IOException("Truncated topographic place cache: " + file.getName());
+                }
+                sections[i] = buffer.slice((int) offsets[i], (int) lengths[i]);
+            }
+        }
+    }
+
+    public TopographicPlaceCache.Header getHeader() {
+        return header;
+    }
+
+    /**
+     * Stream all places in the order they were written. The stream is sequential, and may be opened more than once.
+     */
+    public Stream<TopographicPlaceAdapter> stream() {
+        Iterator<TopographicPlaceAdapter> places = new Iterator<>() {
+            private final ByteBuffer types = section(Section.TYPES);
+            private final ByteBuffer flags = section(Section.FLAGS);
+            private final ByteBuffer ids = section(Section.IDS);
+            private final ByteBuffer parentIds = section(Section.PARENT_IDS);
+            private final ByteBuffer isoCodes = section(Section.ISO_CODES);
+            private final ByteBuffer countryRefs = section(Section.COUNTRY_REFS);
+            private final ByteBuffer names = section(Section.NAMES);
+            private final ByteBuffer alternativeNames = section(Section.ALTERNATIVE_NAMES);
+            private final ByteBuffer categories = section(Section.CATEGORIES);
+            private final ByteBuffer geometries = section(Section.GEOMETRIES);
+            private final DoubleBuffer coordinates = section(Section.COORDINATES).asDoubleBuffer();
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < header.count();
+            }
+
+            @Override
+            public TopographicPlaceAdapter next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                index++;
+                byte type = types.get();
+                boolean valid = flags.get() != 0;
+                return new CachedTopographicPlaceAdapter(readString(ids), readString(isoCodes), readString(parentIds), readString(names),
+                        type < 0 ? null : TYPES[type], readGeometry(geometries, coordinates), readAlternativeNames(alternativeNames),
+                        readString(countryRefs), readCategories(categories), valid);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliterator(places, header.count(), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private ByteBuffer section(Section section) {
+        return sections[section.ordinal()].duplicate();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> readAlternativeNames(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        if (size < 0) {
+            return null;
+        }
+        Map<String, String> alternativeNames = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            alternativeNames.put(readString(buffer), readString(buffer));
+        }
+        return alternativeNames;
+    }
+
+    private static List<String> readCategories(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        if (size < 0) {
+            return null;
+        }
+        List<String> categories = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            categories.add(readString(buffer));
+        }
+        return categories;
+    }
+
+    private static Geometry readGeometry(ByteBuffer structure, DoubleBuffer coordinates) {
+        byte kind = structure.get();
+        return switch (kind) {
+            case TopographicPlaceCache.GEOMETRY_NONE -> null;
+            case TopographicPlaceCache.GEOMETRY_POINT -> GEOMETRY_FACTORY.createPoint(readCoordinates(coordinates, 1));
+            case TopographicPlaceCache.GEOMETRY_POLYGON -> readPolygon(structure, coordinates);
+            case TopographicPlaceCache.GEOMETRY_MULTI_POLYGON -> {
+                Polygon[] polygons = new Polygon[structure.getInt()];
+                for (int i = 0; i < polygons.length; i++) {
+                    polygons[i] = readPolygon(structure, coordinates);
+                }
+                yield GEOMETRY_FACTORY.createMultiPolygon(polygons);
+            }
+            default -> throw new IllegalStateException("Unknown geometry kind in topographic place cache: " + kind);
+        };
+    }
+
+    private static Polygon readPolygon(ByteBuffer structure, DoubleBuffer coordinates) {
+        int numRings = structure.getInt();
+        LinearRing shell = readRing(structure, coordinates);
+        LinearRing[] holes = new LinearRing[numRings - 1];
+        for (int i = 0; i < holes.length; i++) {
+            holes[i] = readRing(structure, coordinates);
+        }
+        return GEOMETRY_FACTORY.createPolygon(shell, holes);
+    }
+
+    private static LinearRing readRing(ByteBuffer structure, DoubleBuffer coordinates) {
+        return GEOMETRY_FACTORY.createLinearRing(readCoordinates(coordinates, structure.getInt()));
+    }
+
+    private static PackedCoordinateSequence.Double readCoordinates(DoubleBuffer coordinates, int numPoints) {
+        double[] packed = new double[numPoints * 2];
+        coordinates.get(packed);
+        return new PackedCoordinateSequence.Double(packed, 2, 0);
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.netex.cache;
+
+import no.entur.kakka.task.netex.TopographicPlaceAdapter;
+import no.entur.kakka.task.netex.cache.TopographicPlaceCache.Section;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Write topographic places to a {@link TopographicPlaceCache} file.
+ * <p>
+ * Each section is written to its own temporary file next to the target while places are added, so only the current place
+ * is held in memory. The sections are concatenated into the target when the writer is closed. Places may be added from
+ * several threads.
+ */
+public class TopographicPlaceCacheWriter implements Consumer<TopographicPlaceAdapter>, Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File target;
+
+    private final String settingsKey;
+
+    private final String sourceDigest;
+
+    private final Map<Section, File> sectionFiles = new EnumMap<>(Section.class);
+
+    private final Map<Section, DataOutputStream> sections = new EnumMap<>(Section.class);
+
+    private int count;
+
+    private boolean closed;
+
+    public TopographicPlaceCacheWriter(File target, String settingsKey, String sourceDigest) throws IOException {
+        this.target = target;
+        this.settingsKey = settingsKey;
+        this.sourceDigest = sourceDigest;
+        for (Section section : Section.values()) {
+            File sectionFile = new File(target.getPath() + "." + section.name().toLowerCase());
+            sectionFiles.put(section, sectionFile);
+            sections.put(section, new DataOutputStream(new BufferedOutputStream(new FileOutputStream(sectionFile), BUFFER_SIZE)));
+        }
+    }
+
+    @Override
+    public synchronized void accept(TopographicPlaceAdapter adapter) {
+        if (closed) {
+            throw new IllegalStateException("Topographic place cache writer is closed");
+        }
+        try {
+            section(Section.TYPES).writeByte(adapter.getType() == null ? -1 : adapter.getType().ordinal());
+            section(Section.FLAGS).writeBoolean(adapter.isValid());
+            TopographicPlaceCache.writeString(section(Section.IDS), adapter.getId());
+            TopographicPlaceCache.writeString(section(Section.PARENT_IDS), adapter.getParentId());
+            TopographicPlaceCache.writeString(section(Section.ISO_CODES), adapter.getIsoCode());
+            TopographicPlaceCache.writeString(section(Section.COUNTRY_REFS), adapter.getCountryRef());
+            TopographicPlaceCache.writeString(section(Section.NAMES), adapter.getName());
+            writeAlternativeNames(adapter.getAlternativeNames());
+            writeCategories(adapter.getCategories());
+            writeGeometry(adapter.getDefaultGeometry());
+            count++;
+        } catch (IOException ioE) {
+            throw new UncheckedIOException("Failed to write topographic place cache: " + ioE.getMessage(), ioE);
+        }
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Write the header and concatenate the sections into the target file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            for (DataOutputStream section : sections.values()) {
+                section.close();
+            }
+
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            DataOutputStream headerOutput = new DataOutputStream(header);
+            headerOutput.writeInt(TopographicPlaceCache.MAGIC);
+            headerOutput.writeInt(TopographicPlaceCache.VERSION);
+            TopographicPlaceCache.writeString(headerOutput, settingsKey);
+            TopographicPlaceCache.writeString(headerOutput, sourceDigest);
+            headerOutput.writeInt(count);
+
+            long offset = header.size() + (long) Section.values().length * 2 * Long.BYTES;
+            for (Section section : Section.values()) {
+                long length = sectionFiles.get(section).length();
+                headerOutput.writeLong(offset);
+                headerOutput.writeLong(length);
+                offset += length;
+            }
+
+            try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(target), BUFFER_SIZE)) {
+                header.writeTo(outputStream);
+                for (Section section : Section.values()) {
+                    Files.copy(sectionFiles.get(section).toPath(), outputStream);
+                }
+            }
+        } finally {
+            sectionFiles.values().forEach(File::delete);
+        }
+    }
+
+    private DataOutputStream section(Section section) {
+        return sections.get(section);
+    }
+
+    private void writeAlternativeNames(Map<String, String> alternativeNames) throws IOException {
+        DataOutputStream section = section(Section.ALTERNATIVE_NAMES);
+        if (alternativeNames == null) {
+            section.writeInt(-1);
+            return;
+        }
+        section.writeInt(alternativeNames.size());
+        for (Map.Entry<String, String> alternativeName : alternativeNames.entrySet()) {
+            TopographicPlaceCache.writeString(section, alternativeName.getKey());
+            TopographicPlaceCache.writeString(section, alternativeName.getValue());
+        }
+    }
+
+    private void writeCategories(List<String> categories) throws IOException {
+        DataOutputStream section = section(Section.CATEGORIES);
+        if (categories == null) {
+            section.writeInt(-1);
+            return;
+        }
+        section.writeInt(categories.size());
+        for (String category : categories) {
+            TopographicPlaceCache.writeString(section, category);
+        }
+    }
+
+    private void writeGeometry(Geometry geometry) throws IOException {
+        DataOutputStream structure = section(Section.GEOMETRIES);
+        if (geometry == null || geometry.isEmpty()) {
+            structure.writeByte(TopographicPlaceCache.GEOMETRY_NONE);
+        } else if (geometry instanceof Point point) {
+            structure.writeByte(TopographicPlaceCache.GEOMETRY_POINT);
+            writeCoordinates(point.getCoordinateSequence());
+        } else if (geometry instanceof Polygon polygon) {
+            structure.writeByte(TopographicPlaceCache.GEOMETRY_POLYGON);
+            writePolygon(polygon);
+        } else if (geometry instanceof MultiPolygon multiPolygon) {
+            structure.writeByte(TopographicPlaceCache.GEOMETRY_MULTI_POLYGON);
+            structure.writeInt(multiPolygon.getNumGeometries());
+            for (int i = 0; i < multiPolygon.getNumGeometries(); i++) {
+                writePolygon((Polygon) multiPolygon.getGeometryN(i));
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported geometry type for topographic place cache: " + geometry.getGeometryType());
+        }
+    }
+
+    private void writePolygon(Polygon polygon) throws IOException {
+        section(Section.GEOMETRIES).writeInt(polygon.getNumInteriorRing() + 1);
+        writeRing(polygon.getExteriorRing());
+        for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+            writeRing(polygon.getInteriorRingN(i));
+        }
+    }
+
+    private void writeRing(LineString ring) throws IOException {
+        CoordinateSequence coordinates = ring.getCoordinateSequence();
+        section(Section.GEOMETRIES).writeInt(coordinates.size());
+        writeCoordinates(coordinates);
+    }
+
+    private void writeCoordinates(CoordinateSequence coordinates) throws IOException {
+        DataOutputStream section = section(Section.COORDINATES);
+        for (int i = 0; i < coordinates.size(); i++) {
+            section.writeDouble(coordinates.getX(i));
+            section.writeDouble(coordinates.getY(i));
+        }
+    }
+}
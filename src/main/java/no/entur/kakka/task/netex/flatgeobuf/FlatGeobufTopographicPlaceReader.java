@@ -0,0 +1,124 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.netex.flatgeobuf;
+
+import no.entur.kakka.task.flatgeobuf.FlatGeobufFeatureWrapperFactory;
+import no.entur.kakka.task.flatgeobuf.FlatGeobufReader;
+import no.entur.kakka.task.geojson.GeojsonFeature;
+import no.entur.kakka.task.netex.TopographicPlaceMapper;
+import no.entur.kakka.task.netex.TopographicPlaceReader;
+import org.locationtech.jts.geom.Envelope;
+import org.rutebanken.netex.model.MultilingualString;
+import org.rutebanken.netex.model.TopographicPlace;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * For reading topographic places from FlatGeobuf files, optionally only those with a bounding box intersecting a given
+ * bounding box.
+ */
+public class FlatGeobufTopographicPlaceReader implements TopographicPlaceReader {
+
+    private static final String LANGUAGE = "en";
+
+    private final FlatGeobufFeatureWrapperFactory wrapperFactory;
+
+    private final Collection<File> files;
+
+    private final Envelope boundingBox;
+
+    private final String participantRef;
+
+    private final TopographicPlaceMapper mapper;
+
+    public FlatGeobufTopographicPlaceReader(FlatGeobufFeatureWrapperFactory wrapperFactory, String participantRef, Collection<File> files) {
+        this(wrapperFactory, participantRef, files, null);
+    }
+
+    /**
+     * @param boundingBox WGS84 bounding box to read places within, or null to read all places
+     */
+    public FlatGeobufTopographicPlaceReader(FlatGeobufFeatureWrapperFactory wrapperFactory, String participantRef, Collection<File> files,
+                                            Envelope boundingBox) {
+        this.wrapperFactory = wrapperFactory;
+        this.participantRef = participantRef;
+        this.files = files;
+        this.boundingBox = boundingBox;
+        this.mapper = new TopographicPlaceMapper(participantRef);
+    }
+
+    /**
+     * Features are decoded one at a time as the stream is consumed, and each file is mapped when the stream reaches it.
+     * Not Stream.flatMap, which buffers all features of a file when pulled through an iterator.
+     */
+    @Override
+    public Stream<TopographicPlace> stream() {
+        Iterator<File> remainingFiles = files.iterator();
+        Iterator<GeojsonFeature> features = new Iterator<>() {
+            private Iterator<GeojsonFeature> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && remainingFiles.hasNext()) {
+                    current = read(remainingFiles.next()).iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public GeojsonFeature next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(features, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .map(feature -> mapper.toTopographicPlace(wrapperFactory.createWrapper(feature)))
+                .filter(Objects::nonNull);
+    }
+
+    private Stream<GeojsonFeature> read(File file) {
+        try {
+            FlatGeobufReader reader = new FlatGeobufReader(file, FlatGeobufFeatureWrapperFactory.PROPERTY_NAMES);
+            return boundingBox == null ? reader.stream() : reader.stream(boundingBox);
+        } catch (IOException ioE) {
+            throw new UncheckedIOException("Failed to read FlatGeobuf file: " + file.getName(), ioE);
+        }
+    }
+
+    @Override
+    public String getParticipantRef() {
+        return participantRef;
+    }
+
+    @Override
+    public MultilingualString getDescription() {
+        return new MultilingualString().withLang(LANGUAGE).withValue("Topographic places from FlatGeobuf");
+    }
+}
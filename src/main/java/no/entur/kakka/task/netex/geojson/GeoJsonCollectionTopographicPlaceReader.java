@@ -16,22 +16,34 @@
 
 package no.entur.kakka.task.netex.geojson;
 
+import no.entur.kakka.task.geojson.GeojsonFeatureParser;
 import no.entur.kakka.task.geojson.GeojsonFeatureWrapperFactory;
 import no.entur.kakka.task.netex.TopographicPlaceAdapter;
 import no.entur.kakka.task.netex.TopographicPlaceMapper;
 import no.entur.kakka.task.netex.TopographicPlaceReader;
 import org.apache.commons.io.FileUtils;
-import org.geotools.feature.FeatureIterator;
-import org.geotools.geojson.feature.FeatureJSON;
 import org.rutebanken.netex.model.MultilingualString;
 import org.rutebanken.netex.model.TopographicPlace;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.BlockingQueue;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * For reading collections of features from geojson files.
+ * <p>
+ * The features of a file, such as the counties or municipalities, share boundaries. When geometries are simplified, all
+ * features of a file are read before their polygons are simplified together.
  */
 public class GeoJsonCollectionTopographicPlaceReader implements TopographicPlaceReader {
 
@@ -39,6 +51,7 @@ public class GeoJsonCollectionTopographicPlaceReader implements TopographicPlace
     private static final String PARTICIPANT_REF = "KVE";
     private final File[] files;
     private final GeojsonFeatureWrapperFactory wrapperFactory;
+    private final TopographicPlaceMapper mapper = new TopographicPlaceMapper(PARTICIPANT_REF);
 
 
     public GeoJsonCollectionTopographicPlaceReader(GeojsonFeatureWrapperFactory wrapperFactory, File... files) {
@@ -46,20 +59,89 @@ public class GeoJsonCollectionTopographicPlaceReader implements TopographicPlace
         this.wrapperFactory = wrapperFactory;
     }
 
-    public void addToQueue(BlockingQueue<TopographicPlace> queue) throws IOException, InterruptedException {
-        for (File file : files) {
-            FeatureJSON fJson = new FeatureJSON();
-            FeatureIterator<org.geotools.api.feature.simple.SimpleFeature> itr = fJson.streamFeatureCollection(FileUtils.openInputStream(file));
+    /**
+     * Features are parsed one at a time as the stream is consumed, with at most one file open. When geometries are
+     * simplified, the features of one file are held until the file is read.
+     */
+    @Override
+    public Stream<TopographicPlace> stream() {
+        AdapterChain adapters = new AdapterChain();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(adapters, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(adapters::close)
+                .map(mapper::toTopographicPlace)
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * Adapters for the features of all files in order. Not Stream.flatMap, which buffers all features of a file when pulled
+     * through an iterator.
+     */
+    private class AdapterChain implements Iterator<TopographicPlaceAdapter> {
+
+        private int nextFile;
+
+        private GeojsonFeatureParser parser;
+
+        private Iterator<TopographicPlaceAdapter> current = Collections.emptyIterator();
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                close();
+                if (nextFile == files.length) {
+                    return false;
+                }
+                current = open(files[nextFile++]);
+            }
+            return true;
+        }
 
-            while (itr.hasNext()) {
-                TopographicPlaceAdapter adapter = wrapperFactory.createWrapper(itr.next());
-                TopographicPlace topographicPlace = new TopographicPlaceMapper(adapter, PARTICIPANT_REF).toTopographicPlace();
+        @Override
+        public TopographicPlaceAdapter next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        private Iterator<TopographicPlaceAdapter> open(File file) {
+            try {
+                parser = new GeojsonFeatureParser(FileUtils.openInputStream(file), GeojsonFeatureWrapperFactory.PROPERTY_NAMES);
+            } catch (IOException ioE) {
+                throw new UncheckedIOException("Failed to read geojson file: " + file.getName(), ioE);
+            }
+            GeojsonFeatureParser features = parser;
+            Iterator<TopographicPlaceAdapter> adapters = new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return features.hasNext();
+                }
+
+                @Override
+                public TopographicPlaceAdapter next() {
+                    return wrapperFactory.createWrapper(features.next());
+                }
+            };
+            if (!wrapperFactory.getSimplifier().isEnabled()) {
+                return adapters;
+            }
+            List<TopographicPlaceAdapter> fileAdapters = new ArrayList<>();
+            adapters.forEachRemaining(fileAdapters::add);
+            close();
+            wrapperFactory.simplifyCoverage(fileAdapters);
+            return fileAdapters.iterator();
+        }
 
-                if (topographicPlace != null) {
-                    queue.put(topographicPlace);
+        private void close() {
+            if (parser != null) {
+                try {
+                    parser.close();
+                } catch (IOException ioE) {
+                    throw new UncheckedIOException("Failed to close geojson file: " + ioE.getMessage(), ioE);
+                } finally {
+                    parser = null;
                 }
             }
-            itr.close();
         }
     }
 
@@ -17,74 +17,169 @@
 package no.entur.kakka.task.netex.geojson;
 
 import no.entur.kakka.exceptions.KakkaException;
+import no.entur.kakka.task.geojson.GeojsonFeature;
+import no.entur.kakka.task.geojson.GeojsonFeatureParser;
 import no.entur.kakka.task.geojson.GeojsonFeatureWrapperFactory;
 import no.entur.kakka.task.netex.TopographicPlaceAdapter;
 import no.entur.kakka.task.netex.TopographicPlaceMapper;
 import no.entur.kakka.task.netex.TopographicPlaceReader;
 import org.apache.commons.io.FileUtils;
-import org.geotools.geojson.feature.FeatureJSON;
-import org.geotools.api.feature.simple.SimpleFeature;
+import org.apache.commons.io.function.IOSupplier;
 import org.rutebanken.netex.model.MultilingualString;
 import org.rutebanken.netex.model.TopographicPlace;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * For reading individual features from geojson files.
+ * <p>
+ * Sources are parsed straight from their input streams, so blobs need not be copied to disk first. With parallelism above
+ * one, sources are parsed and mapped concurrently on a bounded pool, while results are returned in source order.
+ * <p>
+ * Neighbouring countries share borders, so when geometries are simplified all sources are read before their polygons are
+ * simplified together.
  */
 public class GeoJsonSingleTopographicPlaceReader implements TopographicPlaceReader {
 
     private static final String LANGUAGE = "en";
     private static final String PARTICIPANT_REF = "WOF";
-    private final File[] files;
+    private final List<Source> sources;
+    private final int parallelism;
     private final GeojsonFeatureWrapperFactory wrapperFactory;
+    private final TopographicPlaceMapper mapper = new TopographicPlaceMapper(PARTICIPANT_REF);
 
     public GeoJsonSingleTopographicPlaceReader(GeojsonFeatureWrapperFactory wrapperFactory, File... files) {
-        this.files = files;
+        this(wrapperFactory, Stream.of(files).map(Source::of).toList(), 1);
+    }
+
+    /**
+     * @param parallelism max number of sources parsed concurrently, which is also the max number of parsed features held
+     *                    ahead of the consumer
+     */
+    public GeoJsonSingleTopographicPlaceReader(GeojsonFeatureWrapperFactory wrapperFactory, List<Source> sources, int parallelism) {
+        this.sources = sources;
+        this.parallelism = Math.max(1, parallelism);
         this.wrapperFactory = wrapperFactory;
     }
 
 
     public List<TopographicPlaceAdapter> read() {
-        List<TopographicPlaceAdapter> adapters = new ArrayList<>();
-        try {
-            for (File file : files) {
-                FeatureJSON fJson = new FeatureJSON();
-                InputStream inputStream = FileUtils.openInputStream(file);
-                SimpleFeature simpleFeature = fJson.readFeature(inputStream);
-
-                TopographicPlaceAdapter adapter = wrapperFactory.createWrapper(simpleFeature);
-                if (adapter != null) {
-                    adapters.add(adapter);
-                }
-                inputStream.close();
-            }
+        try (Stream<TopographicPlaceAdapter> adapters = parse(Function.identity())) {
+            return adapters.toList();
+        } catch (UncheckedIOException ioE) {
+            throw new KakkaException(ioE.getMessage(), ioE.getCause());
+        }
+    }
 
-        } catch (IOException ioE) {
-            throw new KakkaException("Failed to parse geojson file: " + ioE.getMessage(), ioE);
+
+    /**
+     * Sources are read as the stream is consumed. Closing the stream stops any parsing in progress.
+     */
+    @Override
+    public Stream<TopographicPlace> stream() {
+        return parse(mapper::toTopographicPlace);
+    }
+
+    private <T> Stream<T> parse(Function<TopographicPlaceAdapter, T> mapping) {
+        if (!wrapperFactory.getSimplifier().isEnabled()) {
+            return parseEach(mapping);
+        }
+        List<TopographicPlaceAdapter> adapters;
+        try (Stream<TopographicPlaceAdapter> parsed = parseEach(Function.identity())) {
+            adapters = parsed.toList();
         }
-        return adapters;
+        wrapperFactory.simplifyCoverage(adapters);
+        return adapters.stream().map(mapping).filter(Objects::nonNull);
     }
 
+    /**
+     * Parse each source, wrap its feature and apply the mapping, in source order. Mapped values that are null are dropped.
+     */
+    private <T> Stream<T> parseEach(Function<TopographicPlaceAdapter, T> mapping) {
+        Function<Source, T> parseAndMap = source -> {
+            TopographicPlaceAdapter adapter = wrapperFactory.createWrapper(readFeature(source));
+            return adapter == null ? null : mapping.apply(adapter);
+        };
+        if (parallelism == 1 || sources.size() <= 1) {
+            return sources.stream().map(parseAndMap).filter(Objects::nonNull);
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(parallelism, sources.size()),
+                Thread.ofPlatform().name("geojson-reader-", 0).daemon().factory());
+        Iterator<T> results = new Iterator<>() {
+            private final Deque<Future<T>> pending = new ArrayDeque<>();
+
+            private int nextSource;
 
-    public void addToQueue(BlockingQueue<TopographicPlace> queue) throws IOException, InterruptedException {
-        for (File file : files) {
-            FeatureJSON fJson = new FeatureJSON();
-            InputStream inputStream = FileUtils.openInputStream(file);
-            SimpleFeature simpleFeature = fJson.readFeature(inputStream);
+            @Override
+            public boolean hasNext() {
+                submitAhead();
+                return !pending.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    return pending.poll().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new KakkaException("Interrupted while parsing geojson", e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException runtimeException) {
+                        throw runtimeException;
+                    }
+                    throw new KakkaException("Failed to parse geojson: " + e.getCause().getMessage(), e.getCause());
+                }
+            }
 
-            TopographicPlaceAdapter adapter = wrapperFactory.createWrapper(simpleFeature);
-            TopographicPlace topographicPlace = new TopographicPlaceMapper(adapter, PARTICIPANT_REF).toTopographicPlace();
+            private void submitAhead() {
+                while (pending.size() < parallelism && nextSource < sources.size()) {
+                    Source source = sources.get(nextSource++);
+                    pending.add(executorService.submit(() -> parseAndMap.apply(source)));
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results, Spliterator.ORDERED), false)
+                .onClose(executorService::shutdownNow)
+                .filter(Objects::nonNull);
+    }
 
-            if (topographicPlace != null) {
-                queue.put(topographicPlace);
+    private GeojsonFeature readFeature(Source source) {
+        try (InputStream inputStream = source.opener().get()) {
+            if (inputStream == null) {
+                throw new IOException("Geojson file not found");
             }
-            inputStream.close();
+            try (GeojsonFeatureParser parser = new GeojsonFeatureParser(inputStream, GeojsonFeatureWrapperFactory.PROPERTY_NAMES)) {
+                if (!parser.hasNext()) {
+                    throw new IOException("No feature in geojson file");
+                }
+                return parser.next();
+            }
+        } catch (IOException ioE) {
+            throw new UncheckedIOException("Failed to parse geojson file: " + source.name(), ioE);
+        } catch (UncheckedIOException ioE) {
+            throw new UncheckedIOException("Failed to parse geojson file: " + source.name(), ioE.getCause());
         }
     }
 
@@ -97,4 +192,14 @@ public class GeoJsonSingleTopographicPlaceReader implements TopographicPlaceRead
     public MultilingualString getDescription() {
         return new MultilingualString().withLang(LANGUAGE).withValue("Whosonfirst neighbouring countries");
     }
-}
\ No newline at end of file
+
+    /**
+     * A named geojson file or blob, opened when it is parsed.
+     */
+    public record Source(String name, IOSupplier<InputStream> opener) {
+
+        public static Source of(File file) {
+            return new Source(file.getName(), () -> FileUtils.openInputStream(file));
+        }
+    }
+}
@@ -17,6 +17,8 @@
 package no.entur.kakka.task.netex.sosi;
 
 
+import no.entur.kakka.exceptions.KakkaException;
+import no.entur.kakka.task.netex.TopographicPlaceAdapter;
 import no.entur.kakka.task.netex.TopographicPlaceMapper;
 import no.entur.kakka.task.netex.TopographicPlaceReader;
 import no.entur.kakka.task.sosi.SosiElementWrapperFactory;
@@ -25,27 +27,194 @@ import org.rutebanken.netex.model.MultilingualString;
 import org.rutebanken.netex.model.TopographicPlace;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class SosiTopographicPlaceReader implements TopographicPlaceReader {
     private static final String LANGUAGE = "en";
 
     private static final String PARTICIPANT_REF = "KVE";
+
+    /**
+     * Max number of mapped places buffered per file while waiting for preceding files to be drained.
+     */
+    private static final int FILE_BUFFER_SIZE = 1000;
+
     private final Collection<File> sosiFiles;
 
     private final SosiElementWrapperFactory wrapperFactory;
 
+    private final int parallelism;
+
+    private final int elementParallelism;
+
+    private final TopographicPlaceMapper mapper = new TopographicPlaceMapper(PARTICIPANT_REF);
+
+    private Consumer<TopographicPlaceAdapter> adapterListener = adapter -> {
+    };
+
     public SosiTopographicPlaceReader(SosiElementWrapperFactory wrapperFactory, Collection<File> sosiFiles) {
+        this(wrapperFactory, sosiFiles, 1);
+    }
+
+    public SosiTopographicPlaceReader(SosiElementWrapperFactory wrapperFactory, Collection<File> sosiFiles, int parallelism) {
+        this(wrapperFactory, sosiFiles, parallelism, 1);
+    }
+
+    /**
+     * @param parallelism        number of files read concurrently
+     * @param elementParallelism number of threads used within each file to project curves and assemble areas
+     */
+    public SosiTopographicPlaceReader(SosiElementWrapperFactory wrapperFactory, Collection<File> sosiFiles, int parallelism, int elementParallelism) {
         this.sosiFiles = sosiFiles;
         this.wrapperFactory = wrapperFactory;
+        this.parallelism = Math.max(1, parallelism);
+        this.elementParallelism = Math.max(1, elementParallelism);
+    }
+
+    /**
+     * Listener called with every adapter read, before it is mapped. Called concurrently when reading in parallel.
+     */
+    public void setAdapterListener(Consumer<TopographicPlaceAdapter> adapterListener) {
+        this.adapterListener = adapterListener;
     }
 
-    public void addToQueue(BlockingQueue<TopographicPlace> queue) throws IOException, InterruptedException {
-        for (File file : sosiFiles) {
-            new SosiTopographicPlaceAdapterReader(wrapperFactory, new FileInputStream(file)).read().forEach(a -> queue.add(new TopographicPlaceMapper(a, getParticipantRef()).toTopographicPlace()));
+    /**
+     * Parse and map files concurrently on a bounded pool, while streaming places in a deterministic order: files sorted by
+     * path, then places in the order they are read from each file. Reading starts when the stream is opened. The pool is
+     * shut down once all files are read, and closing the stream stops it early. Its threads are daemon threads, so a stream
+     * that is neither exhausted nor closed does not keep the JVM alive.
+     * <p>
+     * Each file streams into its own bounded buffer, so a file that is ahead of the one currently being consumed will
+     * block rather than accumulate its whole output in memory.
+     */
+    @Override
+    public Stream<TopographicPlace> stream() {
+        List<File> files = sosiFiles.stream().sorted(Comparator.comparing(File::getPath)).toList();
+        if (files.isEmpty()) {
+            return Stream.empty();
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(parallelism, files.size()),
+                Thread.ofPlatform().name("sosi-reader-", 0).daemon().factory());
+        List<FileResult> fileResults = new ArrayList<>();
+        for (File file : files) {
+            FileResult fileResult = new FileResult(file);
+            executorService.execute(fileResult::read);
+            fileResults.add(fileResult);
+        }
+
+        Iterator<TopographicPlace> places = new Iterator<>() {
+            private int fileIndex;
+
+            private TopographicPlace next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && fileIndex < fileResults.size()) {
+                    next = fileResults.get(fileIndex).next();
+                    if (next == null) {
+                        fileIndex++;
+                        if (fileIndex == fileResults.size()) {
+                            executorService.shutdown();
+                        }
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public TopographicPlace next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                TopographicPlace topographicPlace = next;
+                next = null;
+                return topographicPlace;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(places, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(executorService::shutdownNow);
+    }
+
+    private static void put(BlockingQueue<TopographicPlace> queue, TopographicPlace topographicPlace) {
+        if (topographicPlace == null) {
+            return;
+        }
+        try {
+            queue.put(topographicPlace);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new KakkaException("Interrupted while adding topographic place to queue", ie);
+        }
+    }
+
+    /**
+     * Places read from a single file, handed over from the worker thread through a bounded buffer.
+     */
+    private class FileResult {
+
+        private final TopographicPlace endOfFile = new TopographicPlace();
+
+        private final BlockingQueue<TopographicPlace> buffer = new ArrayBlockingQueue<>(FILE_BUFFER_SIZE);
+
+        private final File file;
+
+        private volatile Throwable failure;
+
+        private FileResult(File file) {
+            this.file = file;
+        }
+
+        private void read() {
+            try {
+                new SosiTopographicPlaceAdapterReader(wrapperFactory, file, elementParallelism).stream(a -> {
+                    adapterListener.accept(a);
+                    put(buffer, mapper.toTopographicPlace(a));
+                });
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                try {
+                    buffer.put(endOfFile);
+                } catch (InterruptedException ie) {
+                    // Only interrupted when the consumer has given up, no one is waiting for the end of file
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        /**
+         * Next place from the file, or null when all places have been read.
+         */
+        private TopographicPlace next() {
+            TopographicPlace topographicPlace;
+            try {
+                topographicPlace = buffer.take();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new KakkaException("Interrupted while reading SOSI file: " + file.getName(), ie);
+            }
+            if (topographicPlace != endOfFile) {
+                return topographicPlace;
+            }
+            if (failure != null) {
+                throw new KakkaException("Failed to read SOSI file: " + file.getName(), failure);
+            }
+            return null;
         }
     }
 
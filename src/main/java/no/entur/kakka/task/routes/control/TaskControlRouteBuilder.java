@@ -50,8 +50,19 @@ public class TaskControlRouteBuilder extends BaseRouteBuilder {
     @Value("${pubsub.kakka.inbound.subscription.geocoder}")
     private String taskQueueSubscription;
 
-    private TaskMessage createMessageFromTaskTypes(Collection<TaskType> taskTypes) {
-        return new TaskMessage(taskTypes.stream().map(TaskType::getTaskTask).toList());
+    private TaskMessage createMessageFromTaskTypes(Collection<TaskType> taskTypes, boolean forceRun) {
+        return new TaskMessage(taskTypes.stream().map(TaskType::getTaskTask).map(task -> forceRun ? forcedRun(task) : task).toList());
+    }
+
+    /**
+     * Copy of a task that runs even if its input is unchanged, and updates Tiamat with all places rather than only changed ones.
+     */
+    private Task forcedRun(Task task) {
+        Task forcedTask = new Task(task.getPhase(), task.getSubStep(), task.getEndpoint());
+        forcedTask.getHeaders().putAll(task.getHeaders());
+        forcedTask.getHeaders().put(Constants.FORCE_RUN, true);
+        forcedTask.getHeaders().put(Constants.FULL_SYNC, true);
+        return forcedTask;
     }
 
     @Override
@@ -64,7 +75,7 @@ public class TaskControlRouteBuilder extends BaseRouteBuilder {
                 .routeId("task-start");
 
         from("direct:taskStartBatch")
-                .process(e -> e.getIn().setBody(createMessageFromTaskTypes(e.getIn().getBody(Collection.class)).toString()))
+                .process(e -> e.getIn().setBody(createMessageFromTaskTypes(e.getIn().getBody(Collection.class), e.getIn().getHeader(Constants.FORCE_RUN, false, Boolean.class)).toString()))
                 .to(taskQueueTopic)
                 .routeId("task-start-batch");
 
@@ -0,0 +1,177 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.routes.kartverket;
+
+import no.entur.kakka.routes.file.ZipFileUtils;
+import no.entur.kakka.services.BlobStoreService;
+import no.entur.kakka.task.netex.cache.TopographicPlaceCache;
+import no.entur.kakka.task.netex.cache.TopographicPlaceCacheWriter;
+import no.entur.kakka.task.sosi.SosiElementWrapperFactory;
+import no.entur.kakka.task.sosi.SosiTopographicPlaceAdapterReader;
+import org.apache.camel.Exchange;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keeps a {@link TopographicPlaceCache} of the administrative units in each downloaded Kartverket SOSI archive next to the
+ * archive in the blob store, so that the SOSI files are parsed and projected once per download instead of once per update.
+ * <p>
+ * A cache is tied to the digest of its archive and to the geometry simplification settings. Routes reading the
+ * administrative units fall back to the SOSI archives if a cache is missing or was written with other settings.
+ */
+@Component
+public class AdministrativeUnitsCache {
+
+    public static final String CACHE_SUFFIX = ".places";
+
+    private static final Logger logger = LoggerFactory.getLogger(AdministrativeUnitsCache.class);
+
+    @Value("${kartverket.administrative.units.cache:false}")
+    private boolean enabled;
+
+    @Value("${kartverket.administrative.units.cache.parallelism:2}")
+    private int parallelism;
+
+    @Autowired
+    private BlobStoreService blobStore;
+
+    @Autowired
+    private SosiElementWrapperFactory wrapperFactory;
+
+    public static String cacheBlobName(String archiveBlobName) {
+        return archiveBlobName + CACHE_SUFFIX;
+    }
+
+    /**
+     * Write and upload the cache of a downloaded archive, unless the stored cache was written from the same archive with
+     * the current settings. A failure is logged and the stored cache deleted, so that readers fall back to the archive.
+     */
+    public void update(File archive, String archiveBlobName, Exchange e) {
+        if (!enabled || !archive.getName().endsWith(".zip")) {
+            return;
+        }
+        String cacheBlobName = cacheBlobName(archiveBlobName);
+        try {
+            String digest = digestOf(archive);
+            TopographicPlaceCache.Header storedHeader = readStoredHeader(cacheBlobName, e);
+            if (storedHeader != null && digest.equals(storedHeader.sourceDigest()) && getSettingsKey().equals(storedHeader.settingsKey())) {
+                logger.debug("Cache of administrative units {} is up to date", cacheBlobName);
+                return;
+            }
+
+            File directory = new File(archive.getParentFile(), archive.getName() + "-places");
+            ZipFileUtils.unzipFile(new FileInputStream(archive), directory.getPath());
+            File cacheFile = new File(directory, archive.getName() + CACHE_SUFFIX);
+            int count;
+            try (TopographicPlaceCacheWriter writer = new TopographicPlaceCacheWriter(cacheFile, getSettingsKey(), digest)) {
+                for (File sosiFile : sosiFiles(directory)) {
+                    new SosiTopographicPlaceAdapterReader(wrapperFactory, sosiFile, parallelism).stream(writer);
+                }
+                count = writer.getCount();
+            }
+            try (InputStream inputStream = new FileInputStream(cacheFile)) {
+                blobStore.uploadBlob(cacheBlobName, false, inputStream);
+            }
+            logger.info("Stored cache of {} administrative units from {} in {}, {} bytes", count, archiveBlobName, cacheBlobName, cacheFile.length());
+        } catch (Exception ex) {
+            logger.warn("Failed to update cache of administrative units {}: {}", cacheBlobName, ex.getMessage(), ex);
+            deleteStaleCache(cacheBlobName, e);
+        }
+    }
+
+    /**
+     * Download the caches of the given archives to directory. Empty if caching is disabled or if any of the archives does
+     * not have a usable cache, in which case the archives must be read instead.
+     */
+    public Optional<List<File>> download(Collection<String> archiveBlobNames, File directory, Exchange e) throws IOException {
+        if (!enabled || archiveBlobNames.isEmpty()) {
+            return Optional.empty();
+        }
+        List<File> cacheFiles = new ArrayList<>();
+        for (String archiveBlobName : archiveBlobNames) {
+            String cacheBlobName = cacheBlobName(archiveBlobName);
+            File cacheFile = new File(directory, cacheBlobName.replace('/', '_'));
+            try (InputStream inputStream = blobStore.getBlob(cacheBlobName, e)) {
+                if (inputStream == null) {
+                    logger.info("No cache of administrative units found in {}, reading SOSI archives", cacheBlobName);
+                    return Optional.empty();
+                }
+                FileUtils.copyInputStreamToFile(inputStream, cacheFile);
+            }
+            try (InputStream inputStream = new FileInputStream(cacheFile)) {
+                TopographicPlaceCache.Header header = TopographicPlaceCache.readHeader(inputStream);
+                if (!getSettingsKey().equals(header.settingsKey())) {
+                    logger.info("Cache of administrative units {} was written with other settings ({}), reading SOSI archives", cacheBlobName, header.settingsKey());
+                    return Optional.empty();
+                }
+            } catch (IOException ioE) {
+                logger.warn("Unreadable cache of administrative units {}, reading SOSI archives: {}", cacheBlobName, ioE.getMessage());
+                return Optional.empty();
+            }
+            cacheFiles.add(cacheFile);
+        }
+        return Optional.of(cacheFiles);
+    }
+
+    private String getSettingsKey() {
+        return TopographicPlaceCache.settingsKey(wrapperFactory.getSimplifier());
+    }
+
+    private TopographicPlaceCache.Header readStoredHeader(String cacheBlobName, Exchange e) {
+        try (InputStream inputStream = blobStore.getBlob(cacheBlobName, e)) {
+            return inputStream == null ? null : TopographicPlaceCache.readHeader(inputStream);
+        } catch (IOException ioE) {
+            logger.info("Unreadable cache of administrative units {}, it will be replaced: {}", cacheBlobName, ioE.getMessage());
+            return null;
+        }
+    }
+
+    private void deleteStaleCache(String cacheBlobName, Exchange e) {
+        try {
+            blobStore.deleteBlob(cacheBlobName, e);
+        } catch (Exception ex) {
+            logger.warn("Failed to delete cache of administrative units {}: {}", cacheBlobName, ex.getMessage(), ex);
+        }
+    }
+
+    private static List<File> sosiFiles(File directory) {
+        return FileUtils.listFiles(directory, new String[]{"sos"}, true).stream()
+                .sorted(Comparator.comparing(File::getPath))
+                .toList();
+    }
+
+    private static String digestOf(File file) throws IOException {
+        try (InputStream inputStream = new FileInputStream(file)) {
+            return DigestUtils.md5Hex(inputStream);
+        }
+    }
+}
@@ -79,6 +79,7 @@ public class AdministrativeUnitsDownloadRouteBuilder extends BaseRouteBuilder {
                 .setHeader(Constants.KARTVERKET_DATASETID, constant(countyDataSetId))
                 .setHeader(Constants.KARTVERKET_FORMAT, constant("SOSI"))
                 .setHeader(Constants.FOLDER_NAME, constant(blobStoreSubdirectoryForKartverket + "/administrativeUnits/county"))
+                .setHeader(Constants.TOPOGRAPHIC_PLACE_CACHE, constant(true))
                 .to("direct:uploadUpdatedFiles")
                 .routeId("administrative-units-county-to-blobstore");
 
@@ -86,6 +87,7 @@ public class AdministrativeUnitsDownloadRouteBuilder extends BaseRouteBuilder {
                 .setHeader(Constants.KARTVERKET_DATASETID, constant(municipalityDataSetId))
                 .setHeader(Constants.KARTVERKET_FORMAT, constant("SOSI"))
                 .setHeader(Constants.FOLDER_NAME, constant(blobStoreSubdirectoryForKartverket + "/administrativeUnits/municipality"))
+                .setHeader(Constants.TOPOGRAPHIC_PLACE_CACHE, constant(true))
                 .to("direct:uploadUpdatedFiles")
                 .routeId("administrative-units-municipality-to-blobstore");
     }
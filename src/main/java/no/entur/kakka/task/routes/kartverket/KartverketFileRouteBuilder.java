@@ -25,6 +25,7 @@ import no.entur.kakka.services.BlobStoreService;
 import org.apache.camel.Exchange;
 import org.apache.camel.LoggingLevel;
 import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -49,6 +50,9 @@ public class KartverketFileRouteBuilder extends BaseRouteBuilder {
     @Autowired
     private BlobStoreService blobStoreService;
 
+    @Autowired
+    private AdministrativeUnitsCache administrativeUnitsCache;
+
     @Override
     public void configure() throws Exception {
         super.configure();
@@ -72,6 +76,7 @@ public class KartverketFileRouteBuilder extends BaseRouteBuilder {
         from("direct:kartverketUploadFileIfUpdated")
                 .setHeader(Exchange.FILE_NAME, simple("${body.name}"))
                 .setHeader(Constants.FILE_HANDLE, simple("${header." + Constants.FOLDER_NAME + "}/${body.name}"))
+                .process(this::updateTopographicPlaceCache)
                 .filter(this::contentChanged)
                 .log(LoggingLevel.INFO, "Uploading ${header." + Constants.FILE_HANDLE + "}")
                 .to("direct:uploadBlob")
@@ -93,6 +98,16 @@ public class KartverketFileRouteBuilder extends BaseRouteBuilder {
         return !newDigest.equals(existingDigest);
     }
 
+    /**
+     * Keep a cache of the parsed administrative units next to archives downloaded with the header
+     * RutebankenTopographicPlaceCache=true. Done before the upload, which replaces the body.
+     */
+    private void updateTopographicPlaceCache(Exchange e) {
+        if (e.getIn().getHeader(Constants.TOPOGRAPHIC_PLACE_CACHE, false, Boolean.class)) {
+            administrativeUnitsCache.update(e.getIn().getBody(File.class), e.getIn().getHeader(Constants.FILE_HANDLE, String.class), e);
+        }
+    }
+
     private String digestOf(File file, String fileHandle) {
         try (InputStream in = new FileInputStream(file)) {
             return DigestUtils.md5Hex(in);
@@ -115,8 +130,15 @@ public class KartverketFileRouteBuilder extends BaseRouteBuilder {
         Set<String> activeFileNames = activeFiles.stream().map(File::getName).collect(Collectors.toSet());
         BlobStoreFiles blobs = blobStoreService.listBlobsInFolder(e.getIn().getHeader(Constants.FOLDER_NAME, String.class), e);
 
-        blobs.getFiles().stream().filter(b -> !activeFileNames.contains(Paths.get(b.getName()).getFileName().toString())).forEach(b -> deleteNoLongerActiveBlob(b, e));
+        blobs.getFiles().stream().filter(b -> !activeFileNames.contains(downloadedFileName(b))).forEach(b -> deleteNoLongerActiveBlob(b, e));
+
+    }
 
+    /**
+     * Name of the downloaded file a blob belongs to, that is the blob itself or the archive of a cache of administrative units.
+     */
+    private String downloadedFileName(BlobStoreFiles.File blob) {
+        return StringUtils.removeEnd(Paths.get(blob.getName()).getFileName().toString(), AdministrativeUnitsCache.CACHE_SUFFIX);
     }
 
     private void deleteNoLongerActiveBlob(BlobStoreFiles.File blob, Exchange e) {
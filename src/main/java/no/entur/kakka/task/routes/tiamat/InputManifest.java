@@ -0,0 +1,122 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.task.routes.tiamat;
+
+import no.entur.kakka.domain.BlobStoreFiles;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Names and checksums of the input blobs of a run, together with any settings that affect the output.
+ * <p>
+ * Blobs without a checksum from the blob store are identified by size and update time instead. Stored as one tab
+ * separated name and checksum per line, sorted by name.
+ */
+public class InputManifest {
+
+    private static final String SETTING_PREFIX = "#";
+
+    private final SortedMap<String, String> entries = new TreeMap<>();
+
+    public static InputManifest of(Collection<BlobStoreFiles.File> files) {
+        InputManifest manifest = new InputManifest();
+        for (BlobStoreFiles.File file : files) {
+            manifest.entries.put(file.getName(), checksum(file));
+        }
+        return manifest;
+    }
+
+    public static InputManifest read(InputStream inputStream) throws IOException {
+        InputManifest manifest = new InputManifest();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int separator = line.indexOf('\t');
+            if (separator > 0) {
+                manifest.entries.put(line.substring(0, separator), line.substring(separator + 1));
+            }
+        }
+        return manifest;
+    }
+
+    public void write(OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            writer.write(entry.getKey());
+            writer.write('\t');
+            writer.write(entry.getValue());
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Add a setting that affects the output, so that changing it is treated as changed input.
+     */
+    public InputManifest withSetting(String name, Object value) {
+        entries.put(SETTING_PREFIX + name, String.valueOf(value));
+        return this;
+    }
+
+    /**
+     * Number of input blobs, not counting settings.
+     */
+    public int getInputCount() {
+        return (int) entries.keySet().stream().filter(name -> !name.startsWith(SETTING_PREFIX)).count();
+    }
+
+    private static String checksum(BlobStoreFiles.File file) {
+        if (file.getChecksum() != null) {
+            return file.getChecksum();
+        }
+        return "size=" + file.getFileSize() + ",updated=" + (file.getUpdated() == null ? null : file.getUpdated().getTime());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return entries.equals(((InputManifest) o).entries);
+    }
+
+    @Override
+    public int hashCode() {
+        return entries.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "InputManifest " + entries;
+    }
+}
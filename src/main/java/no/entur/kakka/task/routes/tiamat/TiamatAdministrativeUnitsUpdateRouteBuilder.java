@@ -17,11 +17,28 @@
 package no.entur.kakka.task.routes.tiamat;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.Metrics;
+import no.entur.kakka.Constants;
+import no.entur.kakka.domain.BlobStoreFiles;
 import no.entur.kakka.task.BaseRouteBuilder;
 import no.entur.kakka.task.TaskConstants;
+import no.entur.kakka.task.flatgeobuf.FlatGeobuf;
+import no.entur.kakka.task.flatgeobuf.FlatGeobufTopographicPlaceAdapter;
+import no.entur.kakka.task.flatgeobuf.FlatGeobufWriter;
+import no.entur.kakka.task.netex.DeltaTopographicPlaceReader;
+import no.entur.kakka.task.netex.ParentValidationReport;
+import no.entur.kakka.task.netex.TopographicPlaceAdapter;
 import no.entur.kakka.task.netex.TopographicPlaceConverter;
+import no.entur.kakka.task.netex.TopographicPlaceFingerprints;
+import no.entur.kakka.task.netex.TopographicPlaceNetexStream;
+import no.entur.kakka.task.netex.TopographicPlaceParentValidator;
+import no.entur.kakka.task.netex.TopographicPlaceReader;
+import no.entur.kakka.task.netex.cache.CachedTopographicPlaceReader;
 import no.entur.kakka.task.netex.sosi.SosiTopographicPlaceReader;
 import no.entur.kakka.task.routes.control.TaskType;
+import no.entur.kakka.task.routes.kartverket.AdministrativeUnitsCache;
 import no.entur.kakka.task.sosi.SosiElementWrapperFactory;
 import no.entur.kakka.routes.file.ZipFileUtils;
 import no.entur.kakka.routes.status.JobEvent;
@@ -29,17 +46,36 @@ import no.entur.kakka.services.BlobStoreService;
 import org.apache.camel.Exchange;
 import org.apache.camel.ExchangePattern;
 import org.apache.camel.LoggingLevel;
+import org.apache.camel.http.base.HttpOperationFailedException;
 import org.apache.commons.io.FileUtils;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.InputStreamEntity;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 
 import jakarta.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 @Component
 public class TiamatAdministrativeUnitsUpdateRouteBuilder extends BaseRouteBuilder {
 
+    private static final String ADMINISTRATIVE_UNITS_JOB = "administrativeUnits";
+
+    private static final ObjectWriter REPORT_WRITER = new ObjectMapper().writerWithDefaultPrettyPrinter();
+
     @Value("${kartverket.blobstore.subdirectory:kartverket}")
     private String blobStoreSubdirectoryForKartverket;
 
@@ -55,6 +91,63 @@ public class TiamatAdministrativeUnitsUpdateRouteBuilder extends BaseRouteBuilde
     @Value("${tiamat.administrative.units.update.directory:files/tiamat/adminUnits}")
     private String localWorkingDirectory;
 
+    @Value("${tiamat.administrative.units.reader.parallelism:2}")
+    private int readerParallelism;
+
+    @Value("${tiamat.administrative.units.reader.element.parallelism:2}")
+    private int readerElementParallelism;
+
+    /**
+     * Write the NeTEx file gzip compressed and upload it with Content-Encoding: gzip. Falls back to an uncompressed upload
+     * if Tiamat responds with 415 Unsupported Media Type.
+     */
+    @Value("${tiamat.administrative.units.upload.gzip:false}")
+    private boolean gzipUpload;
+
+    /**
+     * Stream the NeTEx XML to Tiamat while converting, with chunked transfer encoding, instead of writing it to disk first.
+     * Takes precedence over gzip upload.
+     */
+    @Value("${tiamat.administrative.units.upload.streaming:false}")
+    private boolean streamingUpload;
+
+    /**
+     * Only upload places that are new or changed since the last update accepted by Tiamat, according to fingerprints
+     * stored in the blob store. A full update is made if there are no stored fingerprints, or if the exchange has the
+     * header RutebankenFullSync=true.
+     */
+    @Value("${tiamat.administrative.units.delta:false}")
+    private boolean deltaUpdate;
+
+    @Value("${tiamat.administrative.units.fingerprints.blob:tiamat/administrativeUnits/fingerprints.tsv}")
+    private String fingerprintsBlobName;
+
+    /**
+     * Check the parent refs of localities and places against the county and locality polygons. Mismatches are counted in
+     * metrics and stored in a report in the blob store, but do not stop the update.
+     */
+    @Value("${tiamat.administrative.units.parent.validation:false}")
+    private boolean validateParents;
+
+    @Value("${tiamat.administrative.units.parent.validation.parallelism:4}")
+    private int parentValidationParallelism;
+
+    @Value("${tiamat.administrative.units.parent.validation.report.blob:tiamat/administrativeUnits/parent-validation-report.json}")
+    private String parentValidationReportBlobName;
+
+    /**
+     * Export the administrative units read to a FlatGeobuf file in the blob store, with a spatial index, for consumers
+     * that need the polygons rather than the NeTEx. A failing export is logged, but does not stop the update.
+     */
+    @Value("${tiamat.administrative.units.flatgeobuf.export:false}")
+    private boolean exportFlatGeobuf;
+
+    @Value("${tiamat.administrative.units.flatgeobuf.blob:tiamat/administrativeUnits/administrative-units.fgb}")
+    private String flatGeobufBlobName;
+
+    @Autowired
+    private TiamatInputManifests inputManifests;
+
     @Autowired
     private TopographicPlaceConverter topographicPlaceConverter;
 
@@ -64,6 +157,9 @@ public class TiamatAdministrativeUnitsUpdateRouteBuilder extends BaseRouteBuilde
     @Autowired
     private SosiElementWrapperFactory wrapperFactory;
 
+    @Autowired
+    private AdministrativeUnitsCache administrativeUnitsCache;
+
     @Override
     public void configure() throws Exception {
         super.configure();
@@ -82,35 +178,293 @@ public class TiamatAdministrativeUnitsUpdateRouteBuilder extends BaseRouteBuilde
                 .setHeader(Exchange.FILE_PARENT, constant(localWorkingDirectory))
                 .doTry()
                 .to("direct:cleanUpLocalDirectory")
-                .to("direct:mapAdministrativeUnitsToNetex")
-                .to("direct:updateAdministrativeUnitsInTiamat")
-                .log(LoggingLevel.INFO, "Finished updating administrative units in Tiamat")
+                .process(e -> e.setProperty(Constants.INPUT_UNCHANGED, inputManifests.isInputUnchanged(e, ADMINISTRATIVE_UNITS_JOB, listAdministrativeUnitBlobs(e))))
+                .choice()
+                .when(e -> e.getProperty(Constants.INPUT_UNCHANGED, false, Boolean.class))
+                .log(LoggingLevel.INFO, "Administrative units unchanged since last successful update, skipping update of Tiamat")
+                .process(TiamatInputManifests::inputUnchangedEvent).to("direct:updateStatus")
+                .otherwise()
+                .to("direct:updateAdministrativeUnits")
+                .end()
                 .doFinally()
+                .process(e -> closeNetexStream(e))
+                .process(e -> closeFlatGeobufWriter(e))
                 .to("direct:cleanUpLocalDirectory")
                 .end()
 
                 .routeId("tiamat-admin-units-update");
 
+        from("direct:updateAdministrativeUnits")
+                .to("direct:mapAdministrativeUnitsToNetex")
+                .choice()
+                .when(e -> isUnchanged(e))
+                .log(LoggingLevel.INFO, "No administrative units changed since last update, skipping upload to Tiamat")
+                .otherwise()
+                .to("direct:updateAdministrativeUnitsInTiamat")
+                .end()
+                .to("direct:commitAdministrativeUnitsFingerprints")
+                .process(e -> inputManifests.commit(e, ADMINISTRATIVE_UNITS_JOB))
+                .process(e -> reportParentValidation(e))
+                .process(e -> exportFlatGeobuf(e))
+                .log(LoggingLevel.INFO, "Finished updating administrative units in Tiamat")
+                .routeId("tiamat-admin-units-update-run");
+
         from("direct:mapAdministrativeUnitsToNetex")
                 .log(LoggingLevel.DEBUG, getClass().getName(), "Mapping latest administrative units to Netex ...")
                 .process(e -> {
-                    blobStore.listBlobsInFolder(blobStoreSubdirectoryForKartverket + "/administrativeUnits", e).getFiles().stream()
-                            .filter(blob -> blob.getName().endsWith(".zip"))
-                            .forEach(blob -> ZipFileUtils.unzipFile(blobStore.getBlob(blob.getName(), e), localWorkingDirectory));
-                    topographicPlaceConverter.toNetexFile(
-                            new SosiTopographicPlaceReader(wrapperFactory, FileUtils.listFiles(new File(localWorkingDirectory), new String[]{"sos"}, true)), localWorkingDirectory + "/admin-units-netex.xml");
+                    Consumer<TopographicPlaceAdapter> adapterListener = adapter -> {
+                    };
+                    if (validateParents) {
+                        TopographicPlaceParentValidator parentValidator = new TopographicPlaceParentValidator();
+                        adapterListener = parentValidator;
+                        e.setProperty(Constants.PARENT_VALIDATOR, parentValidator);
+                    }
+                    if (exportFlatGeobuf) {
+                        adapterListener = adapterListener.andThen(createFlatGeobufListener(e));
+                    }
+                    TopographicPlaceReader reader = createAdministrativeUnitsReader(e, adapterListener);
+                    if (deltaUpdate) {
+                        DeltaTopographicPlaceReader deltaReader = new DeltaTopographicPlaceReader(reader, loadFingerprints(e));
+                        e.setProperty(Constants.TOPOGRAPHIC_PLACE_DELTA, deltaReader);
+                        reader = deltaReader;
+                    }
+                    if (streamingUpload) {
+                        TopographicPlaceNetexStream netexStream = topographicPlaceConverter.toNetexStream(reader);
+                        e.setProperty(Constants.NETEX_STREAM, netexStream);
+                        // An entity rather than the stream itself, so that the body is not stream cached before the upload
+                        e.getIn().setBody(new InputStreamEntity(netexStream, -1, ContentType.APPLICATION_XML));
+                        return;
+                    }
+                    String netexFileName = localWorkingDirectory + "/admin-units-netex.xml" + (gzipUpload ? TopographicPlaceConverter.GZIP_SUFFIX : "");
+                    long xmlBytes = topographicPlaceConverter.toNetexFile(reader, netexFileName);
                     new File(localWorkingDirectory).delete();
-                    e.getIn().setBody(new File(localWorkingDirectory + "/admin-units-netex.xml"));
+                    e.setProperty(Constants.UNCOMPRESSED_SIZE, xmlBytes);
+                    e.getIn().setBody(new File(netexFileName));
                 })
                 .routeId("tiamat-map-admin-units-sosi-to-netex");
 
         from("direct:updateAdministrativeUnitsInTiamat")
                 .setHeader(Exchange.HTTP_METHOD, constant(org.apache.camel.component.http.HttpMethods.POST))
                 .setHeader(Exchange.CONTENT_TYPE, simple(MediaType.APPLICATION_XML))
+                .setProperty(Constants.NETEX_FILE, body())
                 .process("authorizationHeaderProcessor")
+                .choice()
+                .when(e -> e.getProperty(Constants.NETEX_FILE) instanceof File netexFile && netexFile.getName().endsWith(TopographicPlaceConverter.GZIP_SUFFIX))
+                .to("direct:uploadCompressedAdministrativeUnitsToTiamat")
+                .otherwise()
                 .to(tiamatUrl + tiamatPublicationDeliveryPath)
+                .process(e -> recordUpload(e, false))
+                .end()
                 .routeId("tiamat-admin-units-update-start");
+
+        from("direct:uploadCompressedAdministrativeUnitsToTiamat")
+                .setHeader(Exchange.CONTENT_ENCODING, constant("gzip"))
+                // The file is already compressed
+                .setProperty(Exchange.SKIP_GZIP_ENCODING, constant(true))
+                .doTry()
+                .to(tiamatUrl + tiamatPublicationDeliveryPath)
+                .process(e -> recordUpload(e, true))
+                .doCatch(HttpOperationFailedException.class).onWhen(exchange -> {
+                    HttpOperationFailedException ex = exchange.getException(HttpOperationFailedException.class);
+                    return (ex.getStatusCode() == HttpStatus.UNSUPPORTED_MEDIA_TYPE.value());
+                })
+                .log(LoggingLevel.WARN, "Tiamat does not accept gzip encoded content, uploading administrative units uncompressed")
+                .removeHeader(Exchange.CONTENT_ENCODING)
+                .process(e -> openUncompressedNetex(e))
+                .to(tiamatUrl + tiamatPublicationDeliveryPath)
+                .process(e -> recordUpload(e, false))
+                .doFinally()
+                .process(e -> closeUncompressedNetex(e))
+                .end()
+                .routeId("tiamat-admin-units-upload-compressed");
+
+        from("direct:commitAdministrativeUnitsFingerprints")
+                .process(e -> commitFingerprints(e))
+                .routeId("tiamat-admin-units-commit-fingerprints");
+    }
+
+    private List<BlobStoreFiles.File> listAdministrativeUnitBlobs(Exchange e) {
+        return blobStore.listBlobsInFolder(blobStoreSubdirectoryForKartverket + "/administrativeUnits", e).getFiles().stream()
+                .filter(blob -> blob.getName().endsWith(".zip"))
+                .toList();
     }
 
+    /**
+     * Read the administrative units from the caches written when they were downloaded, or from the SOSI archives if any
+     * of them has no usable cache.
+     */
+    private TopographicPlaceReader createAdministrativeUnitsReader(Exchange e, Consumer<TopographicPlaceAdapter> adapterListener) throws IOException {
+        List<String> archiveBlobNames = listAdministrativeUnitBlobs(e).stream().map(BlobStoreFiles.File::getName).toList();
+        Optional<List<File>> cacheFiles = administrativeUnitsCache.download(archiveBlobNames, new File(localWorkingDirectory, "cache"), e);
+        if (cacheFiles.isPresent()) {
+            log.info("Reading administrative units from {} cached archives", cacheFiles.get().size());
+            CachedTopographicPlaceReader cachedReader = new CachedTopographicPlaceReader(cacheFiles.get());
+            cachedReader.setAdapterListener(adapterListener);
+            return cachedReader;
+        }
+        archiveBlobNames.forEach(archiveBlobName -> ZipFileUtils.unzipFile(blobStore.getBlob(archiveBlobName, e), localWorkingDirectory));
+        SosiTopographicPlaceReader sosiReader = new SosiTopographicPlaceReader(wrapperFactory, FileUtils.listFiles(new File(localWorkingDirectory), new String[]{"sos"}, true), readerParallelism, readerElementParallelism);
+        sosiReader.setAdapterListener(adapterListener);
+        return sosiReader;
+    }
 
+    private TopographicPlaceFingerprints loadFingerprints(Exchange e) throws IOException {
+        if (e.getIn().getHeader(Constants.FULL_SYNC, false, Boolean.class)) {
+            log.info("Full sync requested, uploading all administrative units to Tiamat");
+            return new TopographicPlaceFingerprints();
+        }
+        try (InputStream inputStream = blobStore.getBlob(fingerprintsBlobName, e)) {
+            if (inputStream == null) {
+                log.info("No fingerprints of administrative units found in {}, uploading all administrative units to Tiamat", fingerprintsBlobName);
+                return new TopographicPlaceFingerprints();
+            }
+            return TopographicPlaceFingerprints.read(inputStream);
+        }
+    }
+
+    /**
+     * Whether a completed delta conversion found no new or changed places. A streaming conversion is not complete before
+     * it is uploaded, so it is always uploaded.
+     */
+    private boolean isUnchanged(Exchange e) {
+        DeltaTopographicPlaceReader deltaReader = e.getProperty(Constants.TOPOGRAPHIC_PLACE_DELTA, DeltaTopographicPlaceReader.class);
+        return deltaReader != null && deltaReader.isComplete() && deltaReader.getChangedCount() == 0;
+    }
+
+    /**
+     * Store fingerprints of all places read, once Tiamat has accepted the changed places.
+     */
+    private void commitFingerprints(Exchange e) throws IOException {
+        DeltaTopographicPlaceReader deltaReader = e.getProperty(Constants.TOPOGRAPHIC_PLACE_DELTA, DeltaTopographicPlaceReader.class);
+        if (deltaReader == null) {
+            return;
+        }
+        ByteArrayOutputStream fingerprints = new ByteArrayOutputStream();
+        deltaReader.getFingerprints().write(fingerprints);
+        blobStore.uploadBlob(fingerprintsBlobName, false, new ByteArrayInputStream(fingerprints.toByteArray()));
+        log.info("Stored fingerprints of {} administrative units, {} new or changed and {} unchanged", deltaReader.getFingerprints().size(),
+                deltaReader.getChangedCount(), deltaReader.getUnchangedCount());
+    }
+
+    /**
+     * Validate parent refs of the places read, once the conversion is complete. A failing validation is logged, as the
+     * update itself has succeeded.
+     */
+    private void reportParentValidation(Exchange e) {
+        TopographicPlaceParentValidator parentValidator = e.getProperty(Constants.PARENT_VALIDATOR, TopographicPlaceParentValidator.class);
+        if (parentValidator == null) {
+            return;
+        }
+        try {
+            ParentValidationReport report = parentValidator.validate(parentValidationParallelism);
+            report.publishMetrics();
+            blobStore.uploadBlob(parentValidationReportBlobName, false, new ByteArrayInputStream(REPORT_WRITER.writeValueAsBytes(report)));
+            if (report.getInvalidCount() > 0) {
+                log.warn("Parent refs of {} administrative units do not match their location: {}", report.getInvalidCount(), report.getCounts());
+            } else {
+                log.info("Parent refs of administrative units match their location: {}", report.getCounts());
+            }
+        } catch (Exception ex) {
+            log.warn("Failed to validate parent refs of administrative units: {}", ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Collect valid places read in a FlatGeobuf writer, for export once the update is complete.
+     */
+    private Consumer<TopographicPlaceAdapter> createFlatGeobufListener(Exchange e) throws IOException {
+        FileUtils.forceMkdir(new File(localWorkingDirectory));
+        FlatGeobufWriter writer = new FlatGeobufWriter(FlatGeobufTopographicPlaceAdapter.COLUMNS, new File(localWorkingDirectory, "admin-units-flatgeobuf.spool"));
+        e.setProperty(Constants.FLATGEOBUF_WRITER, writer);
+        return adapter -> {
+            if (adapter.isValid() && adapter.getDefaultGeometry() != null && !adapter.getDefaultGeometry().isEmpty()) {
+                try {
+                    writer.add(FlatGeobufTopographicPlaceAdapter.toProperties(adapter), adapter.getDefaultGeometry());
+                } catch (IOException ioE) {
+                    throw new UncheckedIOException("Failed to spool administrative unit for FlatGeobuf export: " + adapter.getId(), ioE);
+                }
+            }
+        };
+    }
+
+    /**
+     * Write the places collected during the conversion to a FlatGeobuf file and upload it. A failing export is logged, as
+     * the update itself has succeeded.
+     */
+    private void exportFlatGeobuf(Exchange e) {
+        FlatGeobufWriter writer = e.getProperty(Constants.FLATGEOBUF_WRITER, FlatGeobufWriter.class);
+        if (writer == null) {
+            return;
+        }
+        File flatGeobufFile = new File(localWorkingDirectory, "admin-units" + FlatGeobuf.FILE_SUFFIX);
+        try {
+            try (OutputStream outputStream = FileUtils.openOutputStream(flatGeobufFile)) {
+                writer.write(outputStream, "administrativeUnits");
+            }
+            try (InputStream inputStream = FileUtils.openInputStream(flatGeobufFile)) {
+                blobStore.uploadBlob(flatGeobufBlobName, false, inputStream);
+            }
+            log.info("Exported {} administrative units to FlatGeobuf in {}, {} bytes", writer.getFeatureCount(), flatGeobufBlobName, flatGeobufFile.length());
+        } catch (Exception ex) {
+            log.warn("Failed to export administrative units to FlatGeobuf: {}", ex.getMessage(), ex);
+        } finally {
+            flatGeobufFile.delete();
+        }
+    }
+
+    private void closeFlatGeobufWriter(Exchange e) throws IOException {
+        FlatGeobufWriter writer = e.getProperty(Constants.FLATGEOBUF_WRITER, FlatGeobufWriter.class);
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    /**
+     * Record bytes sent to Tiamat, and the compression ratio for compressed uploads.
+     */
+    private void recordUpload(Exchange e, boolean compressed) {
+        TopographicPlaceNetexStream netexStream = e.getProperty(Constants.NETEX_STREAM, TopographicPlaceNetexStream.class);
+        Long uncompressedSize = e.getProperty(Constants.UNCOMPRESSED_SIZE, Long.class);
+        long bytesOnWire;
+        if (netexStream != null) {
+            bytesOnWire = netexStream.getByteCount();
+        } else if (compressed || uncompressedSize == null) {
+            bytesOnWire = e.getProperty(Constants.NETEX_FILE, File.class).length();
+        } else {
+            bytesOnWire = uncompressedSize;
+        }
+        String encoding = compressed ? "gzip" : "identity";
+        Metrics.summary("kakka.tiamat.upload.bytes", "type", "administrativeUnits", "encoding", encoding).record(bytesOnWire);
+        if (compressed && uncompressedSize != null && bytesOnWire > 0) {
+            Metrics.summary("kakka.tiamat.upload.compression.ratio", "type", "administrativeUnits").record((double) uncompressedSize / bytesOnWire);
+        }
+        log.info("Uploaded administrative units to Tiamat, {} bytes with encoding {}", bytesOnWire, encoding);
+    }
+
+    /**
+     * Decompress the NeTEx file while uploading it. The stream is kept as a property to be closed after the upload.
+     */
+    private void openUncompressedNetex(Exchange e) throws IOException {
+        InputStream uncompressedNetex = new GZIPInputStream(new FileInputStream(e.getProperty(Constants.NETEX_FILE, File.class)));
+        e.setProperty(Constants.UNCOMPRESSED_NETEX_STREAM, uncompressedNetex);
+        e.getIn().setBody(uncompressedNetex);
+    }
+
+    private void closeUncompressedNetex(Exchange e) throws IOException {
+        InputStream uncompressedNetex = e.getProperty(Constants.UNCOMPRESSED_NETEX_STREAM, InputStream.class);
+        if (uncompressedNetex != null) {
+            uncompressedNetex.close();
+            e.removeProperty(Constants.UNCOMPRESSED_NETEX_STREAM);
+        }
+    }
+
+    /**
+     * Abort a streaming conversion that has not been fully uploaded, so that the producer does not block on a full pipe.
+     */
+    private void closeNetexStream(Exchange e) throws IOException {
+        TopographicPlaceNetexStream netexStream = e.getProperty(Constants.NETEX_STREAM, TopographicPlaceNetexStream.class);
+        if (netexStream != null) {
+            netexStream.close();
+        }
+    }
 }
@@ -22,23 +22,30 @@ import no.entur.kakka.task.BaseRouteBuilder;
 import no.entur.kakka.task.TaskConstants;
 import no.entur.kakka.task.geojson.GeojsonFeatureWrapperFactory;
 import no.entur.kakka.task.netex.TopographicPlaceConverter;
+import no.entur.kakka.task.netex.TopographicPlaceNetexStream;
 import no.entur.kakka.task.netex.geojson.GeoJsonSingleTopographicPlaceReader;
+import no.entur.kakka.task.routes.control.TaskType;
+import no.entur.kakka.routes.status.JobEvent;
 import no.entur.kakka.services.BlobStoreService;
 import org.apache.camel.Exchange;
 import org.apache.camel.LoggingLevel;
-import org.apache.commons.io.FileUtils;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.InputStreamEntity;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import jakarta.ws.rs.core.MediaType;
 import java.io.File;
-import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
 import java.util.stream.Collectors;
 
 @Component
 public class TiamatCountryUpdateRouteBuilder extends BaseRouteBuilder {
 
+    private static final String NEIGHBOURING_COUNTRIES_JOB = "neighbouringCountries";
+
     @Value("${tiamat.countries.geojson.blobstore.subdirectory:geojson/countries}")
     private String blobStoreSubdirectory;
 
@@ -51,6 +58,21 @@ public class TiamatCountryUpdateRouteBuilder extends BaseRouteBuilder {
     @Value("${tiamat.neighbouring.countries.update.directory:files/tiamat/countries}")
     private String localWorkingDirectory;
 
+    /**
+     * Number of country files parsed concurrently, straight from the blob store.
+     */
+    @Value("${tiamat.neighbouring.countries.reader.parallelism:4}")
+    private int readerParallelism;
+
+    /**
+     * Stream the NeTEx XML to Tiamat while converting, with chunked transfer encoding, instead of writing it to disk first.
+     */
+    @Value("${tiamat.neighbouring.countries.upload.streaming:false}")
+    private boolean streamingUpload;
+
+    @Autowired
+    private TiamatInputManifests inputManifests;
+
     @Autowired
     private TopographicPlaceConverter topographicPlaceConverter;
 
@@ -66,37 +88,48 @@ public class TiamatCountryUpdateRouteBuilder extends BaseRouteBuilder {
 
         from(TaskConstants.TIAMAT_NEIGHBOURING_COUNTRIES_UPDATE_START.getEndpoint())
                 .log(LoggingLevel.INFO, "Starting update of neighbouring countries in Tiamat")
+                .process(e -> JobEvent.systemJobBuilder(e).startTask(TaskType.TIAMAT_NEIGHBOURING_COUNTRIES_UPDATE).build()).to("direct:updateStatus")
 
                 .setHeader(Exchange.FILE_PARENT, constant(localWorkingDirectory))
                 .doTry()
                 .to("direct:cleanUpLocalDirectory")
-                .to("direct:fetchNeighbouringCountries")
+                .process(e -> e.setProperty(Constants.INPUT_UNCHANGED, inputManifests.isInputUnchanged(e, NEIGHBOURING_COUNTRIES_JOB, listCountryBlobs(e))))
+                .choice()
+                .when(e -> e.getProperty(Constants.INPUT_UNCHANGED, false, Boolean.class))
+                .log(LoggingLevel.INFO, "Neighbouring countries unchanged since last successful update, skipping update of Tiamat")
+                .process(TiamatInputManifests::inputUnchangedEvent).to("direct:updateStatus")
+                .otherwise()
                 .to("direct:mapNeighbouringCountriesToNetex")
                 .to("direct:updateNeighbouringCountriesInTiamat")
+                .process(e -> inputManifests.commit(e, NEIGHBOURING_COUNTRIES_JOB))
                 .log(LoggingLevel.INFO, "Finished updating neighbouring countries in Tiamat")
+                .end()
                 .doFinally()
+                .process(e -> {
+                    TopographicPlaceNetexStream netexStream = e.getProperty(Constants.NETEX_STREAM, TopographicPlaceNetexStream.class);
+                    if (netexStream != null) {
+                        netexStream.close();
+                    }
+                })
                 .to("direct:cleanUpLocalDirectory")
                 .end()
 
                 .routeId("tiamat-neighbouring-countries-update");
 
-        from("direct:fetchNeighbouringCountries")
-                .log(LoggingLevel.DEBUG, getClass().getName(), "Fetching latest neighbouring countries ...")
-
-                .process(e -> e.getIn().setBody(blobStoreService.listBlobsInFolder(blobStoreSubdirectory, e).getFiles().stream().filter(f -> f.getName().endsWith("geojson")).collect(Collectors.toList())))
-                .split().body()
-                .setHeader(Constants.FILE_HANDLE, simple("${body.name}"))
-                .process(e -> e.getIn().setHeader(Exchange.FILE_NAME, Paths.get(e.getIn().getBody(BlobStoreFiles.File.class).getName()).getFileName()))
-                .to("direct:getBlob")
-                .to("file:" + localWorkingDirectory)
-                .routeId("tiamat-fetch-neighbouring-countries");
-
         from("direct:mapNeighbouringCountriesToNetex")
                 .log(LoggingLevel.DEBUG, getClass().getName(), "Mapping latest neighbouring countries to Netex ...")
-                .process(e -> topographicPlaceConverter.toNetexFile(
-                        new GeoJsonSingleTopographicPlaceReader(wrapperFactory, getGeojsonCountryFiles()),
-                        localWorkingDirectory + "/neighbouring-countries-netex.xml"))
-                .process(e -> e.getIn().setBody(new File(localWorkingDirectory + "/neighbouring-countries-netex.xml")))
+                .process(e -> {
+                    GeoJsonSingleTopographicPlaceReader reader = new GeoJsonSingleTopographicPlaceReader(wrapperFactory, countrySources(e), readerParallelism);
+                    if (streamingUpload) {
+                        TopographicPlaceNetexStream netexStream = topographicPlaceConverter.toNetexStream(reader);
+                        e.setProperty(Constants.NETEX_STREAM, netexStream);
+                        // An entity rather than the stream itself, so that the body is not stream cached before the upload
+                        e.getIn().setBody(new InputStreamEntity(netexStream, -1, ContentType.APPLICATION_XML));
+                    } else {
+                        topographicPlaceConverter.toNetexFile(reader, localWorkingDirectory + "/neighbouring-countries-netex.xml");
+                        e.getIn().setBody(new File(localWorkingDirectory + "/neighbouring-countries-netex.xml"));
+                    }
+                })
                 .routeId("tiamat-map-neighbouring-countries-to-netex");
 
         from("direct:updateNeighbouringCountriesInTiamat")
@@ -108,7 +141,14 @@ public class TiamatCountryUpdateRouteBuilder extends BaseRouteBuilder {
 
     }
 
-    private File[] getGeojsonCountryFiles() {
-        return FileUtils.listFiles(new File(localWorkingDirectory), new String[]{"geojson"}, false).toArray(File[]::new);
+    private List<BlobStoreFiles.File> listCountryBlobs(Exchange e) {
+        return blobStoreService.listBlobsInFolder(blobStoreSubdirectory, e).getFiles().stream().filter(f -> f.getName().endsWith("geojson")).collect(Collectors.toList());
+    }
+
+    private List<GeoJsonSingleTopographicPlaceReader.Source> countrySources(Exchange e) {
+        return listCountryBlobs(e).stream()
+                .sorted(Comparator.comparing(BlobStoreFiles.File::getName))
+                .map(blob -> new GeoJsonSingleTopographicPlaceReader.Source(blob.getName(), () -> blobStoreService.getBlob(blob.getName(), e)))
+                .toList();
     }
 }
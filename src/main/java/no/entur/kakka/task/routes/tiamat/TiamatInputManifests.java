@@ -0,0 +1,123 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.task.routes.tiamat;
+
+import no.entur.kakka.Constants;
+import no.entur.kakka.domain.BlobStoreFiles;
+import no.entur.kakka.routes.status.JobEvent;
+import no.entur.kakka.services.BlobStoreService;
+import no.entur.kakka.task.netex.GeometrySimplifier;
+import no.entur.kakka.task.netex.NetexGeoUtil;
+import no.entur.kakka.task.netex.TopographicPlaceConverter;
+import no.entur.kakka.task.sosi.GeometryTransformer;
+import org.apache.camel.Exchange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+
+/**
+ * Keeps the input manifest of the last successful run of each Tiamat update job in the blob store, so that a run with the
+ * same input can be skipped.
+ */
+@Component
+public class TiamatInputManifests {
+
+    private static final Logger logger = LoggerFactory.getLogger(TiamatInputManifests.class);
+
+    /**
+     * Version of the conversion from input files to NeTEx. Increase when a code change alters the output for unchanged
+     * input and settings, so that the next run is not skipped.
+     */
+    static final int CONVERSION_VERSION = 1;
+
+    @Value("${tiamat.input.manifest.directory:tiamat/manifests}")
+    private String manifestDirectory;
+
+    @Autowired
+    private BlobStoreService blobStore;
+
+    @Autowired
+    private GeometrySimplifier geometrySimplifier;
+
+    @Autowired
+    private TopographicPlaceConverter topographicPlaceConverter;
+
+    /**
+     * Whether the input files are the same as for the last successful run of the job. Never true if the exchange has the
+     * header RutebankenForceRun=true or if there are no input files.
+     * <p>
+     * The manifest of the input files, along with the settings and version that affect the output, is kept as an
+     * exchange property until the run is committed.
+     */
+    public boolean isInputUnchanged(Exchange e, String job, Collection<BlobStoreFiles.File> inputFiles) throws IOException {
+        InputManifest current = InputManifest.of(inputFiles)
+                .withSetting("conversionVersion", CONVERSION_VERSION)
+                .withSetting("kakkaVersion", TiamatInputManifests.class.getPackage().getImplementationVersion())
+                .withSetting("coordinateDecimals", NetexGeoUtil.getCoordinateDecimals())
+                .withSetting("transformBackend", GeometryTransformer.getBackend())
+                .withSetting("simplificationTolerances", geometrySimplifier.describeTolerances())
+                .withSetting("serializer", topographicPlaceConverter.getSerializer())
+                .withSetting("compactOutput", topographicPlaceConverter.isCompactOutput());
+        e.setProperty(Constants.INPUT_MANIFEST, current);
+
+        if (e.getIn().getHeader(Constants.FORCE_RUN, false, Boolean.class)) {
+            logger.info("Forced run of {}, ignoring input manifest", job);
+            return false;
+        }
+        if (current.getInputCount() == 0) {
+            return false;
+        }
+        try (InputStream inputStream = blobStore.getBlob(manifestBlobName(job), e)) {
+            return inputStream != null && InputManifest.read(inputStream).equals(current);
+        }
+    }
+
+    /**
+     * Job event reporting a run skipped because the input is unchanged. Continues the job event started by the route, so
+     * that the skipped run is reported with the same correlation id, action and domain as a run that updates Tiamat.
+     */
+    static JobEvent inputUnchangedEvent(Exchange e) {
+        return JobEvent.systemJobBuilder(e).state(JobEvent.State.OK).reason(JobEvent.REASON_INPUT_UNCHANGED).build();
+    }
+
+    /**
+     * Store the input manifest of a successful run of the job.
+     */
+    public void commit(Exchange e, String job) throws IOException {
+        InputManifest manifest = e.getProperty(Constants.INPUT_MANIFEST, InputManifest.class);
+        if (manifest == null) {
+            return;
+        }
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        manifest.write(content);
+        blobStore.uploadBlob(manifestBlobName(job), false, new ByteArrayInputStream(content.toByteArray()));
+        logger.info("Stored input manifest of {} with {} input files", job, manifest.getInputCount());
+    }
+
+    private String manifestBlobName(String job) {
+        return manifestDirectory + "/" + job + ".tsv";
+    }
+}
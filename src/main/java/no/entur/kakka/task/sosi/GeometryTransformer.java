@@ -24,36 +24,134 @@ import org.geotools.api.referencing.operation.TransformException;
 import org.geotools.geometry.jts.JTS;
 import org.geotools.referencing.CRS;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
 import org.locationtech.jts.geom.Geometry;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+
+/**
+ * Transforms UTM (EUREF89/WGS84) coordinates to WGS84 longitude/latitude.
+ * <p>
+ * Two backends are available. {@link Backend#KRUGER} (default) projects with {@link KrugerTransverseMercator} and needs no
+ * EPSG database. {@link Backend#GEOTOOLS} resolves the EPSG math transform for a UTM zone once and caches it, and falls back
+ * to the Krüger projection for points GeoTools rejects as too far outside the zone. The transformer is thread safe.
+ */
 public class GeometryTransformer {
 
+    public enum Backend {KRUGER, GEOTOOLS}
+
     private static final String WGS84_EPSG = "EPSG:4326";
 
-    private static GeometryTransformer instance;
+    private static volatile Backend backend = Backend.KRUGER;
+
+    private static volatile GeometryTransformer instance;
 
     private final CoordinateReferenceSystem wgs84;
 
+    private final Map<String, MathTransform> mathTransformPerUtmZone = new ConcurrentHashMap<>();
+
 
     private GeometryTransformer() throws FactoryException {
         wgs84 = CRS.decode(WGS84_EPSG, true);
 
     }
 
+    public static Backend getBackend() {
+        return backend;
+    }
+
+    public static void setBackend(Backend backend) {
+        GeometryTransformer.backend = backend;
+    }
+
     public static <T extends Geometry> T fromUTM(T geometry, String utmZone) throws FactoryException, TransformException {
+        if (backend == Backend.KRUGER) {
+            return transformWithKruger(geometry, utmZone);
+        }
         return getInstance().transformFromUTM(geometry, utmZone);
     }
 
     public static Coordinate fromUTM(Coordinate coordinate, String utmZone) throws FactoryException {
+        if (backend == Backend.KRUGER) {
+            double[] coordinates = new double[]{coordinate.x, coordinate.y};
+            KrugerTransverseMercator.inverse(coordinates, 0, 1, toZoneNumber(utmZone));
+            return new Coordinate(coordinates[0], coordinates[1]);
+        }
         return getInstance().transformFromUTM(coordinate, utmZone);
     }
 
+    /**
+     * Transform an array of interleaved UTM coordinates (easting, northing, easting, northing ...) in place to
+     * interleaved WGS84 coordinates (longitude, latitude, longitude, latitude ...).
+     */
+    public static void fromUTM(double[] coordinates, String utmZone) throws FactoryException {
+        fromUTM(coordinates, 0, coordinates.length / 2, utmZone);
+    }
+
+    /**
+     * Transform numPoints interleaved UTM coordinates in place, starting at point index fromPoint. Each point is transformed
+     * independently, so splitting an array in ranges gives the same result as transforming it as a whole.
+     */
+    public static void fromUTM(double[] coordinates, int fromPoint, int numPoints, String utmZone) throws FactoryException {
+        if (backend == Backend.KRUGER) {
+            KrugerTransverseMercator.inverse(coordinates, fromPoint, numPoints, toZoneNumber(utmZone));
+        } else {
+            getInstance().transformFromUTM(coordinates, fromPoint, numPoints, utmZone);
+        }
+    }
+
     private static GeometryTransformer getInstance() throws FactoryException {
-        if (instance == null) {
-            instance = new GeometryTransformer();
+        GeometryTransformer result = instance;
+        if (result == null) {
+            synchronized (GeometryTransformer.class) {
+                result = instance;
+                if (result == null) {
+                    result = new GeometryTransformer();
+                    instance = result;
+                }
+            }
         }
-        return instance;
+        return result;
+    }
+
+    private static int toZoneNumber(String utmZone) throws FactoryException {
+        try {
+            int zone = Integer.parseInt(utmZone);
+            if (KrugerTransverseMercator.isSupportedZone(zone)) {
+                return zone;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new FactoryException("Unsupported UTM zone: " + utmZone);
+    }
+
+    private static <T extends Geometry> T transformWithKruger(T geometry, String utmZone) throws FactoryException {
+        int zone = toZoneNumber(utmZone);
+        T transformed = (T) geometry.copy();
+        transformed.apply(new CoordinateSequenceFilter() {
+            @Override
+            public void filter(CoordinateSequence sequence, int i) {
+                double[] coordinates = new double[]{sequence.getX(i), sequence.getY(i)};
+                KrugerTransverseMercator.inverse(coordinates, 0, 1, zone);
+                sequence.setOrdinate(i, CoordinateSequence.X, coordinates[0]);
+                sequence.setOrdinate(i, CoordinateSequence.Y, coordinates[1]);
+            }
+
+            @Override
+            public boolean isDone() {
+                return false;
+            }
+
+            @Override
+            public boolean isGeometryChanged() {
+                return true;
+            }
+        });
+        return transformed;
     }
 
     private <T extends Geometry> T transformFromUTM(T geometry, String utmZone) throws FactoryException, TransformException {
@@ -64,51 +162,48 @@ public class GeometryTransformer {
         try {
             return JTS.transform(coordinate, null, getMathTransform(utmZone));
         } catch (TransformException transformationException) {
-            // JTS transform rejects transformation when too far outside correct zone. Fallback to somewhat dubious stack overflow solution...
-            return new UTM2Deg(utmZone, 'N', coordinate.x, coordinate.y).get();
+            // JTS transform rejects transformation when too far outside correct zone. The Krüger series remains usable there.
+            double[] coordinates = new double[]{coordinate.x, coordinate.y};
+            KrugerTransverseMercator.inverse(coordinates, 0, 1, toZoneNumber(utmZone));
+            return new Coordinate(coordinates[0], coordinates[1]);
         }
     }
 
+    private void transformFromUTM(double[] coordinates, int fromPoint, int numPoints, String utmZone) throws FactoryException {
+        MathTransform mathTransform = getMathTransform(utmZone);
+        int offset = fromPoint * 2;
+        double[] transformed = new double[numPoints * 2];
+        try {
+            mathTransform.transform(coordinates, offset, transformed, 0, numPoints);
+        } catch (TransformException transformationException) {
+            // At least one point is too far outside the zone. Transform point by point so that only the rejected points use the fallback.
+            for (int i = 0; i < numPoints * 2; i += 2) {
+                try {
+                    mathTransform.transform(coordinates, offset + i, transformed, i, 1);
+                } catch (TransformException pointTransformationException) {
+                    transformed[i] = coordinates[offset + i];
+                    transformed[i + 1] = coordinates[offset + i + 1];
+                    KrugerTransverseMercator.inverse(transformed, i / 2, 1, toZoneNumber(utmZone));
+                }
+            }
+        }
+        System.arraycopy(transformed, 0, coordinates, offset, numPoints * 2);
+    }
+
     private MathTransform getMathTransform(String fromUtmZone) throws FactoryException {
-        return CRS.findMathTransform(utmCoordinateReferenceSystem(fromUtmZone), wgs84);
+        MathTransform mathTransform = mathTransformPerUtmZone.get(fromUtmZone);
+        if (mathTransform == null) {
+            mathTransform = CRS.findMathTransform(utmCoordinateReferenceSystem(fromUtmZone), wgs84);
+            MathTransform existing = mathTransformPerUtmZone.putIfAbsent(fromUtmZone, mathTransform);
+            if (existing != null) {
+                mathTransform = existing;
+            }
+        }
+        return mathTransform;
     }
 
     private CoordinateReferenceSystem utmCoordinateReferenceSystem(String utmZone) throws FactoryException {
         String epsgCode = "EPSG:326" + utmZone;
         return CRS.decode(epsgCode, true);
     }
-
-    /**
-     * Lifted from stack overflow.
-     *
-     * @see <a href="https://stackoverflow.com/questions/176137/java-convert-lat-lon-to-utm">Stack Overflow</a>
-     */
-    private class UTM2Deg {
-        double latitude;
-        double longitude;
-
-        private UTM2Deg(String zoneStr, char hemisphere, double easting, double northing) {
-            int zone = Integer.parseInt(zoneStr);
-            double hem;
-            if (hemisphere > 'M')
-                hem = 'N';
-            else
-                hem = 'S';
-            double north;
-            if (hem == 'S')
-                north = northing - 10000000;
-            else
-                north = northing;
-            latitude = (north / 6366197.724 / 0.9996 + (1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2) - 0.006739496742 * Math.sin(north / 6366197.724 / 0.9996) * Math.cos(north / 6366197.724 / 0.9996) * (Math.atan(Math.cos(Math.atan((Math.exp((easting - 500000) / (0.9996 * 6399593.625 / Math.sqrt((1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)))) * (1 - 0.006739496742 * Math.pow((easting - 500000) / (0.9996 * 6399593.625 / Math.sqrt((1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)))), 2) / 2 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2) / 3)) - Math.exp(-(easting - 500000) / (0.9996 * 6399593.625 / Math.sqrt((1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)))) * (1 - 0.006739496742 * Math.pow((easting - 500000) / (0.9996 * 6399593.625 / Math.sqrt((1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)))), 2) / 2 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2) / 3))) / 2 / Math.cos((north - 0.9996 * 6399593.625 * (north / 6366197.724 / 0.9996 - 0.006739496742 * 3 / 4 * (north / 6366197.724 / 0.9996 + Math.sin(2 * north / 6366197.724 / 0.9996) / 2) + Math.pow(0.006739496742 * 3 / 4, 2) * 5 / 3 * (3 * (north / 6366197.724 / 0.9996 + Math.sin(2 * north / 6366197.724 / 0.9996) / 2) + Math.sin(2 * north / 6366197.724 / 0.9996) * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)) / 4 - Math.pow(0.006739496742 * 3 / 4, 3) * 35 / 27 * (5 * (3 * (north / 6366197.724 / 0.9996 + Math.sin(2 * north / 6366197.724 / 0.9996) / 2) + Math.sin(2 * north / 6366197.724 / 0.9996) * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)) / 4 + Math.sin(2 * north / 6366197.724 / 0.9996) * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2) * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)) / 3)) / (0.9996 * 6399593.625 / Math.sqrt((1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)))) * (1 - 0.006739496742 * Math.pow((easting - 500000) / (0.9996 * 6399593.625 / Math.sqrt((1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)))), 2) / 2 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)) + north / 6366197.724 / 0.9996))) * Math.tan((north - 0.9996 * 6399593.625 * (north / 6366197.724 / 0.9996 - 0.006739496742 * 3 / 4 * (north / 6366197.724 / 0.9996 + Math.sin(2 * north / 6366197.724 / 0.9996) / 2) + Math.pow(0.006739496742 * 3 / 4, 2) * 5 / 3 * (3 * (north / 6366197.724 / 0.9996 + Math.sin(2 * north / 6366197.724 / 0.9996) / 2) + Math.sin(2 * north / 6366197.724 / 0.9996) * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)) / 4 - Math.pow(0.006739496742 * 3 / 4, 3) * 35 / 27 * (5 * (3 * (north / 6366197.724 / 0.9996 + Math.sin(2 * north / 6366197.724 / 0.9996) / 2) + Math.sin(2 * north / 6366197.724 / 0.9996) * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)) / 4 + Math.sin(2 * north / 6366197.724 / 0.9996) * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2) * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)) / 3)) / (0.9996 * 6399593.625 / Math.sqrt((1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)))) * (1 - 0.006739496742 * Math.pow((easting - 500000) / (0.9996 * 6399593.625 / Math.sqrt((1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)))), 2) / 2 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)) + north / 6366197.724 / 0.9996)) - north / 6366197.724 / 0.9996) * 3 / 2) * (Math.atan(Math.cos(Math.atan((Math.exp((easting - 500000) / (0.9996 * 6399593.625 / Math.sqrt((1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)))) * (1 - 0.006739496742 * Math.pow((easting - 500000) / (0.9996 * 6399593.625 / Math.sqrt((1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)))), 2) / 2 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2) / 3)) - Math.exp(-(easting - 500000) / (0.9996 * 6399593.625 / Math.sqrt((1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)))) * (1 - 0.006739496742 * Math.pow((easting - 500000) / (0.9996 * 6399593.625 / Math.sqrt((1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)))), 2) / 2 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2) / 3))) / 2 / Math.cos((north - 0.9996 * 6399593.625 * (north / 6366197.724 / 0.9996 - 0.006739496742 * 3 / 4 * (north / 6366197.724 / 0.9996 + Math.sin(2 * north / 6366197.724 / 0.9996) / 2) + Math.pow(0.006739496742 * 3 / 4, 2) * 5 / 3 * (3 * (north / 6366197.724 / 0.9996 + Math.sin(2 * north / 6366197.724 / 0.9996) / 2) + Math.sin(2 * north / 6366197.724 / 0.9996) * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)) / 4 - Math.pow(0.006739496742 * 3 / 4, 3) * 35 / 27 * (5 * (3 * (north / 6366197.724 / 0.9996 + Math.sin(2 * north / 6366197.724 / 0.9996) / 2) + Math.sin(2 * north / 6366197.724 / 0.9996) * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)) / 4 + Math.sin(2 * north / 6366197.724 / 0.9996) * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2) * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)) / 3)) / (0.9996 * 6399593.625 / Math.sqrt((1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)))) * (1 - 0.006739496742 * Math.pow((easting - 500000) / (0.9996 * 6399593.625 / Math.sqrt((1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)))), 2) / 2 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)) + north / 6366197.724 / 0.9996))) * Math.tan((north - 0.9996 * 6399593.625 * (north / 6366197.724 / 0.9996 - 0.006739496742 * 3 / 4 * (north / 6366197.724 / 0.9996 + Math.sin(2 * north / 6366197.724 / 0.9996) / 2) + Math.pow(0.006739496742 * 3 / 4, 2) * 5 / 3 * (3 * (north / 6366197.724 / 0.9996 + Math.sin(2 * north / 6366197.724 / 0.9996) / 2) + Math.sin(2 * north / 6366197.724 / 0.9996) * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)) / 4 - Math.pow(0.006739496742 * 3 / 4, 3) * 35 / 27 * (5 * (3 * (north / 6366197.724 / 0.9996 + Math.sin(2 * north / 6366197.724 / 0.9996) / 2) + Math.sin(2 * north / 6366197.724 / 0.9996) * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)) / 4 + Math.sin(2 * north / 6366197.724 / 0.9996) * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2) * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)) / 3)) / (0.9996 * 6399593.625 / Math.sqrt((1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)))) * (1 - 0.006739496742 * Math.pow((easting - 500000) / (0.9996 * 6399593.625 / Math.sqrt((1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)))), 2) / 2 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)) + north / 6366197.724 / 0.9996)) - north / 6366197.724 / 0.9996)) * 180 / Math.PI;
-            latitude = Math.round(latitude * 10000000);
-            latitude = latitude / 10000000;
-            longitude = Math.atan((Math.exp((easting - 500000) / (0.9996 * 6399593.625 / Math.sqrt((1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)))) * (1 - 0.006739496742 * Math.pow((easting - 500000) / (0.9996 * 6399593.625 / Math.sqrt((1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)))), 2) / 2 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2) / 3)) - Math.exp(-(easting - 500000) / (0.9996 * 6399593.625 / Math.sqrt((1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)))) * (1 - 0.006739496742 * Math.pow((easting - 500000) / (0.9996 * 6399593.625 / Math.sqrt((1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)))), 2) / 2 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2) / 3))) / 2 / Math.cos((north - 0.9996 * 6399593.625 * (north / 6366197.724 / 0.9996 - 0.006739496742 * 3 / 4 * (north / 6366197.724 / 0.9996 + Math.sin(2 * north / 6366197.724 / 0.9996) / 2) + Math.pow(0.006739496742 * 3 / 4, 2) * 5 / 3 * (3 * (north / 6366197.724 / 0.9996 + Math.sin(2 * north / 6366197.724 / 0.9996) / 2) + Math.sin(2 * north / 6366197.724 / 0.9996) * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)) / 4 - Math.pow(0.006739496742 * 3 / 4, 3) * 35 / 27 * (5 * (3 * (north / 6366197.724 / 0.9996 + Math.sin(2 * north / 6366197.724 / 0.9996) / 2) + Math.sin(2 * north / 6366197.724 / 0.9996) * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)) / 4 + Math.sin(2 * north / 6366197.724 / 0.9996) * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2) * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)) / 3)) / (0.9996 * 6399593.625 / Math.sqrt((1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)))) * (1 - 0.006739496742 * Math.pow((easting - 500000) / (0.9996 * 6399593.625 / Math.sqrt((1 + 0.006739496742 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)))), 2) / 2 * Math.pow(Math.cos(north / 6366197.724 / 0.9996), 2)) + north / 6366197.724 / 0.9996)) * 180 / Math.PI + zone * 6 - 183;
-            longitude = Math.round(longitude * 10000000);
-            longitude = longitude / 10000000;
-        }
-
-        public Coordinate get() {
-            return new Coordinate(longitude, latitude);
-        }
-    }
 }
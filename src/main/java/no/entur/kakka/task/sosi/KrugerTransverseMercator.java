@@ -0,0 +1,144 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.sosi;
+
+/**
+ * Inverse Transverse Mercator projection from EUREF89/WGS84 UTM coordinates (northern hemisphere) to WGS84 longitude and
+ * latitude, using the Krüger series to sixth order in the third flattening n as given by Karney (2011).
+ * <p>
+ * The truncation error is in the order of nanometres within a UTM zone, and no EPSG database lookup is needed. Multiple
+ * angles are derived from a single sin/cos and sinh/cosh pair by the angle addition formulas, so each point costs a handful
+ * of transcendental calls and no allocations. Stateless and thread safe.
+ *
+ * @see <a href="https://doi.org/10.1007/s00190-011-0445-3">Karney, Transverse Mercator with an accuracy of a few nanometers</a>
+ */
+public final class KrugerTransverseMercator {
+
+    public static final int MIN_ZONE = 1;
+
+    public static final int MAX_ZONE = 60;
+
+    private static final double SEMI_MAJOR_AXIS = 6378137.0;
+
+    private static final double FLATTENING = 1 / 298.257223563;
+
+    private static final double SCALE_FACTOR = 0.9996;
+
+    private static final double FALSE_EASTING = 500000;
+
+    private static final double N = FLATTENING / (2 - FLATTENING);
+
+    private static final double N2 = N * N;
+    private static final double N3 = N2 * N;
+    private static final double N4 = N3 * N;
+    private static final double N5 = N4 * N;
+    private static final double N6 = N5 * N;
+
+    /**
+     * Rectifying radius multiplied by the scale factor on the central meridian.
+     */
+    private static final double SCALED_RECTIFYING_RADIUS = SCALE_FACTOR * SEMI_MAJOR_AXIS / (1 + N) * (1 + N2 / 4 + N4 / 64 + N6 / 256);
+
+    /**
+     * Coefficients for Gauss-Schreiber coordinates from Transverse Mercator coordinates.
+     */
+    private static final double[] BETA = {
+            N / 2 - 2 * N2 / 3 + 37 * N3 / 96 - N4 / 360 - 81 * N5 / 512 + 96199 * N6 / 604800,
+            N2 / 48 + N3 / 15 - 437 * N4 / 1440 + 46 * N5 / 105 - 1118711 * N6 / 3870720,
+            17 * N3 / 480 - 37 * N4 / 840 - 209 * N5 / 4480 + 5569 * N6 / 90720,
+            4397 * N4 / 161280 - 11 * N5 / 504 - 830251 * N6 / 7257600,
+            4583 * N5 / 161280 - 108847 * N6 / 3991680,
+            20648693 * N6 / 638668800
+    };
+
+    /**
+     * Coefficients for geodetic latitude from conformal latitude.
+     */
+    private static final double[] DELTA = {
+            2 * N - 2 * N2 / 3 - 2 * N3 + 116 * N4 / 45 + 26 * N5 / 45 - 2854 * N6 / 675,
+            7 * N2 / 3 - 8 * N3 / 5 - 227 * N4 / 45 + 2704 * N5 / 315 + 2323 * N6 / 945,
+            56 * N3 / 15 - 136 * N4 / 35 - 1262 * N5 / 105 + 73814 * N6 / 2835,
+            4279 * N4 / 630 - 332 * N5 / 35 - 399572 * N6 / 14175,
+            4174 * N5 / 315 - 144838 * N6 / 6237,
+            601676 * N6 / 22275
+    };
+
+    private KrugerTransverseMercator() {
+    }
+
+    public static boolean isSupportedZone(int zone) {
+        return zone >= MIN_ZONE && zone <= MAX_ZONE;
+    }
+
+    /**
+     * Transform numPoints interleaved UTM coordinates (easting, northing ...) in place to interleaved WGS84 coordinates
+     * (longitude, latitude ...) in degrees, starting at point index fromPoint.
+     */
+    public static void inverse(double[] coordinates, int fromPoint, int numPoints, int zone) {
+        if (!isSupportedZone(zone)) {
+            throw new IllegalArgumentException("Unsupported UTM zone: " + zone);
+        }
+        double centralMeridian = zone * 6 - 183;
+        int end = (fromPoint + numPoints) * 2;
+        for (int i = fromPoint * 2; i < end; i += 2) {
+            double xi = coordinates[i + 1] / SCALED_RECTIFYING_RADIUS;
+            double eta = (coordinates[i] - FALSE_EASTING) / SCALED_RECTIFYING_RADIUS;
+
+            double sin2Xi = Math.sin(2 * xi);
+            double cos2Xi = Math.cos(2 * xi);
+            double sinh2Eta = Math.sinh(2 * eta);
+            double cosh2Eta = Math.cosh(2 * eta);
+
+            double sinXiJ = sin2Xi;
+            double cosXiJ = cos2Xi;
+            double sinhEtaJ = sinh2Eta;
+            double coshEtaJ = cosh2Eta;
+            double xiPrime = xi;
+            double etaPrime = eta;
+            for (int j = 0; j < BETA.length; j++) {
+                xiPrime -= BETA[j] * sinXiJ * coshEtaJ;
+                etaPrime -= BETA[j] * cosXiJ * sinhEtaJ;
+
+                double nextSinXi = sinXiJ * cos2Xi + cosXiJ * sin2Xi;
+                cosXiJ = cosXiJ * cos2Xi - sinXiJ * sin2Xi;
+                sinXiJ = nextSinXi;
+                double nextSinhEta = sinhEtaJ * cosh2Eta + coshEtaJ * sinh2Eta;
+                coshEtaJ = coshEtaJ * cosh2Eta + sinhEtaJ * sinh2Eta;
+                sinhEtaJ = nextSinhEta;
+            }
+
+            double conformalLatitude = Math.asin(Math.sin(xiPrime) / Math.cosh(etaPrime));
+            double longitude = Math.atan2(Math.sinh(etaPrime), Math.cos(xiPrime));
+
+            double sin2Chi = Math.sin(2 * conformalLatitude);
+            double cos2Chi = Math.cos(2 * conformalLatitude);
+            double sinChiJ = sin2Chi;
+            double cosChiJ = cos2Chi;
+            double latitude = conformalLatitude;
+            for (int j = 0; j < DELTA.length; j++) {
+                latitude += DELTA[j] * sinChiJ;
+
+                double nextSinChi = sinChiJ * cos2Chi + cosChiJ * sin2Chi;
+                cosChiJ = cosChiJ * cos2Chi - sinChiJ * sin2Chi;
+                sinChiJ = nextSinChi;
+            }
+
+            coordinates[i] = Math.toDegrees(longitude) + centralMeridian;
+            coordinates[i + 1] = Math.toDegrees(latitude);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.sosi;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Compact store of coordinate sequences keyed by SOSI serial number.
+ * <p>
+ * All coordinates are kept in one packed double[] arena with longitude and latitude interleaved. An open addressing
+ * hash index maps each id to the offset and length of its slice, so no objects are allocated per vertex or per curve.
+ * <p>
+ * Not thread safe for writes. Concurrent reads are safe once all sequences are stored.
+ */
+public class PackedCoordinateStore {
+
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+
+    private static final int INITIAL_INDEX_CAPACITY = 1024;
+
+    private static final int INITIAL_ARENA_POINTS = 16 * 1024;
+
+    private long[] keys;
+    private int[] offsets;
+    private int[] lengths;
+    private int size;
+
+    private double[] arena;
+    private int arenaPoints;
+
+    public PackedCoordinateStore() {
+        keys = newKeys(INITIAL_INDEX_CAPACITY);
+        offsets = new int[INITIAL_INDEX_CAPACITY];
+        lengths = new int[INITIAL_INDEX_CAPACITY];
+        arena = new double[INITIAL_ARENA_POINTS * 2];
+    }
+
+    /**
+     * Store the first numPoints points of interleaved lon/lat coordinates for id. An existing entry for the id is replaced.
+     */
+    public void put(long id, double[] coordinates, int numPoints) {
+        if (id == EMPTY_KEY) {
+            throw new IllegalArgumentException("Unsupported id: " + id);
+        }
+        ensureArenaCapacity(numPoints);
+        System.arraycopy(coordinates, 0, arena, arenaPoints * 2, numPoints * 2);
+
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        int slot = slot(id, keys);
+        if (keys[slot] == EMPTY_KEY) {
+            keys[slot] = id;
+            size++;
+        }
+        offsets[slot] = arenaPoints;
+        lengths[slot] = numPoints;
+        arenaPoints += numPoints;
+    }
+
+    public boolean contains(long id) {
+        return keys[slot(id, keys)] == id;
+    }
+
+    /**
+     * Number of points stored for id, or -1 if id is unknown.
+     */
+    public int getNumPoints(long id) {
+        int slot = slot(id, keys);
+        return keys[slot] == id ? lengths[slot] : -1;
+    }
+
+    /**
+     * Copy the coordinates for id as interleaved lon/lat into target, starting at point index targetPoint.
+     *
+     * @return the number of points copied, or -1 if id is unknown.
+     */
+    public int copyTo(long id, boolean reversed, double[] target, int targetPoint) {
+        int slot = slot(id, keys);
+        if (keys[slot] != id) {
+            return -1;
+        }
+        int offset = offsets[slot];
+        int numPoints = lengths[slot];
+        if (reversed) {
+            for (int i = 0; i < numPoints; i++) {
+                int source = (offset + numPoints - 1 - i) * 2;
+                int destination = (targetPoint + i) * 2;
+                target[destination] = arena[source];
+                target[destination + 1] = arena[source + 1];
+            }
+        } else {
+            System.arraycopy(arena, offset * 2, target, targetPoint * 2, numPoints * 2);
+        }
+        return numPoints;
+    }
+
+    /**
+     * Apply operation in place to all stored points, in ranges of at most rangePoints points. Ranges are processed in
+     * parallel when a pool is given, and sequentially on the calling thread otherwise. The operation must treat each point
+     * independently, so that the result does not depend on how the points are split.
+     */
+    public void transformInPlace(RangeOperation operation, int rangePoints, ForkJoinPool pool) {
+        if (pool == null) {
+            for (int fromPoint = 0; fromPoint < arenaPoints; fromPoint += rangePoints) {
+                operation.apply(arena, fromPoint, Math.min(rangePoints, arenaPoints - fromPoint));
+            }
+        } else if (arenaPoints > 0) {
+            pool.invoke(new RangeTask(operation, arena, 0, arenaPoints, rangePoints));
+        }
+    }
+
+    /**
+     * Number of coordinate sequences stored.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of points stored, including points in replaced sequences.
+     */
+    public long getVertexCount() {
+        return arenaPoints;
+    }
+
+    /**
+     * Release unused arena capacity.
+     */
+    public void trimToSize() {
+        if (arena.length > arenaPoints * 2) {
+            arena = Arrays.copyOf(arena, arenaPoints * 2);
+        }
+    }
+
+    /**
+     * Approximate number of bytes retained by the store, including unused capacity.
+     */
+    public long getEstimatedHeapBytes() {
+        long arrayHeaders = 4L * 16;
+        return arrayHeaders + (long) keys.length * Long.BYTES + (long) offsets.length * Integer.BYTES
+                + (long) lengths.length * Integer.BYTES + (long) arena.length * Double.BYTES;
+    }
+
+    public double getHeapBytesPerVertex() {
+        if (arenaPoints == 0) {
+            return 0;
+        }
+        return (double) getEstimatedHeapBytes() / arenaPoints;
+    }
+
+    private void ensureArenaCapacity(int numPoints) {
+        long required = (long) (arenaPoints + numPoints) * 2;
+        if (required > arena.length) {
+            long newLength = Math.max(required, (long) arena.length * 2);
+            if (newLength > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Coordinate store exceeds max capacity");
+            }
+            arena = Arrays.copyOf(arena, (int) newLength);
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldOffsets = offsets;
+        int[] oldLengths = lengths;
+        keys = newKeys(capacity);
+        offsets = new int[capacity];
+        lengths = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY_KEY) {
+                int slot = slot(oldKeys[i], keys);
+                keys[slot] = oldKeys[i];
+                offsets[slot] = oldOffsets[i];
+                lengths[slot] = oldLengths[i];
+            }
+        }
+    }
+
+    /**
+     * Linear probing. Returns the slot holding id, or the empty slot where id should be inserted.
+     */
+    private static int slot(long id, long[] keys) {
+        int mask = keys.length - 1;
+        int slot = mix(id) & mask;
+        while (keys[slot] != EMPTY_KEY && keys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int mix(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static long[] newKeys(int capacity) {
+        long[] newKeys = new long[capacity];
+        Arrays.fill(newKeys, EMPTY_KEY);
+        return newKeys;
+    }
+
+    /**
+     * Operation on a range of interleaved lon/lat coordinates.
+     */
+    @FunctionalInterface
+    public interface RangeOperation {
+        void apply(double[] coordinates, int fromPoint, int numPoints);
+    }
+
+    private static class RangeTask extends RecursiveAction {
+
+        private final RangeOperation operation;
+        private final double[] coordinates;
+        private final int fromPoint;
+        private final int numPoints;
+        private final int rangePoints;
+
+        private RangeTask(RangeOperation operation, double[] coordinates, int fromPoint, int numPoints, int rangePoints) {
+            this.operation = operation;
+            this.coordinates = coordinates;
+            this.fromPoint = fromPoint;
+            this.numPoints = numPoints;
+            this.rangePoints = rangePoints;
+        }
+
+        @Override
+        protected void compute() {
+            if (numPoints <= rangePoints) {
+                operation.apply(coordinates, fromPoint, numPoints);
+                return;
+            }
+            int half = numPoints / 2;
+            invokeAll(new RangeTask(operation, coordinates, fromPoint, half, rangePoints),
+                    new RangeTask(operation, coordinates, fromPoint + half, numPoints - half, rangePoints));
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.sosi;
+
+import no.entur.kakka.task.netex.GeometrySimplifier;
+import no.entur.kakka.task.netex.TopographicPlaceAdapter;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Simplification of the KURVE arcs of a SOSI file, shared by all areas referencing them.
+ * <p>
+ * The rings of all areas are registered before the coordinates are projected. Once projected, each arc is simplified
+ * once per type, and every ring is assembled from the simplified arcs and checked. If a ring is not valid, its arcs are
+ * kept at full resolution, for all areas of the type referencing them, so that neighbours still share identical
+ * boundaries. Rings affected by this are checked again, until all rings are valid or only use full resolution arcs.
+ * <p>
+ * Registration is thread safe. Reads are thread safe once {@link #complete(ForkJoinPool)} has returned.
+ */
+public class SharedArcSimplifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedArcSimplifier.class);
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+    private final PackedCoordinateStore coordinates;
+
+    private final GeometrySimplifier simplifier;
+
+    private final Map<TopographicPlaceAdapter.Type, Arcs> arcsPerType = new EnumMap<>(TopographicPlaceAdapter.Type.class);
+
+    private volatile boolean completed;
+
+    SharedArcSimplifier(PackedCoordinateStore coordinates, GeometrySimplifier simplifier) {
+        this.coordinates = coordinates;
+        this.simplifier = simplifier;
+    }
+
+    /**
+     * Register the ring of an area, as the KURVE refs it is assembled from. Ignored for types that are not simplified.
+     */
+    public synchronized void addRing(TopographicPlaceAdapter.Type type, long[] refIds, boolean[] reversed) {
+        if (completed) {
+            throw new IllegalStateException("Rings must be added before the arcs are simplified");
+        }
+        if (simplifier.isEnabled(type) && refIds.length > 0) {
+            arcsPerType.computeIfAbsent(type, t -> new Arcs()).rings.add(new Ring(refIds, reversed));
+        }
+    }
+
+    /**
+     * Simplify the arcs of all registered rings, once the coordinates are projected, and keep the arcs of rings that would
+     * not be valid at full resolution. Rings are checked in parallel if a pool is given.
+     */
+    public synchronized void complete(ForkJoinPool pool) {
+        arcsPerType.forEach((type, arcs) -> {
+            simplifyArcs(arcs, simplifier.getTolerance(type));
+            keepArcsOfInvalidRings(type, arcs, pool);
+        });
+        completed = true;
+    }
+
+    /**
+     * Whether areas of type should be assembled from the shared arcs.
+     */
+    public boolean isEnabled(TopographicPlaceAdapter.Type type) {
+        return completed && arcsPerType.containsKey(type);
+    }
+
+    /**
+     * Number of points of an arc for areas of type, or -1 if the arc is unknown.
+     */
+    public int getNumPointsForRef(TopographicPlaceAdapter.Type type, long ref) {
+        PackedCoordinateStore store = storeFor(type, ref);
+        return store.getNumPoints(ref);
+    }
+
+    /**
+     * Copy the coordinates of an arc for areas of type into target, as {@link PackedCoordinateStore#copyTo}.
+     */
+    public int copyForRef(TopographicPlaceAdapter.Type type, long ref, boolean reversed, double[] target, int targetPoint) {
+        return storeFor(type, ref).copyTo(ref, reversed, target, targetPoint);
+    }
+
+    private PackedCoordinateStore storeFor(TopographicPlaceAdapter.Type type, long ref) {
+        Arcs arcs = arcsPerType.get(type);
+        if (arcs == null || arcs.fullResolution.contains(ref) || !arcs.simplified.contains(ref)) {
+            return coordinates;
+        }
+        return arcs.simplified;
+    }
+
+    private void simplifyArcs(Arcs arcs, double tolerance) {
+        double[] arc = new double[0];
+        for (Ring ring : arcs.rings) {
+            for (long ref : ring.refIds()) {
+                int numPoints = coordinates.getNumPoints(ref);
+                if (numPoints <= 0 || arcs.simplified.contains(ref)) {
+                    continue;
+                }
+                if (arc.length < numPoints * 2) {
+                    arc = new double[numPoints * 2];
+                }
+                coordinates.copyTo(ref, false, arc, 0);
+                arcs.simplified.put(ref, arc, GeometrySimplifier.simplifyArc(arc, numPoints, tolerance));
+            }
+        }
+        arcs.simplified.trimToSize();
+    }
+
+    private void keepArcsOfInvalidRings(TopographicPlaceAdapter.Type type, Arcs arcs, ForkJoinPool pool) {
+        Map<Long, List<Ring>> ringsPerArc = null;
+        Set<Ring> fallbacks = new HashSet<>();
+        List<Ring> toCheck = arcs.rings;
+        while (!toCheck.isEmpty()) {
+            List<Ring> checking = toCheck;
+            List<Ring> invalid = pool == null
+                    ? checking.stream().filter(ring -> !isValid(type, ring)).toList()
+                    : pool.submit(() -> checking.parallelStream().filter(ring -> !isValid(type, ring)).toList()).join();
+            if (invalid.isEmpty()) {
+                break;
+            }
+            if (ringsPerArc == null) {
+                ringsPerArc = ringsPerArc(arcs.rings);
+            }
+            Set<Ring> affected = new HashSet<>();
+            for (Ring ring : invalid) {
+                if (fallbacks.add(ring)) {
+                    simplifier.recordFallback(type);
+                }
+                for (long ref : ring.refIds()) {
+                    if (arcs.fullResolution.add(ref)) {
+                        affected.addAll(ringsPerArc.getOrDefault(ref, List.of()));
+                    }
+                }
+            }
+            toCheck = new ArrayList<>(affected);
+        }
+        if (!fallbacks.isEmpty()) {
+            logger.info("Simplified rings of {} {} areas are not valid, keeping {} shared arcs at full resolution", fallbacks.size(), type,
+                    arcs.fullResolution.size());
+        }
+    }
+
+    private boolean isValid(TopographicPlaceAdapter.Type type, Ring ring) {
+        int numPoints = 0;
+        for (long ref : ring.refIds()) {
+            numPoints += Math.max(0, getNumPointsForRef(type, ref));
+        }
+        if (numPoints < 4) {
+            return false;
+        }
+        double[] coordinates = new double[numPoints * 2];
+        int point = 0;
+        for (int i = 0; i < ring.refIds().length; i++) {
+            int copied = copyForRef(type, ring.refIds()[i], ring.reversed()[i], coordinates, point);
+            point += Math.max(0, copied);
+        }
+        return point >= 4 && GEOMETRY_FACTORY.createPolygon(new PackedCoordinateSequence.Double(Arrays.copyOf(coordinates, point * 2), 2, 0)).isValid();
+    }
+
+    private static Map<Long, List<Ring>> ringsPerArc(List<Ring> rings) {
+        Map<Long, List<Ring>> ringsPerArc = new HashMap<>();
+        for (Ring ring : rings) {
+            for (long ref : ring.refIds()) {
+                ringsPerArc.computeIfAbsent(ref, r -> new ArrayList<>(2)).add(ring);
+            }
+        }
+        return ringsPerArc;
+    }
+
+    private static class Arcs {
+
+        private final List<Ring> rings = new ArrayList<>();
+
+        private final PackedCoordinateStore simplified = new PackedCoordinateStore();
+
+        private final Set<Long> fullResolution = new HashSet<>();
+    }
+
+    /**
+     * Compared by identity, as two areas may have the same refs.
+     */
+    private static final class Ring {
+
+        private final long[] refIds;
+
+        private final boolean[] reversed;
+
+        private Ring(long[] refIds, boolean[] reversed) {
+            this.refIds = refIds;
+            this.reversed = reversed;
+        }
+
+        private long[] refIds() {
+            return refIds;
+        }
+
+        private boolean[] reversed() {
+            return reversed;
+        }
+    }
+}
@@ -16,25 +16,36 @@
 
 package no.entur.kakka.task.sosi;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import no.entur.kakka.task.netex.GeometrySimplifier;
 import no.vegvesen.nvdb.sosi.document.SosiElement;
 import no.vegvesen.nvdb.sosi.document.SosiNumber;
 import no.vegvesen.nvdb.sosi.document.SosiSerialNumber;
 import no.vegvesen.nvdb.sosi.document.SosiValue;
+import org.geotools.api.referencing.FactoryException;
 import org.locationtech.jts.geom.Coordinate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 public class SosiCoordinates {
 
+    private static final DistributionSummary HEAP_BYTES_PER_VERTEX = DistributionSummary.builder("kakka.sosi.coordinates.heap.bytes.per.vertex")
+            .description("Approximate heap retained per vertex by the SOSI coordinate store")
+            .baseUnit("bytes")
+            .register(Metrics.globalRegistry);
+
+    private static final int PROJECTION_RANGE_POINTS = 16 * 1024;
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
-    private final Map<Long, List<Coordinate>> coordinatesMap = new HashMap<>();
+    private final PackedCoordinateStore coordinateStore = new PackedCoordinateStore();
     private double unit = 0.01;
     private String utmZone = "33";
+    private SharedArcSimplifier arcSimplifier;
 
     public SosiCoordinates(SosiElement head) {
         SosiElement transpar = head.findSubElement(se -> "TRANSPAR".equals(se.getName())).orElse(null);
@@ -60,43 +71,141 @@ public class SosiCoordinates {
         }
     }
 
-    public List<Coordinate> getForRef(Long ref) {
-        return coordinatesMap.get(ref);
+    /**
+     * Number of points stored for a KURVE/BUEP ref, or -1 if the ref is unknown.
+     */
+    public int getNumPointsForRef(long ref) {
+        return coordinateStore.getNumPoints(ref);
     }
 
+    /**
+     * Copy interleaved lon/lat coordinates for a KURVE/BUEP ref into target, starting at point index targetPoint.
+     *
+     * @return number of points copied, or -1 if the ref is unknown.
+     */
+    public int copyForRef(long ref, boolean reversed, double[] target, int targetPoint) {
+        return coordinateStore.copyTo(ref, reversed, target, targetPoint);
+    }
+
+    /**
+     * Simplify arcs shared by the areas of this file with simplifier, once the coordinates are projected. Rings must be
+     * added to the returned simplifier before {@link #completeCollection(ForkJoinPool)}.
+     */
+    public SharedArcSimplifier enableArcSimplification(GeometrySimplifier simplifier) {
+        arcSimplifier = new SharedArcSimplifier(coordinateStore, simplifier);
+        return arcSimplifier;
+    }
+
+    /**
+     * Shared arc simplification for this file, or null if not enabled.
+     */
+    public SharedArcSimplifier getArcSimplifier() {
+        return arcSimplifier;
+    }
+
+    /**
+     * Collect UTM coordinates for a KURVE/BUEP element. Projection to WGS84 is deferred to {@link #completeCollection()}.
+     */
     public void collectCoordinates(SosiElement sosiElement) {
+        Curve curve = readCurve(sosiElement);
+        if (curve != null) {
+            addCurve(curve);
+        }
+    }
+
+    /**
+     * Read the scaled UTM coordinates of a KURVE/BUEP element, or null for other elements. Safe to call from multiple threads.
+     */
+    Curve readCurve(SosiElement sosiElement) {
         if (sosiElement.getName().equals("KURVE") || sosiElement.getName().equals("BUEP")) {
 
-            Long id = sosiElement.getValueAs(SosiSerialNumber.class).longValue();
+            long id = sosiElement.getValueAs(SosiSerialNumber.class).longValue();
 
             List<SosiNumber> sosiNumbers = new ArrayList<>();
             sosiElement.subElements().filter(se -> "NØ".equals(se.getName())).forEach(se -> sosiNumbers.addAll(se.getValuesAs(SosiNumber.class)));
 
-            List<Coordinate> coordinates = toLatLonCoordinates(sosiNumbers);
-
-            coordinatesMap.put(id, coordinates);
+            return new Curve(id, toUtm(sosiNumbers));
         }
+        return null;
+    }
 
+    void addCurve(Curve curve) {
+        coordinateStore.put(curve.id(), curve.coordinates(), curve.coordinates().length / 2);
+    }
+
+    public void completeCollection() {
+        completeCollection(null);
+    }
+
+    /**
+     * Project all collected curves to WGS84 once collection is done, in parallel ranges if a pool is given. Releases unused
+     * capacity and reports heap usage per vertex. Shared arcs are simplified once projected, if enabled.
+     * <p>
+     * Fails if the coordinates cannot be projected, rather than leaving the areas of the file without geometries.
+     */
+    public void completeCollection(ForkJoinPool pool) {
+        coordinateStore.trimToSize();
+        coordinateStore.transformInPlace(this::projectRange, PROJECTION_RANGE_POINTS, pool);
+        double bytesPerVertex = coordinateStore.getHeapBytesPerVertex();
+        if (coordinateStore.getVertexCount() > 0) {
+            HEAP_BYTES_PER_VERTEX.record(bytesPerVertex);
+        }
+        logger.info("Collected {} curves with {} vertices. Coordinate store uses approx. {} bytes ({} bytes per vertex)", coordinateStore.size(),
+                coordinateStore.getVertexCount(), coordinateStore.getEstimatedHeapBytes(), String.format("%.1f", bytesPerVertex));
+        if (arcSimplifier != null) {
+            arcSimplifier.complete(pool);
+        }
     }
 
     public List<Coordinate> toLatLonCoordinates(List<SosiNumber> sosiNumbers) {
-        List<Coordinate> coordinates = new ArrayList<>();
-        Double y = null;
-        for (SosiNumber sosiNumber : sosiNumbers) {
-            if (y == null) {
-                y = sosiNumber.longValue() * unit;
-            } else {
-                double x = sosiNumber.longValue() * unit;
-                try {
-                    Coordinate utmCoord = new Coordinate(x, y);
-                    coordinates.add(GeometryTransformer.fromUTM(utmCoord, utmZone));
-                } catch (Exception e) {
-                    logger.warn("Failed to convert coordinates from utm to wgs84:{}", e.getMessage(), e);
-                }
-                y = null;
-            }
+        double[] lonLat = toLatLon(sosiNumbers);
+        int numPoints = lonLat.length / 2;
+        List<Coordinate> coordinates = new ArrayList<>(numPoints);
+        for (int i = 0; i < numPoints; i++) {
+            coordinates.add(new Coordinate(lonLat[i * 2], lonLat[i * 2 + 1]));
+        }
+        return coordinates;
+    }
+
+    private void projectRange(double[] coordinates, int fromPoint, int numPoints) {
+        try {
+            GeometryTransformer.fromUTM(coordinates, fromPoint, numPoints, utmZone);
+        } catch (FactoryException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Convert SOSI NØ values to interleaved easting/northing UTM coordinates.
+     */
+    private double[] toUtm(List<SosiNumber> sosiNumbers) {
+        int numPoints = sosiNumbers.size() / 2;
+        double[] coordinates = new double[numPoints * 2];
+        for (int i = 0; i < numPoints; i++) {
+            // SOSI lists northing before easting
+            coordinates[i * 2] = sosiNumbers.get(i * 2 + 1).longValue() * unit;
+            coordinates[i * 2 + 1] = sosiNumbers.get(i * 2).longValue() * unit;
+        }
+        return coordinates;
+    }
+
+    /**
+     * Convert SOSI NØ values to interleaved lon/lat WGS84 coordinates.
+     */
+    private double[] toLatLon(List<SosiNumber> sosiNumbers) {
+        double[] coordinates = toUtm(sosiNumbers);
+        try {
+            GeometryTransformer.fromUTM(coordinates, utmZone);
+        } catch (Exception e) {
+            logger.warn("Failed to convert coordinates from utm to wgs84:{}", e.getMessage(), e);
+            return new double[0];
         }
         return coordinates;
     }
 
+    /**
+     * Coordinates for a KURVE/BUEP element, by serial number.
+     */
+    record Curve(long id, double[] coordinates) {
+    }
 }
@@ -26,13 +26,17 @@ public class SosiCounty extends SosiElementWrapper {
         super(sosiElement, coordinates);
     }
 
+    public SosiCounty(SosiElementIndex index, SosiCoordinates coordinates) {
+        super(index, coordinates);
+    }
+
     @Override
     public Type getType() {
         return Type.COUNTY;
     }
 
     @Override
-    public String getId() {
+    protected String readId() {
         return pad(getProperty("FYLKESNUMMER"), 2);
     }
 
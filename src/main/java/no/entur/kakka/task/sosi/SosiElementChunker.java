@@ -0,0 +1,220 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.task.sosi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Splits a SOSI file into its header and one raw chunk of bytes per top level element, without parsing or decoding the content.
+ * <p>
+ * The file is read in blocks into a single buffer, which is scanned for line ends and element starts in place. Only the
+ * current element is held in memory, and the buffer only grows if an element is larger than it. Iteration stops at .SLUTT.
+ */
+public class SosiElementChunker implements Iterator<byte[]>, Closeable {
+
+    public static final byte[] END = ".SLUTT\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] HEAD = ".HODE".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel channel;
+
+    private final byte[] header;
+
+    /**
+     * Bytes read so far, from position 0 up to the buffer position.
+     */
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private boolean endOfInput;
+
+    /**
+     * Start of the first line of the pending element, or -1 when there are no more elements. Bytes before it are released
+     * on the next read.
+     */
+    private int elementStart;
+
+    /**
+     * Start of the next line to scan.
+     */
+    private int lineStart;
+
+    public SosiElementChunker(InputStream inputStream) throws IOException {
+        this(Channels.newChannel(inputStream));
+    }
+
+    public SosiElementChunker(ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+
+        int lineEnd = skipToNextElement();
+        header = Arrays.copyOf(buffer.array(), lineStart);
+        elementStart = lineEnd < 0 ? -1 : lineStart;
+        lineStart = lineEnd;
+    }
+
+    /**
+     * All lines before the first element, including .HODE.
+     */
+    public byte[] getHeader() {
+        return header;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return elementStart >= 0 && !regionStartsWith(buffer.array(), elementStart, lineStart, END, END.length - 1);
+    }
+
+    @Override
+    public byte[] next() {
+        try {
+            ByteBuffer element = nextElement();
+            byte[] chunk = new byte[element.remaining()];
+            element.get(chunk);
+            return chunk;
+        } catch (IOException ioE) {
+            throw new UncheckedIOException("Failed to read SOSI element: " + ioE.getMessage(), ioE);
+        }
+    }
+
+    /**
+     * Next element as a view of the read buffer, without copying it. The view is only valid until the next call.
+     */
+    public ByteBuffer nextElement() throws IOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int lineEnd = skipToNextElement();
+        ByteBuffer element = ByteBuffer.wrap(buffer.array(), elementStart, lineStart - elementStart).slice();
+        elementStart = lineEnd < 0 ? -1 : lineStart;
+        lineStart = lineEnd;
+        return element;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Name of the element in a chunk, ie "KURVE" for a chunk starting with ".KURVE 633:".
+     */
+    public static String elementName(byte[] chunk) {
+        int end = 1;
+        while (end < chunk.length && chunk[end] != ' ' && chunk[end] != ':' && chunk[end] != '\r' && chunk[end] != '\n') {
+            end++;
+        }
+        return new String(chunk, 1, end - 1, StandardCharsets.UTF_8);
+    }
+
+    public static boolean isStartOfElement(byte[] line) {
+        return isStartOfElement(line, 0, line.length);
+    }
+
+    private static boolean isStartOfElement(byte[] bytes, int start, int end) {
+        return end - start > 1 && bytes[start] == '.' && bytes[start + 1] != '.' && !regionStartsWith(bytes, start, end, HEAD, HEAD.length);
+    }
+
+    private static boolean regionStartsWith(byte[] bytes, int start, int end, byte[] prefix, int prefixLength) {
+        if (end - start < prefixLength) {
+            return false;
+        }
+        for (int i = 0; i < prefixLength; i++) {
+            if (bytes[start + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Advance lineStart past every line that does not start an element.
+     *
+     * @return end of the element line at lineStart, or -1 at end of input.
+     */
+    private int skipToNextElement() throws IOException {
+        int lineEnd;
+        while ((lineEnd = nextLineEnd()) >= 0 && !isStartOfElement(buffer.array(), lineStart, lineEnd)) {
+            lineStart = lineEnd;
+        }
+        return lineEnd;
+    }
+
+    /**
+     * End of the line at lineStart, including the line terminator. A missing terminator on the last line is added.
+     *
+     * @return position after the line terminator, or -1 at end of input.
+     */
+    private int nextLineEnd() throws IOException {
+        int scanned = lineStart;
+        while (true) {
+            byte[] bytes = buffer.array();
+            int filled = buffer.position();
+            for (int i = scanned; i < filled; i++) {
+                if (bytes[i] == '\n') {
+                    return i + 1;
+                }
+            }
+            if (endOfInput) {
+                if (lineStart == filled) {
+                    return -1;
+                }
+                ensureRemaining();
+                buffer.put((byte) '\n');
+                return buffer.position();
+            }
+            scanned = filled - read();
+        }
+    }
+
+    /**
+     * Read the next block, after releasing the bytes before the pending element.
+     *
+     * @return the number of bytes the buffer content was shifted
+     */
+    private int read() throws IOException {
+        int shift = Math.max(elementStart, 0);
+        if (shift > 0) {
+            buffer.flip().position(shift);
+            buffer.compact();
+            elementStart -= shift;
+            lineStart -= shift;
+        }
+        ensureRemaining();
+        if (channel.read(buffer) < 0) {
+            endOfInput = true;
+        }
+        return shift;
+    }
+
+    private void ensureRemaining() {
+        if (!buffer.hasRemaining()) {
+            buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.sosi;
+
+import no.vegvesen.nvdb.sosi.document.SosiElement;
+import no.vegvesen.nvdb.sosi.document.SosiValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the direct sub elements of a SOSI element by name, built in a single scan of the sub elements.
+ * <p>
+ * Values are either a single SosiElement or a List of SosiElements for repeated names, so that the common case of unique
+ * names does not allocate a list per name. Indexes for nested sub elements are built on first lookup and kept.
+ * <p>
+ * Not thread safe.
+ */
+public class SosiElementIndex {
+
+    private final SosiElement element;
+
+    private final Map<String, Object> subElements;
+
+    private Map<SosiElement, SosiElementIndex> childIndexes;
+
+    public SosiElementIndex(SosiElement element) {
+        this.element = element;
+        this.subElements = new HashMap<>();
+        element.subElements().forEach(this::add);
+    }
+
+    public SosiElement getElement() {
+        return element;
+    }
+
+    /**
+     * First direct sub element with name, or null.
+     */
+    @SuppressWarnings("unchecked")
+    public SosiElement first(String name) {
+        Object value = subElements.get(name);
+        if (value instanceof List) {
+            return ((List<SosiElement>) value).getFirst();
+        }
+        return (SosiElement) value;
+    }
+
+    /**
+     * All direct sub elements with name, in document order.
+     */
+    @SuppressWarnings("unchecked")
+    public List<SosiElement> all(String name) {
+        Object value = subElements.get(name);
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        if (value instanceof List) {
+            return Collections.unmodifiableList((List<SosiElement>) value);
+        }
+        return List.of((SosiElement) value);
+    }
+
+    /**
+     * Sub element at path, ie. IDENT/LOKALID, following the first element with each name. Null if any part of the path is missing.
+     */
+    public SosiElement find(String... path) {
+        SosiElementIndex index = this;
+        SosiElement subElement = null;
+        for (int i = 0; i < path.length; i++) {
+            subElement = index.first(path[i]);
+            if (subElement == null) {
+                return null;
+            }
+            if (i < path.length - 1) {
+                index = index.child(subElement);
+            }
+        }
+        return subElement;
+    }
+
+    /**
+     * String value of the sub element at path, or null if the path is missing.
+     */
+    public String getString(String... path) {
+        SosiElement subElement = find(path);
+        if (subElement == null) {
+            return null;
+        }
+        return subElement.getValueAs(SosiValue.class).getString();
+    }
+
+    /**
+     * Index for a direct sub element, built on first request.
+     */
+    public SosiElementIndex child(SosiElement subElement) {
+        if (childIndexes == null) {
+            childIndexes = new IdentityHashMap<>(4);
+        }
+        return childIndexes.computeIfAbsent(subElement, SosiElementIndex::new);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void add(SosiElement subElement) {
+        subElements.merge(subElement.getName(), subElement, (existing, added) -> {
+            List<SosiElement> list;
+            if (existing instanceof List) {
+                list = (List<SosiElement>) existing;
+            } else {
+                list = new ArrayList<>(2);
+                list.add((SosiElement) existing);
+            }
+            list.add((SosiElement) added);
+            return list;
+        });
+    }
+}
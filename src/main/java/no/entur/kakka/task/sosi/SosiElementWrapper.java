@@ -16,84 +16,172 @@
 
 package no.entur.kakka.task.sosi;
 
-import com.google.common.collect.Lists;
+import no.entur.kakka.task.netex.GeometrySimplifier;
 import no.entur.kakka.task.netex.TopographicPlaceAdapter;
 import no.vegvesen.nvdb.sosi.document.SosiElement;
 import no.vegvesen.nvdb.sosi.document.SosiRefIsland;
 import no.vegvesen.nvdb.sosi.document.SosiRefNumber;
 import no.vegvesen.nvdb.sosi.document.SosiValue;
 import org.apache.commons.lang3.StringUtils;
-import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 public abstract class SosiElementWrapper implements TopographicPlaceAdapter {
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
     protected SosiElement sosiElement;
+    protected SosiElementIndex index;
     protected Geometry geometry;
     protected Map<String, String> names;
 
+    private String id;
+    private String name;
+    private boolean nameResolved;
+    private List<SosiValue> refs;
+
     protected SosiCoordinates coordinates;
 
+    protected GeometrySimplifier simplifier = GeometrySimplifier.NONE;
+
     public SosiElementWrapper(SosiElement sosiElement, SosiCoordinates coordinates) {
-        this.sosiElement = sosiElement;
+        this(new SosiElementIndex(sosiElement), coordinates);
+    }
+
+    public SosiElementWrapper(SosiElementIndex index, SosiCoordinates coordinates) {
+        this.sosiElement = index.getElement();
+        this.index = index;
         this.coordinates = coordinates;
     }
 
+    void setSimplifier(GeometrySimplifier simplifier) {
+        this.simplifier = simplifier;
+    }
+
     protected abstract String getNamePropertyName();
 
+    /**
+     * Read the id from the element. Called once, the result is kept by {@link #getId()}.
+     */
+    protected abstract String readId();
+
+    @Override
+    public String getId() {
+        if (id == null) {
+            id = readId();
+        }
+        return id;
+    }
+
+    /**
+     * Values of the REF sub element, or an empty list if the element has no REF.
+     */
+    protected List<SosiValue> getRefs() {
+        if (refs == null) {
+            SosiElement refElement = index.first("REF");
+            refs = refElement == null ? List.of() : refElement.getValuesAs(SosiValue.class);
+        }
+        return refs;
+    }
+
     @Override
     public Geometry getDefaultGeometry() {
         if (geometry != null) {
             return geometry;
         }
-        List<Coordinate> coordinateList = new ArrayList<>();
-
-        Optional<SosiElement> refElement = sosiElement.findSubElement(se -> "REF".equals(se.getName()));
-        if (refElement.isPresent()) {
-            for (SosiValue ref : refElement.get().getValuesAs(SosiValue.class)) {
-
-                if (ref instanceof SosiRefNumber sosiRefNumber) {
-                    Long refId = sosiRefNumber.longValue();
-                    List<Coordinate> coordinatesForRef = coordinates.getForRef(refId);
-                    if (coordinatesForRef != null) {
-
-                        if (!coordinatesForRef.isEmpty()) {
-                            if (sosiRefNumber.isReversedOrder()) {
-                                coordinateList.addAll(Lists.reverse(coordinatesForRef));
-                            } else {
-                                coordinateList.addAll(coordinatesForRef);
-                            }
-
-                        } else {
-                            logger.info("Bad coord sequence for  SosiRef: {} for: {}: {}: {}", refId, getType(), getId(), getName());
-                        }
-                    } else {
-                        logger.info("Ignore unknown SosiRef: {} for: {}: {}: {}", refId, getType(), getId(), getName());
-                    }
-                } else if (ref instanceof SosiRefIsland) {
-                    logger.info("Ignore SosiRefIsland (enclave) for: {}: {}: {}", getType(), getId(), getName());
-                }
 
+        List<SosiValue> refs = getRefs();
+        if (refs.isEmpty()) {
+            return null;
+        }
+
+        long[] refIds = new long[refs.size()];
+        boolean[] reversed = new boolean[refs.size()];
+        int numRefs = 0;
+        int numPoints = 0;
+        for (SosiValue ref : refs) {
+
+            if (ref instanceof SosiRefNumber sosiRefNumber) {
+                long refId = sosiRefNumber.longValue();
+                int numPointsForRef = coordinates.getNumPointsForRef(refId);
+                if (numPointsForRef > 0) {
+                    refIds[numRefs] = refId;
+                    reversed[numRefs] = sosiRefNumber.isReversedOrder();
+                    numRefs++;
+                    numPoints += numPointsForRef;
+                } else if (numPointsForRef == 0) {
+                    logger.info("Bad coord sequence for  SosiRef: {} for: {}: {}: {}", refId, getType(), getId(), getName());
+                } else {
+                    logger.info("Ignore unknown SosiRef: {} for: {}: {}: {}", refId, getType(), getId(), getName());
+                }
+            } else if (ref instanceof SosiRefIsland) {
+                logger.info("Ignore SosiRefIsland (enclave) for: {}: {}: {}", getType(), getId(), getName());
             }
+
         }
 
-        if (coordinateList.isEmpty()) {
+        if (numPoints == 0) {
             return null;
         }
 
-        geometry = new GeometryFactory().createPolygon(coordinateList.toArray(new Coordinate[0]));
+        SharedArcSimplifier arcSimplifier = coordinates.getArcSimplifier();
+        if (arcSimplifier != null && arcSimplifier.isEnabled(getType())) {
+            geometry = assembleSimplifiedRing(arcSimplifier, refIds, reversed, numRefs, numPoints);
+            return geometry;
+        }
+
+        double[] ring = new double[numPoints * 2];
+        int point = 0;
+        for (int i = 0; i < numRefs; i++) {
+            point += coordinates.copyForRef(refIds[i], reversed[i], ring, point);
+        }
+
+        geometry = new GeometryFactory().createPolygon(new PackedCoordinateSequence.Double(ring, 2, 0));
         return geometry;
     }
 
+    /**
+     * Register the ring of this area with the arc simplifier, before the coordinates are projected.
+     */
+    void addRingTo(SharedArcSimplifier arcSimplifier) {
+        List<SosiValue> refs = getRefs();
+        long[] refIds = new long[refs.size()];
+        boolean[] reversed = new boolean[refs.size()];
+        int numRefs = 0;
+        for (SosiValue ref : refs) {
+            if (ref instanceof SosiRefNumber sosiRefNumber) {
+                refIds[numRefs] = sosiRefNumber.longValue();
+                reversed[numRefs] = sosiRefNumber.isReversedOrder();
+                numRefs++;
+            }
+        }
+        arcSimplifier.addRing(getType(), Arrays.copyOf(refIds, numRefs), Arrays.copyOf(reversed, numRefs));
+    }
+
+    /**
+     * Assemble the ring from the shared, simplified arcs. The arcs are the same for all areas referencing them, and have
+     * already been checked to give valid rings, see {@link SharedArcSimplifier}.
+     */
+    private Geometry assembleSimplifiedRing(SharedArcSimplifier arcSimplifier, long[] refIds, boolean[] reversed, int numRefs, int numPoints) {
+        int simplifiedPoints = 0;
+        for (int i = 0; i < numRefs; i++) {
+            simplifiedPoints += Math.max(0, arcSimplifier.getNumPointsForRef(getType(), refIds[i]));
+        }
+        double[] ring = new double[simplifiedPoints * 2];
+        int point = 0;
+        for (int i = 0; i < numRefs; i++) {
+            point += Math.max(0, arcSimplifier.copyForRef(getType(), refIds[i], reversed[i], ring, point));
+        }
+        simplifier.recordSimplification(getType(), numPoints, point);
+        return new GeometryFactory().createPolygon(new PackedCoordinateSequence.Double(ring, 2, 0));
+    }
+
     @Override
     public String getIsoCode() {
         return null;
@@ -105,19 +193,7 @@ public abstract class SosiElementWrapper implements TopographicPlaceAdapter {
     }
 
     protected String getProperty(String... path) {
-
-        SosiElement subElement = sosiElement;
-        for (String propName : path) {
-            subElement = subElement.findSubElement(se -> propName.equals(se.getName())).orElse(null);
-            if (subElement == null) {
-                break;
-            }
-        }
-
-        if (subElement != null) {
-            return subElement.getValueAs(SosiValue.class).getString();
-        }
-        return null;
+        return index.getString(path);
     }
 
     @Override
@@ -127,9 +203,13 @@ public abstract class SosiElementWrapper implements TopographicPlaceAdapter {
 
     @Override
     public String getName() {
-        String name = getNames().get("norsk");
-        if (name == null) {
-            name = getNames().get("nor");
+        if (!nameResolved) {
+            Map<String, String> namesPerLanguage = getNames();
+            name = namesPerLanguage.get("norsk");
+            if (name == null) {
+                name = namesPerLanguage.get("nor");
+            }
+            nameResolved = true;
         }
         return name;
     }
@@ -142,14 +222,15 @@ public abstract class SosiElementWrapper implements TopographicPlaceAdapter {
     protected Map<String, String> getNames() {
         if (names == null) {
             names = new HashMap<>();
-            for (SosiElement nameElement : sosiElement.findSubElements(se -> getNamePropertyName().equals(se.getName())).toList()) {
+            for (SosiElement nameElement : index.all(getNamePropertyName())) {
                 String lang = null;
                 String name = null;
 
-                Optional<SosiElement> langSubElement = nameElement.findSubElement(se -> "SPRÅK".equals(se.getName()));
-                if (langSubElement.isPresent()) {
-                    lang = langSubElement.get().getValueAs(SosiValue.class).toString();
-                    name = nameElement.findSubElement(se -> "NAVN".equals(se.getName())).get().getValueAs(SosiValue.class).toString();
+                SosiElementIndex nameIndex = index.child(nameElement);
+                SosiElement langSubElement = nameIndex.first("SPRÅK");
+                if (langSubElement != null) {
+                    lang = langSubElement.getValueAs(SosiValue.class).toString();
+                    name = nameIndex.first("NAVN").getValueAs(SosiValue.class).toString();
                 } else {
                     List<SosiValue> values = nameElement.getValuesAs(SosiValue.class);
                     if (!values.isEmpty()) {
@@ -16,25 +16,51 @@
 
 package no.entur.kakka.task.sosi;
 
+import no.entur.kakka.task.netex.GeometrySimplifier;
 import no.vegvesen.nvdb.sosi.document.SosiElement;
 import no.vegvesen.nvdb.sosi.document.SosiString;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 @Service
 public class SosiElementWrapperFactory {
 
+    private final GeometrySimplifier simplifier;
+
+    public SosiElementWrapperFactory() {
+        this(GeometrySimplifier.NONE);
+    }
+
+    @Autowired
+    public SosiElementWrapperFactory(GeometrySimplifier simplifier) {
+        this.simplifier = simplifier;
+    }
+
+    public GeometrySimplifier getSimplifier() {
+        return simplifier;
+    }
+
     public SosiElementWrapper createWrapper(SosiElement sosiElement, SosiCoordinates coordinates) {
-        SosiElement objectType = sosiElement.findSubElement(se -> "OBJTYPE".equals(se.getName())).orElse(null);
+        SosiElementWrapper wrapper = createUnsimplifiedWrapper(sosiElement, coordinates);
+        if (wrapper != null) {
+            wrapper.setSimplifier(simplifier);
+        }
+        return wrapper;
+    }
+
+    private SosiElementWrapper createUnsimplifiedWrapper(SosiElement sosiElement, SosiCoordinates coordinates) {
+        SosiElementIndex index = new SosiElementIndex(sosiElement);
+        SosiElement objectType = index.first("OBJTYPE");
 
         if (objectType != null) {
             String type = objectType.getValueAs(SosiString.class).getString();
 
             if (SosiCounty.OBJECT_TYPE.equals(type)) {
-                return new SosiCounty(sosiElement, coordinates);
+                return new SosiCounty(index, coordinates);
             } else if (SosiLocality.OBJECT_TYPE.equals(type)) {
-                return new SosiLocality(sosiElement, coordinates);
+                return new SosiLocality(index, coordinates);
             } else if (SosiPlace.OBJECT_TYPE.equals(type)) {
-                return new SosiPlace(sosiElement, coordinates);
+                return new SosiPlace(index, coordinates);
             }
         }
 
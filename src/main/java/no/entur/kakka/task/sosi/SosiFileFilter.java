@@ -16,85 +16,231 @@
 
 package no.entur.kakka.task.sosi;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.function.Function;
 
 @Service
 public class SosiFileFilter {
 
-    private static final String ENCODING = "utf-8";
+    /**
+     * Route key for elements that should be written to every output.
+     */
+    public static final String ALL_OUTPUTS = "*";
+
+    private static final String FILTERED_OUTPUT = "filtered";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
 
     /**
      * Create a copy of a SOSI file, containing only elements that match provided matcher function.
      */
     public void filterElements(InputStream orgFile, String filteredFile, Function<Pair<String, String>, Boolean> matcher) {
+        try (OutputStream filtered = new BufferedOutputStream(new FileOutputStream(filteredFile), BUFFER_SIZE)) {
+            split(orgFile, Map.of(FILTERED_OUTPUT, filtered),
+                    line -> matcher.apply(Pair.of(line.getKey(), line.getValue())) ? FILTERED_OUTPUT : null, null);
+        } catch (IOException ioe) {
+            throw new RuntimeException("Failed to split SOSI file:" + ioe.getMessage(), ioe);
+        }
+    }
 
-        boolean currentMatch = false;
-        StringBuilder currentElement = new StringBuilder();
-
-        boolean headerRead = false;
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(orgFile, ENCODING))) {
-
-            FileOutputStream fos = new FileOutputStream(filteredFile);
-            String line;
-            while ((line = br.readLine()) != null) {
-
-                boolean startOfElement = isStartOfElement(line);
-                if (!headerRead) {
-                    if (startOfElement) {
-                        headerRead = true;
-                        currentElement.append(line).append("\n");
-                    } else {
-                        IOUtils.write(line + "\n", fos, ENCODING);
-                    }
-                } else {
-                    if (startOfElement) {
-                        if (currentMatch) {
-                            IOUtils.write(currentElement.toString(), fos, ENCODING);
-                        }
-                        currentElement = new StringBuilder();
-                        currentMatch = false;
-                    }
-
-                    currentElement.append(line).append("\n");
-                    if (matcher.apply(splitLine(line))) {
-                        currentMatch = true;
-                    }
-
-                }
+    /**
+     * Split a SOSI file into several files in a single pass, ie. one file per FYLKESNUMMER. The header is copied to every
+     * target file.
+     *
+     * @param targets     target file per route key
+     * @param router      decides the route key for each element
+     * @param unroutedKey route key for elements the router does not decide, ie. {@link #ALL_OUTPUTS} for shared curves, or null to drop them
+     */
+    public void splitToFiles(Path source, Map<String, Path> targets, ElementRouter router, String unroutedKey) {
+        Map<String, OutputStream> outputs = new LinkedHashMap<>();
+        try (SosiElementChunker chunker = new SosiElementChunker(FileChannel.open(source, StandardOpenOption.READ))) {
+            for (Map.Entry<String, Path> target : targets.entrySet()) {
+                FileChannel channel = FileChannel.open(target.getValue(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                outputs.put(target.getKey(), new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
             }
-
-            IOUtils.write(currentElement.toString(), fos, ENCODING);
+            split(chunker, outputs, router, unroutedKey);
         } catch (IOException ioe) {
             throw new RuntimeException("Failed to split SOSI file:" + ioe.getMessage(), ioe);
+        } finally {
+            closeAll(outputs);
         }
+    }
 
+    /**
+     * Route each element of a SOSI stream to one of the outputs, or to all of them, without decoding the content. The header
+     * is written to every output, and every output is terminated with .SLUTT. Outputs are flushed, but not closed.
+     * Elements routed to a key without output are dropped.
+     */
+    public void split(InputStream source, Map<String, ? extends OutputStream> outputs, ElementRouter router, String unroutedKey) throws IOException {
+        try (SosiElementChunker chunker = new SosiElementChunker(source)) {
+            split(chunker, outputs, router, unroutedKey);
+        }
+    }
+
+    /**
+     * Elements are routed and written as views of the chunker's read buffer, so no line or element is copied on the way.
+     */
+    private void split(SosiElementChunker chunker, Map<String, ? extends OutputStream> outputs, ElementRouter router, String unroutedKey) throws IOException {
+        byte[] header = chunker.getHeader();
+        for (OutputStream output : outputs.values()) {
+            output.write(header);
+        }
 
+        FieldLine fieldLine = new FieldLine();
+        while (chunker.hasNext()) {
+            ByteBuffer element = chunker.nextElement();
+            String key = route(element, router, fieldLine, unroutedKey);
+            if (ALL_OUTPUTS.equals(key)) {
+                for (OutputStream output : outputs.values()) {
+                    write(element, output);
+                }
+            } else if (key != null) {
+                OutputStream output = outputs.get(key);
+                if (output != null) {
+                    write(element, output);
+                }
+            }
+        }
+
+        for (OutputStream output : outputs.values()) {
+            output.write(SosiElementChunker.END);
+            output.flush();
+        }
     }
 
-    private Pair<String, String> splitLine(String line) {
-        String field = line.replaceFirst("^\\.+(?!$)", "");
-        int split = field.indexOf(" ");
+    private void write(ByteBuffer element, OutputStream output) throws IOException {
+        output.write(element.array(), element.arrayOffset() + element.position(), element.remaining());
+    }
 
-        if (split >= 0) {
+    private String route(ByteBuffer element, ElementRouter router, FieldLine fieldLine, String unroutedKey) {
+        byte[] bytes = element.array();
+        int end = element.arrayOffset() + element.limit();
+        int lineStart = element.arrayOffset() + element.position();
+        while (lineStart < end) {
+            int lineEnd = lineStart;
+            while (lineEnd < end && bytes[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            fieldLine.set(bytes, lineStart, lineEnd);
+            String key = router.route(fieldLine);
+            if (key != null) {
+                return key;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return unroutedKey;
+    }
 
-            String key = field.substring(0, split);
-            String value = field.substring(split + 1);
-            return Pair.of(key, value);
+    private void closeAll(Map<String, OutputStream> outputs) {
+        RuntimeException closeException = null;
+        for (OutputStream output : outputs.values()) {
+            try {
+                output.close();
+            } catch (IOException ioe) {
+                closeException = new RuntimeException("Failed to close SOSI output:" + ioe.getMessage(), ioe);
+            }
+        }
+        if (closeException != null) {
+            throw closeException;
         }
-        return Pair.of(field, null);
     }
 
-    private boolean isStartOfElement(String line) {
-        return line.startsWith(".") && !line.startsWith("..") && !line.startsWith(".HODE");
+    /**
+     * Decides which output a SOSI element is routed to, based on its lines.
+     */
+    @FunctionalInterface
+    public interface ElementRouter {
+
+        /**
+         * Called for each line of an element, starting with the element line itself, until a route key is returned.
+         *
+         * @return route key for the element, or null if the line does not decide the route.
+         */
+        String route(FieldLine line);
+
+        /**
+         * Route elements by the value of a field, ie. FYLKESNUMMER. The field name is encoded once, and lines are compared
+         * byte by byte, so only the value of the matching line is decoded.
+         */
+        static ElementRouter byField(String fieldName, Function<String, String> keyForValue) {
+            byte[] name = fieldName.getBytes(StandardCharsets.UTF_8);
+            return line -> line.keyEquals(name) ? keyForValue.apply(line.getValue().trim()) : null;
+        }
+
+        static ElementRouter byField(String fieldName) {
+            return byField(fieldName, Function.identity());
+        }
     }
 
-}
\ No newline at end of file
+    /**
+     * Reusable view of a single line in an element, split in key and value. Leading dots are not part of the key.
+     */
+    public static final class FieldLine {
+
+        private byte[] bytes;
+        private int keyStart;
+        private int keyEnd;
+        private int valueStart;
+        private int end;
+
+        private void set(byte[] bytes, int start, int end) {
+            this.bytes = bytes;
+            if (end > start && bytes[end - 1] == '\r') {
+                end--;
+            }
+            this.end = end;
+
+            int position = start;
+            while (position < end - 1 && bytes[position] == '.') {
+                position++;
+            }
+            keyStart = position;
+            while (position < end && bytes[position] != ' ') {
+                position++;
+            }
+            keyEnd = position;
+            valueStart = position < end ? position + 1 : -1;
+        }
+
+        public boolean keyEquals(byte[] name) {
+            if (keyEnd - keyStart != name.length) {
+                return false;
+            }
+            for (int i = 0; i < name.length; i++) {
+                if (bytes[keyStart + i] != name[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public String getKey() {
+            return new String(bytes, keyStart, keyEnd - keyStart, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Everything after the first space, or null if the line has no value.
+         */
+        public String getValue() {
+            if (valueStart < 0) {
+                return null;
+            }
+            return new String(bytes, valueStart, end - valueStart, StandardCharsets.UTF_8);
+        }
+    }
+}
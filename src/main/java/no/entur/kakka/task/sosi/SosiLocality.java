@@ -27,13 +27,17 @@ public class SosiLocality extends SosiElementWrapper {
         super(sosiElement, coordinates);
     }
 
+    public SosiLocality(SosiElementIndex index, SosiCoordinates coordinates) {
+        super(index, coordinates);
+    }
+
     @Override
     public TopographicPlaceAdapter.Type getType() {
         return TopographicPlaceAdapter.Type.LOCALITY;
     }
 
     @Override
-    public String getId() {
+    protected String readId() {
         return pad(getProperty("KOMMUNENUMMER"), 4);
     }
 
@@ -36,8 +36,12 @@ public class SosiPlace extends SosiElementWrapper {
         super(sosiElement, coordinates);
     }
 
+    public SosiPlace(SosiElementIndex index, SosiCoordinates coordinates) {
+        super(index, coordinates);
+    }
+
     @Override
-    public String getId() {
+    protected String readId() {
         return getProperty("IDENT", "LOKALID");
     }
 
@@ -96,7 +100,7 @@ public class SosiPlace extends SosiElementWrapper {
             return geometry;
         }
         List<SosiNumber> sosiNumbers = new ArrayList<>();
-        sosiElement.subElements().filter(se -> "NØ".equals(se.getName())).forEach(se -> sosiNumbers.addAll(se.getValuesAs(SosiNumber.class)));
+        index.all("NØ").forEach(se -> sosiNumbers.addAll(se.getValuesAs(SosiNumber.class)));
 
         List<Coordinate> coordinateList = coordinates.toLatLonCoordinates(sosiNumbers);
 
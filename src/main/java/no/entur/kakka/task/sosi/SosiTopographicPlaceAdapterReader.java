@@ -25,45 +25,246 @@ import org.locationtech.jts.geom.Geometry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class SosiTopographicPlaceAdapterReader {
 
     private static final String AREA_TYPE = "FLATE";
     private static final String SVERM_TYPE = "SVERM";
     private static final String POINT_TYPE = "PUNKT";
+    private static final Set<String> CURVE_TYPES = Set.of("KURVE", "BUEP");
+    private static final Set<String> ADMIN_UNIT_TYPES = Set.of(AREA_TYPE, SVERM_TYPE, POINT_TYPE);
+    private static final int CURVE_BATCH_SIZE = 256;
+    private static final int AREA_BATCH_SIZE = 4;
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
     private final Map<String, TopographicPlaceAdapter> adapterMap = new HashMap<>();
     private final SosiElementWrapperFactory wrapperFactory;
+    private final int parallelism;
     private InputStream sosiInputStream;
     private File sosiFile;
     private SosiCoordinates coordinates;
+    private ForkJoinPool pool;
 
     public SosiTopographicPlaceAdapterReader(SosiElementWrapperFactory wrapperFactory, InputStream sosiInputStream) {
         this.sosiInputStream = sosiInputStream;
         this.wrapperFactory = wrapperFactory;
+        this.parallelism = 1;
     }
 
     public SosiTopographicPlaceAdapterReader(SosiElementWrapperFactory wrapperFactory, File sosiFile) {
+        this(wrapperFactory, sosiFile, 1);
+    }
+
+    /**
+     * @param parallelism number of threads used to parse and project curves and to assemble area geometries. With 1 all work
+     *                    is done on the calling thread. The result is the same regardless of parallelism.
+     */
+    public SosiTopographicPlaceAdapterReader(SosiElementWrapperFactory wrapperFactory, File sosiFile, int parallelism) {
         this.sosiFile = sosiFile;
         this.wrapperFactory = wrapperFactory;
+        this.parallelism = Math.max(1, parallelism);
     }
 
     public Collection<TopographicPlaceAdapter> read() {
+        startPool();
         try {
             readToAdapterMap();
         } catch (IOException ioE) {
             throw new RuntimeException("Failed to read topographic places from SOSI: " + ioE.getMessage(), ioE);
+        } finally {
+            stopPool();
         }
         return adapterMap.values();
     }
 
+    /**
+     * Stream topographic places from SOSI file to consumer without holding the whole SOSI document in memory.
+     * <p>
+     * 1. Index all shapes with coordinates and count occurrences of ids for areas. Only the ids and the references of area
+     * rings to shapes are kept.
+     * 2. Read the file again, wrap each area in TopographicPlaceAdapter and pass it on to the consumer. Elements are released
+     * as soon as they are mapped. Only areas with ids occurring more than once (exclaves) are held back until the end of
+     * the file to select the largest.
+     * <p>
+     * Element chunks are parsed in batches, so that the file header is parsed once per batch rather than once per element.
+     * <p>
+     * Reading from an InputStream does not allow two passes, so this falls back to reading the whole document.
+     */
+    public void stream(Consumer<TopographicPlaceAdapter> consumer) {
+        if (sosiFile == null) {
+            read().forEach(consumer);
+            return;
+        }
+        startPool();
+        try {
+            Map<String, Integer> occurrencesPerId = indexCurvesAndCountAreaIds();
+            emitAreas(occurrencesPerId, consumer);
+        } catch (IOException ioE) {
+            throw new RuntimeException("Failed to stream topographic places from SOSI: " + ioE.getMessage(), ioE);
+        } finally {
+            stopPool();
+        }
+    }
+
+    private void startPool() {
+        if (parallelism > 1) {
+            pool = new ForkJoinPool(parallelism);
+        }
+    }
+
+    private void stopPool() {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    private Map<String, Integer> indexCurvesAndCountAreaIds() throws IOException {
+        Map<String, Integer> occurrencesPerId = new HashMap<>();
+        try (SosiElementChunker chunker = new SosiElementChunker(new FileInputStream(sosiFile))) {
+            byte[] header = chunker.getHeader();
+            coordinates = new SosiCoordinates(parseHead(header));
+            SharedArcSimplifier arcSimplifier = enableArcSimplification();
+            OrderedBatches<byte[], SosiCoordinates.Curve> curves = new OrderedBatches<>(CURVE_BATCH_SIZE,
+                    chunks -> readCurves(header, chunks), coordinates::addCurve);
+            // The wrappers are dropped once counted, only the rings registered with the arc simplifier are kept
+            OrderedBatches<byte[], SosiElementWrapper> areas = new OrderedBatches<>(CURVE_BATCH_SIZE,
+                    chunks -> wrapAdminUnits(parseElements(header, chunks)), area -> {
+                occurrencesPerId.merge(area.getId(), 1, Integer::sum);
+                if (arcSimplifier != null) {
+                    area.addRingTo(arcSimplifier);
+                }
+            });
+            while (chunker.hasNext()) {
+                byte[] chunk = chunker.next();
+                String elementName = SosiElementChunker.elementName(chunk);
+                if (CURVE_TYPES.contains(elementName)) {
+                    curves.add(chunk);
+                } else if (ADMIN_UNIT_TYPES.contains(elementName)) {
+                    areas.add(chunk);
+                }
+            }
+            curves.complete();
+            areas.complete();
+        }
+        coordinates.completeCollection(pool);
+        return occurrencesPerId;
+    }
+
+    private void emitAreas(Map<String, Integer> occurrencesPerId, Consumer<TopographicPlaceAdapter> consumer) throws IOException {
+        Map<String, TopographicPlaceAdapter> duplicateIdAreas = new LinkedHashMap<>();
+        try (SosiElementChunker chunker = new SosiElementChunker(new FileInputStream(sosiFile))) {
+            byte[] header = chunker.getHeader();
+            OrderedBatches<byte[], TopographicPlaceAdapter> areas = new OrderedBatches<>(AREA_BATCH_SIZE,
+                    chunks -> assembleGeometries(wrapAdminUnits(parseElements(header, chunks))), area -> {
+                String id = area.getId();
+                if (occurrencesPerId.getOrDefault(id, 0) > 1) {
+                    if (shouldAddNewArea(area, duplicateIdAreas.get(id))) {
+                        duplicateIdAreas.put(id, area);
+                    }
+                } else {
+                    consumer.accept(area);
+                }
+            });
+            while (chunker.hasNext()) {
+                byte[] chunk = chunker.next();
+                if (ADMIN_UNIT_TYPES.contains(SosiElementChunker.elementName(chunk))) {
+                    areas.add(chunk);
+                }
+            }
+            areas.complete();
+        }
+        duplicateIdAreas.values().forEach(consumer);
+    }
+
+    private List<SosiCoordinates.Curve> readCurves(byte[] header, List<byte[]> chunks) {
+        List<SosiCoordinates.Curve> curves = new ArrayList<>(chunks.size());
+        for (SosiElement sosiElement : parseElements(header, chunks)) {
+            SosiCoordinates.Curve curve = coordinates.readCurve(sosiElement);
+            if (curve != null) {
+                curves.add(curve);
+            }
+        }
+        return curves;
+    }
+
+    /**
+     * Wrap valid admin units. Geometries are assembled once all coordinates are collected.
+     */
+    private List<SosiElementWrapper> wrapAdminUnits(List<SosiElement> sosiElements) {
+        List<SosiElementWrapper> areas = new ArrayList<>(sosiElements.size());
+        for (SosiElement sosiElement : sosiElements) {
+            SosiElementWrapper area = createAdminUnit(sosiElement);
+            if (area != null && area.isValid()) {
+                areas.add(area);
+            }
+        }
+        return areas;
+    }
+
+    /**
+     * Assemble the geometries of areas, which are memoized by the wrappers.
+     */
+    private List<TopographicPlaceAdapter> assembleGeometries(List<SosiElementWrapper> areas) {
+        areas.forEach(TopographicPlaceAdapter::getDefaultGeometry);
+        return new ArrayList<>(areas);
+    }
+
+    private SosiElement parseHead(byte[] header) {
+        return Sosi.createReader(new SequenceInputStream(new ByteArrayInputStream(header), new ByteArrayInputStream(SosiElementChunker.END))).read().getHead();
+    }
+
+    /**
+     * Parse a batch of element chunks as one SOSI document consisting of the file header and the elements, so that the
+     * header is parsed once per batch rather than once per element.
+     */
+    private List<SosiElement> parseElements(byte[] header, List<byte[]> chunks) {
+        List<InputStream> parts = new ArrayList<>(chunks.size() + 2);
+        parts.add(new ByteArrayInputStream(header));
+        chunks.forEach(chunk -> parts.add(new ByteArrayInputStream(chunk)));
+        parts.add(new ByteArrayInputStream(SosiElementChunker.END));
+        List<SosiElement> elements = new ArrayList<>(chunks.size());
+        Sosi.createReader(new SequenceInputStream(Collections.enumeration(parts))).read().getElements().forEach(elements::add);
+        return elements;
+    }
+
+    /**
+     * Simplify arcs shared by the areas of the file, if geometries of any type are simplified. The rings of all areas must be
+     * added before the coordinates are projected.
+     */
+    private SharedArcSimplifier enableArcSimplification() {
+        if (!wrapperFactory.getSimplifier().isEnabled()) {
+            return null;
+        }
+        return coordinates.enableArcSimplification(wrapperFactory.getSimplifier());
+    }
+
+    private SosiElementWrapper createAdminUnit(SosiElement sosiElement) {
+        if (sosiElement.hasSubElements()) {
+            return wrapperFactory.createWrapper(sosiElement, coordinates);
+        }
+        return null;
+    }
+
     /**
      * Read content from SOSI file
      * <p>
@@ -81,22 +282,29 @@ public class SosiTopographicPlaceAdapterReader {
         SosiDocument doc = reader.read();
         coordinates = new SosiCoordinates(doc.getHead());
         doc.getElements().forEach(se -> coordinates.collectCoordinates(se));
-        doc.getElements().forEach(this::collectAdminUnits);
+        List<SosiElement> adminUnitElements = new ArrayList<>();
+        doc.getElements().forEach(se -> {
+            if (ADMIN_UNIT_TYPES.contains(se.getName())) {
+                adminUnitElements.add(se);
+            }
+        });
+        List<SosiElementWrapper> areas = wrapAdminUnits(adminUnitElements);
+        SharedArcSimplifier arcSimplifier = enableArcSimplification();
+        if (arcSimplifier != null) {
+            areas.forEach(area -> area.addRingTo(arcSimplifier));
+        }
+        coordinates.completeCollection(pool);
+        OrderedBatches<SosiElementWrapper, TopographicPlaceAdapter> assembledAreas = new OrderedBatches<>(AREA_BATCH_SIZE, this::assembleGeometries, this::collectAdminUnit);
+        areas.forEach(assembledAreas::add);
+        assembledAreas.complete();
         sosiInputStream.close();
     }
 
-    private void collectAdminUnits(SosiElement sosiElement) {
-
-        if ((sosiElement.getName().equals(SVERM_TYPE) || sosiElement.getName().equals(AREA_TYPE) || sosiElement.getName().equals(POINT_TYPE)) && sosiElement.hasSubElements()) {
-
-            TopographicPlaceAdapter area = wrapperFactory.createWrapper(sosiElement, coordinates);
-            if (area != null) {
-                String id = area.getId();
-                TopographicPlaceAdapter existingArea = adapterMap.get(id);
-                if (area.isValid() && shouldAddNewArea(area, existingArea)) {
-                    adapterMap.put(id, area);
-                }
-            }
+    private void collectAdminUnit(TopographicPlaceAdapter area) {
+        String id = area.getId();
+        TopographicPlaceAdapter existingArea = adapterMap.get(id);
+        if (shouldAddNewArea(area, existingArea)) {
+            adapterMap.put(id, area);
         }
     }
 
@@ -119,4 +327,56 @@ public class SosiTopographicPlaceAdapterReader {
         return areaGeo != null && areaGeo.getArea() > existingAreaGeo.getArea();
     }
 
+    /**
+     * Processes items in batches on the fork join pool, while passing results on to the consumer in the order the items were
+     * added. The number of batches in flight is bounded. Without a pool, batches are processed on the calling thread.
+     */
+    private class OrderedBatches<I, O> {
+
+        private final int batchSize;
+
+        private final Function<List<I>, List<O>> work;
+
+        private final Consumer<O> consumer;
+
+        private final Deque<ForkJoinTask<List<O>>> inFlight = new ArrayDeque<>();
+
+        private List<I> batch = new ArrayList<>();
+
+        private OrderedBatches(int batchSize, Function<List<I>, List<O>> work, Consumer<O> consumer) {
+            this.batchSize = batchSize;
+            this.work = work;
+            this.consumer = consumer;
+        }
+
+        private void add(I item) {
+            batch.add(item);
+            if (batch.size() >= batchSize) {
+                submit();
+            }
+        }
+
+        private void complete() {
+            submit();
+            while (!inFlight.isEmpty()) {
+                inFlight.poll().join().forEach(consumer);
+            }
+        }
+
+        private void submit() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<I> items = batch;
+            batch = new ArrayList<>();
+            if (pool == null) {
+                work.apply(items).forEach(consumer);
+                return;
+            }
+            inFlight.add(pool.submit(() -> work.apply(items)));
+            while (inFlight.size() > parallelism * 2) {
+                inFlight.poll().join().forEach(consumer);
+            }
+        }
+    }
 }
@@ -0,0 +1,311 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.flatgeobuf;
+
+import no.entur.kakka.task.flatgeobuf.FlatGeobuf.Column;
+import no.entur.kakka.task.flatgeobuf.FlatGeobuf.ColumnType;
+import no.entur.kakka.task.geojson.GeojsonFeature;
+import no.entur.kakka.task.geojson.GeojsonFeatureWrapperFactory;
+import no.entur.kakka.task.netex.TopographicPlaceAdapter;
+import no.entur.kakka.task.netex.flatgeobuf.FlatGeobufTopographicPlaceReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+public class FlatGeobufTest {
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+    private static final List<Column> COLUMNS = List.of(
+            new Column("id", ColumnType.LONG),
+            new Column("name", ColumnType.STRING),
+            new Column("area", ColumnType.DOUBLE),
+            new Column("active", ColumnType.BOOL),
+            new Column("rank", ColumnType.INT),
+            new Column("tags", ColumnType.JSON));
+
+    @TempDir
+    Path tempDir;
+
+    private int fileCount;
+
+    @Test
+    public void testGeometriesAndPropertiesRoundTrip() throws Exception {
+        Polygon square = polygon(10, 60, 1);
+        Polygon withHole = GEOMETRY_FACTORY.createPolygon(square.getExteriorRing(), new LinearRing[]{polygon(10.2, 60.2, 0.1).getExteriorRing()});
+        LineString line = GEOMETRY_FACTORY.createLineString(new Coordinate[]{new Coordinate(5, 58), new Coordinate(5.5, 58.5), new Coordinate(6, 58)});
+        LineString otherLine = GEOMETRY_FACTORY.createLineString(new Coordinate[]{new Coordinate(7, 59), new Coordinate(7.5, 59.5)});
+        Point point = GEOMETRY_FACTORY.createPoint(new Coordinate(10.123456789, 60.987654321));
+        List<Geometry> geometries = List.of(point, line, withHole,
+                GEOMETRY_FACTORY.createMultiPoint(new Point[]{point, GEOMETRY_FACTORY.createPoint(new Coordinate(11, 61))}),
+                GEOMETRY_FACTORY.createMultiLineString(new LineString[]{line, otherLine}),
+                GEOMETRY_FACTORY.createMultiPolygon(new Polygon[]{withHole, polygon(12, 61, 0.5)}),
+                GEOMETRY_FACTORY.createGeometryCollection(new Geometry[]{point, square}));
+
+        List<Map<String, Object>> properties = new ArrayList<>();
+        for (int i = 0; i < geometries.size(); i++) {
+            Map<String, Object> featureProperties = new HashMap<>();
+            featureProperties.put("id", (long) i);
+            featureProperties.put("name", i % 2 == 0 ? "Æsøy " + i : null);
+            featureProperties.put("area", i * 1.5);
+            featureProperties.put("active", i % 3 == 0);
+            featureProperties.put("rank", (long) -i);
+            featureProperties.put("tags", "[\"a\",\"b\"]");
+            featureProperties.put("unknown", "skipped");
+            properties.add(featureProperties);
+        }
+
+        // Without index, to keep the order of the features
+        File file = write(COLUMNS, properties, geometries, 0);
+        List<GeojsonFeature> features = new FlatGeobufReader(file).stream().toList();
+
+        Assertions.assertEquals(geometries.size(), features.size());
+        for (int i = 0; i < geometries.size(); i++) {
+            GeojsonFeature feature = features.get(i);
+            Assertions.assertTrue(geometries.get(i).equalsExact(feature.getGeometry()), "Unexpected geometry: " + feature.getGeometry());
+            Assertions.assertEquals(Long.valueOf(i), feature.getProperty("id"));
+            Assertions.assertEquals(properties.get(i).get("name"), feature.getProperty("name"));
+            Assertions.assertFalse(feature.hasProperty("name") && feature.getProperty("name") == null);
+            Assertions.assertEquals(Double.valueOf(i * 1.5), feature.getProperty("area"));
+            Assertions.assertEquals(i % 3 == 0, feature.getProperty("active"));
+            Assertions.assertEquals(Long.valueOf(-i), feature.getProperty("rank"));
+            Assertions.assertEquals("[\"a\",\"b\"]", feature.getProperty("tags"));
+            Assertions.assertFalse(feature.hasProperty("unknown"));
+        }
+
+        GeojsonFeature selected = new FlatGeobufReader(file, Set.of("name")).stream().findFirst().orElseThrow();
+        Assertions.assertEquals("Æsøy 0", selected.getProperty("name"));
+        Assertions.assertFalse(selected.hasProperty("id"));
+    }
+
+    @Test
+    public void testHeader() throws Exception {
+        List<Geometry> geometries = List.of(polygon(4, 57, 1), polygon(30, 71, 0.5));
+        File file = write(COLUMNS, List.of(Map.of(), Map.of()), geometries, FlatGeobuf.DEFAULT_INDEX_NODE_SIZE);
+
+        FlatGeobufReader reader = new FlatGeobufReader(file);
+        Assertions.assertEquals("test", reader.getName());
+        Assertions.assertEquals(FlatGeobuf.GeometryType.POLYGON, reader.getGeometryType());
+        Assertions.assertEquals(COLUMNS, reader.getColumns());
+        Assertions.assertEquals(2, reader.getFeaturesCount());
+        Assertions.assertEquals(FlatGeobuf.DEFAULT_INDEX_NODE_SIZE, reader.getIndexNodeSize());
+        Assertions.assertTrue(reader.hasIndex());
+        Assertions.assertEquals(new Envelope(4, 30.5, 57, 71.5), reader.getEnvelope());
+
+        File mixed = write(COLUMNS, List.of(Map.of(), Map.of()), List.of(polygon(4, 57, 1), GEOMETRY_FACTORY.createPoint(new Coordinate(5, 58))), 0);
+        Assertions.assertEquals(FlatGeobuf.GeometryType.UNKNOWN, new FlatGeobufReader(mixed).getGeometryType());
+        Assertions.assertFalse(new FlatGeobufReader(mixed).hasIndex());
+
+        File empty = write(COLUMNS, List.of(), List.of(), FlatGeobuf.DEFAULT_INDEX_NODE_SIZE);
+        Assertions.assertEquals(0, new FlatGeobufReader(empty).stream().count());
+        Assertions.assertNull(new FlatGeobufReader(empty).getEnvelope());
+    }
+
+    @Test
+    public void testBoundingBoxSearchMatchesBruteForce() throws Exception {
+        List<Geometry> geometries = new ArrayList<>();
+        List<Map<String, Object>> properties = new ArrayList<>();
+        for (int x = 0; x < 40; x++) {
+            for (int y = 0; y < 25; y++) {
+                geometries.add(polygon(4 + x * 0.7, 57 + y * 0.6, 0.3 + (x * y % 5) * 0.2));
+                properties.add(Map.of("id", (long) geometries.size()));
+            }
+        }
+        File indexed = write(COLUMNS, properties, geometries, FlatGeobuf.DEFAULT_INDEX_NODE_SIZE);
+        File smallNodes = write(COLUMNS, properties, geometries, 2);
+        File unindexed = write(COLUMNS, properties, geometries, 0);
+
+        List<Envelope> queries = List.of(new Envelope(10, 11, 60, 61), new Envelope(4, 4.1, 57, 57.1), new Envelope(0, 1, 0, 1),
+                new Envelope(-180, 180, -90, 90), new Envelope(20.05, 20.05, 65.05, 65.05), new Envelope(15, 25, 58, 59));
+        for (Envelope query : queries) {
+            Set<Long> expected = new TreeSet<>();
+            for (int i = 0; i < geometries.size(); i++) {
+                if (query.intersects(geometries.get(i).getEnvelopeInternal())) {
+                    expected.add((Long) properties.get(i).get("id"));
+                }
+            }
+            Assertions.assertEquals(expected, ids(new FlatGeobufReader(indexed), query), "Unexpected features within " + query);
+            Assertions.assertEquals(expected, ids(new FlatGeobufReader(smallNodes), query), "Unexpected features within " + query);
+            Assertions.assertEquals(expected, ids(new FlatGeobufReader(unindexed), query), "Unexpected features within " + query);
+        }
+        Assertions.assertEquals(geometries.size(), new FlatGeobufReader(indexed).stream().count());
+    }
+
+    @Test
+    public void testTopographicPlacesRoundTrip() throws Exception {
+        Map<String, String> alternativeNames = new HashMap<>();
+        alternativeNames.put(null, "Oslo");
+        alternativeNames.put("sme", "Oslo");
+        TestTopographicPlaceAdapter county = new TestTopographicPlaceAdapter("03", null, "Oslo", TopographicPlaceAdapter.Type.COUNTY,
+                polygon(10.5, 59.8, 0.4), alternativeNames, List.of());
+        TestTopographicPlaceAdapter place = new TestTopographicPlaceAdapter("0301-1", county.getId(), "Frogner",
+                TopographicPlaceAdapter.Type.PLACE, polygon(10.7, 59.9, 0.05), null, List.of("city"));
+        TestTopographicPlaceAdapter farAway = new TestTopographicPlaceAdapter("5501", null, "Tromsø",
+                TopographicPlaceAdapter.Type.LOCALITY, polygon(18.9, 69.6, 0.5), Map.of(), null);
+
+        File file = newFile();
+        try (FlatGeobufWriter writer = new FlatGeobufWriter(FlatGeobufTopographicPlaceAdapter.COLUMNS, newFile());
+             OutputStream outputStream = new FileOutputStream(file)) {
+            for (TopographicPlaceAdapter adapter : List.of(county, place, farAway)) {
+                writer.add(FlatGeobufTopographicPlaceAdapter.toProperties(adapter), adapter.getDefaultGeometry());
+            }
+            writer.write(outputStream, "administrativeUnits");
+        }
+
+        FlatGeobufFeatureWrapperFactory wrapperFactory = new FlatGeobufFeatureWrapperFactory(new GeojsonFeatureWrapperFactory(List.of()));
+        Map<String, TopographicPlaceAdapter> read = new FlatGeobufReader(file, FlatGeobufFeatureWrapperFactory.PROPERTY_NAMES).stream()
+                .map(wrapperFactory::createWrapper)
+                .collect(Collectors.toMap(TopographicPlaceAdapter::getId, adapter -> adapter));
+
+        Assertions.assertEquals(3, read.size());
+        for (TopographicPlaceAdapter expected : List.of(county, place, farAway)) {
+            TopographicPlaceAdapter actual = read.get(expected.getId());
+            Assertions.assertInstanceOf(FlatGeobufTopographicPlaceAdapter.class, actual);
+            Assertions.assertEquals(expected.getParentId(), actual.getParentId());
+            Assertions.assertEquals(expected.getName(), actual.getName());
+            Assertions.assertEquals(expected.getType(), actual.getType());
+            Assertions.assertNull(actual.getIsoCode());
+            Assertions.assertEquals("NO", actual.getCountryRef());
+            Assertions.assertEquals(expected.getCategories(), actual.getCategories());
+            Assertions.assertTrue(expected.getDefaultGeometry().equalsExact(actual.getDefaultGeometry()));
+            Assertions.assertTrue(actual.isValid());
+        }
+        Assertions.assertEquals(Map.of("sme", "Oslo"), read.get(county.getId()).getAlternativeNames());
+        Assertions.assertNull(read.get(place.getId()).getAlternativeNames());
+
+        List<String> southern = new FlatGeobufTopographicPlaceReader(wrapperFactory, "KVE", List.of(file, file), new Envelope(10, 11, 59.5, 60.5)).stream()
+                .map(topographicPlace -> topographicPlace.getId())
+                .toList();
+        Assertions.assertEquals(4, southern.size());
+        Assertions.assertFalse(southern.contains("KVE:TopographicPlace:" + farAway.getId()));
+        Assertions.assertTrue(southern.contains("KVE:TopographicPlace:" + place.getId()));
+    }
+
+    @Test
+    public void testNotFlatGeobuf() throws Exception {
+        File file = newFile();
+        Files.writeString(file.toPath(), "{\"type\": \"FeatureCollection\", \"features\": []}");
+        Assertions.assertThrows(IOException.class, () -> new FlatGeobufReader(file));
+    }
+
+    @Test
+    public void testFileInOtherCrsIsRejected() throws Exception {
+        File file = write(COLUMNS, List.of(Map.of("id", 1L)), List.of(polygon(10, 60, 1)), FlatGeobuf.DEFAULT_INDEX_NODE_SIZE);
+        Assertions.assertEquals(1, new FlatGeobufReader(file).getFeaturesCount());
+
+        // Replace the EPSG code of the header CRS, little endian, with that of UTM zone 33N (EUREF89)
+        byte[] content = Files.readAllBytes(file.toPath());
+        int headerEnd = FlatGeobuf.MAGIC.length + Integer.BYTES + ByteBuffer.wrap(content, FlatGeobuf.MAGIC.length, Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        int codePosition = indexOf(content, littleEndian(FlatGeobuf.WGS84_EPSG_CODE), headerEnd);
+        Assertions.assertTrue(codePosition > 0);
+        System.arraycopy(littleEndian(25833), 0, content, codePosition, Integer.BYTES);
+        Files.write(file.toPath(), content);
+
+        IOException exception = Assertions.assertThrows(IOException.class, () -> new FlatGeobufReader(file));
+        Assertions.assertTrue(exception.getMessage().contains("EPSG:25833"), exception.getMessage());
+    }
+
+    @Test
+    public void testFeatureWithoutGeometryIsRejected() throws Exception {
+        try (FlatGeobufWriter writer = new FlatGeobufWriter(COLUMNS, newFile())) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> writer.add(Map.of(), null));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> writer.add(Map.of(), GEOMETRY_FACTORY.createPolygon()));
+        }
+    }
+
+    private Set<Long> ids(FlatGeobufReader reader, Envelope query) {
+        return reader.stream(query).map(feature -> (Long) feature.getProperty("id")).collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    private File write(List<Column> columns, List<Map<String, Object>> properties, List<Geometry> geometries, int indexNodeSize) throws IOException {
+        File file = newFile();
+        try (FlatGeobufWriter writer = new FlatGeobufWriter(columns, newFile(), indexNodeSize);
+             OutputStream outputStream = new FileOutputStream(file)) {
+            for (int i = 0; i < geometries.size(); i++) {
+                writer.add(properties.get(i), geometries.get(i));
+            }
+            writer.write(outputStream, "test");
+        }
+        return file;
+    }
+
+    private byte[] littleEndian(int value) {
+        return ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array();
+    }
+
+    private int indexOf(byte[] content, byte[] value, int end) {
+        for (int i = 0; i + value.length <= end; i++) {
+            if (Arrays.equals(content, i, i + value.length, value, 0, value.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private File newFile() {
+        return tempDir.resolve("test-" + fileCount++ + FlatGeobuf.FILE_SUFFIX).toFile();
+    }
+
+    private Polygon polygon(double x, double y, double size) {
+        return GEOMETRY_FACTORY.createPolygon(new Coordinate[]{new Coordinate(x, y), new Coordinate(x + size, y), new Coordinate(x + size, y + size),
+                new Coordinate(x, y + size), new Coordinate(x, y)});
+    }
+
+    private record TestTopographicPlaceAdapter(String getId, String getParentId, String getName, TopographicPlaceAdapter.Type getType, Geometry getDefaultGeometry,
+                                               Map<String, String> getAlternativeNames,
+                                               List<String> getCategories) implements TopographicPlaceAdapter {
+        @Override
+        public String getIsoCode() {
+            return null;
+        }
+
+        @Override
+        public String getCountryRef() {
+            return "NO";
+        }
+
+        @Override
+        public boolean isValid() {
+            return true;
+        }
+    }
+}
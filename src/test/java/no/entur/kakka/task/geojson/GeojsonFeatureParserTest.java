@@ -0,0 +1,126 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.task.geojson;
+
+import no.entur.kakka.task.netex.TopographicPlaceAdapter;
+import org.apache.commons.io.FileUtils;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.geojson.feature.FeatureJSON;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class GeojsonFeatureParserTest {
+
+    private static final File COUNTRY_FILE = new File("src/test/resources/no/entur/kakka/task/geojson/finland.geojson");
+
+    private static final String KARTVERKET_COLLECTION = """
+            {"type": "FeatureCollection",
+             "crs": {"type": "name", "properties": {"name": "urn:ogc:def:crs:OGC:1.3:CRS84"}},
+             "features": [
+              {"geometry": {"coordinates": [[[10.0, 60.0, 120.5], [11.0, 60.0], [11.0, 61.0], [10.0, 60.0]]], "type": "Polygon"},
+               "type": "Feature",
+               "properties": {"kartdata": {"kilde": [1, {"dato": "2020"}]}, "navn": "Oslo", "komm": 301, "objtype": "Kommune"}},
+              {"type": "Feature",
+               "properties": {"enh_ssr_id": 123, "enh_snavn": "Sentrum", "enh_komm": 301, "enh_navntype": 104, "skr_snskrstat": "V"},
+               "geometry": {"type": "Point", "coordinates": [10.75, 59.91]}}
+             ]}
+            """;
+
+    @Test
+    public void testSingleFeatureMatchesFeatureJson() throws Exception {
+        SimpleFeature expected;
+        try (InputStream inputStream = FileUtils.openInputStream(COUNTRY_FILE)) {
+            expected = new FeatureJSON().readFeature(inputStream);
+        }
+        GeojsonFeature actual;
+        try (GeojsonFeatureParser parser = new GeojsonFeatureParser(FileUtils.openInputStream(COUNTRY_FILE), GeojsonFeatureWrapperFactory.PROPERTY_NAMES)) {
+            actual = parser.next();
+            Assertions.assertFalse(parser.hasNext());
+        }
+
+        Assertions.assertTrue(((Geometry) expected.getDefaultGeometry()).equalsExact(actual.getGeometry()));
+        for (String name : List.of("wof:id", "ne:type", "ne:iso_a2", "ne:iso_a3", "name:nno_x_preferred", "name:eng_x_preferred")) {
+            Assertions.assertEquals(expected.getProperty(name).getValue(), actual.getProperty(name), "Unexpected value of " + name);
+        }
+        Assertions.assertFalse(actual.hasProperty("geom:area"), "Expected properties not used by adapters to be skipped");
+    }
+
+    @Test
+    public void testCountryAdapter() throws Exception {
+        TopographicPlaceAdapter adapter;
+        try (GeojsonFeatureParser parser = new GeojsonFeatureParser(FileUtils.openInputStream(COUNTRY_FILE), GeojsonFeatureWrapperFactory.PROPERTY_NAMES)) {
+            adapter = new GeojsonFeatureWrapperFactory(null).createWrapper(parser.next());
+        }
+
+        Assertions.assertEquals(TopographicPlaceAdapter.Type.COUNTRY, adapter.getType());
+        Assertions.assertEquals("85633143", adapter.getId());
+        Assertions.assertEquals("FIN", adapter.getIsoCode());
+        Assertions.assertEquals("FI", adapter.getCountryRef());
+        Assertions.assertEquals("Finland", adapter.getName());
+        Assertions.assertInstanceOf(MultiPolygon.class, adapter.getDefaultGeometry());
+    }
+
+    @Test
+    public void testCollectionAdapters() throws Exception {
+        List<TopographicPlaceAdapter> adapters = new ArrayList<>();
+        GeojsonFeatureWrapperFactory wrapperFactory = new GeojsonFeatureWrapperFactory(List.of("104"));
+        try (GeojsonFeatureParser parser = new GeojsonFeatureParser(new ByteArrayInputStream(KARTVERKET_COLLECTION.getBytes(StandardCharsets.UTF_8)), GeojsonFeatureWrapperFactory.PROPERTY_NAMES)) {
+            parser.forEachRemaining(feature -> adapters.add(wrapperFactory.createWrapper(feature)));
+        }
+
+        Assertions.assertEquals(2, adapters.size());
+        TopographicPlaceAdapter locality = adapters.get(0);
+        Assertions.assertEquals(TopographicPlaceAdapter.Type.LOCALITY, locality.getType());
+        Assertions.assertEquals("0301", locality.getId());
+        Assertions.assertEquals("03", locality.getParentId());
+        Assertions.assertEquals("Oslo", locality.getName());
+        Polygon polygon = (Polygon) locality.getDefaultGeometry();
+        Assertions.assertEquals(4, polygon.getNumPoints());
+        Assertions.assertEquals(10.0, polygon.getExteriorRing().getCoordinateSequence().getX(0));
+        Assertions.assertEquals(60.0, polygon.getExteriorRing().getCoordinateSequence().getY(0));
+
+        TopographicPlaceAdapter place = adapters.get(1);
+        Assertions.assertEquals(TopographicPlaceAdapter.Type.PLACE, place.getType());
+        Assertions.assertEquals("123", place.getId());
+        Assertions.assertEquals("0301", place.getParentId());
+        Assertions.assertTrue(place.isValid());
+        Assertions.assertInstanceOf(Point.class, place.getDefaultGeometry());
+    }
+
+    @Test
+    public void testInvalidGeometryFails() throws Exception {
+        String openRing = """
+                {"type": "Feature", "properties": {}, "geometry": {"type": "Polygon", "coordinates": [[[10.0, 60.0], [11.0, 60.0], [11.0, 61.0]]]}}
+                """;
+        try (GeojsonFeatureParser parser = new GeojsonFeatureParser(new ByteArrayInputStream(openRing.getBytes(StandardCharsets.UTF_8)), GeojsonFeatureWrapperFactory.PROPERTY_NAMES)) {
+            Assertions.assertThrows(UncheckedIOException.class, parser::hasNext);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.task.geojson;
+
+import no.entur.kakka.task.netex.TopographicPlaceAdapter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class GeojsonFeatureWrapperFactoryTest {
+
+    private final GeojsonFeatureWrapperFactory factory = new GeojsonFeatureWrapperFactory(List.of("104"));
+
+    @Test
+    public void testAdaptersOnlyReadPropertiesKeptByTheParser() {
+        TopographicPlaceAdapter county = readAll(Map.of("objtype", "Fylke", "navn", "Trøndelag", "fylkesnr", 50L));
+        Assertions.assertEquals("50", county.getId());
+        Assertions.assertEquals("Trøndelag", county.getName());
+
+        TopographicPlaceAdapter locality = readAll(Map.of("objtype", "Kommune", "navn", "Oslo", "komm", 301L));
+        Assertions.assertEquals("0301", locality.getId());
+
+        TopographicPlaceAdapter borough = readAll(Map.of("objtype", "Grunnkrets", "gkretsnavn", "Sentrum", "grunnkrets", 3010101L, "komm", 301L));
+        Assertions.assertEquals("Sentrum", borough.getName());
+        Assertions.assertEquals("0301", borough.getParentId());
+
+        TopographicPlaceAdapter place = readAll(Map.of("enh_ssr_id", 123L, "enh_snavn", "Sentrum", "enh_komm", 301L, "enh_navntype", 104L, "skr_snskrstat", "V"));
+        Assertions.assertTrue(place.isValid());
+        Assertions.assertEquals("0301", place.getParentId());
+
+        TopographicPlaceAdapter country = readAll(Map.of("ne:type", "Country", "wof:id", 85633341L, "ne:iso_a2", "NO", "ne:iso_a3", "NOR",
+                "name:nno_x_preferred", List.of("Noreg"), "name:eng_x_preferred", List.of("Norway")));
+        Assertions.assertEquals("Noreg", country.getName());
+        Assertions.assertEquals("Norway", country.getAlternativeNames().get("en"));
+        Assertions.assertEquals("NO", country.getCountryRef());
+    }
+
+    /**
+     * Wrap a feature that fails on any property the parser would have dropped, and read everything but the geometry.
+     */
+    private TopographicPlaceAdapter readAll(Map<String, Object> properties) {
+        TopographicPlaceAdapter adapter = factory.createWrapper(new ParsedPropertiesFeature(properties));
+        adapter.getId();
+        adapter.getIsoCode();
+        adapter.getParentId();
+        adapter.getName();
+        adapter.getType();
+        adapter.getAlternativeNames();
+        adapter.getCountryRef();
+        adapter.getCategories();
+        adapter.isValid();
+        return adapter;
+    }
+
+    private static class ParsedPropertiesFeature extends GeojsonFeature {
+
+        ParsedPropertiesFeature(Map<String, Object> properties) {
+            super(properties, null);
+        }
+
+        @Override
+        public boolean hasProperty(String name) {
+            assertKeptByParser(name);
+            return super.hasProperty(name);
+        }
+
+        @Override
+        public <T> T getProperty(String name) {
+            assertKeptByParser(name);
+            return super.getProperty(name);
+        }
+
+        private void assertKeptByParser(String name) {
+            Assertions.assertTrue(GeojsonFeatureWrapperFactory.PROPERTY_NAMES.contains(name), "Adapter reads property dropped by the parser: " + name);
+        }
+    }
+}
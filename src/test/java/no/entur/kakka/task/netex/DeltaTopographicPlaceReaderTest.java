@@ -0,0 +1,157 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.task.netex;
+
+import no.entur.kakka.task.netex.sosi.SosiTopographicPlaceReader;
+import no.entur.kakka.task.sosi.SosiElementWrapperFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.rutebanken.netex.model.MultilingualString;
+import org.rutebanken.netex.model.TopographicPlace;
+import org.rutebanken.netex.model.TopographicPlaceRefStructure;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class DeltaTopographicPlaceReaderTest {
+
+    private static final File SOSI_FILE = new File("src/test/resources/no/entur/kakka/task/sosi/SosiTest.sos");
+
+    @Test
+    public void testAllPlacesAreChangedWithoutPreviousFingerprints() throws Exception {
+        List<TopographicPlace> places = readAll(sosiReader());
+        DeltaTopographicPlaceReader deltaReader = new DeltaTopographicPlaceReader(sosiReader(), new TopographicPlaceFingerprints());
+
+        Assertions.assertFalse(places.isEmpty());
+        Assertions.assertEquals(ids(places), ids(readAll(deltaReader)));
+        Assertions.assertTrue(deltaReader.isComplete());
+        Assertions.assertEquals(places.size(), deltaReader.getChangedCount());
+        Assertions.assertEquals(places.size(), deltaReader.getFingerprints().size());
+    }
+
+    @Test
+    public void testNoPlacesAreChangedWithSameInput() throws Exception {
+        DeltaTopographicPlaceReader firstRun = new DeltaTopographicPlaceReader(sosiReader(), new TopographicPlaceFingerprints());
+        readAll(firstRun);
+
+        DeltaTopographicPlaceReader secondRun = new DeltaTopographicPlaceReader(sosiReader(), roundTrip(firstRun.getFingerprints()));
+
+        Assertions.assertTrue(readAll(secondRun).isEmpty());
+        Assertions.assertEquals(0, secondRun.getChangedCount());
+        Assertions.assertEquals(firstRun.getFingerprints().size(), secondRun.getUnchangedCount());
+    }
+
+    @Test
+    public void testOnlyChangedPlaceIsPassedOn() throws Exception {
+        List<TopographicPlace> places = List.of(place("1", "Trondheim"), place("2", "Bergen"));
+        DeltaTopographicPlaceReader firstRun = new DeltaTopographicPlaceReader(listReader(places), new TopographicPlaceFingerprints());
+        readAll(firstRun);
+
+        List<TopographicPlace> changedPlaces = List.of(place("1", "Trondheim"), place("2", "Bjørgvin"), place("3", "Oslo"));
+        DeltaTopographicPlaceReader secondRun = new DeltaTopographicPlaceReader(listReader(changedPlaces), firstRun.getFingerprints());
+
+        Assertions.assertEquals(List.of("KVE:TopographicPlace:2", "KVE:TopographicPlace:3"), ids(readAll(secondRun)));
+        Assertions.assertEquals(1, secondRun.getUnchangedCount());
+    }
+
+    @Test
+    public void testFingerprintsIncompleteUntilAllPlacesAreRead() throws Exception {
+        DeltaTopographicPlaceReader deltaReader = new DeltaTopographicPlaceReader(listReader(List.of(place("1", "Trondheim"), place("2", "Bergen"))),
+                new TopographicPlaceFingerprints());
+        try (Stream<TopographicPlace> places = deltaReader.stream()) {
+            places.findFirst();
+        }
+        Assertions.assertFalse(deltaReader.isComplete());
+        Assertions.assertThrows(IllegalStateException.class, deltaReader::getFingerprints);
+    }
+
+    @Test
+    public void testFingerprintCoversNameParentAndGeometry() {
+        String fingerprint = TopographicPlaceFingerprints.fingerprint(firstSosiPlace());
+
+        Assertions.assertEquals(fingerprint, TopographicPlaceFingerprints.fingerprint(firstSosiPlace()));
+        Assertions.assertNotEquals(fingerprint, TopographicPlaceFingerprints.fingerprint(firstSosiPlace()
+                .withName(new MultilingualString().withLang("nor").withValue("Other"))));
+        Assertions.assertNotEquals(fingerprint, TopographicPlaceFingerprints.fingerprint(firstSosiPlace()
+                .withParentTopographicPlaceRef(new TopographicPlaceRefStructure().withRef("KVE:TopographicPlace:99"))));
+        Polygon otherPolygon = new GeometryFactory().createPolygon(new Coordinate[]{new Coordinate(10, 63), new Coordinate(11, 63),
+                new Coordinate(11, 64), new Coordinate(10, 63)});
+        Assertions.assertNotEquals(fingerprint, TopographicPlaceFingerprints.fingerprint(firstSosiPlace()
+                .withPolygon(NetexGeoUtil.toNetexPolygon(otherPolygon))));
+    }
+
+    private TopographicPlace firstSosiPlace() {
+        return readAll(sosiReader()).get(0);
+    }
+
+    private TopographicPlaceFingerprints roundTrip(TopographicPlaceFingerprints fingerprints) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        fingerprints.write(outputStream);
+        TopographicPlaceFingerprints read = TopographicPlaceFingerprints.read(new ByteArrayInputStream(outputStream.toByteArray()));
+        Assertions.assertEquals(fingerprints.size(), read.size());
+        return read;
+    }
+
+    private TopographicPlaceReader sosiReader() {
+        return new SosiTopographicPlaceReader(new SosiElementWrapperFactory(), List.of(SOSI_FILE));
+    }
+
+    private TopographicPlace place(String id, String name) {
+        return new TopographicPlace().withId("KVE:TopographicPlace:" + id).withVersion("any")
+                .withName(new MultilingualString().withLang("nor").withValue(name));
+    }
+
+    private TopographicPlaceReader listReader(List<TopographicPlace> places) {
+        return new TopographicPlaceReader() {
+            @Override
+            public String getParticipantRef() {
+                return "KVE";
+            }
+
+            @Override
+            public MultilingualString getDescription() {
+                return new MultilingualString().withValue("Test places");
+            }
+
+            @Override
+            public Stream<TopographicPlace> stream() {
+                return places.stream();
+            }
+        };
+    }
+
+    private List<TopographicPlace> readAll(TopographicPlaceReader reader) {
+        try (Stream<TopographicPlace> places = reader.stream()) {
+            return places.toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<String> ids(List<TopographicPlace> places) {
+        return places.stream().map(TopographicPlace::getId).toList();
+    }
+}
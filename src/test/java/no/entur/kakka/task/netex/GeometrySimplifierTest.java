@@ -0,0 +1,178 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.netex;
+
+import no.entur.kakka.task.sosi.SosiElementWrapperFactory;
+import no.entur.kakka.task.sosi.SosiTopographicPlaceAdapterReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+public class GeometrySimplifierTest {
+
+    private static final File SOSI_FILE = new File("src/test/resources/no/entur/kakka/task/sosi/SosiTest.sos");
+
+    @Test
+    public void testToleranceConfiguredPerType() {
+        GeometrySimplifier simplifier = new GeometrySimplifier(Map.of("LOCALITY", "20", "county", 50));
+
+        Assertions.assertEquals(20, simplifier.getTolerance(TopographicPlaceAdapter.Type.LOCALITY));
+        Assertions.assertEquals(50, simplifier.getTolerance(TopographicPlaceAdapter.Type.COUNTY));
+        Assertions.assertFalse(simplifier.isEnabled(TopographicPlaceAdapter.Type.COUNTRY));
+        Assertions.assertFalse(GeometrySimplifier.NONE.isEnabled(TopographicPlaceAdapter.Type.LOCALITY));
+    }
+
+    @Test
+    public void testSimplifyArcKeepsEndPointsAndRemovesPointsWithinTolerance() {
+        // Line northwards with deviations of about 5 m
+        double[] straight = new double[]{10.0, 63.0, 10.00009, 63.001, 10.0, 63.002, 10.00009, 63.003, 10.0, 63.004};
+        int kept = GeometrySimplifier.simplifyArc(straight, 5, 20);
+
+        Assertions.assertEquals(2, kept);
+        Assertions.assertArrayEquals(new double[]{10.0, 63.0, 10.0, 63.004}, Arrays.copyOf(straight, kept * 2));
+
+        // Deviation of about 100 m
+        double[] bent = new double[]{10.0, 63.0, 10.002, 63.002, 10.0, 63.004};
+        Assertions.assertEquals(3, GeometrySimplifier.simplifyArc(bent, 3, 20));
+    }
+
+    @Test
+    public void testSimplifyArcIsIndependentOfWhichAreaUsesIt() {
+        double[] arc = wiggle(1000);
+        double[] copy = arc.clone();
+
+        int kept = GeometrySimplifier.simplifyArc(arc, 1000, 10);
+        int keptCopy = GeometrySimplifier.simplifyArc(copy, 1000, 10);
+
+        Assertions.assertTrue(kept < 1000);
+        Assertions.assertEquals(kept, keptCopy);
+        Assertions.assertArrayEquals(Arrays.copyOf(arc, kept * 2), Arrays.copyOf(copy, kept * 2));
+    }
+
+    @Test
+    public void testStandalonePolygonIsNotSimplified() {
+        // Wiggling western edge, closed by straight lines to the east
+        double[] arc = wiggle(500);
+        Coordinate[] ring = new Coordinate[503];
+        for (int i = 0; i < 500; i++) {
+            ring[i] = new Coordinate(arc[i * 2], arc[i * 2 + 1]);
+        }
+        ring[500] = new Coordinate(arc[998] + 0.1, arc[999]);
+        ring[501] = new Coordinate(arc[0] + 0.1, arc[1]);
+        ring[502] = ring[0];
+        Geometry geometry = new GeometryFactory().createPolygon(ring);
+
+        Geometry simplified = new GeometrySimplifier(Map.of("COUNTRY", "100")).simplify(geometry, TopographicPlaceAdapter.Type.COUNTRY);
+
+        Assertions.assertSame(geometry, simplified);
+    }
+
+    @Test
+    public void testSimplifyStandaloneLineString() {
+        double[] arc = wiggle(500);
+        Coordinate[] line = new Coordinate[500];
+        for (int i = 0; i < 500; i++) {
+            line[i] = new Coordinate(arc[i * 2], arc[i * 2 + 1]);
+        }
+        Geometry geometry = new GeometryFactory().createLineString(line);
+
+        Geometry simplified = new GeometrySimplifier(Map.of("PLACE", "100")).simplify(geometry, TopographicPlaceAdapter.Type.PLACE);
+
+        Assertions.assertTrue(simplified.isValid());
+        Assertions.assertTrue(simplified.getNumPoints() < geometry.getNumPoints());
+    }
+
+    @Test
+    public void testSimplifyCoverageKeepsNeighboursGapFree() {
+        // Two areas sharing a wiggling border, with straight outer edges 0.1 degrees to the west and east
+        double[] arc = wiggle(500);
+        Coordinate[] west = new Coordinate[503];
+        Coordinate[] east = new Coordinate[503];
+        for (int i = 0; i < 500; i++) {
+            west[i] = new Coordinate(arc[i * 2], arc[i * 2 + 1]);
+            east[499 - i] = new Coordinate(arc[i * 2], arc[i * 2 + 1]);
+        }
+        west[500] = new Coordinate(arc[998] - 0.1, arc[999]);
+        west[501] = new Coordinate(arc[0] - 0.1, arc[1]);
+        west[502] = west[0];
+        east[500] = new Coordinate(arc[0] + 0.1, arc[1]);
+        east[501] = new Coordinate(arc[998] + 0.1, arc[999]);
+        east[502] = east[0];
+        GeometryFactory geometryFactory = new GeometryFactory();
+        Geometry[] coverage = new Geometry[]{geometryFactory.createPolygon(west), geometryFactory.createPolygon(east)};
+
+        Geometry[] simplified = new GeometrySimplifier(Map.of("COUNTY", "100")).simplifyCoverage(coverage, TopographicPlaceAdapter.Type.COUNTY);
+
+        Assertions.assertEquals(2, simplified.length);
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertTrue(simplified[i].isValid());
+            Assertions.assertTrue(simplified[i].getNumPoints() < coverage[i].getNumPoints());
+        }
+        // No overlap, and no gap as the union still covers the original area
+        Geometry union = simplified[0].union(simplified[1]);
+        Assertions.assertEquals(simplified[0].getArea() + simplified[1].getArea(), union.getArea(), 1e-12);
+        Assertions.assertEquals(coverage[0].getArea() + coverage[1].getArea(), union.getArea(), 1e-12);
+    }
+
+    @Test
+    public void testOverlappingPolygonsAreNotSimplifiedAsCoverage() {
+        double[] arc = wiggle(500);
+        Coordinate[] ring = new Coordinate[503];
+        for (int i = 0; i < 500; i++) {
+            ring[i] = new Coordinate(arc[i * 2], arc[i * 2 + 1]);
+        }
+        ring[500] = new Coordinate(arc[998] + 0.1, arc[999]);
+        ring[501] = new Coordinate(arc[0] + 0.1, arc[1]);
+        ring[502] = ring[0];
+        Geometry polygon = new GeometryFactory().createPolygon(ring);
+        Geometry[] overlapping = new Geometry[]{polygon, polygon.buffer(0.01)};
+
+        Geometry[] simplified = new GeometrySimplifier(Map.of("COUNTY", "100")).simplifyCoverage(overlapping, TopographicPlaceAdapter.Type.COUNTY);
+
+        Assertions.assertSame(overlapping[0], simplified[0]);
+        Assertions.assertSame(overlapping[1], simplified[1]);
+    }
+
+    @Test
+    public void testSimplifySosiAreaGivesValidPolygon() {
+        GeometrySimplifier simplifier = new GeometrySimplifier(Map.of("COUNTY", "1"));
+        Collection<TopographicPlaceAdapter> full = new SosiTopographicPlaceAdapterReader(new SosiElementWrapperFactory(), SOSI_FILE).read();
+        Collection<TopographicPlaceAdapter> simplified = new SosiTopographicPlaceAdapterReader(new SosiElementWrapperFactory(simplifier), SOSI_FILE).read();
+
+        Assertions.assertEquals(full.size(), simplified.size());
+        for (TopographicPlaceAdapter adapter : simplified) {
+            Assertions.assertTrue(adapter.getDefaultGeometry().isValid());
+            Assertions.assertTrue(adapter.getDefaultGeometry().getNumPoints() <= full.iterator().next().getDefaultGeometry().getNumPoints());
+        }
+    }
+
+    private double[] wiggle(int numPoints) {
+        double[] coordinates = new double[numPoints * 2];
+        for (int i = 0; i < numPoints; i++) {
+            coordinates[i * 2] = 10 + 0.0001 * Math.sin(i / 10.0);
+            coordinates[i * 2 + 1] = 63 + i * 0.0001;
+        }
+        return coordinates;
+    }
+}
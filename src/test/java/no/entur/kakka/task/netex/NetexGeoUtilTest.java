@@ -0,0 +1,110 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.task.netex;
+
+import net.opengis.gml._3.LinearRingType;
+import net.opengis.gml._3.PolygonType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+public class NetexGeoUtilTest {
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+    @Test
+    public void testPosListIsLatLonWithinPrecision() {
+        Polygon polygon = randomPolygon(500);
+        int decimals = 7;
+
+        List<Double> posList = posList(NetexGeoUtil.toNetexPolygon(polygon, decimals));
+
+        Assertions.assertInstanceOf(PosListValues.class, posList);
+        Coordinate[] coordinates = polygon.getExteriorRing().getCoordinates();
+        Assertions.assertEquals(coordinates.length * 2, posList.size());
+        double maxError = 0.5 / Math.pow(10, decimals) + 1e-12;
+        for (int i = 0; i < coordinates.length; i++) {
+            Assertions.assertEquals(coordinates[i].y, posList.get(i * 2), maxError);
+            Assertions.assertEquals(coordinates[i].x, posList.get(i * 2 + 1), maxError);
+        }
+        for (double value : posList) {
+            Assertions.assertTrue(BigDecimal.valueOf(value).scale() <= decimals, "Expected at most " + decimals + " decimals, got: " + value);
+        }
+    }
+
+    @Test
+    public void testRoundedPosListIsSmaller() {
+        Polygon polygon = randomPolygon(500);
+
+        int fullPrecisionLength = printedLength(posList(NetexGeoUtil.toNetexPolygon(polygon, NetexGeoUtil.MAX_COORDINATE_DECIMALS)));
+        int roundedLength = printedLength(posList(NetexGeoUtil.toNetexPolygon(polygon, 7)));
+
+        Assertions.assertTrue(roundedLength < fullPrecisionLength * 0.7,
+                "Expected 7 decimals to give a much shorter posList, got " + roundedLength + " vs " + fullPrecisionLength + " chars");
+    }
+
+    @Test
+    public void testRoundGeometryForGeoJson() {
+        Polygon polygon = randomPolygon(100);
+        Coordinate original = polygon.getCoordinates()[1].copy();
+
+        Geometry rounded = NetexGeoUtil.round(polygon);
+
+        Coordinate roundedCoordinate = rounded.getCoordinates()[1];
+        Assertions.assertEquals(NetexGeoUtil.round(original.x, NetexGeoUtil.getCoordinateDecimals()), roundedCoordinate.x);
+        Assertions.assertEquals(NetexGeoUtil.round(original.y, NetexGeoUtil.getCoordinateDecimals()), roundedCoordinate.y);
+        Assertions.assertEquals(original, polygon.getCoordinates()[1], "Expected source geometry to be unchanged");
+    }
+
+    @Test
+    public void testRound() {
+        Assertions.assertEquals(63.4305149, NetexGeoUtil.round(63.43051489999999, 7));
+        Assertions.assertEquals(-10.5, NetexGeoUtil.round(-10.54, 1));
+        Assertions.assertEquals(11.0, NetexGeoUtil.round(10.5, 0));
+        Assertions.assertTrue(Double.isNaN(NetexGeoUtil.round(Double.NaN, 7)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> NetexGeoUtil.setCoordinateDecimals(-1));
+    }
+
+    private List<Double> posList(PolygonType polygon) {
+        return ((LinearRingType) polygon.getExterior().getAbstractRing().getValue()).getPosList().getValue();
+    }
+
+    private int printedLength(List<Double> posList) {
+        return posList.stream().map(String::valueOf).collect(Collectors.joining(" ")).length();
+    }
+
+    private Polygon randomPolygon(int numPoints) {
+        Random random = new Random(42);
+        Coordinate[] coordinates = new Coordinate[numPoints + 1];
+        for (int i = 0; i < numPoints; i++) {
+            double angle = 2 * Math.PI * i / numPoints;
+            double radius = 0.1 + random.nextDouble() * 0.01;
+            coordinates[i] = new Coordinate(10.4 + radius * Math.cos(angle), 63.4 + radius * Math.sin(angle));
+        }
+        coordinates[numPoints] = coordinates[0];
+        return GEOMETRY_FACTORY.createPolygon(coordinates);
+    }
+}
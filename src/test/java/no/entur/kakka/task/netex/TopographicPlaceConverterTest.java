@@ -32,8 +32,10 @@ import org.junit.jupiter.api.Test;
 import org.locationtech.jts.geom.CoordinateList;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.MultiPolygon;
+import org.rutebanken.netex.model.MultilingualString;
 import org.rutebanken.netex.model.PublicationDeliveryStructure;
 import org.rutebanken.netex.model.Site_VersionFrameStructure;
+import org.rutebanken.netex.model.TopographicPlace;
 import org.rutebanken.netex.validation.NeTExValidator;
 import org.springframework.util.CollectionUtils;
 import org.wololo.geojson.Polygon;
@@ -43,7 +45,19 @@ import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamReader;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import static jakarta.xml.bind.JAXBContext.newInstance;
 
@@ -75,6 +89,100 @@ public class TopographicPlaceConverterTest {
     }
 
 
+    @Test
+    public void testConvertAdminUnitsFromSosiToCompactGzipFile() throws Exception {
+        TopographicPlaceConverter compactConverter = new TopographicPlaceConverter("CET", 1, TopographicPlaceNetexWriter.Serializer.JAXB, true, false);
+        TopographicPlaceReader reader = new SosiTopographicPlaceReader(new SosiElementWrapperFactory(), List.of(new File("src/test/resources/no/entur/kakka/task/sosi/SosiTest.sos")));
+        String targetPath = "target/admin-units-from-sosi-compact.xml.gz";
+        long xmlBytes = compactConverter.toNetexFile(reader, targetPath);
+
+        String uncompressedPath = "target/admin-units-from-sosi-compact.xml";
+        try (InputStream inputStream = new GZIPInputStream(new FileInputStream(targetPath))) {
+            Files.copy(inputStream, Path.of(uncompressedPath), StandardCopyOption.REPLACE_EXISTING);
+        }
+        String xml = Files.readString(Path.of(uncompressedPath), StandardCharsets.UTF_8);
+        Assertions.assertEquals(xmlBytes, Files.size(Path.of(uncompressedPath)));
+        Assertions.assertFalse(xml.contains("\n    <"), "Expected compact output without indentation");
+        Assertions.assertTrue(new File(targetPath).length() < xmlBytes);
+
+        validateNetexFile(uncompressedPath);
+    }
+
+    @Test
+    public void testStreamAdminUnitsFromSosi() throws Exception {
+        TopographicPlaceReader reader = new SosiTopographicPlaceReader(new SosiElementWrapperFactory(), List.of(new File("src/test/resources/no/entur/kakka/task/sosi/SosiTest.sos")));
+        String targetPath = "target/admin-units-from-sosi-streamed.xml";
+        try (TopographicPlaceNetexStream netexStream = converter.toNetexStream(reader)) {
+            Files.copy(netexStream, Path.of(targetPath), StandardCopyOption.REPLACE_EXISTING);
+            Assertions.assertEquals(Files.size(Path.of(targetPath)), netexStream.getByteCount());
+        }
+
+        validateNetexFile(targetPath);
+    }
+
+    @Test
+    public void testStreamFailsWhenReaderFails() {
+        TopographicPlaceReader failingReader = new TopographicPlaceReader() {
+            @Override
+            public String getParticipantRef() {
+                return "KVE";
+            }
+
+            @Override
+            public MultilingualString getDescription() {
+                return new MultilingualString().withValue("Failing reader");
+            }
+
+            @Override
+            public Stream<TopographicPlace> stream() throws IOException {
+                throw new IOException("Unreadable input");
+            }
+        };
+
+        Assertions.assertThrows(IOException.class, () -> {
+            try (TopographicPlaceNetexStream netexStream = converter.toNetexStream(failingReader)) {
+                netexStream.transferTo(OutputStream.nullOutputStream());
+            }
+        });
+    }
+
+    @Test
+    public void testClosingStreamClosesEndlessReader() throws Exception {
+        CountDownLatch readerClosed = new CountDownLatch(1);
+        TopographicPlaceReader endlessReader = new TestReader() {
+            @Override
+            public Stream<TopographicPlace> stream() {
+                return Stream.iterate(0L, i -> i + 1)
+                        .map(i -> new TopographicPlace().withId("KVE:TopographicPlace:" + i).withVersion("1"))
+                        .onClose(readerClosed::countDown);
+            }
+        };
+
+        try (TopographicPlaceNetexStream netexStream = converter.toNetexStream(endlessReader)) {
+            Assertions.assertTrue(netexStream.readNBytes(1024).length > 0);
+        }
+        Assertions.assertTrue(readerClosed.await(10, TimeUnit.SECONDS), "Expected reader to be closed when the writer fails");
+    }
+
+    @Test
+    public void testReaderFailureFailsConversion() {
+        TopographicPlaceReader failingReader = new TestReader() {
+            @Override
+            public Stream<TopographicPlace> stream() {
+                return Stream.iterate(0, i -> i + 1)
+                        .map(i -> {
+                            if (i == 100) {
+                                throw new UncheckedIOException(new IOException("Unreadable input"));
+                            }
+                            return new TopographicPlace().withId("KVE:TopographicPlace:" + i).withVersion("1");
+                        });
+            }
+        };
+
+        RuntimeException e = Assertions.assertThrows(RuntimeException.class, () -> converter.toNetexFile(failingReader, "target/failing-reader.xml"));
+        Assertions.assertInstanceOf(IOException.class, e.getCause());
+    }
+
     @Test
     public void testConvertNeighbouringCountriesFromGeoJson() throws Exception {
         TopographicPlaceReader reader = new GeoJsonSingleTopographicPlaceReader(new GeojsonFeatureWrapperFactory(null),
@@ -130,4 +238,16 @@ public class TopographicPlaceConverterTest {
         };
 
     }
+
+    private abstract static class TestReader implements TopographicPlaceReader {
+        @Override
+        public String getParticipantRef() {
+            return "KVE";
+        }
+
+        @Override
+        public MultilingualString getDescription() {
+            return new MultilingualString().withValue("Test reader");
+        }
+    }
 }
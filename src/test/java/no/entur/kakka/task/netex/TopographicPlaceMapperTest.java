@@ -0,0 +1,167 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.task.netex;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.rutebanken.netex.model.IanaCountryTldEnumeration;
+import org.rutebanken.netex.model.TopographicPlace;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+
+public class TopographicPlaceMapperTest {
+
+    /**
+     * Rebuilding the country code map for each place allocated well above 10 KB per place, mainly the map itself.
+     * A place with a five point polygon should need a fraction of that.
+     */
+    private static final long MAX_BYTES_PER_PLACE = 6 * 1024;
+
+    private final TopographicPlaceMapper mapper = new TopographicPlaceMapper("KVE");
+
+    @Test
+    public void testMapCountryRef() {
+        Assertions.assertEquals(IanaCountryTldEnumeration.NO, mapper.mapCountryRef("NOR"));
+        Assertions.assertEquals(IanaCountryTldEnumeration.NO, mapper.mapCountryRef("nor"));
+        Assertions.assertEquals(IanaCountryTldEnumeration.SE, mapper.mapCountryRef("SWE"));
+        Assertions.assertEquals(IanaCountryTldEnumeration.FI, mapper.mapCountryRef("fi"));
+        Assertions.assertEquals(IanaCountryTldEnumeration.NO, mapper.mapCountryRef("NO"));
+        Assertions.assertNull(mapper.mapCountryRef(null));
+    }
+
+    @Test
+    public void testMapPlace() {
+        TopographicPlace topographicPlace = mapper.toTopographicPlace(new TestAdapter("50", "NOR"));
+
+        Assertions.assertEquals("KVE:TopographicPlace:50", topographicPlace.getId());
+        Assertions.assertEquals("Trøndelag", topographicPlace.getName().getValue());
+        Assertions.assertEquals("nor", topographicPlace.getName().getLang());
+        Assertions.assertEquals("Trøndelag", topographicPlace.getDescriptor().getName().getValue());
+        Assertions.assertEquals(IanaCountryTldEnumeration.NO, topographicPlace.getCountryRef().getRef());
+        Assertions.assertEquals("KVE-50", topographicPlace.getPolygon().getId());
+        Assertions.assertNull(topographicPlace.getParentTopographicPlaceRef());
+    }
+
+    @Test
+    public void testCountryRefSharedBetweenPlaces() {
+        TopographicPlace first = mapper.toTopographicPlace(new TestAdapter("1", "NOR"));
+        TopographicPlace second = new TopographicPlaceMapper("WOF").toTopographicPlace(new TestAdapter("2", "no"));
+
+        Assertions.assertSame(first.getCountryRef(), second.getCountryRef());
+    }
+
+    @Test
+    public void testAllocationPerPlace() {
+        Assumptions.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled());
+
+        TestAdapter adapter = new TestAdapter("50", "NOR");
+        int numPlaces = 10000;
+        // Warm up
+        for (int i = 0; i < numPlaces; i++) {
+            mapper.toTopographicPlace(adapter);
+        }
+
+        long threadId = Thread.currentThread().threadId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        int mapped = 0;
+        for (int i = 0; i < numPlaces; i++) {
+            if (mapper.toTopographicPlace(adapter) != null) {
+                mapped++;
+            }
+        }
+        long bytesPerPlace = (threadMXBean.getThreadAllocatedBytes(threadId) - before) / numPlaces;
+
+        Assertions.assertEquals(numPlaces, mapped);
+        Assertions.assertTrue(bytesPerPlace < MAX_BYTES_PER_PLACE, "Expected less than " + MAX_BYTES_PER_PLACE + " bytes allocated per place, got: " + bytesPerPlace);
+    }
+
+    private static class TestAdapter implements TopographicPlaceAdapter {
+
+        private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+        private final String id;
+
+        private final String countryRef;
+
+        private final Geometry geometry = GEOMETRY_FACTORY.createPolygon(new Coordinate[]{new Coordinate(10.1, 63.1),
+                new Coordinate(10.2, 63.1), new Coordinate(10.2, 63.2), new Coordinate(10.1, 63.2), new Coordinate(10.1, 63.1)});
+
+        private TestAdapter(String id, String countryRef) {
+            this.id = id;
+            this.countryRef = countryRef;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getIsoCode() {
+            return "NO-" + id;
+        }
+
+        @Override
+        public String getParentId() {
+            return null;
+        }
+
+        @Override
+        public String getName() {
+            return "Trøndelag";
+        }
+
+        @Override
+        public Type getType() {
+            return Type.COUNTY;
+        }
+
+        @Override
+        public Geometry getDefaultGeometry() {
+            return geometry;
+        }
+
+        @Override
+        public Map<String, String> getAlternativeNames() {
+            return Map.of();
+        }
+
+        @Override
+        public String getCountryRef() {
+            return countryRef;
+        }
+
+        @Override
+        public List<String> getCategories() {
+            return List.of();
+        }
+
+        @Override
+        public boolean isValid() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.netex;
+
+import no.entur.kakka.task.sosi.SosiElementWrapperFactory;
+import no.entur.kakka.task.sosi.SosiTopographicPlaceAdapterReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.rutebanken.netex.model.LocaleStructure;
+import org.rutebanken.netex.model.ModificationEnumeration;
+import org.rutebanken.netex.model.MultilingualString;
+import org.rutebanken.netex.model.ObjectFactory;
+import org.rutebanken.netex.model.PublicationDeliveryStructure;
+import org.rutebanken.netex.model.SiteFrame;
+import org.rutebanken.netex.model.TopographicPlace;
+import org.rutebanken.netex.model.VersionFrameDefaultsStructure;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+public class TopographicPlaceNetexWriterTest {
+
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Test
+    public void testParallelMarshallingGivesSameBytesAsSequential() throws Exception {
+        List<TopographicPlace> topographicPlaces = createTopographicPlaces(200);
+
+        byte[] sequential = write(new TopographicPlaceNetexWriter(), topographicPlaces);
+        byte[] parallel = write(new TopographicPlaceNetexWriter(4), topographicPlaces);
+
+        Assertions.assertTrue(new String(sequential).contains("<topographicPlaces>"));
+        Assertions.assertArrayEquals(sequential, parallel);
+    }
+
+    @Test
+    public void testParallelMarshallingWithoutPlaces() throws Exception {
+        byte[] sequential = write(new TopographicPlaceNetexWriter(), List.of());
+        byte[] parallel = write(new TopographicPlaceNetexWriter(4), List.of());
+
+        Assertions.assertFalse(new String(parallel).contains("<topographicPlaces>"));
+        Assertions.assertArrayEquals(sequential, parallel);
+    }
+
+    @Test
+    public void testCompactOutput() throws Exception {
+        List<TopographicPlace> topographicPlaces = createTopographicPlaces(20);
+
+        byte[] sequential = write(new TopographicPlaceNetexWriter(1, TopographicPlaceNetexWriter.Serializer.JAXB, false), topographicPlaces);
+        byte[] parallel = write(new TopographicPlaceNetexWriter(4, TopographicPlaceNetexWriter.Serializer.JAXB, false), topographicPlaces);
+
+        String xml = new String(sequential, StandardCharsets.UTF_8);
+        Assertions.assertTrue(xml.contains("<topographicPlaces><TopographicPlace"));
+        Assertions.assertTrue(xml.contains("</topographicPlaces></SiteFrame>"));
+        Assertions.assertArrayEquals(sequential, parallel);
+    }
+
+    @Test
+    public void testInvalidNumberOfThreads() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TopographicPlaceNetexWriter(0));
+    }
+
+    private byte[] write(TopographicPlaceNetexWriter writer, List<TopographicPlace> topographicPlaces) throws Exception {
+        BlockingQueue<TopographicPlace> queue = new LinkedBlockingQueue<>(topographicPlaces);
+        queue.add(new TopographicPlace().withId("POISON"));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writer.stream(createPublicationDelivery(), queue, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Copies of the county in the SOSI test file with distinct ids, so that the order of the output can be verified.
+     */
+    private List<TopographicPlace> createTopographicPlaces(int numPlaces) {
+        List<TopographicPlaceAdapter> adapters = new ArrayList<>();
+        new SosiTopographicPlaceAdapterReader(new SosiElementWrapperFactory(), new File("src/test/resources/no/entur/kakka/task/sosi/SosiTest.sos")).stream(adapters::add);
+        Assertions.assertFalse(adapters.isEmpty());
+
+        TopographicPlaceMapper mapper = new TopographicPlaceMapper("KVE");
+        List<TopographicPlace> topographicPlaces = new ArrayList<>();
+        for (int i = 0; i < numPlaces; i++) {
+            TopographicPlace topographicPlace = mapper.toTopographicPlace(adapters.get(i % adapters.size()));
+            topographicPlaces.add(topographicPlace.withId(topographicPlace.getId() + "-" + i));
+        }
+        return topographicPlaces;
+    }
+
+    private PublicationDeliveryStructure createPublicationDelivery() {
+        SiteFrame siteFrame = new SiteFrame().withCreated(TIMESTAMP).withId("KVE:SiteFrame:1")
+                .withModification(ModificationEnumeration.NEW).withVersion("any")
+                .withFrameDefaults(new VersionFrameDefaultsStructure().withDefaultLocale(new LocaleStructure().withTimeZone("CET")));
+        return new PublicationDeliveryStructure().withParticipantRef("KVE")
+                .withPublicationTimestamp(TIMESTAMP)
+                .withDescription(new MultilingualString().withValue("Administrative units"))
+                .withDataObjects(new PublicationDeliveryStructure.DataObjects()
+                        .withCompositeFrameOrCommonFrame(new ObjectFactory().createSiteFrame(siteFrame)));
+    }
+}
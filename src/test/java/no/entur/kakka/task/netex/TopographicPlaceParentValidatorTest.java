@@ -0,0 +1,142 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.task.netex;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TopographicPlaceParentValidatorTest {
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+    @Test
+    public void testIndexFindsContainingUnit() {
+        Map<String, Geometry> localities = new HashMap<>();
+        for (int x = 0; x < 20; x++) {
+            for (int y = 0; y < 20; y++) {
+                localities.put(x + "-" + y, square(x, y, 1));
+            }
+        }
+        AdministrativeUnitIndex index = new AdministrativeUnitIndex(localities);
+
+        Assertions.assertEquals(400, index.size());
+        Assertions.assertEquals("3-7", index.findContaining(point(3.5, 7.5)));
+        Assertions.assertEquals("19-0", index.findContaining(square(19.2, 0.2, 0.5)));
+        Assertions.assertNull(index.findContaining(point(25, 25)));
+    }
+
+    @Test
+    public void testValidateParents() {
+        TopographicPlaceParentValidator validator = new TopographicPlaceParentValidator();
+        validator.accept(new TestPlace("01", TopographicPlaceAdapter.Type.COUNTY, null, square(0, 0, 10)));
+        validator.accept(new TestPlace("02", TopographicPlaceAdapter.Type.COUNTY, null, square(10, 0, 10)));
+        validator.accept(new TestPlace("0101", TopographicPlaceAdapter.Type.LOCALITY, "01", square(0, 0, 5)));
+        validator.accept(new TestPlace("0201", TopographicPlaceAdapter.Type.LOCALITY, "01", square(10, 0, 5)));
+        validator.accept(new TestPlace("1", TopographicPlaceAdapter.Type.PLACE, "0101", point(1, 1)));
+        validator.accept(new TestPlace("2", TopographicPlaceAdapter.Type.PLACE, "0101", point(11, 1)));
+        validator.accept(new TestPlace("3", TopographicPlaceAdapter.Type.PLACE, null, point(12, 2)));
+        validator.accept(new TestPlace("4", TopographicPlaceAdapter.Type.PLACE, "0101", point(50, 50)));
+
+        ParentValidationReport report = validator.validate(2);
+
+        Assertions.assertEquals(1, report.getCount(TopographicPlaceAdapter.Type.LOCALITY, ParentValidationReport.Result.MATCH));
+        Assertions.assertEquals(1, report.getCount(TopographicPlaceAdapter.Type.LOCALITY, ParentValidationReport.Result.MISMATCH));
+        Assertions.assertEquals(1, report.getCount(TopographicPlaceAdapter.Type.PLACE, ParentValidationReport.Result.MATCH));
+        Assertions.assertEquals(1, report.getCount(TopographicPlaceAdapter.Type.PLACE, ParentValidationReport.Result.MISMATCH));
+        Assertions.assertEquals(1, report.getCount(TopographicPlaceAdapter.Type.PLACE, ParentValidationReport.Result.MISSING));
+        Assertions.assertEquals(1, report.getCount(TopographicPlaceAdapter.Type.PLACE, ParentValidationReport.Result.UNRESOLVED));
+        Assertions.assertEquals(4, report.getInvalidCount());
+
+        ParentValidationReport.Mismatch localityMismatch = report.getExamples().stream().filter(m -> m.id().equals("0201")).findFirst().orElseThrow();
+        Assertions.assertEquals("01", localityMismatch.declaredParentId());
+        Assertions.assertEquals("02", localityMismatch.resolvedParentId());
+    }
+
+    @Test
+    public void testChildrenNotValidatedWithoutParentLevel() {
+        TopographicPlaceParentValidator validator = new TopographicPlaceParentValidator();
+        validator.accept(new TestPlace("0101", TopographicPlaceAdapter.Type.LOCALITY, "01", square(0, 0, 5)));
+
+        ParentValidationReport report = validator.validate(1);
+
+        Assertions.assertTrue(report.getCounts().isEmpty());
+    }
+
+    @Test
+    public void testExamplesAreLimited() {
+        TopographicPlaceParentValidator validator = new TopographicPlaceParentValidator();
+        validator.accept(new TestPlace("0101", TopographicPlaceAdapter.Type.LOCALITY, "01", square(0, 0, 5)));
+        for (int i = 0; i < ParentValidationReport.MAX_EXAMPLES * 2; i++) {
+            validator.accept(new TestPlace("place-" + i, TopographicPlaceAdapter.Type.PLACE, "9999", point(1, 1)));
+        }
+
+        ParentValidationReport report = validator.validate(4);
+
+        Assertions.assertEquals(ParentValidationReport.MAX_EXAMPLES * 2, report.getCount(TopographicPlaceAdapter.Type.PLACE, ParentValidationReport.Result.MISMATCH));
+        Assertions.assertEquals(ParentValidationReport.MAX_EXAMPLES, report.getExamples().size());
+    }
+
+    private static Geometry point(double x, double y) {
+        return GEOMETRY_FACTORY.createPoint(new Coordinate(x, y));
+    }
+
+    private static Geometry square(double x, double y, double size) {
+        return GEOMETRY_FACTORY.createPolygon(new Coordinate[]{new Coordinate(x, y), new Coordinate(x + size, y),
+                new Coordinate(x + size, y + size), new Coordinate(x, y + size), new Coordinate(x, y)});
+    }
+
+    private record TestPlace(String getId, TopographicPlaceAdapter.Type getType, String getParentId, Geometry getDefaultGeometry) implements TopographicPlaceAdapter {
+
+        @Override
+        public String getIsoCode() {
+            return null;
+        }
+
+        @Override
+        public String getName() {
+            return getId;
+        }
+
+        @Override
+        public Map<String, String> getAlternativeNames() {
+            return Map.of();
+        }
+
+        @Override
+        public String getCountryRef() {
+            return "NO";
+        }
+
+        @Override
+        public List<String> getCategories() {
+            return List.of();
+        }
+
+        @Override
+        public boolean isValid() {
+            return true;
+        }
+    }
+}
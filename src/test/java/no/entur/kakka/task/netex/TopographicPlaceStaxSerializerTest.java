@@ -0,0 +1,148 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.netex;
+
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBElement;
+import jakarta.xml.bind.Marshaller;
+import jakarta.xml.bind.Unmarshaller;
+import no.entur.kakka.task.sosi.SosiElementWrapperFactory;
+import no.entur.kakka.task.sosi.SosiTopographicPlaceAdapterReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.rutebanken.netex.model.CountryRef;
+import org.rutebanken.netex.model.IanaCountryTldEnumeration;
+import org.rutebanken.netex.model.LocaleStructure;
+import org.rutebanken.netex.model.ModificationEnumeration;
+import org.rutebanken.netex.model.MultilingualString;
+import org.rutebanken.netex.model.ObjectFactory;
+import org.rutebanken.netex.model.PublicationDeliveryStructure;
+import org.rutebanken.netex.model.SiteFrame;
+import org.rutebanken.netex.model.TopographicPlace;
+import org.rutebanken.netex.model.TopographicPlaceDescriptor_VersionedChildStructure;
+import org.rutebanken.netex.model.TopographicPlaceRefStructure;
+import org.rutebanken.netex.model.TopographicPlaceTypeEnumeration;
+import org.rutebanken.netex.model.TopographicPlace_VersionStructure;
+import org.rutebanken.netex.model.VersionFrameDefaultsStructure;
+import org.rutebanken.netex.validation.NeTExValidator;
+import org.xmlunit.builder.DiffBuilder;
+import org.xmlunit.builder.Input;
+import org.xmlunit.diff.Diff;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+public class TopographicPlaceStaxSerializerTest {
+
+    private static final File GOLDEN_FILE = new File("src/test/resources/no/entur/kakka/task/netex/topographic-place-golden.xml");
+
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Test
+    public void testStaxOutputMatchesGoldenFile() throws Exception {
+        StringWriter writer = new StringWriter();
+        new TopographicPlaceStaxSerializer().write(createTopographicPlace(), writer);
+
+        assertSimilar(Input.fromFile(GOLDEN_FILE), Input.fromString(writer.toString()));
+    }
+
+    @Test
+    public void testJaxbOutputMatchesGoldenFile() throws Exception {
+        Marshaller marshaller = JAXBContext.newInstance(TopographicPlace.class).createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+        StringWriter writer = new StringWriter();
+        marshaller.marshal(new ObjectFactory().createTopographicPlace(createTopographicPlace()), writer);
+
+        assertSimilar(Input.fromFile(GOLDEN_FILE), Input.fromString(writer.toString()));
+    }
+
+    @Test
+    public void testStaxPublicationDeliveryIsValidAndEquivalentToJaxb() throws Exception {
+        List<TopographicPlace> topographicPlaces = new ArrayList<>();
+        new SosiTopographicPlaceAdapterReader(new SosiElementWrapperFactory(), new File("src/test/resources/no/entur/kakka/task/sosi/SosiTest.sos"))
+                .stream(adapter -> topographicPlaces.add(new TopographicPlaceMapper("KVE").toTopographicPlace(adapter)));
+        topographicPlaces.add(createTopographicPlace());
+
+        byte[] jaxb = write(new TopographicPlaceNetexWriter(1, TopographicPlaceNetexWriter.Serializer.JAXB), topographicPlaces);
+        byte[] stax = write(new TopographicPlaceNetexWriter(1, TopographicPlaceNetexWriter.Serializer.STAX), topographicPlaces);
+        byte[] parallelStax = write(new TopographicPlaceNetexWriter(4, TopographicPlaceNetexWriter.Serializer.STAX), topographicPlaces);
+
+        validate(stax);
+        assertSimilar(Input.fromByteArray(jaxb), Input.fromByteArray(stax));
+        Assertions.assertArrayEquals(stax, parallelStax);
+    }
+
+    private void assertSimilar(Input.Builder expected, Input.Builder actual) {
+        Diff diff = DiffBuilder.compare(expected).withTest(actual)
+                .ignoreWhitespace().ignoreComments().checkForSimilar().build();
+        Assertions.assertFalse(diff.hasDifferences(), diff.toString());
+    }
+
+    private void validate(byte[] publicationDelivery) throws Exception {
+        Unmarshaller unmarshaller = JAXBContext.newInstance(PublicationDeliveryStructure.class).createUnmarshaller();
+        unmarshaller.setSchema(new NeTExValidator().getSchema());
+        JAXBElement<?> jaxbElement = (JAXBElement<?>) unmarshaller.unmarshal(new ByteArrayInputStream(publicationDelivery));
+        Assertions.assertInstanceOf(PublicationDeliveryStructure.class, jaxbElement.getValue());
+    }
+
+    private byte[] write(TopographicPlaceNetexWriter writer, List<TopographicPlace> topographicPlaces) throws Exception {
+        BlockingQueue<TopographicPlace> queue = new LinkedBlockingQueue<>(topographicPlaces);
+        queue.add(new TopographicPlace().withId("POISON"));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writer.stream(createPublicationDelivery(), queue, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private TopographicPlace createTopographicPlace() {
+        GeometryFactory geometryFactory = new GeometryFactory();
+        org.locationtech.jts.geom.Polygon polygon = geometryFactory.createPolygon(new Coordinate[]{
+                new Coordinate(10.0, 63.25), new Coordinate(10.75, 63.25), new Coordinate(10.75, 63.5),
+                new Coordinate(10.0, 63.5), new Coordinate(10.0, 63.25)});
+
+        return new TopographicPlace()
+                .withVersion("any").withModification(ModificationEnumeration.NEW)
+                .withName(new MultilingualString().withLang("nor").withValue("Trondheim"))
+                .withAlternativeDescriptors(new TopographicPlace_VersionStructure.AlternativeDescriptors().withTopographicPlaceDescriptor(
+                        new TopographicPlaceDescriptor_VersionedChildStructure().withName(new MultilingualString().withLang("sma").withValue("Tråante & Nidaros"))))
+                .withDescriptor(new TopographicPlaceDescriptor_VersionedChildStructure().withName(new MultilingualString().withLang("nor").withValue("Trondheim")))
+                .withTopographicPlaceType(TopographicPlaceTypeEnumeration.MUNICIPALITY)
+                .withPolygon(NetexGeoUtil.toNetexPolygon(polygon).withId("KVE-1601"))
+                .withCountryRef(new CountryRef().withRef(IanaCountryTldEnumeration.NO))
+                .withId("KVE:TopographicPlace:1601")
+                .withParentTopographicPlaceRef(new TopographicPlaceRefStructure().withRef("KVE:TopographicPlace:16"));
+    }
+
+    private PublicationDeliveryStructure createPublicationDelivery() {
+        SiteFrame siteFrame = new SiteFrame().withCreated(TIMESTAMP).withId("KVE:SiteFrame:1")
+                .withModification(ModificationEnumeration.NEW).withVersion("any")
+                .withFrameDefaults(new VersionFrameDefaultsStructure().withDefaultLocale(new LocaleStructure().withTimeZone("CET")));
+        return new PublicationDeliveryStructure().withParticipantRef("KVE")
+                .withPublicationTimestamp(TIMESTAMP)
+                .withDescription(new MultilingualString().withValue("Administrative units"))
+                .withDataObjects(new PublicationDeliveryStructure.DataObjects()
+                        .withCompositeFrameOrCommonFrame(new ObjectFactory().createSiteFrame(siteFrame)));
+    }
+}
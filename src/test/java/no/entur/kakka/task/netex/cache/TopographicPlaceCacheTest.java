@@ -0,0 +1,162 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.netex.cache;
+
+import net.opengis.gml._3.LinearRingType;
+import no.entur.kakka.task.netex.TopographicPlaceAdapter;
+import no.entur.kakka.task.netex.sosi.SosiTopographicPlaceReader;
+import no.entur.kakka.task.sosi.SosiElementWrapperFactory;
+import no.entur.kakka.task.sosi.SosiTopographicPlaceAdapterReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+import org.rutebanken.netex.model.TopographicPlace;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class TopographicPlaceCacheTest {
+
+    private static final File SOSI_FILE = new File("src/test/resources/no/entur/kakka/task/sosi/SosiTest.sos");
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+    @TempDir
+    Path tempDir;
+
+    private int cacheFileCount;
+
+    @Test
+    public void testCachedSosiAdaptersEqualParsedAdapters() throws Exception {
+        List<TopographicPlaceAdapter> parsed = new ArrayList<>();
+        new SosiTopographicPlaceAdapterReader(new SosiElementWrapperFactory(), SOSI_FILE).stream(parsed::add);
+        File cacheFile = write(parsed, "settings", "digest");
+
+        List<TopographicPlaceAdapter> cached = new TopographicPlaceCacheReader(cacheFile).stream().toList();
+
+        Assertions.assertFalse(parsed.isEmpty());
+        Assertions.assertEquals(parsed.size(), cached.size());
+        for (int i = 0; i < parsed.size(); i++) {
+            assertSameAdapter(parsed.get(i), cached.get(i));
+        }
+    }
+
+    @Test
+    public void testGeometryKindsAndNullValues() throws Exception {
+        Polygon square = polygon(10, 60, 1);
+        Polygon withHole = GEOMETRY_FACTORY.createPolygon(square.getExteriorRing(), new LinearRing[]{polygon(10.2, 60.2, 0.1).getExteriorRing()});
+        Map<String, String> alternativeNames = new HashMap<>();
+        alternativeNames.put(null, "Oslo");
+        alternativeNames.put("sme", "Oslo");
+        List<TopographicPlaceAdapter> adapters = List.of(
+                new CachedTopographicPlaceAdapter("1", "NO-03", null, "Oslo", TopographicPlaceAdapter.Type.COUNTY, withHole, alternativeNames, "NOR", null, true),
+                new CachedTopographicPlaceAdapter("2", null, "1", "Frogner", TopographicPlaceAdapter.Type.BOROUGH,
+                        GEOMETRY_FACTORY.createMultiPolygon(new Polygon[]{square, polygon(12, 61, 0.5)}), Map.of(), "NOR", List.of("city", "borough"), true),
+                new CachedTopographicPlaceAdapter("3", null, null, "Æsøy", TopographicPlaceAdapter.Type.PLACE,
+                        GEOMETRY_FACTORY.createPoint(new Coordinate(10.123456789, 60.987654321)), null, null, List.of(), true),
+                new CachedTopographicPlaceAdapter("4", null, null, null, null, null, null, null, null, false));
+
+        List<TopographicPlaceAdapter> cached = new TopographicPlaceCacheReader(write(adapters, "settings", "digest")).stream().toList();
+
+        Assertions.assertEquals(adapters.size(), cached.size());
+        for (int i = 0; i < adapters.size(); i++) {
+            assertSameAdapter(adapters.get(i), cached.get(i));
+        }
+    }
+
+    @Test
+    public void testHeader() throws Exception {
+        File cacheFile = write(List.of(), "simplification=COUNTY=50.0", "0123abcd");
+
+        try (InputStream inputStream = new FileInputStream(cacheFile)) {
+            Assertions.assertEquals(new TopographicPlaceCache.Header("simplification=COUNTY=50.0", "0123abcd", 0), TopographicPlaceCache.readHeader(inputStream));
+        }
+        Assertions.assertEquals(0, new TopographicPlaceCacheReader(cacheFile).stream().count());
+        Assertions.assertThrows(IOException.class, () -> TopographicPlaceCache.readHeader(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8})));
+    }
+
+    @Test
+    public void testCachedReaderGivesSamePlacesAsSosiReader() throws Exception {
+        List<TopographicPlaceAdapter> parsed = new ArrayList<>();
+        new SosiTopographicPlaceAdapterReader(new SosiElementWrapperFactory(), SOSI_FILE).stream(parsed::add);
+
+        List<TopographicPlace> fromSosi = read(new SosiTopographicPlaceReader(new SosiElementWrapperFactory(), List.of(SOSI_FILE)).stream());
+        List<TopographicPlace> fromCache = read(new CachedTopographicPlaceReader(List.of(write(parsed, "settings", "digest"))).stream());
+
+        Assertions.assertFalse(fromSosi.isEmpty());
+        Assertions.assertEquals(fromSosi.stream().map(TopographicPlace::getId).toList(), fromCache.stream().map(TopographicPlace::getId).toList());
+        for (int i = 0; i < fromSosi.size(); i++) {
+            Assertions.assertEquals(posList(fromSosi.get(i)), posList(fromCache.get(i)));
+        }
+    }
+
+    private File write(List<TopographicPlaceAdapter> adapters, String settingsKey, String sourceDigest) throws IOException {
+        File cacheFile = tempDir.resolve("units-" + cacheFileCount++ + ".places").toFile();
+        try (TopographicPlaceCacheWriter writer = new TopographicPlaceCacheWriter(cacheFile, settingsKey, sourceDigest)) {
+            adapters.forEach(writer);
+            Assertions.assertEquals(adapters.size(), writer.getCount());
+        }
+        return cacheFile;
+    }
+
+    private void assertSameAdapter(TopographicPlaceAdapter expected, TopographicPlaceAdapter actual) {
+        Assertions.assertEquals(expected.getId(), actual.getId());
+        Assertions.assertEquals(expected.getIsoCode(), actual.getIsoCode());
+        Assertions.assertEquals(expected.getParentId(), actual.getParentId());
+        Assertions.assertEquals(expected.getName(), actual.getName());
+        Assertions.assertEquals(expected.getType(), actual.getType());
+        Assertions.assertEquals(expected.getAlternativeNames(), actual.getAlternativeNames());
+        Assertions.assertEquals(expected.getCountryRef(), actual.getCountryRef());
+        Assertions.assertEquals(expected.getCategories(), actual.getCategories());
+        Assertions.assertEquals(expected.isValid(), actual.isValid());
+        Geometry expectedGeometry = expected.getDefaultGeometry();
+        if (expectedGeometry == null) {
+            Assertions.assertNull(actual.getDefaultGeometry());
+        } else {
+            Assertions.assertTrue(expectedGeometry.equalsExact(actual.getDefaultGeometry()), "Geometry differs for id: " + expected.getId());
+        }
+    }
+
+    private Polygon polygon(double x, double y, double size) {
+        return GEOMETRY_FACTORY.createPolygon(new Coordinate[]{new Coordinate(x, y), new Coordinate(x + size, y),
+                new Coordinate(x + size, y + size), new Coordinate(x, y + size), new Coordinate(x, y)});
+    }
+
+    private List<TopographicPlace> read(Stream<TopographicPlace> places) {
+        try (places) {
+            return places.toList();
+        }
+    }
+
+    private List<Double> posList(TopographicPlace place) {
+        return ((LinearRingType) place.getPolygon().getExterior().getAbstractRing().getValue()).getPosList().getValue();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.task.netex.geojson;
+
+import no.entur.kakka.exceptions.KakkaException;
+import no.entur.kakka.task.geojson.GeojsonFeatureWrapperFactory;
+import no.entur.kakka.task.netex.TopographicPlaceAdapter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.rutebanken.netex.model.TopographicPlace;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class GeoJsonSingleTopographicPlaceReaderTest {
+
+    private static final File COUNTRY_FILE = new File("src/test/resources/no/entur/kakka/task/geojson/finland.geojson");
+
+    @Test
+    public void testParallelReadKeepsSourceOrder() {
+        List<GeoJsonSingleTopographicPlaceReader.Source> sources = IntStream.rangeClosed(1, 20).mapToObj(this::country).toList();
+
+        List<TopographicPlaceAdapter> adapters = new GeoJsonSingleTopographicPlaceReader(new GeojsonFeatureWrapperFactory(null), sources, 4).read();
+
+        Assertions.assertEquals(IntStream.rangeClosed(1, 20).mapToObj(String::valueOf).toList(), adapters.stream().map(TopographicPlaceAdapter::getId).toList());
+    }
+
+    @Test
+    public void testParallelStreamGivesSameOutputAsSequentialStream() {
+        List<GeoJsonSingleTopographicPlaceReader.Source> sources = new ArrayList<>(IntStream.rangeClosed(1, 5).mapToObj(this::country).toList());
+        sources.add(GeoJsonSingleTopographicPlaceReader.Source.of(COUNTRY_FILE));
+
+        List<String> sequential;
+        try (Stream<TopographicPlace> places = new GeoJsonSingleTopographicPlaceReader(new GeojsonFeatureWrapperFactory(null), sources, 1).stream()) {
+            sequential = places.map(TopographicPlace::getId).toList();
+        }
+        List<String> parallel;
+        try (Stream<TopographicPlace> places = new GeoJsonSingleTopographicPlaceReader(new GeojsonFeatureWrapperFactory(null), sources, 3).stream()) {
+            parallel = places.map(TopographicPlace::getId).toList();
+        }
+
+        Assertions.assertEquals(6, sequential.size());
+        Assertions.assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void testInvalidSourceFailsRead() {
+        List<GeoJsonSingleTopographicPlaceReader.Source> sources = List.of(country(1),
+                new GeoJsonSingleTopographicPlaceReader.Source("broken.geojson", () -> new ByteArrayInputStream("{\"type\": \"Feature\", ".getBytes(StandardCharsets.UTF_8))),
+                country(3));
+
+        KakkaException exception = Assertions.assertThrows(KakkaException.class,
+                () -> new GeoJsonSingleTopographicPlaceReader(new GeojsonFeatureWrapperFactory(null), sources, 2).read());
+        Assertions.assertTrue(exception.getMessage().contains("broken.geojson"), exception.getMessage());
+    }
+
+    @Test
+    public void testMissingBlobFailsRead() {
+        List<GeoJsonSingleTopographicPlaceReader.Source> sources = List.of(new GeoJsonSingleTopographicPlaceReader.Source("missing.geojson", () -> null));
+
+        Assertions.assertThrows(KakkaException.class, () -> new GeoJsonSingleTopographicPlaceReader(new GeojsonFeatureWrapperFactory(null), sources, 2).read());
+    }
+
+    private GeoJsonSingleTopographicPlaceReader.Source country(int id) {
+        String geojson = """
+                {"id": %d, "type": "Feature",
+                 "properties": {"wof:id": %d, "ne:type": "Country", "ne:iso_a2": "FI", "ne:iso_a3": "FIN",
+                                "name:nno_x_preferred": ["Land %d"], "name:eng_x_preferred": ["Country %d"]},
+                 "geometry": {"type": "Polygon", "coordinates": [[[20.0, 60.0], [21.0, 60.0], [21.0, 61.0], [20.0, 60.0]]]}}
+                """.formatted(id, id, id, id);
+        return new GeoJsonSingleTopographicPlaceReader.Source("country-" + id + ".geojson", () -> new ByteArrayInputStream(geojson.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.netex.sosi;
+
+import net.opengis.gml._3.LinearRingType;
+import no.entur.kakka.task.sosi.SosiElementWrapperFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rutebanken.netex.model.TopographicPlace;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class SosiTopographicPlaceReaderTest {
+
+    private static final Path SOSI_FILE = Path.of("src/test/resources/no/entur/kakka/task/sosi/SosiTest.sos");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testParallelReadGivesSameOrderAsSequentialRead() throws Exception {
+        List<File> files = new ArrayList<>();
+        for (String name : List.of("c.sos", "a.sos", "b.sos")) {
+            files.add(Files.copy(SOSI_FILE, tempDir.resolve(name)).toFile());
+        }
+
+        List<TopographicPlace> sequential = read(new SosiTopographicPlaceReader(new SosiElementWrapperFactory(), files, 1));
+        List<TopographicPlace> parallel = read(new SosiTopographicPlaceReader(new SosiElementWrapperFactory(), files, 3));
+
+        Assertions.assertFalse(sequential.isEmpty());
+        Assertions.assertEquals(ids(sequential), ids(parallel));
+        for (int i = 0; i < sequential.size(); i++) {
+            Assertions.assertEquals(posList(sequential.get(i)), posList(parallel.get(i)));
+        }
+    }
+
+    @Test
+    public void testPoolIsShutDownWhenStreamIsExhausted() throws Exception {
+        List<File> files = new ArrayList<>();
+        for (String name : List.of("a.sos", "b.sos")) {
+            files.add(Files.copy(SOSI_FILE, tempDir.resolve(name)).toFile());
+        }
+
+        // Not closed, the pool should stop once the last place is read
+        Stream<TopographicPlace> places = new SosiTopographicPlaceReader(new SosiElementWrapperFactory(), files, 2).stream();
+        Assertions.assertFalse(places.toList().isEmpty());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (hasLiveReaderThreads() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertFalse(hasLiveReaderThreads());
+    }
+
+    private boolean hasLiveReaderThreads() {
+        return Thread.getAllStackTraces().keySet().stream().anyMatch(thread -> thread.isAlive() && thread.getName().startsWith("sosi-reader-"));
+    }
+
+    private List<TopographicPlace> read(SosiTopographicPlaceReader reader) {
+        try (Stream<TopographicPlace> places = reader.stream()) {
+            return places.toList();
+        }
+    }
+
+    private List<Double> posList(TopographicPlace place) {
+        return ((LinearRingType) place.getPolygon().getExterior().getAbstractRing().getValue()).getPosList().getValue();
+    }
+
+    private List<String> ids(List<TopographicPlace> places) {
+        return places.stream().map(TopographicPlace::getId).toList();
+    }
+}
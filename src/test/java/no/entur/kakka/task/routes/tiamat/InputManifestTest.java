@@ -0,0 +1,82 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.task.routes.tiamat;
+
+import no.entur.kakka.domain.BlobStoreFiles;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Date;
+import java.util.List;
+
+public class InputManifestTest {
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        InputManifest manifest = InputManifest.of(List.of(file("kartverket/administrativeUnits/a.zip", "1a2b"), file("kartverket/administrativeUnits/b.zip", "3c4d")))
+                .withSetting("coordinateDecimals", 7);
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        manifest.write(content);
+        InputManifest read = InputManifest.read(new ByteArrayInputStream(content.toByteArray()));
+
+        Assertions.assertEquals(manifest, read);
+        Assertions.assertEquals(2, read.getInputCount());
+    }
+
+    @Test
+    public void testSameFilesInAnyOrderAreEqual() {
+        BlobStoreFiles.File a = file("geojson/countries/se.geojson", "1a2b");
+        BlobStoreFiles.File b = file("geojson/countries/fi.geojson", "3c4d");
+
+        Assertions.assertEquals(InputManifest.of(List.of(a, b)), InputManifest.of(List.of(b, a)));
+    }
+
+    @Test
+    public void testChangedAddedOrRemovedFileIsNotEqual() {
+        InputManifest manifest = InputManifest.of(List.of(file("a.zip", "1a2b"), file("b.zip", "3c4d")));
+
+        Assertions.assertNotEquals(manifest, InputManifest.of(List.of(file("a.zip", "1a2b"), file("b.zip", "ffff"))));
+        Assertions.assertNotEquals(manifest, InputManifest.of(List.of(file("a.zip", "1a2b"), file("b.zip", "3c4d"), file("c.zip", "5e6f"))));
+        Assertions.assertNotEquals(manifest, InputManifest.of(List.of(file("a.zip", "1a2b"))));
+    }
+
+    @Test
+    public void testChangedSettingIsNotEqual() {
+        List<BlobStoreFiles.File> files = List.of(file("a.zip", "1a2b"));
+
+        Assertions.assertNotEquals(InputManifest.of(files).withSetting("coordinateDecimals", 7), InputManifest.of(files).withSetting("coordinateDecimals", 6));
+    }
+
+    @Test
+    public void testFileWithoutChecksumIdentifiedBySizeAndUpdateTime() {
+        BlobStoreFiles.File file = new BlobStoreFiles.File("a.zip", new Date(1000), new Date(2000), 42L);
+        BlobStoreFiles.File updated = new BlobStoreFiles.File("a.zip", new Date(1000), new Date(3000), 42L);
+
+        Assertions.assertEquals(InputManifest.of(List.of(file)), InputManifest.of(List.of(file)));
+        Assertions.assertNotEquals(InputManifest.of(List.of(file)), InputManifest.of(List.of(updated)));
+    }
+
+    private BlobStoreFiles.File file(String name, String checksum) {
+        BlobStoreFiles.File file = new BlobStoreFiles.File(name, new Date(), new Date(), 1234L);
+        file.setChecksum(checksum);
+        return file;
+    }
+}
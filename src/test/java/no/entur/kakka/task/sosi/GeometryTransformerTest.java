@@ -0,0 +1,93 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.sosi;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class GeometryTransformerTest {
+
+    private static final String UTM_ZONE = "33";
+
+    @Test
+    public void testBulkTransformMatchesSingleCoordinateTransform() throws Exception {
+        double[] coordinates = utmCoordinatesInTrondelag(1000);
+        double[] original = coordinates.clone();
+
+        GeometryTransformer.fromUTM(coordinates, UTM_ZONE);
+
+        for (int i = 0; i < coordinates.length; i += 2) {
+            Coordinate expected = GeometryTransformer.fromUTM(new Coordinate(original[i], original[i + 1]), UTM_ZONE);
+            Assertions.assertEquals(expected.x, coordinates[i], 1e-12);
+            Assertions.assertEquals(expected.y, coordinates[i + 1], 1e-12);
+        }
+        Assertions.assertEquals(10.4, coordinates[0], 0.5, "Expected longitude in Trøndelag");
+        Assertions.assertEquals(63.4, coordinates[1], 0.5, "Expected latitude in Trøndelag");
+    }
+
+    @Test
+    public void testRangeTransformMatchesWholeArrayTransform() throws Exception {
+        double[] whole = utmCoordinatesInTrondelag(1000);
+        double[] ranges = whole.clone();
+
+        GeometryTransformer.fromUTM(whole, UTM_ZONE);
+        GeometryTransformer.fromUTM(ranges, 0, 333, UTM_ZONE);
+        GeometryTransformer.fromUTM(ranges, 333, 667, UTM_ZONE);
+
+        Assertions.assertArrayEquals(whole, ranges);
+    }
+
+    @Test
+    public void testConcurrentTransformsGiveSameResult() throws Exception {
+        double[] expected = utmCoordinatesInTrondelag(1000);
+        GeometryTransformer.fromUTM(expected, UTM_ZONE);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<double[]>> tasks = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                tasks.add(() -> {
+                    double[] coordinates = utmCoordinatesInTrondelag(1000);
+                    GeometryTransformer.fromUTM(coordinates, UTM_ZONE);
+                    return coordinates;
+                });
+            }
+            for (Future<double[]> result : executorService.invokeAll(tasks)) {
+                Assertions.assertArrayEquals(expected, result.get());
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private double[] utmCoordinatesInTrondelag(int numPoints) {
+        double[] coordinates = new double[numPoints * 2];
+        for (int i = 0; i < numPoints; i++) {
+            coordinates[i * 2] = 269000 + i * 10.0;
+            coordinates[i * 2 + 1] = 7040000 + i * 5.0;
+        }
+        return coordinates;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.sosi;
+
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.geotools.api.referencing.operation.MathTransform;
+import org.geotools.referencing.CRS;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class KrugerTransverseMercatorTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(KrugerTransverseMercatorTest.class);
+
+    private static final double METRES_PER_DEGREE = 111320;
+
+    /**
+     * Grid covering mainland Norway and Svalbard's latitudes, with each point projected in its own UTM zone (31-36).
+     */
+    @Test
+    public void testSubMillimetreAgreementWithGeoToolsOverNorway() throws Exception {
+        CoordinateReferenceSystem wgs84 = CRS.decode("EPSG:4326", true);
+        double maxDeviationMetres = 0;
+
+        for (double lon = 4.05; lon < 31.5; lon += 0.25) {
+            int zone = (int) Math.floor((lon + 180) / 6) + 1;
+            CoordinateReferenceSystem utm = CRS.decode("EPSG:326" + zone, true);
+            MathTransform toUtm = CRS.findMathTransform(wgs84, utm);
+            MathTransform fromUtm = CRS.findMathTransform(utm, wgs84);
+
+            for (double lat = 57.5; lat <= 71.5; lat += 0.25) {
+                double[] utmCoordinates = new double[2];
+                toUtm.transform(new double[]{lon, lat}, 0, utmCoordinates, 0, 1);
+
+                double[] expected = new double[2];
+                fromUtm.transform(utmCoordinates, 0, expected, 0, 1);
+
+                double[] actual = utmCoordinates.clone();
+                KrugerTransverseMercator.inverse(actual, 0, 1, zone);
+
+                double deviation = distanceInMetres(expected, actual);
+                maxDeviationMetres = Math.max(maxDeviationMetres, deviation);
+                Assertions.assertTrue(deviation < 0.001, "Expected sub-millimetre agreement in zone " + zone + " at " + lon + ", " + lat + ", got " + deviation + " m");
+            }
+        }
+        logger.info("Max deviation from GeoTools for Krüger inverse over Norway: {} m", maxDeviationMetres);
+    }
+
+    @Test
+    public void testKnownPoints() {
+        // Trondheim (10.3951, 63.4305) and Oslo (10.7522, 59.9139) projected to UTM zone 32 to the micrometre, so the exact
+        // points are expected back to within 1e-9 degrees (about 0.1 mm)
+        double[] coordinates = new double[]{569618.628608, 7034313.849013, 597979.902883, 6643118.991493};
+        KrugerTransverseMercator.inverse(coordinates, 0, 2, 32);
+
+        Assertions.assertEquals(10.3951, coordinates[0], 1e-9);
+        Assertions.assertEquals(63.4305, coordinates[1], 1e-9);
+        Assertions.assertEquals(10.7522, coordinates[2], 1e-9);
+        Assertions.assertEquals(59.9139, coordinates[3], 1e-9);
+    }
+
+    @Test
+    public void testOnlyGivenRangeIsTransformed() {
+        double[] coordinates = new double[]{1, 2, 569618.628608, 7034313.849013, 3, 4};
+        KrugerTransverseMercator.inverse(coordinates, 1, 1, 32);
+
+        Assertions.assertEquals(1, coordinates[0]);
+        Assertions.assertEquals(2, coordinates[1]);
+        Assertions.assertEquals(10.3951, coordinates[2], 1e-9);
+        Assertions.assertEquals(3, coordinates[4]);
+        Assertions.assertEquals(4, coordinates[5]);
+    }
+
+    @Test
+    public void testUnsupportedZone() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> KrugerTransverseMercator.inverse(new double[2], 0, 1, 61));
+    }
+
+    private double distanceInMetres(double[] expected, double[] actual) {
+        double dLat = (actual[1] - expected[1]) * METRES_PER_DEGREE;
+        double dLon = (actual[0] - expected[0]) * METRES_PER_DEGREE * Math.cos(Math.toRadians(expected[1]));
+        return Math.sqrt(dLat * dLat + dLon * dLon);
+    }
+}
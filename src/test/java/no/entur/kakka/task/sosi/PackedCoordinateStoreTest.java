@@ -0,0 +1,147 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.sosi;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class PackedCoordinateStoreTest {
+
+    @Test
+    public void testCopySlice() {
+        PackedCoordinateStore store = new PackedCoordinateStore();
+        store.put(633, new double[]{10.1, 63.1, 10.2, 63.2, 10.3, 63.3}, 3);
+        store.put(134, new double[]{11.1, 64.1, 11.2, 64.2}, 2);
+
+        Assertions.assertEquals(3, store.getNumPoints(633));
+        Assertions.assertEquals(2, store.getNumPoints(134));
+
+        double[] target = new double[10];
+        Assertions.assertEquals(3, store.copyTo(633, false, target, 0));
+        Assertions.assertEquals(2, store.copyTo(134, false, target, 3));
+        Assertions.assertArrayEquals(new double[]{10.1, 63.1, 10.2, 63.2, 10.3, 63.3, 11.1, 64.1, 11.2, 64.2}, target);
+    }
+
+    @Test
+    public void testCopyReversedSlice() {
+        PackedCoordinateStore store = new PackedCoordinateStore();
+        store.put(633, new double[]{10.1, 63.1, 10.2, 63.2, 10.3, 63.3}, 3);
+
+        double[] target = new double[6];
+        store.copyTo(633, true, target, 0);
+        Assertions.assertArrayEquals(new double[]{10.3, 63.3, 10.2, 63.2, 10.1, 63.1}, target);
+    }
+
+    @Test
+    public void testUnknownId() {
+        PackedCoordinateStore store = new PackedCoordinateStore();
+        store.put(1, new double[]{10.1, 63.1}, 1);
+
+        Assertions.assertFalse(store.contains(2));
+        Assertions.assertEquals(-1, store.getNumPoints(2));
+        Assertions.assertEquals(-1, store.copyTo(2, false, new double[2], 0));
+    }
+
+    @Test
+    public void testReplaceExistingId() {
+        PackedCoordinateStore store = new PackedCoordinateStore();
+        store.put(1, new double[]{10.1, 63.1}, 1);
+        store.put(1, new double[]{11.1, 64.1, 11.2, 64.2}, 2);
+
+        Assertions.assertEquals(1, store.size());
+        double[] target = new double[4];
+        store.copyTo(1, false, target, 0);
+        Assertions.assertArrayEquals(new double[]{11.1, 64.1, 11.2, 64.2}, target);
+    }
+
+    @Test
+    public void testGrowIndexAndArena() {
+        PackedCoordinateStore store = new PackedCoordinateStore();
+        int numCurves = 10000;
+        int pointsPerCurve = 50;
+        for (int id = 1; id <= numCurves; id++) {
+            store.put(id, curve(id, pointsPerCurve), pointsPerCurve);
+        }
+
+        Assertions.assertEquals(numCurves, store.size());
+        Assertions.assertEquals((long) numCurves * pointsPerCurve, store.getVertexCount());
+        for (int id = 1; id <= numCurves; id++) {
+            double[] target = new double[pointsPerCurve * 2];
+            store.copyTo(id, false, target, 0);
+            Assertions.assertArrayEquals(curve(id, pointsPerCurve), target);
+        }
+    }
+
+    @Test
+    public void testParallelTransformInPlaceMatchesSequential() {
+        PackedCoordinateStore sequential = new PackedCoordinateStore();
+        PackedCoordinateStore parallel = new PackedCoordinateStore();
+        for (int id = 1; id <= 1000; id++) {
+            sequential.put(id, curve(id, 37), 37);
+            parallel.put(id, curve(id, 37), 37);
+        }
+
+        PackedCoordinateStore.RangeOperation operation = (coordinates, fromPoint, numPoints) -> {
+            for (int i = fromPoint * 2; i < (fromPoint + numPoints) * 2; i++) {
+                coordinates[i] = Math.sqrt(coordinates[i]) * 3;
+            }
+        };
+        sequential.transformInPlace(operation, 1000, null);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            parallel.transformInPlace(operation, 100, pool);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        for (int id = 1; id <= 1000; id++) {
+            double[] expected = new double[37 * 2];
+            double[] actual = new double[37 * 2];
+            sequential.copyTo(id, false, expected, 0);
+            parallel.copyTo(id, false, actual, 0);
+            Assertions.assertArrayEquals(expected, actual);
+        }
+    }
+
+    /**
+     * A JTS Coordinate alone retains 40 bytes (header plus x, y and z), in addition to the list slot and the boxed key per curve.
+     * The packed store should stay close to the 16 bytes of raw lon/lat data per vertex.
+     */
+    @Test
+    public void testHeapUsagePerVertex() {
+        PackedCoordinateStore store = new PackedCoordinateStore();
+        for (int id = 1; id <= 5000; id++) {
+            store.put(id, curve(id, 100), 100);
+        }
+        store.trimToSize();
+
+        double bytesPerVertex = store.getHeapBytesPerVertex();
+        Assertions.assertTrue(bytesPerVertex >= 16, "Expected at least raw size of lon/lat per vertex, got: " + bytesPerVertex);
+        Assertions.assertTrue(bytesPerVertex < 18, "Expected less than 18 bytes per vertex, got: " + bytesPerVertex);
+    }
+
+    private double[] curve(int id, int numPoints) {
+        double[] coordinates = new double[numPoints * 2];
+        for (int i = 0; i < numPoints; i++) {
+            coordinates[i * 2] = id + i * 0.001;
+            coordinates[i * 2 + 1] = 60 + i * 0.001;
+        }
+        return coordinates;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.sosi;
+
+import no.entur.kakka.task.netex.GeometrySimplifier;
+import no.entur.kakka.task.netex.TopographicPlaceAdapter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+public class SharedArcSimplifierTest {
+
+    private static final TopographicPlaceAdapter.Type TYPE = TopographicPlaceAdapter.Type.LOCALITY;
+
+    // Shared boundary northwards, with a bump of about 250 m to the east that is removed with a tolerance of 300 m
+    private static final long SHARED = 1;
+    private static final double[] SHARED_ARC = {10, 63, 10.005, 63.05, 10, 63.1};
+
+    // Western area returning south across the straight shared boundary, so that it is only valid with the bump
+    private static final long WEST_NORTH = 2;
+    private static final long WEST_MIDDLE = 6;
+    private static final long WEST_SOUTH = 3;
+
+    // Eastern area, valid with or without the bump
+    private static final long EAST = 4;
+
+    // Unrelated area further north
+    private static final long OTHER = 5;
+
+    @Test
+    public void testArcsOfInvalidRingAreKeptForAllAreasReferencingThem() {
+        PackedCoordinateStore store = store();
+        SharedArcSimplifier arcSimplifier = new SharedArcSimplifier(store, new GeometrySimplifier(Map.of(TYPE.name(), "300")));
+        arcSimplifier.addRing(TYPE, new long[]{SHARED, WEST_NORTH, WEST_MIDDLE, WEST_SOUTH}, new boolean[]{false, false, false, false});
+        arcSimplifier.addRing(TYPE, new long[]{SHARED, EAST}, new boolean[]{true, false});
+        arcSimplifier.addRing(TYPE, new long[]{OTHER}, new boolean[]{false});
+
+        arcSimplifier.complete(null);
+
+        Assertions.assertTrue(arcSimplifier.isEnabled(TYPE));
+        Assertions.assertFalse(arcSimplifier.isEnabled(TopographicPlaceAdapter.Type.COUNTY));
+        Assertions.assertArrayEquals(SHARED_ARC, arc(arcSimplifier, SHARED, false));
+        Assertions.assertArrayEquals(new double[]{10, 63.1, 10.005, 63.05, 10, 63}, arc(arcSimplifier, SHARED, true));
+        Assertions.assertEquals(2, arcSimplifier.getNumPointsForRef(TYPE, OTHER));
+    }
+
+    @Test
+    public void testSharedArcIsSimplifiedWhenAllRingsAreValid() {
+        PackedCoordinateStore store = store();
+        SharedArcSimplifier arcSimplifier = new SharedArcSimplifier(store, new GeometrySimplifier(Map.of(TYPE.name(), "300")));
+        arcSimplifier.addRing(TYPE, new long[]{SHARED, EAST}, new boolean[]{true, false});
+
+        arcSimplifier.complete(null);
+
+        Assertions.assertArrayEquals(new double[]{10, 63, 10, 63.1}, arc(arcSimplifier, SHARED, false));
+        Assertions.assertArrayEquals(new double[]{10, 63.1, 10, 63}, arc(arcSimplifier, SHARED, true));
+    }
+
+    @Test
+    public void testParallelCheckGivesSameArcs() {
+        SharedArcSimplifier sequential = new SharedArcSimplifier(store(), new GeometrySimplifier(Map.of(TYPE.name(), "300")));
+        SharedArcSimplifier parallel = new SharedArcSimplifier(store(), new GeometrySimplifier(Map.of(TYPE.name(), "300")));
+        for (SharedArcSimplifier arcSimplifier : new SharedArcSimplifier[]{sequential, parallel}) {
+            arcSimplifier.addRing(TYPE, new long[]{SHARED, WEST_NORTH, WEST_MIDDLE, WEST_SOUTH}, new boolean[]{false, false, false, false});
+            arcSimplifier.addRing(TYPE, new long[]{SHARED, EAST}, new boolean[]{true, false});
+        }
+        sequential.complete(null);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            parallel.complete(pool);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        for (long ref : new long[]{SHARED, WEST_NORTH, WEST_MIDDLE, WEST_SOUTH, EAST}) {
+            Assertions.assertArrayEquals(arc(sequential, ref, false), arc(parallel, ref, false));
+        }
+    }
+
+    @Test
+    public void testTypesWithoutToleranceAreNotRegistered() {
+        SharedArcSimplifier arcSimplifier = new SharedArcSimplifier(store(), new GeometrySimplifier(Map.of(TYPE.name(), "300")));
+        arcSimplifier.addRing(TopographicPlaceAdapter.Type.COUNTY, new long[]{SHARED, EAST}, new boolean[]{true, false});
+        arcSimplifier.complete(null);
+
+        Assertions.assertFalse(arcSimplifier.isEnabled(TopographicPlaceAdapter.Type.COUNTY));
+        Assertions.assertArrayEquals(SHARED_ARC, arc(arcSimplifier, SHARED, false));
+    }
+
+    private PackedCoordinateStore store() {
+        PackedCoordinateStore store = new PackedCoordinateStore();
+        store.put(SHARED, SHARED_ARC, 3);
+        store.put(WEST_NORTH, new double[]{10, 63.1, 10.002, 63.05}, 2);
+        store.put(WEST_MIDDLE, new double[]{10.002, 63.05, 9.999, 63.02}, 2);
+        store.put(WEST_SOUTH, new double[]{9.999, 63.02, 10, 63}, 2);
+        store.put(EAST, new double[]{10, 63, 10.02, 63, 10.02, 63.1, 10, 63.1}, 4);
+        store.put(OTHER, new double[]{10, 64, 10, 64}, 2);
+        return store;
+    }
+
+    private double[] arc(SharedArcSimplifier arcSimplifier, long ref, boolean reversed) {
+        double[] coordinates = new double[arcSimplifier.getNumPointsForRef(TYPE, ref) * 2];
+        int copied = arcSimplifier.copyForRef(TYPE, ref, reversed, coordinates, 0);
+        return Arrays.copyOf(coordinates, copied * 2);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.sosi;
+
+import no.vegvesen.nvdb.sosi.Sosi;
+import no.vegvesen.nvdb.sosi.document.SosiDocument;
+import no.vegvesen.nvdb.sosi.document.SosiElement;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SosiElementIndexTest {
+
+    private static final String SOSI_FILE = "src/test/resources/no/entur/kakka/task/sosi/SosiTest.sos";
+
+    private SosiDocument document;
+
+    private SosiElement county;
+
+    @BeforeEach
+    public void readDocument() throws Exception {
+        try (InputStream inputStream = new FileInputStream(SOSI_FILE)) {
+            document = Sosi.createReader(inputStream).read();
+        }
+        List<SosiElement> elements = new ArrayList<>();
+        document.getElements().forEach(elements::add);
+        county = elements.stream().filter(se -> "FLATE".equals(se.getName())).findFirst().orElseThrow();
+    }
+
+    @Test
+    public void testLookupMatchesLinearScan() {
+        SosiElementIndex index = new SosiElementIndex(county);
+
+        Assertions.assertSame(county.findSubElement(se -> "OBJTYPE".equals(se.getName())).orElseThrow(), index.first("OBJTYPE"));
+        Assertions.assertEquals("16", index.getString("FYLKESNUMMER"));
+        Assertions.assertEquals("Sør-Trøndelag", index.getString("FYLKESNAVN", "NAVN"));
+        Assertions.assertEquals(county.findSubElements(se -> "NØ".equals(se.getName())).toList(), index.all("NØ"));
+    }
+
+    @Test
+    public void testMissingPath() {
+        SosiElementIndex index = new SosiElementIndex(county);
+
+        Assertions.assertNull(index.first("KOMMUNENUMMER"));
+        Assertions.assertTrue(index.all("KOMMUNENUMMER").isEmpty());
+        Assertions.assertNull(index.getString("FYLKESNAVN", "SKRIVEMÅTE"));
+        Assertions.assertNull(index.getString("KOMMUNENUMMER", "NAVN"));
+    }
+
+    @Test
+    public void testChildIndexIsKept() {
+        SosiElementIndex index = new SosiElementIndex(county);
+        SosiElement nameElement = index.first("FYLKESNAVN");
+
+        Assertions.assertSame(index.child(nameElement), index.child(nameElement));
+    }
+
+    @Test
+    public void testWrapperPropertiesFromIndex() {
+        SosiCoordinates coordinates = new SosiCoordinates(document.getHead());
+        document.getElements().forEach(coordinates::collectCoordinates);
+        coordinates.completeCollection();
+
+        SosiElementWrapper wrapper = new SosiElementWrapperFactory().createWrapper(county, coordinates);
+
+        Assertions.assertInstanceOf(SosiCounty.class, wrapper);
+        Assertions.assertEquals("16", wrapper.getId());
+        Assertions.assertSame(wrapper.getId(), wrapper.getId());
+        Assertions.assertEquals("NO-16", wrapper.getIsoCode());
+        Assertions.assertEquals(4, wrapper.getRefs().size());
+        Assertions.assertNotNull(wrapper.getDefaultGeometry());
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.sosi;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class SosiFileFilterTest {
+
+    private static final Path SOSI_FILE = Path.of("src/test/resources/no/entur/kakka/task/sosi/SosiTest.sos");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testSplitByFieldWritesHeaderAndSharedElementsToEveryOutput() throws Exception {
+        Path trondelag = tempDir.resolve("16.sos");
+        Path oslo = tempDir.resolve("03.sos");
+
+        new SosiFileFilter().splitToFiles(SOSI_FILE, Map.of("16", trondelag, "03", oslo),
+                SosiFileFilter.ElementRouter.byField("FYLKESNUMMER"), SosiFileFilter.ALL_OUTPUTS);
+
+        byte[] header;
+        try (SosiElementChunker chunker = new SosiElementChunker(new FileInputStream(SOSI_FILE.toFile()))) {
+            header = chunker.getHeader();
+        }
+        Assertions.assertEquals(List.of("KURVE", "KURVE", "KURVE", "KURVE", "FLATE"), elementNames(trondelag, header));
+        Assertions.assertEquals(List.of("KURVE", "KURVE", "KURVE", "KURVE"), elementNames(oslo, header));
+        Assertions.assertTrue(Files.readString(oslo).endsWith(".SLUTT\n"));
+
+        Assertions.assertEquals(1, new SosiTopographicPlaceAdapterReader(new SosiElementWrapperFactory(), trondelag.toFile()).read().size());
+        Assertions.assertTrue(new SosiTopographicPlaceAdapterReader(new SosiElementWrapperFactory(), oslo.toFile()).read().isEmpty());
+    }
+
+    @Test
+    public void testSplitDropsUnroutedElements() throws Exception {
+        Path trondelag = tempDir.resolve("16.sos");
+
+        new SosiFileFilter().splitToFiles(SOSI_FILE, Map.of("16", trondelag), SosiFileFilter.ElementRouter.byField("FYLKESNUMMER"), null);
+
+        try (SosiElementChunker chunker = new SosiElementChunker(new FileInputStream(SOSI_FILE.toFile()))) {
+            Assertions.assertEquals(List.of("FLATE"), elementNames(trondelag, chunker.getHeader()));
+        }
+    }
+
+    @Test
+    public void testFilterElementsMatchesKeyAndValue() throws Exception {
+        Path filtered = tempDir.resolve("filtered.sos");
+
+        try (InputStream source = new FileInputStream(SOSI_FILE.toFile())) {
+            new SosiFileFilter().filterElements(source, filtered.toString(),
+                    field -> "KURVE".equals(field.getKey()) && "134:".equals(field.getValue()));
+        }
+
+        String content = Files.readString(filtered);
+        Assertions.assertTrue(content.startsWith(".HODE"));
+        Assertions.assertTrue(content.contains(".KURVE 134:"));
+        Assertions.assertFalse(content.contains(".KURVE 633:"));
+        Assertions.assertFalse(content.contains(".FLATE"));
+    }
+
+    private List<String> elementNames(Path sosiFile, byte[] expectedHeader) throws Exception {
+        List<String> names = new ArrayList<>();
+        try (SosiElementChunker chunker = new SosiElementChunker(new FileInputStream(sosiFile.toFile()))) {
+            Assertions.assertArrayEquals(expectedHeader, chunker.getHeader());
+            while (chunker.hasNext()) {
+                names.add(SosiElementChunker.elementName(chunker.next()));
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.task.sosi;
+
+import no.entur.kakka.task.netex.TopographicPlaceAdapter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class SosiTopographicPlaceAdapterReaderTest {
+
+    private static final File SOSI_FILE = new File("src/test/resources/no/entur/kakka/task/sosi/SosiTest.sos");
+
+    @Test
+    public void testStreamGivesSameAdaptersAsRead() {
+        Collection<TopographicPlaceAdapter> read = new SosiTopographicPlaceAdapterReader(new SosiElementWrapperFactory(), SOSI_FILE).read();
+        List<TopographicPlaceAdapter> streamed = new ArrayList<>();
+        new SosiTopographicPlaceAdapterReader(new SosiElementWrapperFactory(), SOSI_FILE).stream(streamed::add);
+
+        Assertions.assertFalse(read.isEmpty());
+        Assertions.assertEquals(read.size(), streamed.size());
+
+        Map<String, TopographicPlaceAdapter> streamedPerId = streamed.stream().collect(Collectors.toMap(TopographicPlaceAdapter::getId, Function.identity()));
+        for (TopographicPlaceAdapter expected : read) {
+            TopographicPlaceAdapter actual = streamedPerId.get(expected.getId());
+            Assertions.assertNotNull(actual, "Missing streamed adapter for id: " + expected.getId());
+            Assertions.assertEquals(expected.getType(), actual.getType());
+            Assertions.assertTrue(expected.getDefaultGeometry().equalsExact(actual.getDefaultGeometry()));
+        }
+    }
+
+    @Test
+    public void testParallelStreamGivesSameOutputAsSequentialStream() {
+        List<TopographicPlaceAdapter> sequential = new ArrayList<>();
+        new SosiTopographicPlaceAdapterReader(new SosiElementWrapperFactory(), SOSI_FILE, 1).stream(sequential::add);
+        List<TopographicPlaceAdapter> parallel = new ArrayList<>();
+        new SosiTopographicPlaceAdapterReader(new SosiElementWrapperFactory(), SOSI_FILE, 4).stream(parallel::add);
+
+        Assertions.assertFalse(sequential.isEmpty());
+        Assertions.assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            Assertions.assertEquals(sequential.get(i).getId(), parallel.get(i).getId());
+            Assertions.assertTrue(sequential.get(i).getDefaultGeometry().equalsExact(parallel.get(i).getDefaultGeometry()));
+        }
+    }
+
+    @Test
+    public void testChunkerSplitsTopLevelElements() throws Exception {
+        try (SosiElementChunker chunker = new SosiElementChunker(new FileInputStream(SOSI_FILE))) {
+            Assertions.assertTrue(new String(chunker.getHeader(), StandardCharsets.UTF_8).startsWith(".HODE"));
+
+            List<String> elementNames = new ArrayList<>();
+            while (chunker.hasNext()) {
+                elementNames.add(SosiElementChunker.elementName(chunker.next()));
+            }
+            Assertions.assertEquals(List.of("KURVE", "KURVE", "KURVE", "KURVE", "FLATE"), elementNames);
+        }
+    }
+
+    @Test
+    public void testChunkerKeepsElementsSpanningSeveralReadBlocks() throws Exception {
+        StringBuilder sosi = new StringBuilder(".HODE\n..TEGNSETT UTF-8\n");
+        List<String> elements = new ArrayList<>();
+        for (int id = 1; id <= 3; id++) {
+            StringBuilder element = new StringBuilder(".KURVE " + id + ":\n..NØH\n");
+            for (int i = 0; i < 20000 * id; i++) {
+                element.append(6600000 + i).append(' ').append(600000 + i).append('\n');
+            }
+            elements.add(element.toString());
+            sosi.append(element);
+        }
+        // Last line without terminator
+        sosi.append(".SLUTT");
+
+        try (SosiElementChunker chunker = new SosiElementChunker(new ByteArrayInputStream(sosi.toString().getBytes(StandardCharsets.UTF_8)))) {
+            Assertions.assertEquals(".HODE\n..TEGNSETT UTF-8\n", new String(chunker.getHeader(), StandardCharsets.UTF_8));
+            Assertions.assertEquals(elements.get(0), new String(chunker.next(), StandardCharsets.UTF_8));
+
+            ByteBuffer element = chunker.nextElement();
+            Assertions.assertEquals(elements.get(1), StandardCharsets.UTF_8.decode(element).toString());
+            Assertions.assertEquals(elements.get(2), new String(chunker.next(), StandardCharsets.UTF_8));
+            Assertions.assertFalse(chunker.hasNext());
+        }
+    }
+}